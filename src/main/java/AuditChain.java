@@ -0,0 +1,277 @@
+/**
+ * AuditChain.java defines the AuditChain class, which keeps a SHA-256 hash chain of an audit file
+ * as it is written and checks the chain of an audit file afterwards.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An AuditChain hashes every byte written to an audit file, on the AuditWriter's background
+ * thread, and every N records writes a CHECKPOINT event with the hash so far. When the file is
+ * closed it writes a ROOT_HASH event with the last hash. Each hash is the SHA-256 hash of the
+ * previous hash followed by the bytes written since it, the first hash of a chain has no
+ * previous hash, and the hash events themselves are not hashed. Changing, adding or removing
+ * any byte before a hash changes that hash and every hash after it, so a file can be checked
+ * by verify() without trusting how it was written. Each time an audit file is opened a new
+ * chain starts after the last root hash in the file, and resume() adds the bytes already
+ * written after it, such as the events of a run without a hash chain, to the new chain.
+ * Usage: java AuditChain auditFile
+ */
+public class AuditChain {
+
+    /**
+     * the format hash events are written in, the audit file's format
+     */
+    private final AuditEncoder encoder;
+    /**
+     * the number of records between checkpoints
+     */
+    private final int checkpointInterval;
+    /**
+     * the hash of the previous hash and the bytes written since it
+     */
+    private final MessageDigest digest;
+    /**
+     * a hash event being encoded
+     */
+    private final ByteArrayOutputStream event;
+    /**
+     * the number of records written
+     */
+    private long records;
+
+    /**
+     * Creates an AuditChain for a new chain.
+     * @param encoder  the format of the audit file, used to write hash events.
+     * @param checkpointInterval  the number of records between checkpoints, at least 1.
+     */
+    public AuditChain(AuditEncoder encoder, int checkpointInterval) {
+        this.encoder = encoder;
+        this.checkpointInterval = checkpointInterval;
+        this.digest = sha256();
+        this.event = new ByteArrayOutputStream();
+        this.records = 0;
+    }
+
+    /**
+     * Checks the hash chain of an audit file and prints the result.
+     * @param args  the audit file.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("------USAGE: AuditChain auditFile------");
+            return;
+        }
+        try {
+            int hashes = verify(Paths.get(args[0]));
+            System.out.println("------AUDIT CHAIN VERIFIED: " + hashes + " HASHES------");
+        } catch (IOException e) {
+            System.out.println("------AUDIT CHAIN BROKEN: " + e.getMessage() + "------");
+        }
+    }
+
+    /**
+     * Makes a SHA-256 MessageDigest.
+     * @return  the digest.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds bytes written to the audit file to the chain.
+     * @param bytes  the bytes written.
+     * @param off  the position of the first byte written.
+     * @param len  the number of bytes written.
+     */
+    void update(byte[] bytes, int off, int len) {
+        digest.update(bytes, off, len);
+    }
+
+    /**
+     * Counts a record whose bytes were all added, writing a checkpoint after every N records.
+     * @param file  the audit file.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    void endRecord(OutputStream file) throws IOException {
+        records++;
+        if (records % checkpointInterval == 0) {
+            writeHash(file, AuditEvent.Type.CHECKPOINT);
+        }
+    }
+
+    /**
+     * Ends the chain by writing the root hash.
+     * @param file  the audit file.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    void finish(OutputStream file) throws IOException {
+        writeHash(file, AuditEvent.Type.ROOT_HASH);
+    }
+
+    /**
+     * Starts the chain from the end of an audit file that already has events, so its first hash
+     * also covers the bytes written after the file's last root hash. Called before anything is
+     * written by this chain.
+     * @param auditFile  the audit file being appended to.
+     * @throws IOException  if the audit file cannot be read, or a hash in it does not match the
+     *                      bytes before it.
+     */
+    void resume(Path auditFile) throws IOException {
+        walk(auditFile, new Verifier(digest));
+    }
+
+    /**
+     * Gets the number of records written.
+     * @return  the number of records.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes the hash of the chain so far as an event, then starts the next link with the hash.
+     * @param file  the audit file.
+     * @param type  CHECKPOINT or ROOT_HASH.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    private void writeHash(OutputStream file, AuditEvent.Type type) throws IOException {
+        byte[] hash = digest.digest();
+        if (type == AuditEvent.Type.CHECKPOINT) {
+            digest.update(hash);
+        }
+        event.reset();
+        encoder.encode(new AuditEvent(type, new String[]{hex(hash)}, new int[]{(int) records}), event);
+        event.writeTo(file);
+    }
+
+    /**
+     * Writes a hash in lowercase hex.
+     * @param hash  the hash.
+     * @return  two hex digits per byte.
+     */
+    static String hex(byte[] hash) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Checks every hash of an audit file of any format against the bytes before it.
+     * @param auditFile  the audit file.
+     * @return  the number of hashes checked.
+     * @throws IOException  if the audit file cannot be read, a hash does not match the bytes
+     *                      before it, or the file has bytes after its last hash.
+     */
+    public static int verify(Path auditFile) throws IOException {
+        return walk(auditFile, new Verifier(sha256())).finish();
+    }
+
+    /**
+     * Reads every byte of an audit file of any format into a verifier, checking each hash.
+     * @param auditFile  the audit file.
+     * @param verifier  the verifier, which has read nothing.
+     * @return  the verifier.
+     * @throws IOException  if the audit file cannot be read or a hash does not match the bytes
+     *                      before it.
+     */
+    private static Verifier walk(Path auditFile, Verifier verifier) throws IOException {
+        try (AuditLog log = AuditLog.open(auditFile)) {
+            byte[] header = log.getHeader();
+            verifier.add(header, header.length);
+            while (log.nextRecord()) {
+                AuditEvent event = log.getEvent();
+                AuditEvent.Type type = event == null ? null : event.getType();
+                if (type == AuditEvent.Type.CHECKPOINT || type == AuditEvent.Type.ROOT_HASH) {
+                    verifier.check(event.getName(0), type == AuditEvent.Type.ROOT_HASH);
+                }
+                else {
+                    verifier.add(log.getRecord(), log.getRecordLength());
+                }
+            }
+        }
+        return verifier;
+    }
+
+    /**
+     * Follows the chain of an audit file being checked.
+     */
+    private static class Verifier {
+        /**
+         * the hash of the previous hash and the bytes read since it
+         */
+        private final MessageDigest digest;
+        /**
+         * the number of hashes checked
+         */
+        private int hashes = 0;
+        /**
+         * the number of bytes read since the last hash
+         */
+        private long unhashed = 0;
+
+        /**
+         * Creates a Verifier.
+         * @param digest  the digest the bytes of the file are added to, which has nothing added.
+         */
+        Verifier(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        /**
+         * Adds bytes of the audit file that are not a hash event.
+         * @param bytes  the bytes.
+         * @param len  the number of bytes.
+         */
+        void add(byte[] bytes, int len) {
+            digest.update(bytes, 0, len);
+            unhashed += len;
+        }
+
+        /**
+         * Checks a hash event against the bytes before it.
+         * @param written  the hash in the file, in hex.
+         * @param root  true if the hash ends its chain.
+         * @throws IOException  if the hash does not match.
+         */
+        void check(String written, boolean root) throws IOException {
+            byte[] hash = digest.digest();
+            if (!hex(hash).equals(written)) {
+                throw new IOException("hash " + (hashes + 1) + " is " + written + " but the file hashes to " + hex(hash));
+            }
+            hashes++;
+            unhashed = 0;
+            //a root hash ends its chain, the next chain starts without a previous hash
+            if (!root) {
+                digest.update(hash);
+            }
+        }
+
+        /**
+         * Checks that every byte of the file was hashed.
+         * @return  the number of hashes checked.
+         * @throws IOException  if the file has bytes after its last hash.
+         */
+        int finish() throws IOException {
+            if (unhashed > 0) {
+                throw new IOException(unhashed + " bytes after the last hash are not covered by a hash");
+            }
+            return hashes;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * AuditEncoder.java defines the AuditEncoder interface that is implemented by the
+ * TextAuditRenderer, BinaryAuditEncoder and JsonAuditEncoder classes.
+ * It provides the outline for writing AuditEvents to an audit file.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * AuditEncoder interface provides an outline for a format of audit file. An encoder writes each
+ * event straight to the output stream, without building a String of it first.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+public interface AuditEncoder {
+
+    /**
+     * Gets the extension of audit files written in this format.
+     * @return  the extension without a dot, Ex: txt.
+     */
+    public String getExtension();
+
+    /**
+     * Writes what comes before the first event of a new audit file. Nothing by default.
+     * @param out  the stream of the audit file.
+     * @throws IOException  if the stream cannot be written.
+     */
+    public default void begin(OutputStream out) throws IOException {
+    }
+
+    /**
+     * Writes an event to the audit file.
+     * @param event  the event to write.
+     * @param out  the stream of the audit file.
+     * @throws IOException  if the stream cannot be written.
+     */
+    public void encode(AuditEvent event, OutputStream out) throws IOException;
+
+    /**
+     * Finds the encoder for a format named on the command line.
+     * @param format  text, binary or jsonl.
+     * @return  a new encoder of the format, null if there is no format of that name.
+     */
+    public static AuditEncoder forName(String format) {
+        switch (format) {
+            case "text":
+                return new TextAuditRenderer();
+            case "binary":
+                return new BinaryAuditEncoder();
+            case "jsonl":
+                return new JsonAuditEncoder();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/**
+ * AuditEvent.java defines the AuditEvent class, one step of an election recorded in its audit
+ * file, such as a candidate being registered or a ballot being exhausted.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An AuditEvent holds its Type, the names it is about and the numbers it records, Ex: a
+ * CANDIDATE_REGISTERED event has the names {candidate, party} and the values {initial ballots}.
+ * The layout of the names and values of each Type is given with the Type. Events are made by
+ * the factory methods, and are written to the audit file by an AuditEncoder.
+ */
+public class AuditEvent {
+
+    /**
+     * The kinds of audit event, each with the code written for it by BinaryAuditEncoder and the
+     * name written for it by JsonAuditEncoder.
+     */
+    public enum Type {
+        /**
+         * names {election type}
+         */
+        ELECTION_TYPE(1, "election_type"),
+        /**
+         * values {number of candidates}
+         */
+        CANDIDATE_COUNT(2, "candidate_count"),
+        /**
+         * names {candidate, party}, values {initial ballots}
+         */
+        CANDIDATE_REGISTERED(3, "candidate_registered"),
+        /**
+         * values {ballot index}
+         */
+        BALLOT_EXHAUSTED(4, "ballot_exhausted"),
+        /**
+         * names {candidate...}, values {final ballots of each candidate...}, more than one
+         * candidate when they were removed by batch elimination
+         */
+        LOSER_REMOVED(5, "loser_removed"),
+        /**
+         * names {party, candidate...}, values {initial party ballots}
+         */
+        PARTY_REGISTERED(6, "party_registered"),
+        /**
+         * names {party}, values {seats, party ballots, quota}
+         */
+        SEAT_ALLOCATED(7, "seat_allocated"),
+        /**
+         * names {party}
+         */
+        REMAINDER_SEAT_ALLOCATED(8, "remainder_seat_allocated"),
+        /**
+         * names {tied parties or candidates, chosen winner}
+         */
+        TIE_BROKEN(9, "tie_broken"),
+        /**
+         * names {party, candidate}, values {final party ballots}
+         */
+        SEAT_WINNER(10, "seat_winner"),
+        /**
+         * names {candidate}, values {final ballots}
+         */
+        WINNER(11, "winner"),
+        /**
+         * values {round, first index, last index, first index, last index...}, the ballots
+         * exhausted in a round as sorted ranges of ballot indices, each range inclusive
+         */
+        BALLOTS_EXHAUSTED(12, "ballots_exhausted"),
+        /**
+         * names {SHA-256 hash in hex}, values {records written}, the hash chain of the audit file
+         * so far, written by AuditChain every N records
+         */
+        CHECKPOINT(13, "checkpoint"),
+        /**
+         * names {SHA-256 hash in hex}, values {records written}, the last hash of the chain,
+         * written by AuditChain when the audit file is closed
+         */
+        ROOT_HASH(14, "root_hash");
+
+        /**
+         * the byte written for the type in a binary audit file
+         */
+        private final int code;
+        /**
+         * the name written for the type in a JSON audit file
+         */
+        private final String jsonName;
+
+        /**
+         * Creates a Type.
+         * @param code  the byte written for the type in a binary audit file.
+         * @param jsonName  the name written for the type in a JSON audit file.
+         */
+        Type(int code, String jsonName) {
+            this.code = code;
+            this.jsonName = jsonName;
+        }
+
+        /**
+         * Gets the byte written for the type in a binary audit file.
+         * @return  the type code.
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * Gets the name written for the type in a JSON audit file.
+         * @return  the type name, Ex: ballot_exhausted.
+         */
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        /**
+         * Finds the Type written as a code in a binary audit file.
+         * @param code  the type code.
+         * @return  the Type, null if no Type has the code.
+         */
+        public static Type fromCode(int code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds the Type written as a name in a JSON audit file.
+         * @param jsonName  the type name, Ex: ballot_exhausted.
+         * @return  the Type, null if no Type has the name.
+         */
+        public static Type fromJsonName(String jsonName) {
+            for (Type type : values()) {
+                if (type.jsonName.equals(jsonName)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * names with no entries, shared by events without names
+     */
+    private static final String[] NO_NAMES = new String[0];
+    /**
+     * values with no entries, shared by events without values
+     */
+    private static final int[] NO_VALUES = new int[0];
+
+    /**
+     * the kind of event
+     */
+    private final Type type;
+    /**
+     * the names the event is about, laid out as given by the type
+     */
+    private final String[] names;
+    /**
+     * the numbers the event records, laid out as given by the type
+     */
+    private final int[] values;
+
+    /**
+     * Creates an AuditEvent. The arrays are kept, not copied.
+     * @param type  the kind of event.
+     * @param names  the names the event is about.
+     * @param values  the numbers the event records.
+     */
+    public AuditEvent(Type type, String[] names, int[] values) {
+        this.type = type;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Makes an event for the type of the election.
+     * @param electionType  the type of the election, Ex: Instant-Runoff.
+     * @return  the ELECTION_TYPE event.
+     */
+    public static AuditEvent electionType(String electionType) {
+        return new AuditEvent(Type.ELECTION_TYPE, new String[]{electionType}, NO_VALUES);
+    }
+
+    /**
+     * Makes an event for the number of candidates in the election.
+     * @param numCandidates  the number of candidates.
+     * @return  the CANDIDATE_COUNT event.
+     */
+    public static AuditEvent candidateCount(int numCandidates) {
+        return new AuditEvent(Type.CANDIDATE_COUNT, NO_NAMES, new int[]{numCandidates});
+    }
+
+    /**
+     * Makes an event for a candidate and the ballots they received before any were transferred.
+     * @param name  the name of the candidate.
+     * @param party  the candidate's political party.
+     * @param initialBallots  the number of initial ballots the candidate received.
+     * @return  the CANDIDATE_REGISTERED event.
+     */
+    public static AuditEvent candidateRegistered(String name, String party, int initialBallots) {
+        return new AuditEvent(Type.CANDIDATE_REGISTERED, new String[]{name, party}, new int[]{initialBallots});
+    }
+
+    /**
+     * Makes an event for a ballot removed because all its candidates were eliminated.
+     * @param index  the ballot index of the removed ballot.
+     * @return  the BALLOT_EXHAUSTED event.
+     */
+    public static AuditEvent ballotExhausted(int index) {
+        return new AuditEvent(Type.BALLOT_EXHAUSTED, NO_NAMES, new int[]{index});
+    }
+
+    /**
+     * Makes an event for every ballot exhausted in a round, as ranges of consecutive indices.
+     * @param round  the round the ballots were exhausted in, 1 for the first elimination.
+     * @param indices  the ballot indices of the exhausted ballots.
+     * @return  the BALLOTS_EXHAUSTED event.
+     */
+    public static AuditEvent ballotsExhausted(int round, BitSet indices) {
+        int numRanges = 0;
+        for (int first = indices.nextSetBit(0); first >= 0; first = indices.nextSetBit(indices.nextClearBit(first))) {
+            numRanges++;
+        }
+        int[] values = new int[1 + numRanges * 2];
+        values[0] = round;
+        int i = 1;
+        for (int first = indices.nextSetBit(0); first >= 0; first = indices.nextSetBit(values[i - 1] + 1)) {
+            values[i++] = first;
+            values[i++] = indices.nextClearBit(first) - 1;
+        }
+        return new AuditEvent(Type.BALLOTS_EXHAUSTED, NO_NAMES, values);
+    }
+
+    /**
+     * Makes an event for candidates eliminated from the election in the same round.
+     * @param names  the names of the eliminated candidates.
+     * @param finalBallotCounts  each candidate's final ballot count, in the same order as names.
+     * @return  the LOSER_REMOVED event.
+     */
+    public static AuditEvent loserRemoved(String[] names, int[] finalBallotCounts) {
+        return new AuditEvent(Type.LOSER_REMOVED, names, finalBallotCounts);
+    }
+
+    /**
+     * Makes an event for a party of a CPL election and its ballots.
+     * @param party  the name of the party.
+     * @param candidates  the party's candidates, in list order.
+     * @param partyBallots  the number of ballots cast for the party.
+     * @return  the PARTY_REGISTERED event.
+     */
+    public static AuditEvent partyRegistered(String party, List<?> candidates, int partyBallots) {
+        String[] names = new String[candidates.size() + 1];
+        names[0] = party;
+        for (int i = 0; i < candidates.size(); i++) {
+            names[i + 1] = String.valueOf(candidates.get(i));
+        }
+        return new AuditEvent(Type.PARTY_REGISTERED, names, new int[]{partyBallots});
+    }
+
+    /**
+     * Makes an event for the seats a party won by the quota.
+     * @param seats  the number of seats allocated.
+     * @param party  the party receiving the seats.
+     * @param partyBallots  the number of ballots cast for the party.
+     * @param quota  the number of ballots each seat takes.
+     * @return  the SEAT_ALLOCATED event.
+     */
+    public static AuditEvent seatAllocated(int seats, String party, int partyBallots, int quota) {
+        return new AuditEvent(Type.SEAT_ALLOCATED, new String[]{party}, new int[]{seats, partyBallots, quota});
+    }
+
+    /**
+     * Makes an event for a seat a party won by having the highest remainder.
+     * @param party  the party receiving the seat.
+     * @return  the REMAINDER_SEAT_ALLOCATED event.
+     */
+    public static AuditEvent remainderSeatAllocated(String party) {
+        return new AuditEvent(Type.REMAINDER_SEAT_ALLOCATED, new String[]{party}, NO_VALUES);
+    }
+
+    /**
+     * Makes an event for a tie broken by choosing at random.
+     * @param tied  the tied parties or candidates, as a list written for people.
+     * @param chosenWinner  the party or candidate chosen.
+     * @return  the TIE_BROKEN event.
+     */
+    public static AuditEvent tieBroken(String tied, String chosenWinner) {
+        return new AuditEvent(Type.TIE_BROKEN, new String[]{tied, chosenWinner}, NO_VALUES);
+    }
+
+    /**
+     * Makes an event for a candidate winning one of their party's seats.
+     * @param party  the name of the party.
+     * @param candidate  the candidate that won the seat.
+     * @param partyBallots  the number of ballots cast for the party.
+     * @return  the SEAT_WINNER event.
+     */
+    public static AuditEvent seatWinner(String party, String candidate, int partyBallots) {
+        return new AuditEvent(Type.SEAT_WINNER, new String[]{party, candidate}, new int[]{partyBallots});
+    }
+
+    /**
+     * Makes an event for the winner of the election.
+     * @param name  the name of the winner.
+     * @param finalBallotCount  the winner's final number of ballots.
+     * @return  the WINNER event.
+     */
+    public static AuditEvent winner(String name, int finalBallotCount) {
+        return new AuditEvent(Type.WINNER, new String[]{name}, new int[]{finalBallotCount});
+    }
+
+    /**
+     * Gets the kind of event.
+     * @return  the event's Type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of names the event is about.
+     * @return  the number of names.
+     */
+    public int getNumNames() {
+        return names.length;
+    }
+
+    /**
+     * Gets one of the names the event is about.
+     * @param i  the position of the name, laid out as given by the type.
+     * @return  the name.
+     */
+    public String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * Gets the number of numbers the event records.
+     * @return  the number of values.
+     */
+    public int getNumValues() {
+        return values.length;
+    }
+
+    /**
+     * Gets one of the numbers the event records.
+     * @param i  the position of the value, laid out as given by the type.
+     * @return  the value.
+     */
+    public int getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * Checks if another event is of the same type with the same names and values.
+     * @param other  the object to compare to.
+     * @return  true if the events are the same.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AuditEvent)) {
+            return false;
+        }
+        AuditEvent event = (AuditEvent) other;
+        return type == event.type && Arrays.equals(names, event.names)
+                && Arrays.equals(values, event.values);
+    }
+
+    /**
+     * Makes a hash code from the type, names and values.
+     * @return  the hash code.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + Arrays.hashCode(names)) + Arrays.hashCode(values);
+    }
+
+    /**
+     * Describes the event for debugging, Ex: WINNER[caleb][3].
+     * @return  the description.
+     */
+    @Override
+    public String toString() {
+        return type + Arrays.toString(names) + Arrays.toString(values);
+    }
+}
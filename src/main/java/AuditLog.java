@@ -0,0 +1,667 @@
+/**
+ * AuditLog.java defines the AuditLog class, which reads the AuditEvents of an audit file written
+ * in any format, binary, text or JSON lines.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * An AuditLog reads an audit file one event at a time, so an audit file of any size can be read
+ * without holding it in memory. Binary audit files are read by an AuditReader. Text and JSON
+ * lines audit files are read line by line, a line starting with '{' being one JSON event and
+ * the lines written by TextAuditRenderer for an event being read back into the same event.
+ * Events of a type this version does not know are skipped in binary and JSON lines files.
+ * Every tool reading audit files reads them through an AuditLog. AuditChain also reads them a
+ * record at a time with nextRecord(), which gives the bytes of each record exactly as they are
+ * in the file, records of unknown types and blank lines included, so they can be hashed.
+ */
+public class AuditLog implements AutoCloseable {
+
+    /**
+     * the events of a binary audit file, null if the file is text or JSON lines
+     */
+    private final AuditReader binary;
+    /**
+     * the bytes of a text or JSON lines audit file, null if the file is binary
+     */
+    private final InputStream text;
+    /**
+     * the bytes of the text file read from the stream and not yet used
+     */
+    private final byte[] buffer;
+    /**
+     * the position of the next unused byte in buffer
+     */
+    private int bufferPos;
+    /**
+     * the number of bytes in buffer
+     */
+    private int bufferLimit;
+    /**
+     * the bytes of the last record, as they are in the file
+     */
+    private byte[] record;
+    /**
+     * the number of bytes of the last record
+     */
+    private int recordLength;
+    /**
+     * the event of the last record, null if its type is not known or it is a blank line
+     */
+    private AuditEvent event;
+    /**
+     * the number of lines read so far, used to say where a bad line is
+     */
+    private long lineNumber;
+
+    /**
+     * Creates an AuditLog reading a binary audit file.
+     * @param binary  the reader of the file.
+     */
+    private AuditLog(AuditReader binary) {
+        this.binary = binary;
+        this.text = null;
+        this.buffer = null;
+        this.record = new byte[0];
+    }
+
+    /**
+     * Creates an AuditLog reading a text or JSON lines audit file.
+     * @param text  the bytes of the file.
+     */
+    private AuditLog(InputStream text) {
+        this.binary = null;
+        this.text = text;
+        this.buffer = new byte[1 << 16];
+        this.bufferPos = 0;
+        this.bufferLimit = 0;
+        this.record = new byte[256];
+        this.lineNumber = 0;
+    }
+
+    /**
+     * Opens an audit file, finding its format from its first bytes.
+     * @param auditFile  the audit file.
+     * @return  an AuditLog at the first event of the file.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    public static AuditLog open(Path auditFile) throws IOException {
+        byte[] magic = new byte[BinaryAuditEncoder.AUDIT_MAGIC.length];
+        int length;
+        try (InputStream in = Files.newInputStream(auditFile)) {
+            length = in.readNBytes(magic, 0, magic.length);
+        }
+        if (length == magic.length && Arrays.equals(magic, BinaryAuditEncoder.AUDIT_MAGIC)) {
+            return new AuditLog(new AuditReader(Files.newInputStream(auditFile)));
+        }
+        return new AuditLog(Files.newInputStream(auditFile));
+    }
+
+    /**
+     * Reads the next event.
+     * @return  the event, null at the end of the file.
+     * @throws IOException  if the file cannot be read or a line is not part of an event.
+     */
+    public AuditEvent next() throws IOException {
+        while (nextRecord()) {
+            //a blank line, or an event of a type from a later version, is skipped
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next record: one record of a binary audit file, or one blank line or the lines
+     * of one event of a text or JSON lines audit file.
+     * @return  false at the end of the file.
+     * @throws IOException  if the file cannot be read or a line is not part of an event.
+     */
+    boolean nextRecord() throws IOException {
+        event = null;
+        recordLength = 0;
+        if (binary != null) {
+            byte[] bytes = binary.nextRecord();
+            if (bytes == null) {
+                return false;
+            }
+            record = bytes;
+            recordLength = bytes.length;
+            event = AuditReader.decode(bytes);
+            return true;
+        }
+        String line = readLine();
+        if (line == null) {
+            return false;
+        }
+        if (!line.isEmpty()) {
+            event = line.startsWith("{") ? readJson(line) : readText(line);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the event of the record read by nextRecord().
+     * @return  the event, or null if its type is not known or the record is a blank line.
+     */
+    AuditEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the bytes of the record read by nextRecord(), as they are in the file.
+     * @return  an array holding the record in its first getRecordLength() bytes.
+     */
+    byte[] getRecord() {
+        return record;
+    }
+
+    /**
+     * Gets the number of bytes of the record read by nextRecord().
+     * @return  the number of bytes.
+     */
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * Gets the bytes of the file before its first record.
+     * @return  the header of a binary audit file, no bytes for a text or JSON lines audit file.
+     */
+    byte[] getHeader() {
+        if (binary == null) {
+            return new byte[0];
+        }
+        byte[] header = Arrays.copyOf(BinaryAuditEncoder.AUDIT_MAGIC, BinaryAuditEncoder.AUDIT_MAGIC.length + 1);
+        header[header.length - 1] = (byte) BinaryAuditEncoder.AUDIT_VERSION;
+        return header;
+    }
+
+    /**
+     * Reads the next line of a text or JSON lines audit file, adding its bytes to the record.
+     * @return  the line without its line ending, null at the end of the file.
+     * @throws IOException  if the file cannot be read.
+     */
+    private String readLine() throws IOException {
+        int start = recordLength;
+        while (true) {
+            if (bufferPos == bufferLimit) {
+                bufferLimit = Math.max(0, text.read(buffer));
+                bufferPos = 0;
+                if (bufferLimit == 0) {
+                    break;
+                }
+            }
+            byte b = buffer[bufferPos++];
+            if (recordLength == record.length) {
+                record = Arrays.copyOf(record, record.length * 2);
+            }
+            record[recordLength++] = b;
+            if (b == '\n') {
+                break;
+            }
+        }
+        if (recordLength == start) {
+            return null;
+        }
+        lineNumber++;
+        int end = recordLength;
+        if (end > start && record[end - 1] == '\n') {
+            end--;
+        }
+        if (end > start && record[end - 1] == '\r') {
+            end--;
+        }
+        return new String(record, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next line of an event of a text audit file, which must start with a prefix.
+     * @param prefix  the text the line starts with, Ex: "+++Candidate name: ".
+     * @return  the rest of the line after the prefix.
+     * @throws IOException  if the file ends or the line does not start with the prefix.
+     */
+    private String field(String prefix) throws IOException {
+        String line = readLine();
+        if (line == null || !line.startsWith(prefix)) {
+            throw badLine(line == null ? "the end of the file" : line, "'" + prefix + "'");
+        }
+        return line.substring(prefix.length());
+    }
+
+    /**
+     * Reads the next number of an event of a text audit file.
+     * @param prefix  the text the line starts with before the number.
+     * @return  the number.
+     * @throws IOException  if the line does not start with the prefix or is not a number.
+     */
+    private int number(String prefix) throws IOException {
+        return parseNumber(field(prefix).trim());
+    }
+
+    /**
+     * Parses a number of an event.
+     * @param text  the number as written.
+     * @return  the number.
+     * @throws IOException  if the text is not a number.
+     */
+    private int parseNumber(String text) throws IOException {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw badLine(text, "a number");
+        }
+    }
+
+    /**
+     * Makes the exception for a line that is not what the audit file should have.
+     * @param found  the line, or what was found instead.
+     * @param expected  what the line should have been.
+     * @return  the exception.
+     */
+    private IOException badLine(String found, String expected) {
+        return new IOException("Line " + lineNumber + " of the audit file is " + found + ", expected " + expected);
+    }
+
+    /**
+     * Reads the event that starts with a line of a text audit file, and the rest of its lines.
+     * @param line  the first line of the event.
+     * @return  the event.
+     * @throws IOException  if the lines are not an event written by TextAuditRenderer.
+     */
+    private AuditEvent readText(String line) throws IOException {
+        if (line.startsWith("Election Type: ")) {
+            return AuditEvent.electionType(line.substring("Election Type: ".length()));
+        }
+        if (line.startsWith("Number of candidates: ")) {
+            return AuditEvent.candidateCount(parseNumber(line.substring("Number of candidates: ".length()).trim()));
+        }
+        if (line.equals("New Candidate:")) {
+            String name = field("+++Candidate name: ");
+            String party = field("+++Party name: ");
+            return AuditEvent.candidateRegistered(name, party, number("+++Initial ballot count: "));
+        }
+        if (line.equals("Ballot removed:")) {
+            return AuditEvent.ballotExhausted(number("+++Ballot index: "));
+        }
+        if (line.startsWith("Ballots removed in round ") && line.endsWith(":")) {
+            int round = parseNumber(line.substring("Ballots removed in round ".length(), line.length() - 1));
+            String[] ranges = field("+++Ballot indices: ").split(", ");
+            int[] values = new int[1 + 2 * ranges.length];
+            values[0] = round;
+            for (int i = 0; i < ranges.length; i++) {
+                int dash = ranges[i].indexOf('-');
+                values[1 + 2 * i] = parseNumber(dash < 0 ? ranges[i] : ranges[i].substring(0, dash));
+                values[2 + 2 * i] = dash < 0 ? values[1 + 2 * i] : parseNumber(ranges[i].substring(dash + 1));
+            }
+            return new AuditEvent(AuditEvent.Type.BALLOTS_EXHAUSTED, new String[0], values);
+        }
+        if (line.equals("Removed loser:") || line.startsWith("Removed losers (batch elimination of ")) {
+            int numLosers = 1;
+            if (!line.equals("Removed loser:")) {
+                String rest = line.substring("Removed losers (batch elimination of ".length());
+                numLosers = parseNumber(rest.substring(0, Math.max(0, rest.indexOf(' '))));
+            }
+            String[] names = new String[numLosers];
+            int[] counts = new int[numLosers];
+            for (int i = 0; i < numLosers; i++) {
+                names[i] = field("+++Candidate name: ");
+                counts[i] = number("+++Final ballot count: ");
+            }
+            return AuditEvent.loserRemoved(names, counts);
+        }
+        if (line.equals("New Party:")) {
+            String party = field("+++Party name: ");
+            String list = field("+++Party Candidates: [");
+            if (!list.endsWith("]")) {
+                throw badLine(list, "a list of candidates ending in ']'");
+            }
+            list = list.substring(0, list.length() - 1);
+            List<String> candidates = list.isEmpty() ? new ArrayList<>() : Arrays.asList(list.split(", ", -1));
+            return AuditEvent.partyRegistered(party, candidates, number("+++Initial Party ballot count: "));
+        }
+        if (line.endsWith(" SEATS ALLOCATED TO:")) {
+            int seats = parseNumber(line.substring(0, line.length() - " SEATS ALLOCATED TO:".length()));
+            String party = field("+++ : ");
+            int ballots = number("TOTAL BALLOTS TO PARTY: ");
+            return AuditEvent.seatAllocated(seats, party, ballots, number("LARGEST REMAINDER QUOTA: "));
+        }
+        if (line.equals("REMAINING SEAT ALLOCATED TO:")) {
+            String party = field("+++ : ");
+            if (!party.endsWith(" DUE TO HIGHER REMAINDER")) {
+                throw badLine(party, "a party followed by ' DUE TO HIGHER REMAINDER'");
+            }
+            return AuditEvent.remainderSeatAllocated(party.substring(0, party.length() - " DUE TO HIGHER REMAINDER".length()));
+        }
+        if (line.equals("TIED PARTIES:")) {
+            String tied = field("+++ ");
+            return AuditEvent.tieBroken(tied, field("WINNER OF TIE: "));
+        }
+        if (line.equals("PARTY WINNER:")) {
+            //the party and candidate are written with no space between them
+            String seat = field("+++ : ");
+            int split = seat.lastIndexOf("Seat Winner: ");
+            if (split < 0) {
+                throw badLine(seat, "a party followed by 'Seat Winner: '");
+            }
+            return AuditEvent.seatWinner(seat.substring(0, split), seat.substring(split + "Seat Winner: ".length()),
+                    number("+++Final Party ballot count: "));
+        }
+        if (line.equals("ELECTION WINNER:")) {
+            String name = field("+++Candidate name: ");
+            return AuditEvent.winner(name, number("+++Final ballot count: "));
+        }
+        if (line.startsWith("AUDIT CHECKPOINT: records ") || line.startsWith("AUDIT ROOT HASH: records ")) {
+            boolean checkpoint = line.startsWith("AUDIT CHECKPOINT: ");
+            String rest = line.substring(checkpoint ? "AUDIT CHECKPOINT: records ".length() : "AUDIT ROOT HASH: records ".length());
+            int split = rest.indexOf(" sha256 ");
+            if (split < 0) {
+                throw badLine(line, "a number of records and a sha256 hash");
+            }
+            return new AuditEvent(checkpoint ? AuditEvent.Type.CHECKPOINT : AuditEvent.Type.ROOT_HASH,
+                    new String[]{rest.substring(split + " sha256 ".length())}, new int[]{parseNumber(rest.substring(0, split))});
+        }
+        throw badLine(line, "the start of an audit event");
+    }
+
+    /**
+     * Reads the event of a line of a JSON lines audit file.
+     * @param line  the JSON object of one event.
+     * @return  the event, or null if its type is not known.
+     * @throws IOException  if the line is not an event written by JsonAuditEncoder.
+     */
+    private AuditEvent readJson(String line) throws IOException {
+        LinkedHashMap<String, Object> object;
+        try {
+            object = new JsonParser(line).object();
+        } catch (IllegalArgumentException e) {
+            throw badLine(line, "a JSON object: " + e.getMessage());
+        }
+        AuditEvent.Type type = AuditEvent.Type.fromJsonName(String.valueOf(object.get("event")));
+        if (type == null) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case ELECTION_TYPE:
+                    return AuditEvent.electionType(string(object, "election_type"));
+                case CANDIDATE_COUNT:
+                    return AuditEvent.candidateCount(integer(object, "candidates"));
+                case CANDIDATE_REGISTERED:
+                    return AuditEvent.candidateRegistered(string(object, "candidate"), string(object, "party"),
+                            integer(object, "ballots"));
+                case BALLOT_EXHAUSTED:
+                    return AuditEvent.ballotExhausted(integer(object, "ballot"));
+                case BALLOTS_EXHAUSTED: {
+                    List<?> ranges = list(object, "ranges");
+                    int[] values = new int[1 + 2 * ranges.size()];
+                    values[0] = integer(object, "round");
+                    for (int i = 0; i < ranges.size(); i++) {
+                        List<?> range = (List<?>) ranges.get(i);
+                        values[1 + 2 * i] = (Integer) range.get(0);
+                        values[2 + 2 * i] = (Integer) range.get(1);
+                    }
+                    return new AuditEvent(type, new String[0], values);
+                }
+                case LOSER_REMOVED: {
+                    List<?> names = list(object, "candidates");
+                    List<?> counts = list(object, "ballots");
+                    int[] values = new int[counts.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = (Integer) counts.get(i);
+                    }
+                    return AuditEvent.loserRemoved(names.toArray(new String[0]), values);
+                }
+                case PARTY_REGISTERED:
+                    return AuditEvent.partyRegistered(string(object, "party"), list(object, "candidates"),
+                            integer(object, "ballots"));
+                case SEAT_ALLOCATED:
+                    return AuditEvent.seatAllocated(integer(object, "seats"), string(object, "party"),
+                            integer(object, "ballots"), integer(object, "quota"));
+                case REMAINDER_SEAT_ALLOCATED:
+                    return AuditEvent.remainderSeatAllocated(string(object, "party"));
+                case TIE_BROKEN:
+                    return AuditEvent.tieBroken(string(object, "tied"), string(object, "chosen"));
+                case SEAT_WINNER:
+                    return AuditEvent.seatWinner(string(object, "party"), string(object, "candidate"),
+                            integer(object, "ballots"));
+                case WINNER:
+                    return AuditEvent.winner(string(object, "candidate"), integer(object, "ballots"));
+                default:
+                    //CHECKPOINT and ROOT_HASH
+                    return new AuditEvent(type, new String[]{string(object, "sha256")}, new int[]{integer(object, "records")});
+            }
+        } catch (IllegalArgumentException | ClassCastException | IndexOutOfBoundsException | ArrayStoreException e) {
+            throw badLine(line, "a " + type.getJsonName() + " event");
+        }
+    }
+
+    /**
+     * Gets a value of a JSON event.
+     * @param object  the event's keys and values.
+     * @param key  the key of the value.
+     * @param type  the class the value must be, String, Integer or List.
+     * @param <T>  the class of the value.
+     * @return  the value.
+     * @throws IllegalArgumentException  if the key is missing or its value is not of the class.
+     */
+    private static <T> T get(LinkedHashMap<String, Object> object, String key, Class<T> type) {
+        Object value = object.get(key);
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("no " + type.getSimpleName() + " under " + key);
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * Gets a string of a JSON event.
+     * @param object  the event's keys and values.
+     * @param key  the key of the string.
+     * @return  the string.
+     */
+    private static String string(LinkedHashMap<String, Object> object, String key) {
+        return get(object, key, String.class);
+    }
+
+    /**
+     * Gets a number of a JSON event.
+     * @param object  the event's keys and values.
+     * @param key  the key of the number.
+     * @return  the number.
+     */
+    private static int integer(LinkedHashMap<String, Object> object, String key) {
+        return get(object, key, Integer.class);
+    }
+
+    /**
+     * Gets an array of a JSON event.
+     * @param object  the event's keys and values.
+     * @param key  the key of the array.
+     * @return  the array's values.
+     */
+    private static List<?> list(LinkedHashMap<String, Object> object, String key) {
+        return get(object, key, List.class);
+    }
+
+    /**
+     * Closes the audit file.
+     * @throws IOException  if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (binary != null) {
+            binary.close();
+        }
+        else {
+            text.close();
+        }
+    }
+
+    /**
+     * Parses the JSON written by JsonAuditEncoder: one object per line whose values are strings,
+     * whole numbers and arrays of them.
+     */
+    private static class JsonParser {
+        /**
+         * the line being parsed
+         */
+        private final String text;
+        /**
+         * the position of the next char to parse
+         */
+        private int pos;
+
+        /**
+         * Creates a JsonParser.
+         * @param text  the line to parse.
+         */
+        JsonParser(String text) {
+            this.text = text;
+            this.pos = 0;
+        }
+
+        /**
+         * Parses an object, which must be the whole line.
+         * @return  the object's keys and values, in order.
+         * @throws IllegalArgumentException  if the line is not one JSON object.
+         */
+        LinkedHashMap<String, Object> object() {
+            LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+            expect('{');
+            if (peek() != '}') {
+                do {
+                    String key = string();
+                    expect(':');
+                    object.put(key, value());
+                } while (accept(','));
+            }
+            expect('}');
+            if (pos != text.length()) {
+                throw new IllegalArgumentException("text after the object at " + pos);
+            }
+            return object;
+        }
+
+        /**
+         * Parses a string, number or array.
+         * @return  a String, Integer or List of values.
+         */
+        private Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '[') {
+                pos++;
+                ArrayList<Object> list = new ArrayList<>();
+                if (peek() != ']') {
+                    do {
+                        list.add(value());
+                    } while (accept(','));
+                }
+                expect(']');
+                return list;
+            }
+            int start = pos;
+            if (c == '-') {
+                pos++;
+            }
+            while (pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                pos++;
+            }
+            try {
+                return Integer.parseInt(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("no value at " + start);
+            }
+        }
+
+        /**
+         * Parses a string, undoing the escapes JsonAuditEncoder writes.
+         * @return  the string.
+         */
+        private String string() {
+            expect('"');
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return string.toString();
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                char escape = next();
+                if (escape == 'n') {
+                    string.append('\n');
+                }
+                else if (escape == 'u') {
+                    if (pos + 4 > text.length()) {
+                        throw new IllegalArgumentException("cut off escape at " + pos);
+                    }
+                    string.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                }
+                else {
+                    string.append(escape);
+                }
+            }
+        }
+
+        /**
+         * Gets the next char without moving past it.
+         * @return  the char.
+         */
+        private char peek() {
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("cut off at " + pos);
+            }
+            return text.charAt(pos);
+        }
+
+        /**
+         * Moves past the next char.
+         * @return  the char.
+         */
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        /**
+         * Moves past the next char if it is the one given.
+         * @param c  the char.
+         * @return  true if the char was there.
+         */
+        private boolean accept(char c) {
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Moves past the next char, which must be the one given.
+         * @param c  the char.
+         */
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw new IllegalArgumentException("expected '" + c + "' at " + pos);
+            }
+        }
+    }
+}
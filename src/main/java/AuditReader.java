@@ -0,0 +1,196 @@
+/**
+ * AuditReader.java defines the AuditReader class, which reads the AuditEvents of a binary audit
+ * file written by BinaryAuditEncoder.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * An AuditReader reads a binary audit file one event at a time, so an audit file of any size can
+ * be read without holding it in memory. Records of a type it does not know are skipped, and
+ * fields a later version adds to the end of a record are ignored.
+ * Run on its own, it prints a binary audit file as the text of a .txt audit file.
+ * Usage: java AuditReader auditFile.vba
+ */
+public class AuditReader implements AutoCloseable {
+
+    /**
+     * the stream of the audit file, past its header
+     */
+    private final InputStream in;
+
+    /**
+     * Creates an AuditReader and reads the header of the audit file.
+     * @param in  the stream of a binary audit file, at its start.
+     * @throws IOException  if the stream is not a binary audit file of this version.
+     */
+    public AuditReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in, 1 << 16);
+        byte[] magic = new byte[BinaryAuditEncoder.AUDIT_MAGIC.length];
+        if (this.in.readNBytes(magic, 0, magic.length) != magic.length
+                || !Arrays.equals(magic, BinaryAuditEncoder.AUDIT_MAGIC)) {
+            throw new IOException("Not a binary audit file");
+        }
+        int version = this.in.read();
+        if (version != BinaryAuditEncoder.AUDIT_VERSION) {
+            throw new IOException("Unsupported binary audit file version " + version);
+        }
+    }
+
+    /**
+     * Prints a binary audit file as text.
+     * @param args  the binary audit file.
+     * @throws IOException  if the file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("------USAGE: AuditReader auditFile.vba------");
+            return;
+        }
+        TextAuditRenderer renderer = new TextAuditRenderer();
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+        try (AuditReader reader = new AuditReader(Files.newInputStream(Paths.get(args[0])))) {
+            for (AuditEvent event = reader.next(); event != null; event = reader.next()) {
+                renderer.encode(event, out);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the next event.
+     * @return  the event, null at the end of the file.
+     * @throws IOException  if the file cannot be read or ends inside a record.
+     */
+    public AuditEvent next() throws IOException {
+        for (byte[] record = nextRecord(); record != null; record = nextRecord()) {
+            AuditEvent event = decode(record);
+            //a record of a type from a later version is skipped
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the bytes of the next record as they are in the file, its length included.
+     * @return  the record, null at the end of the file.
+     * @throws IOException  if the file cannot be read or ends inside a record.
+     */
+    public byte[] nextRecord() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        //the length's varint is kept, it is part of the record
+        byte[] prefix = new byte[5];
+        int prefixLength = 0;
+        long length = 0;
+        int b = first;
+        while (true) {
+            prefix[prefixLength] = (byte) b;
+            length |= (long) (b & 0x7F) << (7 * prefixLength);
+            prefixLength++;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (prefixLength == prefix.length) {
+                throw new IOException("Bad record length in audit file");
+            }
+            b = readByte();
+        }
+        if (length > Integer.MAX_VALUE - prefixLength) {
+            throw new IOException("Bad record length in audit file");
+        }
+        byte[] record = new byte[prefixLength + (int) length];
+        System.arraycopy(prefix, 0, record, 0, prefixLength);
+        if (in.readNBytes(record, prefixLength, (int) length) != length) {
+            throw new EOFException("Audit file ends inside a record");
+        }
+        return record;
+    }
+
+    /**
+     * Reads the event of a record. Fields added after the known ones by a later version are
+     * ignored.
+     * @param record  the bytes of the record, its length included.
+     * @return  the event, or null if the record's type is not known.
+     * @throws IOException  if the record is cut short.
+     */
+    public static AuditEvent decode(byte[] record) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        try {
+            readVarint(buf);
+            AuditEvent.Type type = AuditEvent.Type.fromCode(buf.get() & 0xFF);
+            if (type == null) {
+                return null;
+            }
+            String[] names = new String[readVarint(buf)];
+            for (int i = 0; i < names.length; i++) {
+                int length = readVarint(buf);
+                names[i] = new String(record, buf.position(), length, StandardCharsets.UTF_8);
+                buf.position(buf.position() + length);
+            }
+            int[] values = new int[readVarint(buf)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readVarint(buf);
+            }
+            return new AuditEvent(type, names, values);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Audit record is cut short", e);
+        }
+    }
+
+    /**
+     * Reads one byte of a record.
+     * @return  the byte, from 0 to 255.
+     * @throws IOException  if the file ends.
+     */
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Audit file ends inside a record");
+        }
+        return b;
+    }
+
+    /**
+     * Reads a varint written by BallotConverter.writeVarint().
+     * @param buf  the record, at the varint.
+     * @return  the value.
+     */
+    private static int readVarint(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Closes the audit file.
+     * @throws IOException  if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,983 @@
+/**
+ * AuditReplay.java defines the AuditReplay class, which checks the audit file of an election
+ * against the ballot files the election was run on.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An AuditReplay re-derives an IR, CPL or PO election from its ballot files and compares every
+ * step with the last election of its audit file, one event at a time, stopping at the first
+ * event that differs: the initial counts, each elimination with the ballots it transfers and
+ * exhausts, each seat allocation, and the winners. Ballots are read by BallotTokenizer, in
+ * parallel chunks for large mapped files, and IR rankings are kept packed in a few arrays
+ * instead of Ballots, while the audit file is streamed by an AuditLog, so a large election is
+ * checked much faster than it is run. Ties broken at random cannot be re-derived, so a tie is
+ * accepted when the audit file chooses one of the tied candidates or parties, and the replay
+ * goes on with that choice. Audit files of any format and elections run with any processing
+ * options are checked, batch elimination being known by a loser event removing more than one
+ * candidate. Hash chain events are skipped, see AuditChain.
+ * Usage: java AuditReplay auditFile ballotFile...
+ */
+public class AuditReplay {
+
+    /**
+     * the audit file being checked
+     */
+    private final AuditLog log;
+    /**
+     * the next event of the election, read but not yet checked, null if none was read
+     */
+    private AuditEvent peeked;
+    /**
+     * the number of events of the election read so far, hash chain events not counted
+     */
+    private int events;
+
+    /**
+     * Creates an AuditReplay for an election of an audit file.
+     * @param log  the audit file, just after the election's first event.
+     * @param first  the election's first event, its ELECTION_TYPE event.
+     */
+    private AuditReplay(AuditLog log, AuditEvent first) {
+        this.log = log;
+        this.peeked = first;
+        this.events = 0;
+    }
+
+    /**
+     * Checks an audit file against the ballot files of its election and prints the result.
+     * @param args  the audit file, then the ballot files in the order the election read them.
+     * @throws IOException  never, a file that cannot be read is printed as a failed replay.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("------USAGE: AuditReplay auditFile ballotFile...------");
+            return;
+        }
+        Path[] ballotFiles = new Path[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            ballotFiles[i - 1] = Paths.get(args[i]);
+        }
+        try {
+            int events = verify(Paths.get(args[0]), ballotFiles);
+            System.out.println("------AUDIT REPLAY VERIFIED: " + events + " EVENTS------");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("------AUDIT REPLAY FAILED: " + e.getMessage() + "------");
+        }
+    }
+
+    /**
+     * Replays the last election of an audit file from its ballot files. An audit file holds
+     * every election of its type run on its date, so the file is read once to find the last
+     * election, then again to check it.
+     * @param auditFile  the audit file, of any format.
+     * @param ballotFiles  the ballot files, in the order the election read them.
+     * @return  the number of events checked.
+     * @throws IOException  if a file cannot be read, or the first event that differs from the
+     *                      replay, with what was expected.
+     */
+    public static int verify(Path auditFile, Path... ballotFiles) throws IOException {
+        int elections = 0;
+        try (AuditLog log = AuditLog.open(auditFile)) {
+            for (AuditEvent event = log.next(); event != null; event = log.next()) {
+                if (event.getType() == AuditEvent.Type.ELECTION_TYPE) {
+                    elections++;
+                }
+            }
+        }
+        if (elections == 0) {
+            throw new IOException("The audit file has no election");
+        }
+
+        BallotTokenizer[] files = new BallotTokenizer[ballotFiles.length];
+        try {
+            String electionType = null;
+            for (int i = 0; i < files.length; i++) {
+                files[i] = BallotTokenizer.open(ballotFiles[i]);
+                String fileType = files[i].readLine();
+                if (i == 0) {
+                    electionType = fileType == null ? "" : fileType.trim();
+                }
+            }
+            try (AuditLog log = AuditLog.open(auditFile)) {
+                AuditEvent event;
+                int seen = 0;
+                do {
+                    event = log.next();
+                    if (event.getType() == AuditEvent.Type.ELECTION_TYPE) {
+                        seen++;
+                    }
+                } while (seen < elections);
+                AuditReplay replay = new AuditReplay(log, event);
+                if (electionType.equals("IR")) {
+                    replay.replayIR(files);
+                }
+                else if (electionType.equals("CPL")) {
+                    replay.replayCPL(files);
+                }
+                else if (electionType.equals("PO")) {
+                    replay.replayPO(files);
+                }
+                else {
+                    throw new IOException("Unknown election type " + electionType);
+                }
+                return replay.events;
+            }
+        } finally {
+            for (BallotTokenizer file : files) {
+                if (file != null) {
+                    file.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays an IR election, checking its candidates, every elimination and the ballots it
+     * exhausts, and the winner.
+     * @param files  the ballot files, each just after its election type line.
+     * @throws IOException  if a file cannot be read or an event differs from the replay.
+     */
+    private void replayIR(BallotTokenizer[] files) throws IOException {
+        String numCandidates = files[0].readLine();
+        String candidateLine = files[0].readLine();
+        if (numCandidates == null || candidateLine == null) {
+            throw new IOException("The ballot file has no candidates");
+        }
+        //names and parties are read the way IRProcessing reads them, Ex: Rosen (D)
+        String[] entries = candidateLine.replaceAll("\\s+", "").split(",");
+        String[] names = new String[entries.length];
+        String[] parties = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String[] data = entries[i].split("\\(");
+            names[i] = data[0];
+            parties[i] = data.length > 1 ? data[1].replace(")", "") : "";
+        }
+        if (names.length > Ballot.CHAR_LIMIT) {
+            throw new IOException("Too many candidates to replay: " + names.length);
+        }
+        Runoff runoff = new Runoff(readRankings(files, names.length), names.length);
+
+        expect(AuditEvent.electionType("Instant-Runoff"));
+        expect(AuditEvent.candidateCount(parseNumber(numCandidates)));
+        for (int i = 0; i < names.length; i++) {
+            expect(AuditEvent.candidateRegistered(names[i], parties[i], runoff.getCount(i)));
+        }
+
+        long remaining = runoff.getNumBallots();
+        int round = 0;
+        while (true) {
+            int winner = runoff.majority(remaining);
+            if (winner >= 0) {
+                expect(AuditEvent.winner(names[winner], runoff.getCount(winner)));
+                expectEnd();
+                return;
+            }
+            if (runoff.getNumAlive() == 0) {
+                expectEnd();
+                return;
+            }
+
+            //the audit file says which candidates lost, the replay checks they could have
+            AuditEvent found = next();
+            if (found == null || found.getType() != AuditEvent.Type.LOSER_REMOVED) {
+                throw diverge("expected a candidate to be removed but found " + describe(found));
+            }
+            int[] losers = new int[found.getNumNames()];
+            for (int i = 0; i < losers.length; i++) {
+                losers[i] = runoff.find(names, found.getName(i));
+                if (losers[i] < 0) {
+                    throw diverge(found.getName(i) + " is removed but is not in the running");
+                }
+            }
+            if (losers.length > 1) {
+                int[] defeated = runoff.defeated();
+                if (defeated.length < 2) {
+                    throw diverge(losers.length + " candidates are removed together but fewer than two are defeated");
+                }
+                expected(loserEvent(names, defeated, runoff), found);
+            }
+            else {
+                int minCount = runoff.minCount();
+                if (runoff.getCount(losers[0]) != minCount) {
+                    throw diverge(names[losers[0]] + " is removed with " + runoff.getCount(losers[0])
+                            + " ballots but a candidate in the running has " + minCount);
+                }
+                expected(loserEvent(names, losers, runoff), found);
+            }
+
+            round++;
+            BitSet exhausted = runoff.eliminate(losers);
+            checkExhausted(round, exhausted);
+            remaining -= exhausted.cardinality();
+        }
+    }
+
+    /**
+     * Makes the loser event for candidates removed together.
+     * @param names  the names of every candidate.
+     * @param losers  the candidate indices of the losers, in the order they are removed.
+     * @param runoff  the counts before the losers are removed.
+     * @return  the LOSER_REMOVED event.
+     */
+    private static AuditEvent loserEvent(String[] names, int[] losers, Runoff runoff) {
+        String[] loserNames = new String[losers.length];
+        int[] counts = new int[losers.length];
+        for (int i = 0; i < losers.length; i++) {
+            loserNames[i] = names[losers[i]];
+            counts[i] = runoff.getCount(losers[i]);
+        }
+        return AuditEvent.loserRemoved(loserNames, counts);
+    }
+
+    /**
+     * Reads the exhausted ballot events after an elimination, written one ballot at a time or as
+     * ranges, and checks they remove exactly the ballots the elimination exhausted.
+     * @param round  the round of the elimination, 1 for the first.
+     * @param exhausted  the indices of the ballots the elimination exhausted.
+     * @throws IOException  if the audit file cannot be read or removes different ballots.
+     */
+    private void checkExhausted(int round, BitSet exhausted) throws IOException {
+        BitSet logged = new BitSet();
+        for (AuditEvent event = peek(); event != null; event = peek()) {
+            if (event.getType() == AuditEvent.Type.BALLOT_EXHAUSTED) {
+                next();
+                if (event.getValue(0) < 0) {
+                    throw diverge("a negative ballot index is removed: " + event);
+                }
+                logged.set(event.getValue(0));
+            }
+            else if (event.getType() == AuditEvent.Type.BALLOTS_EXHAUSTED) {
+                next();
+                if (event.getValue(0) != round) {
+                    throw diverge("expected the ballots removed in round " + round + " but found " + event);
+                }
+                for (int i = 1; i + 1 < event.getNumValues(); i += 2) {
+                    if (event.getValue(i) < 0 || event.getValue(i + 1) < event.getValue(i)) {
+                        throw diverge("a range of ballots removed is not valid: " + event);
+                    }
+                    logged.set(event.getValue(i), event.getValue(i + 1) + 1);
+                }
+            }
+            else {
+                break;
+            }
+        }
+        if (!logged.equals(exhausted)) {
+            BitSet differ = (BitSet) logged.clone();
+            differ.xor(exhausted);
+            int ballot = differ.nextSetBit(0);
+            throw diverge(exhausted.get(ballot)
+                    ? "ballot " + ballot + " is exhausted in round " + round + " but is not removed"
+                    : "ballot " + ballot + " is removed in round " + round + " but is not exhausted");
+        }
+    }
+
+    /**
+     * Reads the rankings of every ballot of an IR election, the files at the same time and each
+     * large mapped file in parallel chunks, in the order IRProcessing numbers the ballots.
+     * @param files  the ballot files, the first just after its candidate line and the others
+     *               just after their election type line.
+     * @param numCandidates  the number of candidates.
+     * @return  the rankings of every ballot.
+     * @throws IOException  if a file cannot be read.
+     */
+    private static RankedBallots readRankings(BallotTokenizer[] files, int numCandidates) throws IOException {
+        List<RankedBallots> fileBallots = ChunkedBallotParser.parseEach(files,
+                Runtime.getRuntime().availableProcessors(), (fileIndex, file) -> {
+                    //the election checks every file lists the same candidates
+                    if (fileIndex > 0) {
+                        file.skipLine();
+                        file.skipLine();
+                    }
+                    file.readCount();
+                    if (!ChunkedBallotParser.canSplit(file, ElectionOptions.DEFAULT_PARSE_CHUNK_SIZE)) {
+                        return readRankings(file, numCandidates);
+                    }
+                    RankedBallots ballots = new RankedBallots();
+                    for (RankedBallots chunk : ChunkedBallotParser.parse(file, ElectionOptions.DEFAULT_PARSE_CHUNK_SIZE,
+                            chunk -> readRankings(chunk, numCandidates))) {
+                        ballots.addAll(chunk);
+                    }
+                    return ballots;
+                });
+        RankedBallots ballots = fileBallots.get(0);
+        for (int i = 1; i < fileBallots.size(); i++) {
+            ballots.addAll(fileBallots.get(i));
+        }
+        return ballots;
+    }
+
+    /**
+     * Reads the rankings of the ballot lines of a file or of one chunk of a file, skipping empty
+     * lines. Each non-empty field is the candidate number of the next ranked candidate.
+     * @param file  a tokenizer positioned at a ballot line.
+     * @param numCandidates  the number of candidates.
+     * @return  the rankings of the ballots read.
+     * @throws IOException  if a line cannot be read or ranks no candidate.
+     * @throws IllegalArgumentException  if a ranking is not a candidate number.
+     */
+    private static RankedBallots readRankings(BallotTokenizer file, int numCandidates) throws IOException {
+        RankedBallots ballots = new RankedBallots();
+        int[] rankings = new int[numCandidates];
+        int[] numRankings = new int[1];
+        BallotTokenizer.FieldHandler rank = (column, value) -> {
+            if (value < 1 || value > numCandidates || numRankings[0] == numCandidates) {
+                throw new IllegalArgumentException("Invalid ranking " + value + " on line " + file.getLineNumber());
+            }
+            rankings[numRankings[0]++] = value - 1;
+        };
+        while (true) {
+            numRankings[0] = 0;
+            int fields = file.readRecord(rank);
+            if (fields < 0) {
+                return ballots;
+            }
+            if (fields > 0) {
+                if (numRankings[0] == 0) {
+                    throw new IOException("Ballot on line " + file.getLineNumber() + " ranks no candidates");
+                }
+                ballots.add(rankings, numRankings[0]);
+            }
+        }
+    }
+
+    /**
+     * Replays a CPL election, checking the seats each party wins by the quota and by the highest
+     * remainder, the parties, and the seat winners.
+     * @param files  the ballot files, each just after its election type line.
+     * @throws IOException  if a file cannot be read or an event differs from the replay.
+     */
+    private void replayCPL(BallotTokenizer[] files) throws IOException {
+        int numParties = parseNumber(files[0].readLine());
+        String partyLine = files[0].readLine();
+        if (partyLine == null) {
+            throw new IOException("The ballot file has no parties");
+        }
+        String[] partyNames = partyLine.split(",");
+        if (partyNames.length < numParties) {
+            throw new IOException("The ballot file lists fewer than " + numParties + " parties");
+        }
+        List<ArrayList<String>> candidates = new ArrayList<>();
+        for (int i = 0; i < numParties; i++) {
+            partyNames[i] = partyNames[i].trim();
+            String line = files[0].readLine();
+            if (line == null) {
+                throw new IOException("The ballot file has no candidates for " + partyNames[i]);
+            }
+            ArrayList<String> partyCandidates = new ArrayList<>();
+            for (String candidate : line.split(",")) {
+                partyCandidates.add(candidate.trim());
+            }
+            candidates.add(partyCandidates);
+        }
+
+        int[] seatsPerFile = new int[files.length];
+        List<ChunkedBallotParser.Tally> tallies = ChunkedBallotParser.parseEach(files,
+                Runtime.getRuntime().availableProcessors(), (fileIndex, file) -> {
+                    //the election checks every file lists the same parties
+                    if (fileIndex > 0) {
+                        for (int i = 0; i < numParties + 2; i++) {
+                            file.skipLine();
+                        }
+                    }
+                    seatsPerFile[fileIndex] = parseNumber(file.readLine());
+                    file.readCount();
+                    return tallyVotes(file, numParties, false);
+                });
+        ChunkedBallotParser.Tally total = new ChunkedBallotParser.Tally(numParties);
+        for (int i = 0; i < tallies.size(); i++) {
+            if (seatsPerFile[i] != seatsPerFile[0]) {
+                throw new IOException("File " + (i + 1) + " does not have the same number of seats as the first file");
+            }
+            total.add(tallies.get(i));
+        }
+        int[] votes = total.getVotes();
+        if (seatsPerFile[0] < 1 || total.getBallots() < seatsPerFile[0]) {
+            throw new IOException("The election has " + seatsPerFile[0] + " seats for " + total.getBallots() + " ballots");
+        }
+
+        expect(AuditEvent.electionType("Closed-Party-List"));
+        //seats are allocated the way CPLProcessing.distributeSeats() allocates them
+        int quota = total.getBallots() / seatsPerFile[0];
+        int available = seatsPerFile[0];
+        int[] seats = new int[numParties];
+        int[] remainders = new int[numParties];
+        for (int i = 0; i < numParties; i++) {
+            seats[i] = Math.min(votes[i] / quota, candidates.get(i).size());
+            remainders[i] = seats[i] == candidates.get(i).size() ? 0 : votes[i] % quota;
+            available -= seats[i];
+            expect(AuditEvent.seatAllocated(seats[i], partyNames[i], votes[i], quota));
+        }
+        while (available > 0) {
+            int seatIndex = 0;
+            for (int i = 1; i < numParties; i++) {
+                if (remainders[i] > remainders[seatIndex]) {
+                    seatIndex = i;
+                }
+            }
+            ArrayList<Integer> tied = new ArrayList<>();
+            tied.add(seatIndex);
+            for (int i = 0; i < numParties; i++) {
+                if (i != seatIndex && remainders[i] == remainders[seatIndex]) {
+                    tied.add(i);
+                }
+            }
+            //parties whose candidates all have seats are dropped from the tie as CPLProcessing drops them
+            for (int i = 0; i < tied.size(); i++) {
+                if (seats[tied.get(i)] == candidates.get(tied.get(i)).size()) {
+                    tied.remove(i);
+                }
+            }
+            int chosen = seatIndex;
+            if (tied.size() > 1) {
+                StringBuilder tiedNames = new StringBuilder();
+                for (int index : tied) {
+                    tiedNames.append(partyNames[index]).append(", ");
+                }
+                chosen = expectTie(tiedNames.toString(), partyNames, tied);
+            }
+            else {
+                expect(AuditEvent.remainderSeatAllocated(partyNames[seatIndex]));
+            }
+            seats[chosen]++;
+            remainders[chosen] = 0;
+            available--;
+        }
+
+        for (int i = 0; i < numParties; i++) {
+            expect(AuditEvent.partyRegistered(partyNames[i], candidates.get(i), votes[i]));
+        }
+        for (int i = 0; i < numParties; i++) {
+            if (seats[i] > candidates.get(i).size()) {
+                throw diverge(partyNames[i] + " wins " + seats[i] + " seats but has "
+                        + candidates.get(i).size() + " candidates");
+            }
+            for (int seat = 0; seat < seats[i]; seat++) {
+                expect(AuditEvent.seatWinner(partyNames[i], candidates.get(i).get(seat), votes[i]));
+            }
+        }
+        expectEnd();
+    }
+
+    /**
+     * Replays a PO election, checking its candidates and the winner.
+     * @param files  the ballot file, just after its election type line.
+     * @throws IOException  if the file cannot be read or an event differs from the replay.
+     */
+    private void replayPO(BallotTokenizer[] files) throws IOException {
+        if (files.length != 1) {
+            throw new IOException("A PO election is read from one ballot file");
+        }
+        int numCandidates = parseNumber(files[0].readLine());
+        String candidateLine = files[0].readLine();
+        if (candidateLine == null) {
+            throw new IOException("The ballot file has no candidates");
+        }
+        //names and parties are read the way POProcessing reads them, Ex: [Pike, D]
+        String[] entries = candidateLine.replaceAll("\\[", "").replaceAll("]", "").replaceAll("\\s", "").split(",");
+        if (entries.length < 2 * numCandidates) {
+            throw new IOException("The ballot file lists fewer than " + numCandidates + " candidates");
+        }
+        String[] names = new String[numCandidates];
+        for (int i = 0; i < numCandidates; i++) {
+            names[i] = entries[2 * i];
+        }
+        files[0].readCount();
+        int[] votes = tallyVotes(files[0], numCandidates, true).getVotes();
+
+        expect(AuditEvent.electionType("Popularity-Only"));
+        expect(AuditEvent.candidateCount(numCandidates));
+        for (int i = 0; i < numCandidates; i++) {
+            expect(AuditEvent.candidateRegistered(names[i], entries[2 * i + 1], votes[i]));
+        }
+        int max = -1;
+        ArrayList<Integer> tied = new ArrayList<>();
+        for (int i = 0; i < numCandidates; i++) {
+            if (votes[i] > max) {
+                max = votes[i];
+                tied.clear();
+            }
+            if (votes[i] == max) {
+                tied.add(i);
+            }
+        }
+        int winner = tied.get(0);
+        if (tied.size() > 1) {
+            StringBuilder tiedNames = new StringBuilder();
+            for (int index : tied) {
+                tiedNames.append(tiedNames.length() == 0 ? "" : ", ").append(names[index]);
+            }
+            winner = expectTie(tiedNames.toString(), names, tied);
+        }
+        expect(AuditEvent.winner(names[winner], max));
+        expectEnd();
+    }
+
+    /**
+     * Counts the votes of a CPL or PO ballot file, in parallel chunks for a large mapped file.
+     * A 1 in a column is a vote for the party or candidate of that column.
+     * @param file  a tokenizer positioned at the first ballot line.
+     * @param numColumns  the number of parties or candidates.
+     * @param firstVote  true to count only the first vote of each line, as PO does.
+     * @return  the votes and number of ballots.
+     * @throws IOException  if the file cannot be read.
+     */
+    private static ChunkedBallotParser.Tally tallyVotes(BallotTokenizer file, int numColumns, boolean firstVote)
+            throws IOException {
+        if (!ChunkedBallotParser.canSplit(file, ElectionOptions.DEFAULT_PARSE_CHUNK_SIZE)) {
+            return tallyChunk(file, numColumns, firstVote);
+        }
+        ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numColumns);
+        for (ChunkedBallotParser.Tally part : ChunkedBallotParser.parse(file, ElectionOptions.DEFAULT_PARSE_CHUNK_SIZE,
+                chunk -> tallyChunk(chunk, numColumns, firstVote))) {
+            tally.add(part);
+        }
+        return tally;
+    }
+
+    /**
+     * Counts the votes of the ballot lines of a file or of one chunk of a file, skipping empty
+     * lines.
+     * @param file  a tokenizer positioned at a ballot line.
+     * @param numColumns  the number of parties or candidates.
+     * @param firstVote  true to count only the first vote of each line, which must have one.
+     * @return  the votes and number of ballots.
+     * @throws IOException  if a line cannot be read.
+     * @throws IllegalArgumentException  if a vote is not in a party's or candidate's column.
+     */
+    private static ChunkedBallotParser.Tally tallyChunk(BallotTokenizer file, int numColumns, boolean firstVote)
+            throws IOException {
+        ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numColumns);
+        int[] votes = tally.getVotes();
+        int[] lineVotes = new int[1];
+        BallotTokenizer.FieldHandler vote = (column, value) -> {
+            if (value != 1 || (firstVote && lineVotes[0] > 0)) {
+                return;
+            }
+            if (column >= numColumns) {
+                throw new IllegalArgumentException("Vote in column " + (column + 1) + " on line " + file.getLineNumber());
+            }
+            votes[column]++;
+            lineVotes[0]++;
+        };
+        while (true) {
+            lineVotes[0] = 0;
+            int fields = file.readRecord(vote);
+            if (fields < 0) {
+                return tally;
+            }
+            if (fields > 0) {
+                if (firstVote && lineVotes[0] == 0) {
+                    throw new IOException("Ballot on line " + file.getLineNumber() + " has no vote");
+                }
+                tally.addBallot();
+            }
+        }
+    }
+
+    /**
+     * Reads a tie broken at random, which must be between the tied parties or candidates and
+     * choose one of them.
+     * @param tiedNames  the tied parties or candidates, listed the way the election lists them.
+     * @param names  the names of every party or candidate.
+     * @param tied  the indices of the tied parties or candidates.
+     * @return  the index of the one chosen.
+     * @throws IOException  if the audit file cannot be read or has a different tie.
+     */
+    private int expectTie(String tiedNames, String[] names, List<Integer> tied) throws IOException {
+        AuditEvent found = next();
+        if (found == null || found.getType() != AuditEvent.Type.TIE_BROKEN || !found.getName(0).equals(tiedNames)) {
+            throw diverge("expected a tie between " + tiedNames + " but found " + describe(found));
+        }
+        for (int index : tied) {
+            if (names[index].equals(found.getName(1))) {
+                return index;
+            }
+        }
+        throw diverge("the tie is won by " + found.getName(1) + ", who is not one of " + tiedNames);
+    }
+
+    /**
+     * Reads the next event, which must be the one the replay expects.
+     * @param expected  the event the replay expects.
+     * @throws IOException  if the audit file cannot be read or has a different event.
+     */
+    private void expect(AuditEvent expected) throws IOException {
+        expected(expected, next());
+    }
+
+    /**
+     * Checks an event read is the one the replay expects.
+     * @param expected  the event the replay expects.
+     * @param found  the event read, null at the end of the file.
+     * @throws IOException  if the events differ.
+     */
+    private void expected(AuditEvent expected, AuditEvent found) throws IOException {
+        if (!expected.equals(found)) {
+            throw diverge("expected " + expected + " but found " + describe(found));
+        }
+    }
+
+    /**
+     * Checks the election has no events after its last one.
+     * @throws IOException  if the audit file cannot be read or has more events.
+     */
+    private void expectEnd() throws IOException {
+        AuditEvent found = next();
+        if (found != null) {
+            throw diverge("expected the end of the election but found " + found);
+        }
+    }
+
+    /**
+     * Reads the next event of the election, skipping hash chain events.
+     * @return  the event, null at the end of the file.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    private AuditEvent next() throws IOException {
+        AuditEvent event = peek();
+        if (event != null) {
+            peeked = null;
+            events++;
+        }
+        return event;
+    }
+
+    /**
+     * Reads the next event of the election without moving past it, skipping hash chain events.
+     * @return  the event, null at the end of the file.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    private AuditEvent peek() throws IOException {
+        while (peeked == null) {
+            AuditEvent event = log.next();
+            if (event == null) {
+                return null;
+            }
+            if (event.getType() != AuditEvent.Type.CHECKPOINT && event.getType() != AuditEvent.Type.ROOT_HASH) {
+                peeked = event;
+            }
+        }
+        return peeked;
+    }
+
+    /**
+     * Makes the exception for the first event that differs from the replay.
+     * @param message  how the event differs.
+     * @return  the exception, saying which event of the election differs.
+     */
+    private IOException diverge(String message) {
+        return new IOException("Event " + events + " of the election: " + message);
+    }
+
+    /**
+     * Describes an event read for a divergence.
+     * @param event  the event, null at the end of the file.
+     * @return  the description.
+     */
+    private static String describe(AuditEvent event) {
+        return event == null ? "the end of the audit file" : event.toString();
+    }
+
+    /**
+     * Parses a header number of a ballot file.
+     * @param line  the line, null if the file ended.
+     * @return  the number.
+     * @throws IOException  if the line is missing or not a number.
+     */
+    private static int parseNumber(String line) throws IOException {
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException("Expected a number in the ballot file header but found " + line);
+        }
+    }
+
+    /**
+     * The rankings of IR ballots packed into two arrays: the candidate indices of every ballot
+     * one after another, one char each, and where each ballot's rankings start.
+     */
+    private static class RankedBallots {
+        /**
+         * the candidate indices ranked by every ballot, in ballot order then rank order
+         */
+        private char[] rankings;
+        /**
+         * starts[i] is the position in rankings of ballot i's first choice, starts[size] is the
+         * end of the last ballot's rankings
+         */
+        private int[] starts;
+        /**
+         * the number of ballots
+         */
+        private int size;
+
+        /**
+         * Creates a RankedBallots with no ballots.
+         */
+        RankedBallots() {
+            this.rankings = new char[1024];
+            this.starts = new int[257];
+            this.size = 0;
+        }
+
+        /**
+         * Adds a ballot.
+         * @param ranked  the candidate indices ranked, in rank order.
+         * @param numRanked  the number of candidates ranked.
+         */
+        void add(int[] ranked, int numRanked) {
+            int end = starts[size];
+            ensureCapacity(1, end + numRanked);
+            for (int i = 0; i < numRanked; i++) {
+                rankings[end + i] = (char) ranked[i];
+            }
+            starts[++size] = end + numRanked;
+        }
+
+        /**
+         * Adds every ballot of another RankedBallots after these ones.
+         * @param other  the ballots to add.
+         */
+        void addAll(RankedBallots other) {
+            int end = starts[size];
+            ensureCapacity(other.size, end + other.starts[other.size]);
+            System.arraycopy(other.rankings, 0, rankings, end, other.starts[other.size]);
+            for (int i = 1; i <= other.size; i++) {
+                starts[size + i] = end + other.starts[i];
+            }
+            size += other.size;
+        }
+
+        /**
+         * Grows the arrays to fit more ballots and rankings.
+         * @param moreBallots  the number of ballots to add.
+         * @param numRankings  the number of rankings of every ballot once they are added.
+         */
+        private void ensureCapacity(int moreBallots, int numRankings) {
+            if (size + moreBallots >= starts.length) {
+                starts = Arrays.copyOf(starts, Math.max(starts.length * 2, size + moreBallots + 1));
+            }
+            if (numRankings > rankings.length) {
+                rankings = Arrays.copyOf(rankings, Math.max(rankings.length * 2, numRankings));
+            }
+        }
+    }
+
+    /**
+     * The count of an IR election being replayed: the ballots each candidate in the running
+     * holds, as piles of ballot indices, and where each ballot is in its rankings.
+     */
+    private static class Runoff {
+        /**
+         * the rankings of every ballot
+         */
+        private final RankedBallots ballots;
+        /**
+         * cursors[i] is the position in the rankings of ballot i's current choice
+         */
+        private final int[] cursors;
+        /**
+         * piles[c] holds the indices of the ballots candidate c holds, null once c is removed
+         */
+        private final int[][] piles;
+        /**
+         * counts[c] is the number of ballots candidate c holds
+         */
+        private final int[] counts;
+        /**
+         * alive[c] is true while candidate c is in the running
+         */
+        private final boolean[] alive;
+        /**
+         * the number of candidates in the running
+         */
+        private int numAlive;
+
+        /**
+         * Gives every ballot to its first choice.
+         * @param ballots  the rankings of every ballot.
+         * @param numCandidates  the number of candidates.
+         */
+        Runoff(RankedBallots ballots, int numCandidates) {
+            this.ballots = ballots;
+            this.cursors = Arrays.copyOf(ballots.starts, ballots.size);
+            this.counts = new int[numCandidates];
+            for (int i = 0; i < ballots.size; i++) {
+                counts[ballots.rankings[cursors[i]]]++;
+            }
+            this.piles = new int[numCandidates][];
+            for (int c = 0; c < numCandidates; c++) {
+                piles[c] = new int[counts[c]];
+            }
+            int[] filled = new int[numCandidates];
+            for (int i = 0; i < ballots.size; i++) {
+                int c = ballots.rankings[cursors[i]];
+                piles[c][filled[c]++] = i;
+            }
+            this.alive = new boolean[numCandidates];
+            Arrays.fill(alive, true);
+            this.numAlive = numCandidates;
+        }
+
+        /**
+         * Gets the number of ballots in the election.
+         * @return  the number of ballots.
+         */
+        int getNumBallots() {
+            return ballots.size;
+        }
+
+        /**
+         * Gets the number of ballots a candidate holds.
+         * @param c  the candidate index.
+         * @return  the number of ballots.
+         */
+        int getCount(int c) {
+            return counts[c];
+        }
+
+        /**
+         * Gets the number of candidates in the running.
+         * @return  the number of candidates.
+         */
+        int getNumAlive() {
+            return numAlive;
+        }
+
+        /**
+         * Finds a candidate in the running by name.
+         * @param names  the names of every candidate.
+         * @param name  the name.
+         * @return  the candidate index, or -1 if no candidate in the running has the name.
+         */
+        int find(String[] names, String name) {
+            for (int c = 0; c < names.length; c++) {
+                if (alive[c] && names[c].equals(name)) {
+                    return c;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the candidate with a majority, checked in candidate index order as IRProcessing
+         * checks them.
+         * @param remaining  the number of ballots not exhausted.
+         * @return  the candidate index, or -1 if no candidate has a majority.
+         */
+        int majority(long remaining) {
+            for (int c = 0; c < counts.length; c++) {
+                if (alive[c] && counts[c] > remaining * 0.5) {
+                    return c;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the fewest ballots a candidate in the running holds.
+         * @return  the fewest ballots.
+         */
+        int minCount() {
+            int min = Integer.MAX_VALUE;
+            for (int c = 0; c < counts.length; c++) {
+                if (alive[c]) {
+                    min = Math.min(min, counts[c]);
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Finds the candidates batch elimination removes together, as
+         * IRProcessing.determineDefeated() finds them: the largest group of the candidates with
+         * the fewest ballots whose ballots together are fewer than the next candidate's.
+         * @return  the defeated candidate indices from fewest to most ballots, ties in candidate
+         *          index order, empty if fewer than two are defeated.
+         */
+        int[] defeated() {
+            //each candidate's count and index are packed into a long, so one sort orders them
+            long[] order = new long[numAlive];
+            int n = 0;
+            for (int c = 0; c < counts.length; c++) {
+                if (alive[c]) {
+                    order[n++] = ((long) counts[c] << 32) | c;
+                }
+            }
+            Arrays.sort(order);
+            long bottomSum = 0;
+            int numDefeated = 0;
+            for (int k = 1; k < n; k++) {
+                bottomSum += order[k - 1] >>> 32;
+                if (bottomSum < (order[k] >>> 32)) {
+                    numDefeated = k;
+                }
+            }
+            if (numDefeated < 2) {
+                return new int[0];
+            }
+            int[] defeated = new int[numDefeated];
+            for (int i = 0; i < numDefeated; i++) {
+                defeated[i] = (int) order[i];
+            }
+            return defeated;
+        }
+
+        /**
+         * Removes candidates from the running and gives each of their ballots to its next choice
+         * still in the running. Every loser is removed before any ballot moves.
+         * @param losers  the candidate indices of the losers.
+         * @return  the indices of the ballots with no choice left in the running.
+         */
+        BitSet eliminate(int[] losers) {
+            for (int loser : losers) {
+                alive[loser] = false;
+                numAlive--;
+            }
+            BitSet exhausted = new BitSet();
+            for (int loser : losers) {
+                int[] pile = piles[loser];
+                for (int i = 0; i < counts[loser]; i++) {
+                    int ballot = pile[i];
+                    int end = ballots.starts[ballot + 1];
+                    int at = cursors[ballot] + 1;
+                    while (at < end && !alive[ballots.rankings[at]]) {
+                        at++;
+                    }
+                    if (at == end) {
+                        exhausted.set(ballot);
+                        continue;
+                    }
+                    cursors[ballot] = at;
+                    give(ballots.rankings[at], ballot);
+                }
+                piles[loser] = null;
+                counts[loser] = 0;
+            }
+            return exhausted;
+        }
+
+        /**
+         * Adds a ballot to a candidate's pile.
+         * @param c  the candidate index.
+         * @param ballot  the ballot index.
+         */
+        private void give(int c, int ballot) {
+            if (counts[c] == piles[c].length) {
+                piles[c] = Arrays.copyOf(piles[c], Math.max(16, counts[c] * 2));
+            }
+            piles[c][counts[c]++] = ballot;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/**
+ * AuditWriter.java defines the AuditWriter class, which writes an audit file on a separate thread
+ * so the election never waits for the disk while it is being processed.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An AuditWriter keeps one file open for the whole election. Bytes written to it are copied into a
+ * large block, and full blocks are handed through a bounded queue to a background thread that
+ * writes them to the file. A fixed set of blocks is passed back and forth, so no buffers are
+ * allocated while writing. The file is only flushed when the background thread has caught up
+ * with the election, when flush() is called, and when the writer is closed, so many events are
+ * written to the file at once. The election blocks only when every block is waiting to be
+ * written, which keeps the memory held by unwritten bytes bounded.
+ * An exception thrown by the file is kept by the background thread and thrown by the next
+ * write(), flush() or close().
+ * The background thread does not keep the program running, so a writer that was never closed
+ * is closed by a shutdown hook when the program exits, writing every block still waiting. The
+ * hook runs once the thread writing to the writer has stopped, Ex: when it threw.
+ */
+public class AuditWriter extends OutputStream {
+
+    /**
+     * the number of bytes in a block
+     */
+    static final int BLOCK_SIZE = 1 << 16;
+    /**
+     * the number of blocks that can be waiting to be written
+     */
+    static final int BLOCKS = 4;
+
+    /**
+     * A block of bytes written by the election.
+     */
+    private static class Block {
+        /**
+         * the bytes written
+         */
+        final byte[] bytes;
+        /**
+         * the number of bytes written into bytes
+         */
+        int length;
+        /**
+         * recordEnds[i] is the position in bytes where record i of the block ends, only kept
+         * when the file is hash chained
+         */
+        int[] recordEnds;
+        /**
+         * the number of records ending in the block
+         */
+        int numRecords;
+        /**
+         * true if the file must be flushed once the block is written
+         */
+        boolean sync;
+        /**
+         * true if the file must be closed once the block is written
+         */
+        boolean last;
+
+        /**
+         * Creates an empty block.
+         * @param size  the number of bytes the block holds.
+         */
+        Block(int size) {
+            this.bytes = new byte[size];
+            this.recordEnds = new int[64];
+        }
+    }
+
+    /**
+     * the file being written, only used by the background thread
+     */
+    private final FileOutputStream file;
+    /**
+     * blocks filled by the election, in the order they were written
+     */
+    private final BlockingQueue<Block> filled;
+    /**
+     * blocks the background thread is done with, ready to be filled again
+     */
+    private final BlockingQueue<Block> empty;
+    /**
+     * the thread writing the file
+     */
+    private final Thread writer;
+    /**
+     * the block being filled, null once the writer is closed
+     */
+    private Block current;
+    /**
+     * the hash chain of the file, only used by the background thread, null if the file is not
+     * hash chained
+     */
+    private final AuditChain chain;
+    /**
+     * the exception the file threw, null if it did not throw
+     */
+    private volatile IOException error;
+    /**
+     * closes the writer if the program exits before it is closed
+     */
+    private final Thread exitHook;
+
+    /**
+     * Opens a file for appending and starts the background thread.
+     * @param file  the audit file, created if it does not exist.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public AuditWriter(File file) throws IOException {
+        this(file, BLOCK_SIZE, BLOCKS);
+    }
+
+    /**
+     * Opens a file for appending and starts the background thread.
+     * @param file  the audit file, created if it does not exist.
+     * @param blockSize  the number of bytes handed to the background thread at once.
+     * @param blocks  the number of blocks that can be waiting to be written, at least 2.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public AuditWriter(File file, int blockSize, int blocks) throws IOException {
+        this(file, blockSize, blocks, null);
+    }
+
+    /**
+     * Opens a file for appending and starts the background thread, which keeps a hash chain of
+     * the records written.
+     * @param file  the audit file, created if it does not exist.
+     * @param chain  the hash chain, fed and written by the background thread, or null for none.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public AuditWriter(File file, AuditChain chain) throws IOException {
+        this(file, BLOCK_SIZE, BLOCKS, chain);
+    }
+
+    /**
+     * Opens a file for appending and starts the background thread.
+     * @param file  the audit file, created if it does not exist.
+     * @param blockSize  the number of bytes handed to the background thread at once.
+     * @param blocks  the number of blocks that can be waiting to be written, at least 2.
+     * @param chain  the hash chain, fed and written by the background thread, or null for none.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public AuditWriter(File file, int blockSize, int blocks, AuditChain chain) throws IOException {
+        this.file = new FileOutputStream(file, true);
+        this.chain = chain;
+        this.filled = new ArrayBlockingQueue<>(blocks);
+        this.empty = new ArrayBlockingQueue<>(blocks);
+        for (int i = 1; i < blocks; i++) {
+            empty.add(new Block(blockSize));
+        }
+        this.current = new Block(blockSize);
+        this.writer = new Thread(this::drain, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.exitHook = new Thread(this::closeOnExit, "audit-writer-exit");
+        try {
+            Runtime.getRuntime().addShutdownHook(exitHook);
+        } catch (IllegalStateException e) {
+            //opened by a shutdown hook, which closes the writer itself
+        }
+    }
+
+    /**
+     * Closes the writer when the program exits without closing it, run by the shutdown hook.
+     */
+    private void closeOnExit() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.out.println("------AUDIT FILE COULD NOT BE WRITTEN: " + e.getMessage() + "------");
+        }
+    }
+
+    /**
+     * Writes filled blocks to the file until the last block, run by the background thread.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Block block = filled.take();
+                boolean last = block.last;
+                if (error == null) {
+                    try {
+                        write(block);
+                        if (last && chain != null) {
+                            chain.finish(file);
+                        }
+                        //flush once caught up, so a batch of blocks is flushed together
+                        if (block.sync || last || filled.isEmpty()) {
+                            file.flush();
+                        }
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                if (last) {
+                    try {
+                        file.close();
+                    } catch (IOException e) {
+                        if (error == null) {
+                            error = e;
+                        }
+                    }
+                }
+                block.length = 0;
+                block.numRecords = 0;
+                block.sync = false;
+                block.last = false;
+                empty.put(block);
+                if (last) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            //only the program exiting stops the thread early, the exit hook has written the blocks
+        }
+    }
+
+    /**
+     * Writes a block to the file, adding its bytes to the hash chain and writing a checkpoint
+     * where one is due, run by the background thread.
+     * @param block  the block to write.
+     * @throws IOException  if the file cannot be written.
+     */
+    private void write(Block block) throws IOException {
+        if (chain == null) {
+            file.write(block.bytes, 0, block.length);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < block.numRecords; i++) {
+            int end = block.recordEnds[i];
+            file.write(block.bytes, start, end - start);
+            chain.update(block.bytes, start, end - start);
+            chain.endRecord(file);
+            start = end;
+        }
+        //the start of a record that ends in a later block
+        file.write(block.bytes, start, block.length - start);
+        chain.update(block.bytes, start, block.length - start);
+    }
+
+    /**
+     * Marks the end of a record, so a hash chain checkpoint can be written after it. Records
+     * are only counted when the file is hash chained.
+     * @throws IOException  if the file threw an exception or the writer is closed.
+     */
+    public void endRecord() throws IOException {
+        ensureOpen();
+        if (chain == null) {
+            return;
+        }
+        if (current.numRecords == current.recordEnds.length) {
+            current.recordEnds = Arrays.copyOf(current.recordEnds, current.numRecords * 2);
+        }
+        current.recordEnds[current.numRecords++] = current.length;
+    }
+
+    /**
+     * Throws the exception the file threw, if any, or if the writer is closed.
+     * @throws IOException  if the file threw an exception or the writer is closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (current == null) {
+            throw new IOException("Audit writer is closed");
+        }
+    }
+
+    /**
+     * Hands the current block to the background thread and takes an empty block to fill.
+     * @throws IOException  if interrupted while waiting for an empty block.
+     */
+    private void handOff() throws IOException {
+        try {
+            filled.put(current);
+            current = empty.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Hands the current block to the background thread with a flag, and waits until it is written.
+     * @param last  true to close the file once the block is written.
+     * @throws IOException  if interrupted while waiting.
+     */
+    private void handOffAndWait(boolean last) throws IOException {
+        Block sent = current;
+        sent.sync = true;
+        sent.last = last;
+        current = null;
+        ArrayList<Block> others = new ArrayList<>();
+        try {
+            filled.put(sent);
+            //blocks are written in order, so every earlier block is done once the sent block is
+            Block done = empty.take();
+            while (done != sent) {
+                others.add(done);
+                done = empty.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        empty.addAll(others);
+        if (!last) {
+            current = sent;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (current.length == current.bytes.length) {
+            handOff();
+        }
+        current.bytes[current.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (current.length == current.bytes.length) {
+                handOff();
+            }
+            int count = Math.min(len, current.bytes.length - current.length);
+            System.arraycopy(bytes, off, current.bytes, current.length, count);
+            current.length += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Writes text as UTF-8 a char at a time, without making a byte array of it.
+     * @param out  the stream to write to.
+     * @param text  the text to write.
+     * @throws IOException  if the stream cannot be written.
+     */
+    static void writeUtf8(OutputStream out, String text) throws IOException {
+        writeUtf8(out, text, 0, text.length());
+    }
+
+    /**
+     * Writes part of some text as UTF-8 a char at a time, without making a byte array of it.
+     * @param out  the stream to write to.
+     * @param text  the text to write part of.
+     * @param start  the index of the first char to write.
+     * @param end  the index after the last char to write.
+     * @throws IOException  if the stream cannot be written.
+     */
+    static void writeUtf8(OutputStream out, String text, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.write(c);
+            }
+            else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            }
+            else {
+                //an unpaired surrogate is written as '?', like String.getBytes
+                if (Character.isSurrogate(c)) {
+                    c = '?';
+                }
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes writeUtf8() writes for some text.
+     * @param text  the text.
+     * @return  the length of the text in UTF-8.
+     */
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a number in decimal digits, without making a String of it.
+     * @param out  the stream to write to.
+     * @param value  the number to write.
+     * @throws IOException  if the stream cannot be written.
+     */
+    static void writeDecimal(OutputStream out, long value) throws IOException {
+        if (value < 0) {
+            out.write('-');
+        }
+        else {
+            value = -value;
+        }
+        //digits are taken from the negative value, so Long.MIN_VALUE can be written too
+        long divisor = 1;
+        while (value / divisor <= -10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.write('0' - (int) (value / divisor));
+            value %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Waits until everything written so far is written and flushed to the file.
+     * @throws IOException  if the file threw an exception or the writer is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        handOffAndWait(false);
+        ensureOpen();
+    }
+
+    /**
+     * Writes everything written so far, then the root hash if the file is hash chained, closes
+     * the file and stops the background thread.
+     * Closing a closed writer has no effect.
+     * @throws IOException  if the file threw an exception.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (current == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(exitHook);
+        } catch (IllegalStateException e) {
+            //the program is exiting, this is the hook closing the writer
+        }
+        handOffAndWait(true);
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -1,4 +1,3 @@
-
 /**
  * Ballot.java defines the Ballot class which is used for creating Ballot objects and
  * related methods on them to be used during an IR election.
@@ -7,27 +6,65 @@
  * @author Ashton Berg, Caleb Tracy.
  */
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * A Ballot represents a ballot in an IR election with the candidates ranked.
  * Associated with a candidate who is ranked as the ballot's first choice vote.
+ * Rankings are stored as candidate indices (the candidate's 0-based position in the
+ * candidate line of the election file), packed one byte per ranking when the indices fit
+ * in a byte and two bytes per ranking otherwise.
+ * When ballots are grouped, one Ballot stands for every ballot with the same rankings and
+ * counts as that many votes, its weight.
+ * The rankings are never changed once the Ballot is created, moving to the next choice only
+ * moves a cursor, so the ranking data can be shared between threads and reused after reset().
+ * The cursor is not synchronized: a Ballot is moved by one thread at a time, Ex: by the one
+ * RedistributionTask worker advancing its chunk.
  */
 public class Ballot {
 
+    /**
+     * the number of distinct candidate indices that fit in one packed byte
+     */
+    static final int BYTE_LIMIT = 256;
+    /**
+     * the number of distinct candidate indices that fit in one packed char
+     */
+    static final int CHAR_LIMIT = 65536;
+
     /**
      * unique identification value for a ballot as an int
      */
     private int ballotIndex;  //starts at 0
     /**
-     * the number of candidates ranked on a ballot as an int
+     * the position in the rankings of the ballot's current first choice, starts at 0
+     */
+    private int cursor;
+    /**
+     * the number of candidates ranked on the ballot when it was created
+     */
+    private final int totalRankings;
+    /**
+     * candidate indices in vote rank order, one unsigned byte each, null if the ballot
+     * ranks a candidate whose index does not fit in a byte
+     */
+    private final byte[] byteRankings;
+    /**
+     * candidate indices in vote rank order, one unsigned char each, only used when
+     * byteRankings is null
      */
-    private int numRankings; //will always start with at least 1
-    //private rankings
+    private final char[] charRankings;
     /**
-     * ArrayList of strings that represent the names of the candidates on a ballot
+     * the number of ballots this Ballot stands for, 1 unless identical ballots were grouped
      */
-    private ArrayList<String> candidates;
+    private int weight;
+    /**
+     * the ballot indices of every ballot in the group, only allocated once a second ballot joins
+     */
+    private int[] memberIndices;
 
     /**
      * Constructor for a Ballot object, creates a Ballot.
@@ -36,27 +73,100 @@ public class Ballot {
      *                     order of occurrence in the election information csv file, first
      *                     ballot read and created has ballotIndex=0, second ballot has
      *                     ballotIndex=1, and so on.
-     * @param numRankings  current number of candidates on the ballot.
-     * @param candidates   list of the candidates on the ballot in order of their vote rank.
+     * @param numRankings  number of candidates ranked on the ballot.
+     * @param rankings     indices of the candidates on the ballot in order of their vote rank,
+     *                     only the first numRankings entries are used and the array is copied,
+     *                     so callers may reuse it for the next ballot.
+     * @throws IllegalArgumentException  if a candidate index is negative or too large to pack.
      */
-    public Ballot(int ballotIndex, int numRankings, ArrayList<String> candidates) {
+    public Ballot(int ballotIndex, int numRankings, int[] rankings) {
         this.ballotIndex = ballotIndex;
-        this.numRankings = numRankings;
-        this.candidates = candidates;
-        //TODO: rankings replaced by curCandidate?
+        this.totalRankings = numRankings;
+        this.cursor = 0;
+        this.weight = 1;
+        this.byteRankings = packBytes(numRankings, rankings);
+        this.charRankings = byteRankings == null ? packChars(numRankings, rankings) : null;
+    }
+
+    /**
+     * Constructor for a Ballot that keeps its rankings itself, Ex: a LazyBallot, which reads them
+     * from the election file only when they are needed. No ranking data is allocated here, so the
+     * subclass overrides rankingAt(), rankingCount() and rankingsFrom().
+     * @param ballotIndex  unique ballot id number for identification.
+     */
+    protected Ballot(int ballotIndex) {
+        this.ballotIndex = ballotIndex;
+        this.totalRankings = 0;
+        this.cursor = 0;
+        this.weight = 1;
+        this.byteRankings = null;
+        this.charRankings = null;
+    }
+
+    /**
+     * Packs candidate indices one byte each.
+     * @param numRankings  number of candidates ranked on the ballot.
+     * @param rankings     indices of the candidates on the ballot in order of their vote rank.
+     * @return  the packed indices, or null if an index does not fit in a byte.
+     * @throws IllegalArgumentException  if a candidate index is negative or too large to pack.
+     */
+    static byte[] packBytes(int numRankings, int[] rankings) {
+        int maxIndex = 0;
+        for (int i = 0; i < numRankings; i++) {
+            if (rankings[i] < 0 || rankings[i] >= CHAR_LIMIT) {
+                throw new IllegalArgumentException("Candidate index out of range: " + rankings[i]);
+            }
+            maxIndex = Math.max(maxIndex, rankings[i]);
+        }
+        if (maxIndex >= BYTE_LIMIT) {
+            return null;
+        }
+        byte[] packed = new byte[numRankings];
+        for (int i = 0; i < numRankings; i++) {
+            packed[i] = (byte) rankings[i];
+        }
+        return packed;
+    }
+
+    /**
+     * Packs candidate indices one char each, used when packBytes() returns null.
+     * @param numRankings  number of candidates ranked on the ballot.
+     * @param rankings     indices of the candidates on the ballot in order of their vote rank.
+     * @return  the packed indices.
+     */
+    static char[] packChars(int numRankings, int[] rankings) {
+        char[] packed = new char[numRankings];
+        for (int i = 0; i < numRankings; i++) {
+            packed[i] = (char) rankings[i];
+        }
+        return packed;
+    }
+
+    /**
+     * Wraps packed candidate indices in a key with content-based equals() and hashCode().
+     * @param byteRankings  the indices packed one byte each, or null.
+     * @param charRankings  the indices packed one char each, used when byteRankings is null.
+     * @param from  the first position in the key.
+     * @param to    the position after the last one in the key.
+     * @return  the key.
+     */
+    static Object wrapRankings(byte[] byteRankings, char[] charRankings, int from, int to) {
+        if (byteRankings != null) {
+            return ByteBuffer.wrap(byteRankings, from, to - from);
+        }
+        return CharBuffer.wrap(charRankings, from, to - from);
     }
 
     /**
      * Gets the current first vote candidate on a ballot.
-     * Since the ArrayList of candidates is in order of the ballot vote rank,
-     * the candidate in the first index of candidates is the first vote candidate.
+     * Since the rankings are in order of the ballot vote rank,
+     * the candidate at the cursor is the current first vote candidate.
      * Used when a candidate is being eliminated and ballots are being redistributed
      * to find the next candidate in the voting rank order.
-     * Simply returns the candidate in the first index of candidates.
-     * @return current first vote candidate on a ballot
+     * @return index of the current first vote candidate on a ballot
      */
-    public String getNextCandidate() {
-        return candidates.get(0);
+    public int getNextCandidate() {
+        return rankingAt(cursor);
     }
 
 
@@ -71,41 +181,155 @@ public class Ballot {
 
 
     /**
-     * Updates a ballot by removing their first choice candidate and decrementing the number
-     * of candidates, numRankings, left on the ballot.
+     * Updates a ballot by moving past their first choice candidate, which decrements the number
+     * of candidates left on the ballot.
      * Used when redistributing ballots from an eliminated candidate.
      * @return  a boolean, true meaning a ballot still has ranked candidates remaining after
      *          being updated, false meaning a ballot no longer has any remaining candidates
      *          after being updated.
      */
     public boolean updateBallot() {
+        int total = rankingCount();
+        if (cursor == total) {
+            return false;
+        }
+        cursor++;
+        //if the ballot only had 1 ranking, then after moving past the current candidate, it
+        //won't have any candidates to redistribute to, so it can be discarded.
+        return cursor < total;
+    }
+
 
-        if(this.numRankings > 1){
-            candidates.remove(0);
-            this.numRankings--;
-            return true;
+    /**
+     * Moves the ballot past its first choice candidate and any following candidates who are no
+     * longer in the running.
+     * Used when redistributing ballots from an eliminated candidate.
+     * @param alive  bit i is set if the candidate with candidate index i is still in the running.
+     * @return  true if the ballot now has a first choice who is still in the running, false if
+     *          the ballot is exhausted.
+     */
+    public boolean advance(BitSet alive) {
+        int total = rankingCount();
+        cursor = Math.min(cursor + 1, total);
+        while (cursor < total && !alive.get(rankingAt(cursor))) {
+            cursor++;
         }
-        else if (this.numRankings == 1) {
-            //if the ballot only has 1 ranking, then after removing the current candidate, it
-            //won't have any candidates to redistribute to, so it can be discarded.
-            candidates.remove(0);
-            this.numRankings--;
-            return false;
+        return cursor < total;
+    }
+
+
+    /**
+     * Moves the cursor back to the ballot's original first choice, so the Ballot can be used
+     * again in a new run of the election.
+     */
+    public void reset() {
+        cursor = 0;
+    }
+
+
+    /**
+     * Gets the candidate index at a position in the rankings.
+     * @param position  the position, 0 for the ballot's original first choice.
+     * @return  the candidate index ranked at that position.
+     */
+    protected int rankingAt(int position) {
+        if (byteRankings != null) {
+            return byteRankings[position] & 0xFF;
         }
-        else {
-            return false;
+        return charRankings[position];
+    }
+
+
+    /**
+     * Gets the number of candidates ranked on the ballot when it was created.
+     * @return  the number of rankings, counting the ones the cursor has moved past.
+     */
+    protected int rankingCount() {
+        return totalRankings;
+    }
+
+
+    /**
+     * Gets a key over the rankings from a position to the end.
+     * @param position  the first position in the key.
+     * @return  an Object with content-based equals() and hashCode() over the rankings.
+     */
+    protected Object rankingsFrom(int position) {
+        return wrapRankings(byteRankings, charRankings, position, totalRankings);
+    }
+
+
+    /**
+     * Adds another ballot with the same rankings to this Ballot's group, increasing its weight.
+     * Used when identical ballots are grouped as they are read.
+     * @param index  the ballot index of the ballot joining the group.
+     */
+    public void addMember(int index) {
+        if (memberIndices == null) {
+            memberIndices = new int[4];
+            memberIndices[0] = ballotIndex;
+        }
+        else if (weight == memberIndices.length) {
+            memberIndices = Arrays.copyOf(memberIndices, weight * 2);
+        }
+        memberIndices[weight] = index;
+        weight++;
+    }
+
+
+    /**
+     * Adds the same amount to the ballot index of every ballot this Ballot stands for.
+     * Used when a chunk of a file is parsed separately, numbering its ballots from 0.
+     * @param offset  the ballot index of the chunk's first ballot.
+     */
+    void offsetIndices(int offset) {
+        ballotIndex += offset;
+        if (memberIndices != null) {
+            for (int i = 0; i < weight; i++) {
+                memberIndices[i] += offset;
+            }
         }
+    }
 
+
+    /**
+     * Gets the number of ballots this Ballot stands for.
+     * @return  the Ballot's weight, 1 for an ungrouped ballot.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+
+    /**
+     * Gets the ballot indices of every ballot this Ballot stands for, in the order they were read.
+     * @return  an int[] of length getWeight() holding the ballot indices of the group.
+     */
+    public int[] getMemberIndices() {
+        if (memberIndices == null) {
+            return new int[]{ballotIndex};
+        }
+        return Arrays.copyOf(memberIndices, weight);
+    }
+
+
+    /**
+     * Gets a key that is equal for two Ballots exactly when their remaining rankings are equal.
+     * Used to find the group an incoming ballot belongs to.
+     * @return  an Object with content-based equals() and hashCode() over the rankings.
+     */
+    public Object getRankingKey() {
+        return rankingsFrom(cursor);
     }
 
 
     /**
-     * Gets the number of candidates left on a ballot, numRankings.
+     * Gets the number of candidates left on a ballot, counting from the current first choice.
      * Used to ensure a ballot still has candidates left.
-     * @return  the number of candidates left on a ballot, numRankings
+     * @return  the number of candidates left on a ballot
      */
     public int getNumRankings() {
-        return numRankings;
+        return rankingCount() - cursor;
     }
 
 }
@@ -0,0 +1,199 @@
+/**
+ * BallotCache.java defines the BallotCache class, which keeps a converted binary copy of each
+ * election file it is given, so an election rerun on the same files skips parsing the CSV text.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A BallotCache is a directory of binary ballot files written by BallotConverter. Each entry is
+ * named by the SHA-256 hash and size of the election file it was converted from, so an entry is
+ * only found again for a file with exactly the same contents, and a changed file gets a new
+ * entry instead of a stale one. Entries are written to a temporary file and renamed into place,
+ * so a run that stops part way never leaves a partial entry. Old entries are not removed.
+ */
+public class BallotCache {
+
+    /**
+     * the extension of a cache entry
+     */
+    public static final String EXTENSION = ".vbf";
+    /**
+     * the number of bytes hashed at once
+     */
+    private static final int HASH_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * the directory the entries are kept in
+     */
+    private final Path directory;
+    /**
+     * the number of files opened from an existing entry
+     */
+    private int hits;
+    /**
+     * the number of files converted into a new entry
+     */
+    private int misses;
+
+    /**
+     * Creates a BallotCache, the directory is created when the first entry is written.
+     * @param directory  the directory the entries are kept in.
+     */
+    public BallotCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory the entries are kept in.
+     * @return  the cache directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the number of files opened from an existing entry.
+     * @return  the number of cache hits.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of files converted into a new entry.
+     * @return  the number of cache misses.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Opens an election file through the cache. On a hit the entry is opened, memory-mapped,
+     * instead of the file. On a miss the file is converted into a new entry first. A file that
+     * is already binary, or cannot be converted, is opened directly.
+     * @param file  the election file, CSV or gzip-compressed CSV.
+     * @return  a tokenizer at the start of the entry, or of the file if it was not cached.
+     * @throws IOException  if the file cannot be read.
+     */
+    public BallotTokenizer open(Path file) throws IOException {
+        if (isBinary(file)) {
+            return BallotTokenizer.open(file);
+        }
+        Path entry = entry(file);
+        if (isBinary(entry)) {
+            hits++;
+            System.out.println("------Loading cached ballots for " + file + "------");
+            return BallotTokenizer.open(entry);
+        }
+        if (!write(file, entry)) {
+            return BallotTokenizer.open(file);
+        }
+        misses++;
+        System.out.println("------Cached ballots for " + file + "------");
+        return BallotTokenizer.open(entry);
+    }
+
+    /**
+     * Gets the path of the entry for an election file's current contents.
+     * @param file  the election file.
+     * @return  the entry's path, which may not exist yet.
+     * @throws IOException  if the file cannot be read.
+     */
+    public Path entry(Path file) throws IOException {
+        return directory.resolve(key(file) + EXTENSION);
+    }
+
+    /**
+     * Makes the key of an election file from its contents.
+     * @param file  the election file.
+     * @return  the SHA-256 hash of the file in hex, a '-', then the size of the file in bytes.
+     * @throws IOException  if the file cannot be read.
+     */
+    public static String key(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer buf = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buf) >= 0) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.append('-').append(size).toString();
+    }
+
+    /**
+     * Converts an election file into a new entry.
+     * @param file  the election file.
+     * @param entry  the path of the entry.
+     * @return  true if the entry was written, false if the file is not an election file.
+     * @throws IOException  if the file cannot be read or the entry cannot be written.
+     */
+    private boolean write(Path file, Path entry) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            BallotTokenizer in = BallotTokenizer.open(file);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                BallotConverter.convert(in, out);
+            } finally {
+                in.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            //not an election file, left for the election to report
+            Files.deleteIfExists(temp);
+            return false;
+        }
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Checks if a file starts like a binary ballot file of the version this program reads.
+     * @param file  the file to check.
+     * @return  true if the file exists and starts with BINARY_MAGIC and BINARY_VERSION.
+     * @throws IOException  if the file exists but cannot be read.
+     */
+    private static boolean isBinary(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        byte[] start = new byte[BallotTokenizer.BINARY_MAGIC.length + 1];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int count;
+            while (length < start.length && (count = in.read(start, length, start.length - length)) > 0) {
+                length += count;
+            }
+        }
+        return length == start.length
+                && Arrays.equals(Arrays.copyOf(start, start.length - 1), BallotTokenizer.BINARY_MAGIC)
+                && start[start.length - 1] == BallotTokenizer.BINARY_VERSION;
+    }
+}
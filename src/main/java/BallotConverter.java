@@ -0,0 +1,378 @@
+/**
+ * BallotConverter.java defines the BallotConverter class, a command line tool that converts an
+ * IR, CPL or PO election file from CSV into the binary ballot format read by BallotTokenizer.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * BallotConverter writes a binary ballot file: BINARY_MAGIC, the format version byte, the header
+ * lines of the CSV file unchanged (election type, candidates or parties, seats and number of
+ * ballots), then one record per ballot line.
+ * A record holds the number of fields on the line, the number of non-empty fields, and the column
+ * and value of each non-empty field, all as unsigned varints. Empty lines are left out, so no
+ * record starts with a 0 byte, and a 0 byte ends the records.
+ * Records have no boundary that can be found from inside them, so an index of sync points
+ * follows the 0 byte: the number of sync points, then for each the offset of a record starting
+ * one SYNC_INTERVAL or more after the one before and the number of records before it, both as
+ * varints added to the previous sync point's, the first being the first record. The file ends
+ * with the offset of the 0 byte as 8 big-endian bytes, so the index is found from the end of the
+ * file and a mapped file can be split into chunks at sync points, see ChunkedBallotParser.
+ * Files of version 1 have no 0 byte or index, and are read but not split.
+ * Usage: java BallotConverter input.csv output.vbf
+ */
+public class BallotConverter {
+
+    /**
+     * the least number of bytes of records between two sync points
+     */
+    static final int SYNC_INTERVAL = 1 << 16;
+
+    /**
+     * The sync points of a binary ballot file, read from its index.
+     */
+    static class SyncIndex {
+        /**
+         * the offset of each sync point's record, in file order
+         */
+        private final long[] offsets;
+        /**
+         * the number of records before each sync point
+         */
+        private final long[] records;
+        /**
+         * the offset of the 0 byte ending the records
+         */
+        private final long end;
+
+        /**
+         * Creates a SyncIndex.
+         * @param offsets  the offset of each sync point's record.
+         * @param records  the number of records before each sync point.
+         * @param end  the offset of the 0 byte ending the records.
+         */
+        private SyncIndex(long[] offsets, long[] records, long end) {
+            this.offsets = offsets;
+            this.records = records;
+            this.end = end;
+        }
+
+        /**
+         * Reads the index of a binary ballot file.
+         * @param channel  the file.
+         * @return  the index, or null if the file has none, Ex: it is of version 1.
+         * @throws IOException  if the file cannot be read.
+         */
+        static SyncIndex read(FileChannel channel) throws IOException {
+            long size = channel.size();
+            ByteBuffer start = ByteBuffer.allocate(BallotTokenizer.BINARY_MAGIC.length + 1);
+            ByteBuffer footer = ByteBuffer.allocate(Long.BYTES);
+            if (size < start.capacity() + footer.capacity() || channel.read(start, 0) < start.capacity()
+                    || start.get(start.capacity() - 1) != BallotTokenizer.BINARY_VERSION
+                    || channel.read(footer, size - footer.capacity()) < footer.capacity()) {
+                return null;
+            }
+            long end = footer.getLong(0);
+            long indexLength = size - footer.capacity() - end - 1;
+            if (end < start.capacity() || indexLength < 1 || indexLength > Integer.MAX_VALUE) {
+                throw new IOException("Bad sync index in binary ballot file");
+            }
+            ByteBuffer index = ByteBuffer.allocate((int) indexLength);
+            while (index.hasRemaining() && channel.read(index, end + 1 + index.position()) > 0) {
+                //read until the whole index is in
+            }
+            index.flip();
+            try {
+                int count = readVarint(index);
+                long[] offsets = new long[count];
+                long[] records = new long[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = (i == 0 ? 0 : offsets[i - 1]) + readVarint(index);
+                    records[i] = (i == 0 ? 0 : records[i - 1]) + readVarint(index);
+                }
+                return new SyncIndex(offsets, records, end);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Bad sync index in binary ballot file", e);
+            }
+        }
+
+        /**
+         * Gets the number of sync points.
+         * @return  the number of sync points, at least 1 if the file has records.
+         */
+        int size() {
+            return offsets.length;
+        }
+
+        /**
+         * Gets the offset of a sync point's record.
+         * @param i  the sync point, 0 for the first record.
+         * @return  the offset in the file.
+         */
+        long getOffset(int i) {
+            return offsets[i];
+        }
+
+        /**
+         * Gets the number of records before a sync point.
+         * @param i  the sync point.
+         * @return  the number of records.
+         */
+        long getRecords(int i) {
+            return records[i];
+        }
+
+        /**
+         * Gets the offset of the 0 byte ending the records.
+         * @return  the offset in the file, where the last chunk ends.
+         */
+        long getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it, so the offsets of records are known.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        /**
+         * the number of bytes written
+         */
+        private long count;
+
+        /**
+         * Creates a CountingOutputStream.
+         * @param out  the stream the bytes are written to.
+         */
+        CountingOutputStream(OutputStream out) {
+            super(out);
+            this.count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * Gets the number of bytes written.
+         * @return  the number of bytes.
+         */
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Converts the CSV election file named by the first argument into a binary ballot file named
+     * by the second.
+     * @param args  the input and output file names.
+     * @throws IOException  if the input cannot be read or the output cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("------USAGE: BallotConverter input.csv output.vbf------");
+            return;
+        }
+        BallotTokenizer in = BallotTokenizer.open(Paths.get(args[0]));
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]), 1 << 16)) {
+            int ballots = convert(in, out);
+            System.out.println("------CONVERTED " + ballots + " BALLOTS TO " + args[1] + "------");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes an election file in the binary ballot format.
+     * @param in  a tokenizer at the start of a CSV election file.
+     * @param out  the stream the binary file is written to, not closed.
+     * @return  the number of ballot records written.
+     * @throws IOException  if the input is not an IR, CPL or PO file or cannot be read, or the
+     *                      output cannot be written.
+     */
+    public static int convert(BallotTokenizer in, OutputStream out) throws IOException {
+        return convert(in, out, SYNC_INTERVAL);
+    }
+
+    /**
+     * Writes an election file in the binary ballot format with sync points a given distance apart.
+     * @param in  a tokenizer at the start of a CSV election file.
+     * @param stream  the stream the binary file is written to, not closed.
+     * @param syncInterval  the least number of bytes of records between two sync points.
+     * @return  the number of ballot records written.
+     * @throws IOException  if the input is not an IR, CPL or PO file or cannot be read, or the
+     *                      output cannot be written.
+     */
+    static int convert(BallotTokenizer in, OutputStream stream, int syncInterval) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(stream);
+        String electionType = in.readLine();
+        if (in.isBinary()) {
+            throw new IOException("Input is already a binary ballot file");
+        }
+        if (electionType == null) {
+            throw new IOException("Input is empty");
+        }
+        out.write(BallotTokenizer.BINARY_MAGIC);
+        out.write(BallotTokenizer.BINARY_VERSION);
+        writeLine(out, electionType);
+
+        //Copy every header line up to and including the number of ballots
+        int headerLines;
+        switch (electionType.trim()) {
+            case "IR":
+            case "PO":
+                headerLines = 3;
+                break;
+            case "CPL": {
+                String numParties = copyLine(in, out);
+                //party names, one candidate line per party, seats, then the number of ballots
+                headerLines = Integer.parseInt(numParties.trim()) + 3;
+                break;
+            }
+            default:
+                throw new IOException("Unknown election type: " + electionType);
+        }
+        for (int i = 0; i < headerLines; i++) {
+            copyLine(in, out);
+        }
+        return writeRecords(in, out, syncInterval);
+    }
+
+    /**
+     * Writes every remaining ballot line as a binary record, then the 0 byte, the sync index and
+     * the offset of the 0 byte.
+     * @param in  a tokenizer positioned at the first ballot line.
+     * @param out  the stream the records are written to.
+     * @param syncInterval  the least number of bytes of records between two sync points.
+     * @return  the number of records written.
+     * @throws IOException  if a line cannot be parsed or the output cannot be written.
+     */
+    private static int writeRecords(BallotTokenizer in, CountingOutputStream out, int syncInterval)
+            throws IOException {
+        int[][] fields = {new int[16]};
+        int[] numFields = new int[1];
+        BallotTokenizer.FieldHandler collect = (column, value) -> {
+            if (numFields[0] * 2 == fields[0].length) {
+                fields[0] = Arrays.copyOf(fields[0], fields[0].length * 2);
+            }
+            fields[0][numFields[0] * 2] = column;
+            fields[0][numFields[0] * 2 + 1] = value;
+            numFields[0]++;
+        };
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        int syncPoints = 0;
+        long lastSync = out.getCount();
+        int lastSyncRecords = 0;
+        int records = 0;
+        int columns;
+        while (true) {
+            numFields[0] = 0;
+            columns = in.readRecord(collect);
+            if (columns < 0) {
+                break;
+            }
+            if (columns == 0) {
+                continue;
+            }
+            if (syncPoints == 0 || out.getCount() - lastSync >= syncInterval) {
+                writeVarint(index, (int) (syncPoints == 0 ? out.getCount() : out.getCount() - lastSync));
+                writeVarint(index, records - lastSyncRecords);
+                syncPoints++;
+                lastSync = out.getCount();
+                lastSyncRecords = records;
+            }
+            writeVarint(out, columns);
+            writeVarint(out, numFields[0]);
+            for (int i = 0; i < numFields[0] * 2; i++) {
+                writeVarint(out, fields[0][i]);
+            }
+            records++;
+        }
+        long end = out.getCount();
+        out.write(0);
+        writeVarint(out, syncPoints);
+        index.writeTo(out);
+        out.write(ByteBuffer.allocate(Long.BYTES).putLong(0, end).array());
+        return records;
+    }
+
+    /**
+     * Copies one header line from the input to the output.
+     * @param in  the tokenizer to read the line from.
+     * @param out  the stream to write the line to.
+     * @return  the line.
+     * @throws IOException  if the input ends before the line.
+     */
+    private static String copyLine(BallotTokenizer in, OutputStream out) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Input ends inside the header");
+        }
+        writeLine(out, line);
+        return line;
+    }
+
+    /**
+     * Writes a header line followed by '\n'.
+     * @param out  the stream to write to.
+     * @param line  the line without its line ending.
+     * @throws IOException  if the output cannot be written.
+     */
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte with the high bit set on every byte but the last.
+     * @param out  the stream to write to.
+     * @param value  the value, not negative.
+     * @throws IOException  if the output cannot be written.
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned varint written by writeVarint().
+     * @param buf  the buffer, at the varint.
+     * @return  the value.
+     * @throws BufferUnderflowException  if the buffer ends inside the varint.
+     */
+    private static int readVarint(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
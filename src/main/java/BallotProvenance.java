@@ -0,0 +1,326 @@
+/**
+ * BallotProvenance.java defines the BallotProvenance class, which records the file and byte
+ * offset every IR ballot was read from, so a ballot index in an audit file can be traced back
+ * to its line without reading the election files again.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A BallotProvenance holds one byte offset per ballot, indexed by ballot index, and the first
+ * ballot index of each election file. Offsets are kept in a primitive array, and the file of a
+ * ballot is found by a binary search of the file starts, so recording a ballot costs one array
+ * store. A BallotProvenance read from a sidecar file keeps its offsets in the mapped file instead,
+ * so looking up a ballot reads only that ballot's offset. Offsets are where a ballot's line starts in its file as read, so for a gzip-compressed
+ * file they are offsets in the decompressed file and for a binary ballot file they are offsets of
+ * its records.
+ * The sidecar file written by write() holds PROVENANCE_MAGIC, a version byte, the number of files,
+ * each file's name as a 2 byte length and UTF-8 bytes and its first ballot index, the number of
+ * ballots, then each ballot's offset as an
+ * 8 byte big-endian long, so the offset of ballot i can be read directly at a fixed position.
+ * Usage: java BallotProvenance sidecar.vbpi ballotIndex...
+ */
+public class BallotProvenance {
+
+    /**
+     * the first bytes of a sidecar file
+     */
+    static final byte[] PROVENANCE_MAGIC = {(byte) 0x89, 'V', 'B', 'P'};
+    /**
+     * the version of the sidecar format written by write()
+     */
+    static final int PROVENANCE_VERSION = 1;
+
+    /**
+     * the name of each election file, in file order
+     */
+    private final ArrayList<String> fileNames;
+    /**
+     * the first ballot index of each election file, in file order
+     */
+    private final ArrayList<Integer> fileStarts;
+    /**
+     * offsets[i] is the byte offset of ballot i, only the first size entries are used, null while
+     * the offsets are read from mapped
+     */
+    private long[] offsets;
+    /**
+     * the offsets of a BallotProvenance read from a sidecar file, in the mapped file, null if
+     * they are in offsets
+     */
+    private LongBuffer mapped;
+    /**
+     * the number of ballots recorded
+     */
+    private int size;
+
+    /**
+     * Creates an empty BallotProvenance, with no files and no ballots.
+     */
+    public BallotProvenance() {
+        this.fileNames = new ArrayList<>();
+        this.fileStarts = new ArrayList<>();
+        this.offsets = new long[16];
+        this.size = 0;
+    }
+
+    /**
+     * Looks up ballots in a sidecar file and prints where each was read from, and its line when
+     * the file is a CSV file that can still be read.
+     * @param args  the sidecar file, then the ballot indices to look up.
+     * @throws IOException  if the sidecar file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("------USAGE: BallotProvenance sidecar.vbpi ballotIndex...------");
+            return;
+        }
+        BallotProvenance provenance = read(Paths.get(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            int index = Integer.parseInt(args[i]);
+            if (index < 0 || index >= provenance.size()) {
+                System.out.println("Ballot " + index + ": not in " + args[0]);
+                continue;
+            }
+            String fileName = provenance.getFileName(index);
+            long offset = provenance.getOffset(index);
+            System.out.println("Ballot " + index + ": " + fileName + " at byte " + offset);
+            String line = readLine(Paths.get(fileName), offset);
+            if (line != null) {
+                System.out.println("+++" + line);
+            }
+        }
+    }
+
+    /**
+     * Records the offset of the next ballot.
+     * @param offset  the byte offset of the ballot's line.
+     */
+    public void add(long offset) {
+        unmap();
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * Records the offsets of another BallotProvenance's ballots after this one's, Ex: those of
+     * the next chunk of the same file.
+     * @param other  the offsets to add, its files are ignored.
+     */
+    public void addAll(BallotProvenance other) {
+        unmap();
+        if (size + other.size > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, size + other.size));
+        }
+        if (other.mapped != null) {
+            other.mapped.get(0, offsets, size, other.size);
+        }
+        else {
+            System.arraycopy(other.offsets, 0, offsets, size, other.size);
+        }
+        size += other.size;
+    }
+
+    /**
+     * Copies the offsets of a BallotProvenance read from a sidecar file out of the mapped file,
+     * so more can be recorded.
+     */
+    private void unmap() {
+        if (mapped != null) {
+            offsets = new long[Math.max(16, size)];
+            mapped.get(0, offsets, 0, size);
+            mapped = null;
+        }
+    }
+
+    /**
+     * Records the ballots of the next election file, numbered after the ballots before them.
+     * @param fileName  the name of the election file.
+     * @param ballots  the offsets of the file's ballots, in file order.
+     */
+    public void addFile(String fileName, BallotProvenance ballots) {
+        fileNames.add(fileName);
+        fileStarts.add(size);
+        addAll(ballots);
+    }
+
+    /**
+     * Gets the number of ballots recorded.
+     * @return  the number of ballots.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the byte offset a ballot was read from.
+     * @param ballotIndex  the ballot's index, from 0 to size() - 1.
+     * @return  the offset of the ballot's line in its file.
+     * @throws IndexOutOfBoundsException  if no ballot has the index.
+     */
+    public long getOffset(int ballotIndex) {
+        if (ballotIndex < 0 || ballotIndex >= size) {
+            throw new IndexOutOfBoundsException("No ballot " + ballotIndex);
+        }
+        if (mapped != null) {
+            return mapped.get(ballotIndex);
+        }
+        return offsets[ballotIndex];
+    }
+
+    /**
+     * Gets the position in the election's file list of the file a ballot was read from.
+     * @param ballotIndex  the ballot's index, from 0 to size() - 1.
+     * @return  the file index, 0 for the first file.
+     * @throws IndexOutOfBoundsException  if no ballot has the index.
+     */
+    public int getFileIndex(int ballotIndex) {
+        getOffset(ballotIndex);
+        int low = 0;
+        int high = fileStarts.size() - 1;
+        //find the last file starting at or before the ballot, empty files share a start
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fileStarts.get(mid) <= ballotIndex) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the name of the file a ballot was read from.
+     * @param ballotIndex  the ballot's index, from 0 to size() - 1.
+     * @return  the file's name as given to the election.
+     * @throws IndexOutOfBoundsException  if no ballot has the index.
+     */
+    public String getFileName(int ballotIndex) {
+        return fileNames.get(getFileIndex(ballotIndex));
+    }
+
+    /**
+     * Writes the sidecar file.
+     * @param path  the path of the sidecar file, replaced if it exists.
+     * @throws IOException  if the file cannot be written, or a file name is longer than 65535
+     *                      bytes in UTF-8.
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.write(PROVENANCE_MAGIC);
+            out.write(PROVENANCE_VERSION);
+            out.writeInt(fileNames.size());
+            for (int i = 0; i < fileNames.size(); i++) {
+                byte[] name = fileNames.get(i).getBytes(StandardCharsets.UTF_8);
+                if (name.length > 0xFFFF) {
+                    throw new IOException("File name too long for a ballot provenance file: " + fileNames.get(i));
+                }
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(fileStarts.get(i));
+            }
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(getOffset(i));
+            }
+        }
+    }
+
+    /**
+     * Reads a sidecar file by mapping it into memory. The offsets are left in the mapped file and
+     * read when a ballot is looked up.
+     * @param path  the path of the sidecar file.
+     * @return  the BallotProvenance it holds.
+     * @throws IOException  if the file cannot be read or is not a sidecar file of this version.
+     */
+    public static BallotProvenance read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] magic = new byte[PROVENANCE_MAGIC.length];
+            if (buf.remaining() <= magic.length) {
+                throw new IOException("Not a ballot provenance file: " + path);
+            }
+            buf.get(magic);
+            if (!Arrays.equals(magic, PROVENANCE_MAGIC)) {
+                throw new IOException("Not a ballot provenance file: " + path);
+            }
+            int version = buf.get() & 0xFF;
+            if (version != PROVENANCE_VERSION) {
+                throw new IOException("Unsupported ballot provenance file version " + version);
+            }
+            BallotProvenance provenance = new BallotProvenance();
+            int numFiles = buf.getInt();
+            for (int i = 0; i < numFiles; i++) {
+                byte[] name = new byte[buf.getShort() & 0xFFFF];
+                buf.get(name);
+                provenance.fileNames.add(new String(name, StandardCharsets.UTF_8));
+                provenance.fileStarts.add(buf.getInt());
+            }
+            provenance.size = buf.getInt();
+            if (buf.remaining() < (long) provenance.size * Long.BYTES) {
+                throw new IOException("Ballot provenance file cut off: " + path);
+            }
+            provenance.offsets = null;
+            provenance.mapped = buf.asLongBuffer();
+            return provenance;
+        }
+    }
+
+    /**
+     * Reads the line of an election file starting at an offset.
+     * @param file  the election file.
+     * @param offset  the offset of the line in the file as read, decompressed if it is gzip-compressed.
+     * @return  the line, or null if the file cannot be read or is a binary ballot file.
+     */
+    static String readLine(Path file, long offset) {
+        try {
+            BallotTokenizer tokenizer = BallotTokenizer.open(file);
+            try {
+                //the first read detects a binary file
+                tokenizer.readLine();
+                if (tokenizer.isBinary()) {
+                    return null;
+                }
+            } finally {
+                tokenizer.close();
+            }
+            InputStream in = Files.newInputStream(file);
+            if (tokenizer.getChannel() == null) {
+                in = new GZIPInputStream(in);
+            }
+            try (InputStream lines = in) {
+                long skipped = 0;
+                while (skipped < offset) {
+                    long count = lines.skip(offset - skipped);
+                    if (count <= 0) {
+                        return null;
+                    }
+                    skipped += count;
+                }
+                return new BallotTokenizer(lines, 4096).readLine();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
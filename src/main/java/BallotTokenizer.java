@@ -0,0 +1,917 @@
+/**
+ * BallotTokenizer.java defines the BallotTokenizer class, which reads the lines of an election
+ * file directly from its bytes, used by every election type to read ballots without building a
+ * String for each line.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A BallotTokenizer reads an election file as raw bytes, header lines being decoded as UTF-8.
+ * Header lines are read as Strings with readLine(). Ballot lines are read with readRecord(),
+ * which parses each comma separated field in place and hands its column index and numeric value
+ * to a FieldHandler, so reading a ballot creates no objects.
+ * A UTF-8 byte order mark at the start of the file is skipped.
+ * A file starting with BINARY_MAGIC is a binary ballot file, written by BallotConverter. Its
+ * header lines are the same text lines as the CSV file, but each ballot is stored as varints
+ * that readRecord() hands to the FieldHandler without parsing any text. The records end at a 0
+ * byte, the sync index after it is only read by ChunkedBallotParser.
+ * Files opened with open() are memory-mapped rather than copied through a stream, one window of
+ * at most DEFAULT_WINDOW_SIZE bytes at a time, so files larger than 2 GB can be read.
+ * Gzip-compressed files are streamed through a GZIPInputStream instead.
+ */
+public class BallotTokenizer {
+
+    /**
+     * Receives the fields of a ballot line from readRecord().
+     */
+    public interface FieldHandler {
+        /**
+         * Called once for every non-empty field of a ballot line, in column order.
+         * @param column  the 0-based column of the field.
+         * @param value  the number in the field.
+         */
+        void field(int column, int value);
+    }
+
+    /**
+     * the default number of bytes read from a stream at once
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * the default number of bytes of a file mapped at once, a single mapping cannot exceed 2 GB
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    /**
+     * the bytes of the UTF-8 byte order mark some editors write at the start of a file
+     */
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * the first bytes of a gzip-compressed file
+     */
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B};
+    /**
+     * the number of bytes inflated at once when reading a gzip-compressed file
+     */
+    private static final int GZIP_BUFFER_SIZE = 1 << 20;
+    /**
+     * the number of inflated buffers that can be waiting to be parsed
+     */
+    private static final int GZIP_BLOCKS = 4;
+
+    /**
+     * the first bytes of a binary ballot file, which can never start a CSV file
+     */
+    static final byte[] BINARY_MAGIC = {(byte) 0x89, 'V', 'B', 'F'};
+    /**
+     * the version of the binary ballot format, stored in the byte after BINARY_MAGIC, files of
+     * version 1 have no sync index and are read too
+     */
+    static final int BINARY_VERSION = 2;
+    /**
+     * the number of bytes at the start of the input checked for a byte order mark or binary magic
+     */
+    private static final int START_PROBE = BINARY_MAGIC.length + 1;
+
+    /**
+     * the stream the bytes are read from, null if every byte is already in buf
+     */
+    private final InputStream in;
+    /**
+     * the file mapped one window at a time, null if not reading a mapped file
+     */
+    private final FileChannel channel;
+    /**
+     * the number of bytes of the file mapped at once
+     */
+    private final int windowSize;
+    /**
+     * the bytes currently available, positions pos up to buf.limit() are unread
+     */
+    private ByteBuffer buf;
+    /**
+     * the position in buf of the next unread byte
+     */
+    private int pos;
+    /**
+     * the offset in the input of the byte at buf position 0
+     */
+    private long bufferStart;
+    /**
+     * the number of lines read so far, not counting the lines before the part of the input read
+     * while linesBefore is not null
+     */
+    private long lineNumber;
+    /**
+     * counts the lines of the whole input before the part this tokenizer reads, the first time
+     * a line number is needed, null once they are counted or if there are none
+     */
+    private LineCounter linesBefore;
+    /**
+     * true once the start of the input was checked for a byte order mark
+     */
+    private boolean checkedByteOrderMark;
+    /**
+     * true if the input is a binary ballot file, known once the first byte is read
+     */
+    private boolean binary;
+    /**
+     * true once the 0 byte ending the records of a binary ballot file was read, so the sync
+     * index after it is not read as records
+     */
+    private boolean recordsEnded;
+    /**
+     * holds the bytes of a header line while it is read
+     */
+    private byte[] lineBytes;
+    /**
+     * the name of the input, Ex: its file name, null if it has none
+     */
+    private String name;
+
+    /**
+     * Creates a BallotTokenizer reading from a stream with the default buffer size.
+     * @param in  the stream holding the election file.
+     */
+    public BallotTokenizer(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a BallotTokenizer reading from a stream.
+     * @param in  the stream holding the election file.
+     * @param bufferSize  the number of bytes to read from the stream at once.
+     */
+    public BallotTokenizer(InputStream in, int bufferSize) {
+        this.in = in;
+        this.channel = null;
+        this.windowSize = 0;
+        this.buf = ByteBuffer.wrap(new byte[bufferSize]);
+        this.buf.limit(0);
+        this.lineBytes = new byte[128];
+    }
+
+    /**
+     * Creates a BallotTokenizer reading the bytes between the position and limit of a buffer.
+     * The buffer itself is not changed.
+     * @param bytes  the bytes of the election file.
+     */
+    public BallotTokenizer(ByteBuffer bytes) {
+        this(bytes, 0);
+    }
+
+    /**
+     * Creates a BallotTokenizer reading part of a larger input, Ex: one chunk of a mapped file,
+     * so getPosition() gives offsets in the whole input.
+     * @param bytes  the bytes of the part, between the buffer's position and limit.
+     * @param position  the offset of the part in the whole input, a part that does not start
+     *                  at 0 is not checked for a byte order mark.
+     */
+    BallotTokenizer(ByteBuffer bytes, long position) {
+        this(bytes, position, false);
+    }
+
+    /**
+     * Counts the lines of an input before a part of it.
+     */
+    interface LineCounter {
+        /**
+         * Counts the lines.
+         * @return  the number of lines before the part.
+         * @throws IOException  if the input cannot be read.
+         */
+        long count() throws IOException;
+    }
+
+    /**
+     * Creates a BallotTokenizer reading part of a larger input whose earlier lines are only
+     * counted if a line number is needed, Ex: when a line of a chunk parsed in parallel fails,
+     * so getLineNumber() and error messages give lines of the whole input.
+     * @param bytes  the bytes of the part, between the buffer's position and limit.
+     * @param position  the offset of the part in the whole input, not 0.
+     * @param binary  true if the part holds binary records, false if it holds CSV lines.
+     * @param linesBefore  counts the lines of the whole input before the part.
+     */
+    BallotTokenizer(ByteBuffer bytes, long position, boolean binary, LineCounter linesBefore) {
+        this(bytes, position, binary);
+        this.linesBefore = linesBefore;
+    }
+
+    /**
+     * Creates a BallotTokenizer reading part of a larger input that may be a binary ballot file,
+     * Ex: one ballot line of a mapped file read again later.
+     * @param bytes  the bytes of the part, between the buffer's position and limit.
+     * @param position  the offset of the part in the whole input, not 0.
+     * @param binary  true if the part holds binary records, false if it holds CSV lines.
+     */
+    BallotTokenizer(ByteBuffer bytes, long position, boolean binary) {
+        this.in = null;
+        this.channel = null;
+        this.windowSize = 0;
+        this.buf = bytes.slice();
+        this.bufferStart = position;
+        this.binary = binary;
+        this.lineBytes = new byte[128];
+    }
+
+    /**
+     * Creates a BallotTokenizer reading a file by mapping it into memory one window at a time.
+     * The tokenizer closes the channel when it is closed.
+     * @param channel  the file, read from its start.
+     * @param windowSize  the number of bytes of the file to map at once, at least 5 so the
+     *                    first window holds a whole byte order mark or binary file header.
+     * @throws IllegalArgumentException  if windowSize is less than 5.
+     */
+    public BallotTokenizer(FileChannel channel, int windowSize) {
+        if (windowSize < START_PROBE) {
+            throw new IllegalArgumentException("Window size too small: " + windowSize);
+        }
+        this.in = null;
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.buf = ByteBuffer.allocate(0);
+        this.lineBytes = new byte[128];
+    }
+
+    /**
+     * Opens an election file for reading by mapping it into memory.
+     * A gzip-compressed file, detected by its first two bytes, is instead decompressed as it is
+     * read, on a separate thread so decompression overlaps with parsing.
+     * @param file  the path of the election file.
+     * @return  a BallotTokenizer positioned at the start of the file, named by its path.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public static BallotTokenizer open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer start = ByteBuffer.allocate(GZIP_MAGIC.length);
+        int count = 0;
+        while (start.hasRemaining() && count >= 0) {
+            count = channel.read(start, start.position());
+        }
+        BallotTokenizer tokenizer;
+        if (!start.hasRemaining() && start.get(0) == GZIP_MAGIC[0] && start.get(1) == GZIP_MAGIC[1]) {
+            //positional reads leave the channel at the start of the file
+            InputStream compressed = Channels.newInputStream(channel);
+            tokenizer = new BallotTokenizer(new ReadAheadInputStream(
+                    new GZIPInputStream(compressed, GZIP_BUFFER_SIZE), GZIP_BUFFER_SIZE, GZIP_BLOCKS),
+                    GZIP_BUFFER_SIZE);
+        }
+        else {
+            tokenizer = new BallotTokenizer(channel, DEFAULT_WINDOW_SIZE);
+        }
+        tokenizer.setName(file.toString());
+        return tokenizer;
+    }
+
+    /**
+     * Opens an election file arriving on a stream, such as standard input.
+     * A gzip-compressed stream, detected by its first two bytes, is decompressed on a separate thread.
+     * @param in  the stream holding the election file, read from its current position.
+     * @return  a BallotTokenizer positioned at the start of the stream.
+     * @throws IOException  if the stream cannot be read.
+     */
+    public static BallotTokenizer open(InputStream in) throws IOException {
+        PushbackInputStream start = new PushbackInputStream(in, GZIP_MAGIC.length);
+        byte[] magic = new byte[GZIP_MAGIC.length];
+        int length = 0;
+        int count = 0;
+        while (length < magic.length && count >= 0) {
+            count = start.read(magic, length, magic.length - length);
+            length += Math.max(count, 0);
+        }
+        start.unread(magic, 0, length);
+        if (length == magic.length && magic[0] == GZIP_MAGIC[0] && magic[1] == GZIP_MAGIC[1]) {
+            return new BallotTokenizer(new ReadAheadInputStream(
+                    new GZIPInputStream(start, GZIP_BUFFER_SIZE), GZIP_BUFFER_SIZE, GZIP_BLOCKS),
+                    GZIP_BUFFER_SIZE);
+        }
+        return new BallotTokenizer(start, GZIP_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a BallotTokenizer reading the characters of a Reader, such as a BufferedReader
+     * that has already read the election type line. The characters are encoded as UTF-8, so
+     * names read by readLine() come back as they were read.
+     * @param reader  the Reader holding the rest of the election file.
+     * @return  a BallotTokenizer over the Reader's remaining characters.
+     */
+    public static BallotTokenizer fromReader(Reader reader) {
+        return new BallotTokenizer(new ReaderInputStream(reader));
+    }
+
+    /**
+     * Creates a BallotTokenizer for each Reader, used by the election constructors taking
+     * BufferedReaders.
+     * @param readers  the Readers, each positioned just after the election type line.
+     * @return  a BallotTokenizer for each Reader, in the same order.
+     */
+    public static BallotTokenizer[] fromReaders(Reader[] readers) {
+        BallotTokenizer[] files = new BallotTokenizer[readers.length];
+        for (int i = 0; i < readers.length; i++) {
+            files[i] = fromReader(readers[i]);
+        }
+        return files;
+    }
+
+    /**
+     * Reads a header line that declares a number of ballots. The declared number is only a hint:
+     * ballot lines are read until the end of the input whatever it says, so a producer that does
+     * not know the number yet can leave the line blank.
+     * @return  the declared number of ballots, or -1 if the line is blank or the input ended.
+     * @throws IOException  if the input cannot be read.
+     * @throws NumberFormatException  if the line is not blank and not a number.
+     */
+    public int readCount() throws IOException {
+        String line = readLine();
+        if (line == null || line.trim().isEmpty()) {
+            return -1;
+        }
+        return Integer.parseInt(line.trim());
+    }
+
+    /**
+     * Reports a file whose number of ballot lines does not match the number its header declares.
+     * @param fileIndex  the position of the file in the election's file list, 0 for the first.
+     * @param declared  the number declared by readCount(), -1 if none was declared.
+     * @param found  the number of ballot lines read.
+     * @return  true if the numbers match or no number was declared.
+     */
+    public static boolean checkCount(int fileIndex, int declared, int found) {
+        if (declared < 0 || declared == found) {
+            return true;
+        }
+        System.out.println("------FILE " + (fileIndex + 1) + " DECLARES " + declared + " BALLOTS BUT HAS "
+                + found + "------");
+        return false;
+    }
+
+    /**
+     * Reads the next line as a String, used for header lines such as candidate names.
+     * The line ending, "\n" or "\r\n", is not included.
+     * @return  the line, or null if the end of the input was reached.
+     * @throws IOException  if the input cannot be read.
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        int b = nextByte();
+        if (b < 0) {
+            return null;
+        }
+        while (b >= 0 && b != '\n') {
+            if (length == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, length * 2);
+            }
+            lineBytes[length++] = (byte) b;
+            b = nextByte();
+        }
+        lineNumber++;
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next line as a ballot, handing each non-empty field to the handler.
+     * Spaces, tabs and a trailing '\r' around a number are ignored, so " 1 ," is the number 1 in
+     * column 0, but "1 2" is not a number.
+     * @param handler  receives the column and value of every non-empty field.
+     * @return  the number of fields on the line, 0 for an empty line, or -1 if the end of the
+     *          input was reached.
+     * @throws IOException  if the input cannot be read or a field is not a whole number up to
+     *                      Integer.MAX_VALUE.
+     */
+    public int readRecord(FieldHandler handler) throws IOException {
+        int b = nextByte();
+        if (b < 0) {
+            return -1;
+        }
+        if (b == 0 && binary) {
+            endRecords();
+            return -1;
+        }
+        lineNumber++;
+        if (binary) {
+            return readBinaryRecord(b, handler);
+        }
+        int column = 0;
+        int value = 0;
+        boolean hasDigits = false;
+        boolean hasContent = false;
+        boolean numberEnded = false;
+        while (true) {
+            if (b >= '0' && b <= '9') {
+                if (numberEnded) {
+                    throw spaceInNumber(column);
+                }
+                value = addDigit(value, b, column);
+                hasDigits = true;
+                hasContent = true;
+            }
+            else if (b == ',' || b == '\n' || b < 0) {
+                if (hasDigits) {
+                    handler.field(column, value);
+                }
+                if (b != ',') {
+                    return hasContent || column > 0 ? column + 1 : 0;
+                }
+                column++;
+                value = 0;
+                hasDigits = false;
+                numberEnded = false;
+                hasContent = true;
+            }
+            else if (b == ' ' || b == '\t' || b == '\r') {
+                numberEnded = hasDigits;
+            }
+            else {
+                throw new IOException("Unexpected character '" + (char) b + "' in column " + column
+                        + " of line " + getLineNumber());
+            }
+            b = nextByte();
+        }
+    }
+
+    /**
+     * Reads the next line as a ballot up to its first non-empty field, handing only that field to
+     * the handler, then skips the rest of the line without parsing it. Used when only the first
+     * choice of a ballot is needed now and the line can be read again with readRecord() later.
+     * @param handler  receives the column and value of the first non-empty field.
+     * @return  0 for an empty line, -1 if the end of the input was reached, otherwise a positive
+     *          number: the number of fields up to the first non-empty one, or on the whole line
+     *          if it has none.
+     * @throws IOException  if the input cannot be read or a field up to the first value is
+     *                      not a whole number up to Integer.MAX_VALUE.
+     */
+    public int readFirstField(FieldHandler handler) throws IOException {
+        int b = nextByte();
+        if (b < 0) {
+            return -1;
+        }
+        if (b == 0 && binary) {
+            endRecords();
+            return -1;
+        }
+        lineNumber++;
+        if (binary) {
+            int columns = readVarint(b);
+            int nonEmpty = readVarint(nextByte());
+            if (nonEmpty > 0) {
+                int column = readVarint(nextByte());
+                handler.field(column, readVarint(nextByte()));
+                //skip the columns and values of the later fields
+                for (int i = 2 * (nonEmpty - 1); i > 0; i--) {
+                    readVarint(nextByte());
+                }
+            }
+            return columns;
+        }
+        int column = 0;
+        int value = 0;
+        boolean hasDigits = false;
+        boolean hasContent = false;
+        boolean numberEnded = false;
+        while (true) {
+            if (b >= '0' && b <= '9') {
+                if (numberEnded) {
+                    throw spaceInNumber(column);
+                }
+                value = addDigit(value, b, column);
+                hasDigits = true;
+                hasContent = true;
+            }
+            else if (b == ',' || b == '\n' || b < 0) {
+                if (hasDigits) {
+                    handler.field(column, value);
+                    while (b >= 0 && b != '\n') {
+                        b = nextByte();
+                    }
+                    return column + 1;
+                }
+                if (b != ',') {
+                    return hasContent || column > 0 ? column + 1 : 0;
+                }
+                column++;
+                hasContent = true;
+            }
+            else if (b == ' ' || b == '\t' || b == '\r') {
+                numberEnded = hasDigits;
+            }
+            else {
+                throw new IOException("Unexpected character '" + (char) b + "' in column " + column
+                        + " of line " + getLineNumber());
+            }
+            b = nextByte();
+        }
+    }
+
+    /**
+     * Adds the next digit of a field to its value.
+     * @param value  the value of the digits before it.
+     * @param digit  the digit's character, '0' to '9'.
+     * @param column  the column of the field, for the error message.
+     * @return  the value with the digit added.
+     * @throws IOException  if the value would be larger than Integer.MAX_VALUE.
+     */
+    private int addDigit(int value, int digit, int column) throws IOException {
+        if (value > (Integer.MAX_VALUE - (digit - '0')) / 10) {
+            throw new IOException("Number too large in column " + column + " of line " + getLineNumber());
+        }
+        return value * 10 + (digit - '0');
+    }
+
+    /**
+     * Makes the exception for a field with spaces between its digits, Ex: "1 2".
+     * @param column  the column of the field.
+     * @return  the exception.
+     */
+    private IOException spaceInNumber(int column) {
+        return new IOException("Space inside the number in column " + column + " of line " + getLineNumber());
+    }
+
+    /**
+     * Reads a binary ballot record: the number of fields on the original line, the number of
+     * non-empty fields, then the column and value of each non-empty field, all as varints.
+     * @param first  the first byte of the record, already read.
+     * @param handler  receives the column and value of every non-empty field.
+     * @return  the number of fields on the original line.
+     * @throws IOException  if the record is cut off.
+     */
+    private int readBinaryRecord(int first, FieldHandler handler) throws IOException {
+        int columns = readVarint(first);
+        int nonEmpty = readVarint(nextByte());
+        for (int i = 0; i < nonEmpty; i++) {
+            int column = readVarint(nextByte());
+            handler.field(column, readVarint(nextByte()));
+        }
+        return columns;
+    }
+
+    /**
+     * Stops at the 0 byte ending the records of a binary ballot file, which no record starts
+     * with, so the input reads as ended from here on.
+     */
+    private void endRecords() {
+        bufferStart += pos;
+        buf = ByteBuffer.allocate(0);
+        pos = 0;
+        recordsEnded = true;
+    }
+
+    /**
+     * Reads an unsigned varint, 7 bits per byte with the high bit set on every byte but the last.
+     * @param first  the first byte of the varint, already read.
+     * @return  the value.
+     * @throws IOException  if the input ends inside the varint.
+     */
+    private int readVarint(int first) throws IOException {
+        int b = first;
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            if (b < 0) {
+                throw new IOException("Binary ballot record cut off at line " + getLineNumber());
+            }
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+            shift += 7;
+            b = nextByte();
+        }
+    }
+
+    /**
+     * Checks if the input is a binary ballot file rather than CSV text.
+     * @return  true if the input started with BINARY_MAGIC, known once the first line is read.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Skips the rest of the current line.
+     * @return  false if the end of the input was reached before any byte was skipped.
+     * @throws IOException  if the input cannot be read.
+     */
+    public boolean skipLine() throws IOException {
+        int b = nextByte();
+        if (b < 0) {
+            return false;
+        }
+        while (b >= 0 && b != '\n') {
+            b = nextByte();
+        }
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Gets the offset in the input of the next byte to be read.
+     * @return  the number of bytes read so far, including a skipped byte order mark.
+     */
+    public long getPosition() {
+        return bufferStart + pos;
+    }
+
+    /**
+     * Gets the mapped file this tokenizer reads, used to split the rest of the file into chunks.
+     * @return  the file's channel, null if the tokenizer does not read a mapped file.
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Moves to the end of a mapped file once its remaining lines were read some other way.
+     * @throws IOException  if the size of the file cannot be read.
+     */
+    void skipToEnd() throws IOException {
+        if (channel != null) {
+            bufferStart = channel.size();
+            buf = ByteBuffer.allocate(0);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Gets the name of the input, used to say where ballots were read from.
+     * @return  the name, Ex: the path given to open(), null if it has none.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the input.
+     * @param name  the name, Ex: "-" for standard input.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Moves back to a position of a mapped file read before, so its lines can be read again.
+     * @param position  the position, from getPosition().
+     * @param lineNumber  the line number at that position, from getLineNumber().
+     * @throws IllegalStateException  if the tokenizer does not read a mapped file.
+     */
+    void seek(long position, long lineNumber) {
+        if (channel == null) {
+            throw new IllegalStateException("Only a mapped file can be read again");
+        }
+        bufferStart = position;
+        buf = ByteBuffer.allocate(0);
+        pos = 0;
+        this.lineNumber = lineNumber;
+        this.linesBefore = null;
+        this.recordsEnded = false;
+    }
+
+    /**
+     * Gets the number of lines read so far.
+     * @return  the number of lines read or skipped.
+     */
+    public long getLineNumber() {
+        if (linesBefore != null) {
+            try {
+                lineNumber += linesBefore.count();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            linesBefore = null;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Closes the underlying stream or file, if there is one.
+     * @throws IOException  if the stream or file cannot be closed.
+     */
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the next byte of the input, skipping a byte order mark at the very start.
+     * @return  the byte as an int from 0 to 255, or -1 at the end of the input.
+     * @throws IOException  if the input cannot be read.
+     */
+    private int nextByte() throws IOException {
+        if (pos == buf.limit() && !refill()) {
+            return -1;
+        }
+        if (!checkedByteOrderMark) {
+            checkedByteOrderMark = true;
+            checkStart();
+            if (pos == buf.limit() && !refill()) {
+                return -1;
+            }
+        }
+        return buf.get(pos++) & 0xFF;
+    }
+
+    /**
+     * Skips the byte order mark if the input starts with one, or the binary file header if the
+     * input is a binary ballot file.
+     * @throws IOException  if the input cannot be read or is a binary file of another version.
+     */
+    private void checkStart() throws IOException {
+        if (getPosition() != 0) {
+            return;
+        }
+        //a stream may hand over fewer bytes than the probe at first
+        while (in != null && buf.limit() < Math.min(START_PROBE, buf.capacity())) {
+            int count = in.read(buf.array(), buf.limit(), buf.capacity() - buf.limit());
+            if (count < 0) {
+                break;
+            }
+            buf.limit(buf.limit() + count);
+        }
+        if (startsWith(BINARY_MAGIC) && buf.limit() >= START_PROBE) {
+            int version = buf.get(BINARY_MAGIC.length) & 0xFF;
+            if (version != BINARY_VERSION && version != 1) {
+                throw new IOException("Unsupported binary ballot file version " + version);
+            }
+            binary = true;
+            pos = START_PROBE;
+        }
+        else if (startsWith(BYTE_ORDER_MARK)) {
+            pos = BYTE_ORDER_MARK.length;
+        }
+    }
+
+    /**
+     * Checks if the buffered start of the input begins with the given bytes.
+     * @param prefix  the bytes to look for.
+     * @return  true if the input starts with every byte of prefix.
+     */
+    private boolean startsWith(byte[] prefix) {
+        if (buf.limit() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the fully read buffer with the next bytes of the input.
+     * @return  false if there are no more bytes.
+     * @throws IOException  if the input cannot be read.
+     */
+    private boolean refill() throws IOException {
+        if (recordsEnded) {
+            return false;
+        }
+        if (channel != null) {
+            return mapNextWindow();
+        }
+        if (in == null) {
+            return false;
+        }
+        int count;
+        do {
+            count = in.read(buf.array(), 0, buf.capacity());
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        bufferStart += pos;
+        pos = 0;
+        buf.limit(count);
+        return true;
+    }
+
+    /**
+     * Replaces the fully read window with a mapping of the next window of the file.
+     * Lines may cross window boundaries, the parsing state is kept by the caller.
+     * @return  false if the end of the file was reached.
+     * @throws IOException  if the file cannot be mapped.
+     */
+    private boolean mapNextWindow() throws IOException {
+        long next = bufferStart + buf.limit();
+        long remaining = channel.size() - next;
+        if (remaining <= 0) {
+            return false;
+        }
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(remaining, windowSize));
+        bufferStart = next;
+        pos = 0;
+        return true;
+    }
+
+    /**
+     * The bytes of the characters of a Reader encoded as UTF-8, read a buffer at a time.
+     */
+    private static class ReaderInputStream extends InputStream {
+        /**
+         * the Reader the characters are read from
+         */
+        private final Reader reader;
+        /**
+         * the characters read but not yet encoded, a surrogate pair can be split across reads
+         */
+        private final CharBuffer chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        /**
+         * the encoded bytes not yet read, at most 3 bytes per character
+         */
+        private final ByteBuffer bytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE * 3);
+        /**
+         * encodes the characters, replacing an unpaired surrogate
+         */
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        /**
+         * true once the Reader has no more characters
+         */
+        private boolean ended;
+
+        /**
+         * Creates a ReaderInputStream.
+         * @param reader  the Reader the characters are read from.
+         */
+        ReaderInputStream(Reader reader) {
+            this.reader = reader;
+            this.chars.flip();
+            this.bytes.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return bytes.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] into, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, bytes.remaining());
+            bytes.get(into, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        /**
+         * Encodes more characters once every encoded byte was read.
+         * @return  false if there are no more bytes.
+         * @throws IOException  if the Reader cannot be read.
+         */
+        private boolean fill() throws IOException {
+            while (!bytes.hasRemaining()) {
+                if (ended) {
+                    return false;
+                }
+                chars.compact();
+                ended = reader.read(chars) < 0;
+                chars.flip();
+                bytes.clear();
+                encoder.encode(chars, bytes, ended);
+                if (ended) {
+                    encoder.flush(bytes);
+                }
+                bytes.flip();
+            }
+            return true;
+        }
+    }
+}
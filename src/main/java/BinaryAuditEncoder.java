@@ -0,0 +1,79 @@
+/**
+ * BinaryAuditEncoder.java defines the BinaryAuditEncoder class, which writes AuditEvents as a
+ * compact binary audit file that AuditReader reads back.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A BinaryAuditEncoder writes AUDIT_MAGIC and a version byte at the start of a new file, then one
+ * record per event. A record is the length of the rest of the record as a varint, the type code
+ * byte, the number of names as a varint, each name as the varint length of its UTF-8 bytes and
+ * the bytes, the number of values as a varint, then each value as a varint. Varints are written
+ * like the fields of a binary ballot file, see BallotConverter.writeVarint(). The length lets a
+ * reader skip records of types it does not know.
+ */
+public class BinaryAuditEncoder implements AuditEncoder {
+
+    /**
+     * the first bytes of a binary audit file
+     */
+    static final byte[] AUDIT_MAGIC = {(byte) 0x89, 'V', 'B', 'A'};
+    /**
+     * the version of the binary audit format
+     */
+    static final int AUDIT_VERSION = 1;
+
+    @Override
+    public String getExtension() {
+        return "vba";
+    }
+
+    @Override
+    public void begin(OutputStream out) throws IOException {
+        out.write(AUDIT_MAGIC);
+        out.write(AUDIT_VERSION);
+    }
+
+    @Override
+    public void encode(AuditEvent event, OutputStream out) throws IOException {
+        //the length is counted first so the record can be written straight to the stream
+        int length = 1 + varintLength(event.getNumNames()) + varintLength(event.getNumValues());
+        for (int i = 0; i < event.getNumNames(); i++) {
+            int nameLength = AuditWriter.utf8Length(event.getName(i));
+            length += varintLength(nameLength) + nameLength;
+        }
+        for (int i = 0; i < event.getNumValues(); i++) {
+            length += varintLength(event.getValue(i));
+        }
+
+        BallotConverter.writeVarint(out, length);
+        out.write(event.getType().getCode());
+        BallotConverter.writeVarint(out, event.getNumNames());
+        for (int i = 0; i < event.getNumNames(); i++) {
+            BallotConverter.writeVarint(out, AuditWriter.utf8Length(event.getName(i)));
+            AuditWriter.writeUtf8(out, event.getName(i));
+        }
+        BallotConverter.writeVarint(out, event.getNumValues());
+        for (int i = 0; i < event.getNumValues(); i++) {
+            BallotConverter.writeVarint(out, event.getValue(i));
+        }
+    }
+
+    /**
+     * Counts the bytes BallotConverter.writeVarint() writes for a value.
+     * @param value  the value, negative values take 5 bytes.
+     * @return  the number of bytes, 1 to 5.
+     */
+    static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
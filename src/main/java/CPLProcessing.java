@@ -3,6 +3,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 /**
  * CPLProcessing.java
  *
@@ -45,6 +46,15 @@ public class CPLProcessing implements IElectionProcessing {
      * auditFileOutput object for generating an audit file.
      */
     ProcessResults auditFileOutput;
+    /**
+     * The optional processing modes the election was run with.
+     */
+    private ElectionOptions options;
+    /**
+     * The number of parties and party names of the first file without whitespace, which every other file of the
+     * election must match.
+     */
+    private String partyHeader;
     /**
      * This is the constructor of a CPLProcessing object. It requires a location to the CPL election file. When this
      * constructor is called the processing of a CPL election as a whole is executed.
@@ -53,29 +63,61 @@ public class CPLProcessing implements IElectionProcessing {
      * @throws IOException Throws IOException with null as its error detail message.
      */
     public CPLProcessing(BufferedReader[] brs) throws IOException {
-        auditFileOutput = new ProcessResults("CPL");
-        auditFileOutput.addVotingType("Closed-Party-List");
-        this.parties = new ArrayList<>();
-        //Only need to call on one file to set parties
-        setParties(brs[0]);
+        this(brs, new ElectionOptions());
+    }
+
+    /**
+     * This is the constructor of a CPLProcessing object using the given processing options. When this
+     * constructor is called the processing of a CPL election as a whole is executed.
+     *
+     * @param brs Input stream of CPL election ballot files used to read parties in election.
+     * @param options The optional processing modes to run the election with.
+     * @throws IOException Throws IOException with null as its error detail message.
+     */
+    public CPLProcessing(BufferedReader[] brs, ElectionOptions options) throws IOException {
+        this(BallotTokenizer.fromReaders(brs), options);
+    }
+
+    /**
+     * This is the constructor of a CPLProcessing object reading each file through a BallotTokenizer. When this
+     * constructor is called the processing of a CPL election as a whole is executed.
+     *
+     * @param files Tokenizers of the CPL election ballot files, each positioned after the election type line.
+     * @param options The optional processing modes to run the election with.
+     * @throws IOException Throws IOException with null as its error detail message.
+     */
+    public CPLProcessing(BallotTokenizer[] files, ElectionOptions options) throws IOException {
+        this.options = options;
+        auditFileOutput = new ProcessResults(options.getAuditDirectory(), "CPL", options.getAuditLabel(),
+                AuditEncoder.forName(options.getAuditFormat()), options.getAuditChainInterval());
+        //the audit file is written out and closed even if the ballots cannot be read
         try {
-            distributeBallots(brs[0], this.parties);
-            for (int i = 1; i < brs.length; i++) {
-                // Skips first lines containing number of parties, party names, and candidates.
-                int numParties = Integer.parseInt(brs[i].readLine());
-                for (int j = 0; j < numParties + 1; j++) {
-                    brs[i].readLine();
-                }
-                distributeBallots(brs[i], this.parties);
+            auditFileOutput.addVotingType("Closed-Party-List");
+            this.parties = new ArrayList<>();
+            //Only need to call on one file to set parties
+            setParties(files[0]);
+            try {
+                // Files are read at the same time, each file after the first must list the same parties and candidates.
+                int[] seatsPerFile = new int[files.length];
+                List<ChunkedBallotParser.Tally> tallies = ChunkedBallotParser.parseEach(files, options.getIngestThreads(),
+                        (fileIndex, file) -> {
+                            if (fileIndex > 0) {
+                                checkParties(fileIndex, file);
+                            }
+                            return readBallots(file, fileIndex, seatsPerFile);
+                        });
+                distributeBallots(tallies, seatsPerFile, this.parties);
+                distributeSeats();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-            distributeSeats();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        for(Party curParty : this.parties) {
-            auditFileOutput.addParty(curParty.getParty(), curParty.getCandidates(), curParty.getBallotCount());
+            for(Party curParty : this.parties) {
+                auditFileOutput.addParty(curParty.getParty(), curParty.getCandidates(), curParty.getBallotCount());
+            }
+            processElection();
+        } finally {
+            auditFileOutput.close();
         }
-        processElection();
     }
 
     /**
@@ -150,20 +192,21 @@ public class CPLProcessing implements IElectionProcessing {
      * into a String array. The string array of the parties is then iterated through to create individual party objects
      * and their corresponding candidates.
      *
-     * @param br Input stream of CPL election ballot file used to read parties in election.
+     * @param file Tokenizer of CPL election ballot file used to read parties in election.
      * @throws IOException Throws IOException with null as its error detail message.
      */
-    private void setParties(BufferedReader br) throws IOException {
+    private void setParties(BallotTokenizer file) throws IOException {
         // Gets number if parties (2nd Line)
-        int numParties = Integer.parseInt(br.readLine());
+        int numParties = Integer.parseInt(file.readLine().trim());
         setNumParties(numParties);
         // Gets list of party names (3rd line)
-        String curLine = br.readLine();
+        String curLine = file.readLine();
+        this.partyHeader = numParties + "\n" + curLine.replaceAll("\\s+", "");
         String[] partyNames = curLine.split(",");
         // Reads candidates of each party and creates a Party object with respective party name and candidates
         int numCandidates = 0;
         for (int i = 0; i < numParties; i++) {
-            curLine = br.readLine();
+            curLine = file.readLine();
             ArrayList<String> candidatesOfParty = new ArrayList<>(Arrays.asList(curLine.split(",")));
             // Removes extra spaces at beginning of candidate name
             for (int j = 0; j < candidatesOfParty.size(); j++) {
@@ -176,43 +219,113 @@ public class CPLProcessing implements IElectionProcessing {
         setNumCandidates(numCandidates);
     }
     /**
-     * distributeBallots reads through the ballots for CPL election and disburses votes to their according party.
+     * checkParties reads the party lines of a file after the first and checks its parties match the first file.
+     * Only the parties decide what each ballot column means, so the candidate lines are skipped and those of the
+     * first file are used.
      *
-     * @param br Input stream of CPL election ballot file.
-     * @param parties Array of the parties in the CPL election.
-     * @throws IOException throws IOException with null as its error detail message.
+     * @param fileIndex Position of the file in the election's file list.
+     * @param file Tokenizer of CPL election ballot file, positioned at its number of parties line.
+     * @throws IOException throws IOException if the parties differ or the file cannot be read.
+     */
+    private void checkParties(int fileIndex, BallotTokenizer file) throws IOException {
+        String numParties = file.readLine();
+        String partyNames = file.readLine();
+        if (numParties == null || partyNames == null
+                || !partyHeader.equals(numParties.trim() + "\n" + partyNames.replaceAll("\\s+", ""))) {
+            throw new IOException("File " + (fileIndex + 1) + " does not list the same parties as the first file");
+        }
+        // Skips the candidate lines
+        for (int i = 0; i < getNumParties(); i++) {
+            file.skipLine();
+        }
+    }
+    /**
+     * readBallots reads the seats and ballots of one CPL election ballot file. May run on a separate thread for
+     * each file, so it only reads the file and the election's options.
+     * Ballot lines are parsed in place by the tokenizer, in parallel chunks for a large mapped file. They are read
+     * until the end of the file, a declared number of ballots that does not match is only reported.
+     *
+     * @param file Tokenizer of CPL election ballot file, positioned at its number of seats line.
+     * @param fileIndex Position of the file in the election's file list.
+     * @param seatsPerFile Receives the number of seats of the file at fileIndex.
+     * @return Tally of the votes for each party in the file.
+     * @throws IOException throws IOException if the file cannot be read.
      */
-    private void distributeBallots(BufferedReader br, ArrayList<Party> parties) throws IOException {
+    private ChunkedBallotParser.Tally readBallots(BallotTokenizer file, int fileIndex, int[] seatsPerFile)
+            throws IOException {
 
         // Reads number of available seats
-        int numSeats = Integer.parseInt(br.readLine());
-        setNumSeats(numSeats);
-
-        // Reads number of ballots that were submitted
-        int numBallots = Integer.parseInt(br.readLine());
-        setNumBallots(getNumBallots() + numBallots);
-
-        // Iterate through each line and look for ballot vote position
-        for(int i = 0; i < numBallots; i++){
+        seatsPerFile[fileIndex] = Integer.parseInt(file.readLine().trim());
 
-            // Go char by char for each ballot make string 1st
-            String currentBallot = br.readLine();
-            // Convert Ballot string into char array
-            char[] ballotArray = currentBallot.toCharArray();
-
-            // Iterate through the char array and distribute ballot
-            for(int j = 0; j < ballotArray.length; j++){
-
-                if(ballotArray[j] == ','){
-                    continue;
-                }
+        // Reads number of ballots that were submitted, blank if the producer did not know it
+        int numBallots = file.readCount();
+        int numParties = getNumParties();
 
-                else if(ballotArray[j] == '1'){
-                    // Unsure here if we can do this, maybe we create setter in Party class to set ballot count
-                    parties.get(j).setBallotCount(parties.get(j).getBallotCount() + 1);
-                }
+        // Votes are tallied per column, in parallel chunks for a large mapped file
+        ChunkedBallotParser.Tally tally;
+        if (ChunkedBallotParser.canSplit(file, options.getParseChunkSize())) {
+            tally = new ChunkedBallotParser.Tally(numParties);
+            for (ChunkedBallotParser.Tally part : ChunkedBallotParser.parse(file, options.getParseChunkSize(),
+                    chunk -> tallyBallots(chunk, numParties))) {
+                tally.add(part);
+            }
+        } else {
+            tally = tallyBallots(file, numParties);
+        }
+        BallotTokenizer.checkCount(fileIndex, numBallots, tally.getBallots());
+        return tally;
+    }
+    /**
+     * distributeBallots disburses the votes read from every file to their according party.
+     *
+     * @param tallies Tally of each file, in file order.
+     * @param seatsPerFile Number of seats given by each file.
+     * @param parties Array of the parties in the CPL election.
+     * @throws IOException throws IOException if the files give different numbers of seats.
+     */
+    private void distributeBallots(List<ChunkedBallotParser.Tally> tallies, int[] seatsPerFile,
+                                   ArrayList<Party> parties) throws IOException {
+        for (int i = 1; i < seatsPerFile.length; i++) {
+            if (seatsPerFile[i] != seatsPerFile[0]) {
+                throw new IOException("File " + (i + 1) + " does not have the same number of seats as the first file");
+            }
+        }
+        setNumSeats(seatsPerFile[0]);
+        for (ChunkedBallotParser.Tally tally : tallies) {
+            setNumBallots(getNumBallots() + tally.getBallots());
+            for (int j = 0; j < parties.size(); j++) {
+                parties.get(j).setBallotCount(parties.get(j).getBallotCount() + tally.getVotes()[j]);
+            }
+        }
+    }
+    /**
+     * tallyBallots counts the votes on every ballot line up to the end of the input, skipping empty lines. A 1 in a
+     * column is a vote for the party in that column.
+     *
+     * @param file Tokenizer positioned at a ballot line.
+     * @param numParties Number of parties in the CPL election.
+     * @return Tally of the votes for each party and the number of ballots read.
+     * @throws IOException throws IOException if a ballot line cannot be read.
+     */
+    private static ChunkedBallotParser.Tally tallyBallots(BallotTokenizer file, int numParties)
+            throws IOException {
+        ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numParties);
+        int[] votes = tally.getVotes();
+        BallotTokenizer.FieldHandler vote = (column, value) -> {
+            if (value == 1) {
+                votes[column]++;
+            }
+        };
+        while (true) {
+            int fields = file.readRecord(vote);
+            if (fields < 0) {
+                break;
+            }
+            if (fields > 0) {
+                tally.addBallot();
             }
         }
+        return tally;
     }
     /**
      * This method processes the winners of the CPL election and details to their election process. This displays
@@ -227,17 +340,26 @@ public class CPLProcessing implements IElectionProcessing {
         System.out.println("Number of seats: " + getNumSeats());
         System.out.println("Number of ballots: " + getNumBallots());
         System.out.println("---------- Seats that are allocated ----------");
-        for (Party party : parties) {
-            for (int i = 0; i < party.getNumSeats(); i++) {
-                String candidateWinner = party.getCandidates().get(i);
-                seatWinners += candidateWinner + ",";
-                System.out.println(candidateWinner + " (" + party.getParty() + ")");
-                try {
-                    auditFileOutput.addSeatWinner(party.getParty(), party.getCandidates().get(i), party.getBallotCount());
-                } catch (IOException e) {
-                    e.printStackTrace();
+        try {
+            for (Party party : parties) {
+                for (int i = 0; i < party.getNumSeats(); i++) {
+                    String candidateWinner = party.getCandidates().get(i);
+                    seatWinners += candidateWinner + ",";
+                    System.out.println(candidateWinner + " (" + party.getParty() + ")");
+                    try {
+                        auditFileOutput.addSeatWinner(party.getParty(), party.getCandidates().get(i), party.getBallotCount());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
+        } finally {
+            //the election is over or failed, write out the audit file and close it
+            try {
+                auditFileOutput.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
         return seatWinners;
     }
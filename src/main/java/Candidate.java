@@ -29,9 +29,20 @@ public class Candidate implements  IRepresentative {
      */
     private String candidateName;
     /**
-     * ArrayList of Ballots that represent the ballots belonging to a candidate
+     * the candidate's 0-based position in the candidate line of the election file, which is
+     * the value Ballots use to rank the candidate, -1 if the candidate is not on a ballot
+     */
+    private int candidateIndex;
+    /**
+     * ArrayList of Ballots that represent the ballots belonging to a candidate, each Ballot may
+     * stand for a group of identical ballots
      */
     private ArrayList<Ballot> ballots;
+    /**
+     * the heap of remaining candidates this Candidate reports ballot count changes to, null if
+     * the Candidate is not in one
+     */
+    private CandidateHeap heap;
 
     /**
      * Constructor for a Candidate object, creates a Candidate with specified party name and candidate name.
@@ -40,35 +51,85 @@ public class Candidate implements  IRepresentative {
      * @param candidateName  the candidate's name, Ex: Biden.
      */
     public Candidate(String partyName, String candidateName) {
+        this(partyName, candidateName, -1);
+    }
+
+    /**
+     * Constructor for a Candidate object, creates a Candidate with specified party name, candidate name
+     * and ballot index.
+     * Used to create Candidates when first reading from the election information csv file.
+     * @param partyName  the name of the political party the candidate belongs to, Ex: Democrat.
+     * @param candidateName  the candidate's name, Ex: Biden.
+     * @param candidateIndex  the candidate's 0-based position in the candidate line, Ex: 0 for the first
+     *                        candidate listed.
+     */
+    public Candidate(String partyName, String candidateName, int candidateIndex) {
         this.partyName = partyName;
         this.candidateName = candidateName;
+        this.candidateIndex = candidateIndex;
         this.ballots = new ArrayList<>();
     }
 
     /**
      * Removes a Ballot from a Candidate.
-     * Decrements ballotCount, the number of Ballots a candidate has.
+     * Decreases ballotCount, the number of ballots a candidate has, by the Ballot's weight.
      * @param index  the index correpsonding to the Ballot to remove
      */
     public void removeBallot(int index) {
-        ballots.remove(index);
-        this.ballotCount--;
+        Ballot removed = ballots.remove(index);
+        this.ballotCount -= removed.getWeight();
+        if (heap != null) {
+            heap.update(candidateIndex);
+        }
     }
 
 
     /**
      * Gives a Ballot to a Candidate.
-     * Increments that Candidates ballot count.
+     * Increases that Candidates ballot count by the Ballot's weight, so a group of
+     * identical ballots moves in one step.
      * @param nextBallot  the Ballot to give to the Candidate
      */
     public void addBallot(Ballot nextBallot) {
         this.ballots.add(nextBallot);
-        this.ballotCount++;
+        this.ballotCount += nextBallot.getWeight();
+        if (heap != null) {
+            heap.update(candidateIndex);
+        }
+    }
+
+
+    /**
+     * Gives several Ballots to a Candidate at once, in order.
+     * Increases that Candidates ballot count by the Ballots' total weight.
+     * @param nextBallots  the Ballots to give to the Candidate
+     */
+    public void addBallots(ArrayList<Ballot> nextBallots) {
+        this.ballots.addAll(nextBallots);
+        for (Ballot nextBallot : nextBallots) {
+            this.ballotCount += nextBallot.getWeight();
+        }
+        if (heap != null) {
+            heap.update(candidateIndex);
+        }
     }
 
 
     /**
-     * Gets the number of Ballots a Candidate has.
+     * Counts first choice votes for a Candidate without giving it Ballots.
+     * Used when a Candidate wins on first choices alone, so its ballots are never needed.
+     * @param votes  the number of ballots ranking the Candidate first
+     */
+    public void addVotes(int votes) {
+        this.ballotCount += votes;
+        if (heap != null) {
+            heap.update(candidateIndex);
+        }
+    }
+
+
+    /**
+     * Gets the number of ballots a Candidate has, counting every ballot in a group.
      * @return  an int representing the number of ballots a Candidate has
      */
     @Override
@@ -99,4 +160,23 @@ public class Candidate implements  IRepresentative {
     public String getCandidateName() {
         return this.candidateName;
     }
+
+
+    /**
+     * Sets the heap this Candidate reports ballot count changes to.
+     * Called by CandidateHeap when the Candidate is added to or removed from it.
+     * @param heap  the CandidateHeap holding this Candidate, or null if it was removed.
+     */
+    void setHeap(CandidateHeap heap) {
+        this.heap = heap;
+    }
+
+
+    /**
+     * Gets the Candidate's index, the value Ballots use to rank the Candidate.
+     * @return  an int representing the Candidate's 0-based position in the candidate line.
+     */
+    public int getCandidateIndex() {
+        return this.candidateIndex;
+    }
 }
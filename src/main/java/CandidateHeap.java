@@ -0,0 +1,194 @@
+/**
+ * CandidateHeap.java defines the CandidateHeap class, an indexed min-heap of the Candidates still
+ * in the running of an IR election, keyed by ballot count, used to find the loser of each round.
+ *
+ * @author Caleb Tracy, Ashton Berg.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A CandidateHeap keeps the remaining Candidates of an IR election ordered by ballot count so the
+ * candidates with the fewest ballots can be found without scanning every candidate.
+ * Candidates in the heap report every change to their ballot count through update(), which
+ * restores the heap order in O(log c) for c candidates.
+ */
+public class CandidateHeap {
+
+    /**
+     * every Candidate that can be in the heap, byIndex[i] has candidate index i
+     */
+    private final Candidate[] byIndex;
+    /**
+     * the heap itself, heap[0] is the candidate index with the fewest ballots
+     */
+    private final int[] heap;
+    /**
+     * position[i] is where candidate index i is in heap, -1 if it is not in the heap
+     */
+    private final int[] position;
+    /**
+     * the number of candidates in the heap
+     */
+    private int size;
+
+    /**
+     * Constructor for a CandidateHeap, builds a heap of the given Candidates and has each of them
+     * report their ballot count changes to it.
+     * @param candidates  the Candidates to add, whose candidate indices must be below numCandidates.
+     * @param numCandidates  the number of candidates in the election.
+     */
+    public CandidateHeap(ArrayList<Candidate> candidates, int numCandidates) {
+        this.byIndex = new Candidate[numCandidates];
+        this.heap = new int[numCandidates];
+        this.position = new int[numCandidates];
+        Arrays.fill(position, -1);
+        for (Candidate cand : candidates) {
+            int index = cand.getCandidateIndex();
+            byIndex[index] = cand;
+            heap[size] = index;
+            position[index] = size;
+            size++;
+            cand.setHeap(this);
+        }
+        //heapify from the last parent down to the root
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Restores the heap order after a Candidate's ballot count changed.
+     * Does nothing if the candidate is not in the heap.
+     * @param index  the candidate index of the Candidate whose ballot count changed.
+     */
+    public void update(int index) {
+        int at = position[index];
+        if (at < 0) {
+            return;
+        }
+        if (at > 0 && less(at, (at - 1) / 2)) {
+            siftUp(at);
+        }
+        else {
+            siftDown(at);
+        }
+    }
+
+    /**
+     * Removes a candidate from the heap, used when the candidate is eliminated.
+     * The Candidate stops reporting ballot count changes to the heap.
+     * @param index  the candidate index of the Candidate to remove.
+     */
+    public void remove(int index) {
+        int at = position[index];
+        if (at < 0) {
+            return;
+        }
+        size--;
+        if (at != size) {
+            swap(at, size);
+            update(heap[at]);
+        }
+        position[index] = -1;
+        byIndex[index].setHeap(null);
+    }
+
+    /**
+     * Gets every candidate tied for the fewest ballots.
+     * The tied candidates form a subtree at the root of the heap, so only the tied candidates
+     * and their direct children are visited.
+     * @return  the Candidates with the fewest ballots in candidate index order, empty if the heap
+     *          is empty.
+     */
+    public ArrayList<Candidate> minTies() {
+        ArrayList<Candidate> ties = new ArrayList<>();
+        if (size == 0) {
+            return ties;
+        }
+        int minCount = byIndex[heap[0]].getBallotCount();
+        int[] stack = new int[size + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int at = stack[--top];
+            if (at < size && byIndex[heap[at]].getBallotCount() == minCount) {
+                ties.add(byIndex[heap[at]]);
+                stack[top++] = 2 * at + 1;
+                stack[top++] = 2 * at + 2;
+            }
+        }
+        ties.sort((a, b) -> Integer.compare(a.getCandidateIndex(), b.getCandidateIndex()));
+        return ties;
+    }
+
+    /**
+     * Gets the number of candidates in the heap.
+     * @return  the number of candidates still in the heap.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the entry at a heap position up until its parent has no more ballots than it.
+     * @param at  the heap position to move.
+     */
+    private void siftUp(int at) {
+        while (at > 0) {
+            int parent = (at - 1) / 2;
+            if (!less(at, parent)) {
+                return;
+            }
+            swap(at, parent);
+            at = parent;
+        }
+    }
+
+    /**
+     * Moves the entry at a heap position down until neither child has fewer ballots than it.
+     * @param at  the heap position to move.
+     */
+    private void siftDown(int at) {
+        while (true) {
+            int smallest = at;
+            int left = 2 * at + 1;
+            int right = left + 1;
+            if (left < size && less(left, smallest)) {
+                smallest = left;
+            }
+            if (right < size && less(right, smallest)) {
+                smallest = right;
+            }
+            if (smallest == at) {
+                return;
+            }
+            swap(at, smallest);
+            at = smallest;
+        }
+    }
+
+    /**
+     * Compares the ballot counts of the candidates at two heap positions.
+     * @param a  the first heap position.
+     * @param b  the second heap position.
+     * @return  true if the candidate at a has fewer ballots than the candidate at b.
+     */
+    private boolean less(int a, int b) {
+        return byIndex[heap[a]].getBallotCount() < byIndex[heap[b]].getBallotCount();
+    }
+
+    /**
+     * Swaps the candidates at two heap positions.
+     * @param a  the first heap position.
+     * @param b  the second heap position.
+     */
+    private void swap(int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+        position[heap[a]] = a;
+        position[heap[b]] = b;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * CandidateRegistry.java defines the CandidateRegistry class, which indexes the Candidates of an
+ * IR election so they can be looked up by candidate index or name in constant time.
+ *
+ * @author Caleb Tracy, Ashton Berg.
+ */
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * A CandidateRegistry holds every Candidate in an IR election by candidate index, a map from
+ * candidate name to index, and which candidates are still in the running.
+ * Built once when the candidates are read, before any ballots are distributed.
+ */
+public class CandidateRegistry {
+
+    /**
+     * every Candidate in the election, byIndex[i] is the Candidate with candidate index i
+     */
+    private final Candidate[] byIndex;
+    /**
+     * maps each candidate's name to their candidate index
+     */
+    private final HashMap<String, Integer> indexByName;
+    /**
+     * bit i is set while the candidate with candidate index i has not been eliminated
+     */
+    private final BitSet alive;
+
+    /**
+     * Constructor for a CandidateRegistry, indexes the given Candidates and marks them all alive.
+     * @param candidates  the Candidates in the election, in candidate index order.
+     * @throws IllegalArgumentException  if a Candidate's index does not match its position.
+     */
+    public CandidateRegistry(Candidate[] candidates) {
+        this.byIndex = candidates.clone();
+        this.indexByName = new HashMap<>(candidates.length * 2);
+        this.alive = new BitSet(candidates.length);
+        for (int i = 0; i < candidates.length; i++) {
+            if (candidates[i].getCandidateIndex() != i) {
+                throw new IllegalArgumentException("Candidate " + candidates[i].getCandidateName()
+                        + " has index " + candidates[i].getCandidateIndex() + ", expected " + i);
+            }
+            indexByName.putIfAbsent(candidates[i].getCandidateName(), i);
+        }
+        alive.set(0, candidates.length);
+    }
+
+    /**
+     * Gets the Candidate with the given candidate index.
+     * @param index  the candidate index, as stored on Ballots.
+     * @return  the Candidate with that index.
+     */
+    public Candidate get(int index) {
+        return byIndex[index];
+    }
+
+    /**
+     * Gets the candidate index of the candidate with the given name.
+     * @param name  the candidate's name.
+     * @return  the candidate's index, -1 if no candidate has that name.
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Checks if a candidate is still in the running.
+     * @param index  the candidate index.
+     * @return  true if the candidate has not been eliminated, false otherwise.
+     */
+    public boolean isAlive(int index) {
+        return alive.get(index);
+    }
+
+    /**
+     * Gets the set of candidates still in the running, used by Ballots to skip eliminated
+     * candidates. The set is owned by the registry and must not be changed by callers.
+     * @return  a BitSet where bit i is set if the candidate with candidate index i is alive.
+     */
+    BitSet getAliveSet() {
+        return alive;
+    }
+
+    /**
+     * Marks a candidate as eliminated.
+     * @param index  the candidate index of the eliminated candidate.
+     */
+    public void eliminate(int index) {
+        alive.clear(index);
+    }
+
+    /**
+     * Gets the number of candidates still in the running.
+     * @return  the number of candidates that have not been eliminated.
+     */
+    public int aliveCount() {
+        return alive.cardinality();
+    }
+
+    /**
+     * Gets the number of candidates in the election, eliminated or not.
+     * @return  the number of candidates registered.
+     */
+    public int size() {
+        return byIndex.length;
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * ChunkedBallotParser.java defines the ChunkedBallotParser class, which splits the ballot lines of
+ * a memory-mapped election file into chunks that are parsed in parallel, and reads the files of a
+ * multi-file election at the same time.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ChunkedBallotParser splits the rest of a mapped election file, which holds only ballot lines,
+ * into chunks of about the same size that each start at the beginning of a line. A binary ballot
+ * file is split at the sync points of its index, each the start of a record, see
+ * BallotConverter.
+ * Every chunk is parsed on the common fork-join pool by its own BallotTokenizer, and each
+ * chunk's result is returned in file order, so the results can be merged as if the ballots
+ * were read one after another.
+ * The files of a multi-file election are read the same way, one task per file on a bounded
+ * pool, with results returned in file order.
+ */
+public class ChunkedBallotParser {
+
+    /**
+     * Parses the ballot lines of one chunk.
+     * @param <T>  the partial result of a chunk, Ex: a Tally.
+     */
+    public interface ChunkParser<T> {
+        /**
+         * Parses every ballot line of a chunk.
+         * @param chunk  a tokenizer over the chunk's lines only.
+         * @return  the chunk's partial result.
+         * @throws IOException  if a line cannot be parsed.
+         */
+        T parse(BallotTokenizer chunk) throws IOException;
+    }
+
+    /**
+     * Reads one file of a multi-file election.
+     * @param <T>  the partial result of a file.
+     */
+    public interface FileParser<T> {
+        /**
+         * Reads a file from just after its election type line.
+         * @param fileIndex  the position of the file in the election's file list, 0 for the first.
+         * @param file  a tokenizer over the file.
+         * @return  the file's partial result.
+         * @throws IOException  if the file cannot be read or does not match the first file.
+         */
+        T parse(int fileIndex, BallotTokenizer file) throws IOException;
+    }
+
+    /**
+     * The votes and number of ballots of part of a PO or CPL election.
+     */
+    public static class Tally {
+        /**
+         * votes[i] is the number of votes in column i
+         */
+        private final int[] votes;
+        /**
+         * the number of ballots counted
+         */
+        private int ballots;
+
+        /**
+         * Creates an empty tally.
+         * @param numColumns  the number of candidates or parties voted for.
+         */
+        public Tally(int numColumns) {
+            this.votes = new int[numColumns];
+        }
+
+        /**
+         * Gets the number of votes for each column.
+         * @return  the votes, indexed by column.
+         */
+        public int[] getVotes() {
+            return votes;
+        }
+
+        /**
+         * Gets the number of ballots counted.
+         * @return  the number of ballots.
+         */
+        public int getBallots() {
+            return ballots;
+        }
+
+        /**
+         * Counts one more ballot.
+         */
+        public void addBallot() {
+            ballots++;
+        }
+
+        /**
+         * Adds another tally's votes and ballots to this one.
+         * @param other  the tally to add.
+         */
+        public void add(Tally other) {
+            for (int i = 0; i < votes.length; i++) {
+                votes[i] += other.votes[i];
+            }
+            ballots += other.ballots;
+        }
+    }
+
+    /**
+     * Checks if the rest of a file is worth splitting into chunks.
+     * @param file  the tokenizer, positioned at the first ballot line.
+     * @param chunkSize  the number of bytes each thread parses.
+     * @return  true if the file is a mapped CSV file, or a mapped binary ballot file with a sync
+     *          index, and its remaining ballots span more than one chunk.
+     * @throws IOException  if the size or index of the file cannot be read.
+     */
+    public static boolean canSplit(BallotTokenizer file, int chunkSize) throws IOException {
+        FileChannel channel = file.getChannel();
+        if (channel == null) {
+            return false;
+        }
+        if (!file.isBinary()) {
+            return channel.size() - file.getPosition() > chunkSize;
+        }
+        BallotConverter.SyncIndex index = BallotConverter.SyncIndex.read(channel);
+        return index != null && index.size() > 1 && index.getOffset(0) == file.getPosition()
+                && index.getEnd() - file.getPosition() > chunkSize;
+    }
+
+    /**
+     * Parses the rest of a mapped file in parallel chunks, leaving the tokenizer at the end of the file.
+     * @param file  the tokenizer, positioned at the first ballot line, whose file is mapped.
+     * @param chunkSize  the number of bytes each thread parses, chunks are extended to the end of
+     *                   a line, or to a sync point of a binary ballot file.
+     * @param parser  parses the lines of one chunk, whose tokenizer gives positions and line
+     *                numbers in the whole file. The lines before a chunk are only counted when
+     *                a line number is asked for, Ex: for the error of a line that fails.
+     * @param <T>  the partial result of a chunk.
+     * @return  the result of every chunk, in file order.
+     * @throws IOException  if the file cannot be mapped or a line cannot be parsed.
+     * @throws IllegalArgumentException  if chunkSize is less than 1.
+     */
+    public static <T> List<T> parse(BallotTokenizer file, int chunkSize, ChunkParser<T> parser) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Parse chunk size must be at least 1, not " + chunkSize);
+        }
+        FileChannel channel = file.getChannel();
+        long firstStart = file.getPosition();
+        long firstLine = file.getLineNumber();
+        boolean binary = file.isBinary();
+        ArrayList<Long> starts = new ArrayList<>();
+        ArrayList<BallotTokenizer.LineCounter> linesBefore = new ArrayList<>();
+        long end;
+        if (binary) {
+            BallotConverter.SyncIndex index = BallotConverter.SyncIndex.read(channel);
+            //without an index, or not read from its first record, the file is one chunk
+            end = index == null ? channel.size() : index.getEnd();
+            starts.add(firstStart);
+            linesBefore.add(() -> firstLine);
+            if (index != null && index.size() > 0 && index.getOffset(0) == firstStart) {
+                for (int i = 1; i < index.size(); i++) {
+                    if (index.getOffset(i) >= starts.get(starts.size() - 1) + chunkSize) {
+                        long records = index.getRecords(i);
+                        starts.add(index.getOffset(i));
+                        linesBefore.add(() -> firstLine + records);
+                    }
+                }
+            }
+        }
+        else {
+            end = channel.size();
+            long start = firstStart;
+            while (start < end) {
+                long from = start;
+                starts.add(from);
+                linesBefore.add(() -> firstLine + countLines(channel, firstStart, from));
+                start = nextLineStart(channel, Math.min(start + chunkSize, end), end);
+            }
+        }
+        starts.add(end);
+
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < starts.size(); i++) {
+            long from = starts.get(i);
+            long to = starts.get(i + 1);
+            BallotTokenizer.LineCounter lines = linesBefore.get(i);
+            tasks.add(() -> {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                return parser.parse(new BallotTokenizer(chunk, from, binary, lines));
+            });
+        }
+
+        List<T> results = collect(ForkJoinPool.commonPool(), tasks);
+        file.skipToEnd();
+        return results;
+    }
+
+    /**
+     * Reads every file of a multi-file election, up to the given number at the same time.
+     * @param files  a tokenizer for each file, positioned just after the election type line.
+     * @param threads  the most files read at the same time, 1 to read them one after another.
+     * @param parser  reads one file.
+     * @param <T>  the partial result of a file.
+     * @return  the result of every file, in file order.
+     * @throws IOException  if a file cannot be read, the first failing file in file order is reported.
+     */
+    public static <T> List<T> parseEach(BallotTokenizer[] files, int threads, FileParser<T> parser)
+            throws IOException {
+        if (threads <= 1 || files.length == 1) {
+            List<T> results = new ArrayList<>();
+            for (int i = 0; i < files.length; i++) {
+                results.add(parser.parse(i, files[i]));
+            }
+            return results;
+        }
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            int fileIndex = i;
+            tasks.add(() -> parser.parse(fileIndex, files[fileIndex]));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.length));
+        try {
+            return collect(pool, tasks);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs tasks on an executor and waits for all of them.
+     * @param executor  the executor to run the tasks on.
+     * @param tasks  the tasks.
+     * @param <T>  the result of a task.
+     * @return  the result of every task, in task order.
+     * @throws IOException  if a task threw one, the first in task order is rethrown.
+     */
+    private static <T> List<T> collect(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> result : executor.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            //a ForkJoinPool wraps the checked exceptions of its Callables, once or twice when
+            //the exception is rethrown on another thread
+            Throwable cause = e.getCause();
+            while (cause != null && cause.getClass() == RuntimeException.class) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Counts the lines between two positions of a file.
+     * @param channel  the mapped file.
+     * @param from  the position of the first byte counted.
+     * @param to  the position after the last byte counted.
+     * @return  the number of '\n' bytes between the positions.
+     * @throws IOException  if the file cannot be read.
+     */
+    private static long countLines(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long lines = 0;
+        long at = from;
+        while (at < to) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), to - at));
+            int count = channel.read(buf, at);
+            if (count <= 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buf.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            at += count;
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after a position.
+     * @param channel  the mapped file.
+     * @param from  the position to search from.
+     * @param end  the end of the file.
+     * @return  the position just after the first '\n' at or after from - 1, or end if there is none.
+     * @throws IOException  if the file cannot be read.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long at = from - 1;
+        while (at < end) {
+            buf.clear();
+            int count = channel.read(buf, at);
+            if (count <= 0) {
+                return end;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buf.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += count;
+        }
+        return end;
+    }
+}
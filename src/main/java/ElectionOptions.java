@@ -0,0 +1,415 @@
+/**
+ * ElectionOptions.java defines the ElectionOptions class, which holds the optional processing modes
+ * that can be turned on for an election from the command line.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+/**
+ * ElectionOptions holds the optional processing modes for an election.
+ * Every mode is off by default, so an election run with a new ElectionOptions behaves exactly
+ * like an election run without one.
+ */
+public class ElectionOptions {
+
+    /**
+     * the default parallel threshold, below which splitting work between threads costs more
+     * than it saves
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 65536;
+    /**
+     * the default number of bytes of ballot lines parsed by one thread
+     */
+    public static final int DEFAULT_PARSE_CHUNK_SIZE = 1 << 23;
+
+    /**
+     * true if identical IR ballots should be collapsed into one weighted Ballot when read
+     */
+    private boolean groupBallots;
+    /**
+     * true if every mathematically defeated IR candidate should be eliminated in the same round
+     */
+    private boolean batchElimination;
+    /**
+     * a name added to the audit file name, null for none
+     */
+    private String auditLabel;
+    /**
+     * the directory audit files are written in, null for the working directory
+     */
+    private String auditDirectory;
+    /**
+     * the smallest number of items, such as the ballots of an eliminated candidate, that are
+     * worth splitting between threads
+     */
+    private int parallelThreshold;
+    /**
+     * the number of bytes of ballot lines each thread parses when a mapped file is split
+     */
+    private int parseChunkSize;
+    /**
+     * the most election files read at the same time
+     */
+    private int ingestThreads;
+    /**
+     * the directory parsed ballots are cached in between runs, null to not cache them
+     */
+    private String ballotCacheDirectory;
+    /**
+     * the file the source of each IR ballot is written to, null to not write one
+     */
+    private String provenanceFile;
+    /**
+     * true if IR ballots are read with only their first choice, the rest read when transferred
+     */
+    private boolean lazyRankings;
+    /**
+     * true if IR first choices are counted before any Ballots are made, to skip making them
+     * when a candidate wins on first choices
+     */
+    private boolean majorityFastPath;
+    /**
+     * true if the IR ballots exhausted in a round are written to the audit file as one record of
+     * index ranges, instead of one record per ballot
+     */
+    private boolean compactExhausted;
+    /**
+     * the format of the audit file, text, binary or jsonl
+     */
+    private String auditFormat;
+    /**
+     * the number of audit events between hash chain checkpoints, 0 if the audit file is not
+     * hash chained
+     */
+    private int auditChainInterval;
+
+    /**
+     * Constructor for an ElectionOptions object, creates options with every mode turned off.
+     */
+    public ElectionOptions() {
+        this.groupBallots = false;
+        this.batchElimination = false;
+        this.auditLabel = null;
+        this.auditDirectory = null;
+        this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+        this.parseChunkSize = DEFAULT_PARSE_CHUNK_SIZE;
+        this.ingestThreads = Runtime.getRuntime().availableProcessors();
+        this.ballotCacheDirectory = null;
+        this.provenanceFile = null;
+        this.lazyRankings = false;
+        this.majorityFastPath = false;
+        this.compactExhausted = false;
+        this.auditFormat = "text";
+        this.auditChainInterval = 0;
+    }
+
+    /**
+     * Applies a command line flag to the options.
+     * @param flag  the flag given by the user, Ex: --group-ballots.
+     * @return  true if the flag is a known option and was applied, false otherwise.
+     */
+    public boolean applyFlag(String flag) {
+        if (flag.equals("--group-ballots")) {
+            setGroupBallots(true);
+            return true;
+        }
+        if (flag.equals("--batch-eliminate")) {
+            setBatchElimination(true);
+            return true;
+        }
+        if (flag.equals("--lazy-rankings")) {
+            setLazyRankings(true);
+            return true;
+        }
+        if (flag.equals("--majority-fast-path")) {
+            setMajorityFastPath(true);
+            return true;
+        }
+        if (flag.equals("--compact-exhausted")) {
+            setCompactExhausted(true);
+            return true;
+        }
+        if (flag.startsWith("--audit-format=")) {
+            String format = flag.substring("--audit-format=".length());
+            if (AuditEncoder.forName(format) == null) {
+                return false;
+            }
+            setAuditFormat(format);
+            return true;
+        }
+        if (flag.startsWith("--audit-chain=")) {
+            try {
+                int interval = Integer.parseInt(flag.substring("--audit-chain=".length()));
+                if (interval < 1) {
+                    return false;
+                }
+                setAuditChainInterval(interval);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        if (flag.startsWith("--audit-label=")) {
+            setAuditLabel(flag.substring("--audit-label=".length()));
+            return true;
+        }
+        if (flag.startsWith("--audit-dir=")) {
+            setAuditDirectory(flag.substring("--audit-dir=".length()));
+            return true;
+        }
+        if (flag.startsWith("--ingest-threads=")) {
+            try {
+                setIngestThreads(Integer.parseInt(flag.substring("--ingest-threads=".length())));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            return true;
+        }
+        if (flag.startsWith("--ballot-cache=")) {
+            setBallotCacheDirectory(flag.substring("--ballot-cache=".length()));
+            return true;
+        }
+        if (flag.startsWith("--provenance=")) {
+            setProvenanceFile(flag.substring("--provenance=".length()));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if identical IR ballots are collapsed into weighted groups when read.
+     * @return  true if ballot grouping is turned on, false otherwise.
+     */
+    public boolean isGroupBallots() {
+        return groupBallots;
+    }
+
+    /**
+     * Sets whether identical IR ballots are collapsed into weighted groups when read.
+     * @param groupBallots  true to turn ballot grouping on, false to turn it off.
+     */
+    public void setGroupBallots(boolean groupBallots) {
+        this.groupBallots = groupBallots;
+    }
+
+    /**
+     * Checks if mathematically defeated IR candidates are eliminated together in one round.
+     * @return  true if batch elimination is turned on, false otherwise.
+     */
+    public boolean isBatchElimination() {
+        return batchElimination;
+    }
+
+    /**
+     * Sets whether mathematically defeated IR candidates are eliminated together in one round.
+     * @param batchElimination  true to turn batch elimination on, false to turn it off.
+     */
+    public void setBatchElimination(boolean batchElimination) {
+        this.batchElimination = batchElimination;
+    }
+
+    /**
+     * Gets the name added to the audit file name. Elections of the same type run at the same
+     * time without one are given numbered audit files, a label names them instead.
+     * @return  the audit label, null if none was set.
+     */
+    public String getAuditLabel() {
+        return auditLabel;
+    }
+
+    /**
+     * Sets the name added to the audit file name.
+     * @param auditLabel  the audit label, Ex: precinct12, or null for none.
+     */
+    public void setAuditLabel(String auditLabel) {
+        this.auditLabel = auditLabel;
+    }
+
+    /**
+     * Gets the directory audit files are written in.
+     * @return  the audit directory, null for the working directory.
+     */
+    public String getAuditDirectory() {
+        return auditDirectory;
+    }
+
+    /**
+     * Sets the directory audit files are written in.
+     * @param auditDirectory  the audit directory, Ex: audits, or null for the working directory.
+     */
+    public void setAuditDirectory(String auditDirectory) {
+        this.auditDirectory = auditDirectory;
+    }
+
+    /**
+     * Checks if the IR ballots exhausted in each round are written to the audit file as one
+     * record of sorted index ranges, Ex: 3-7, 9, instead of one record per ballot.
+     * @return  true if exhausted ballots are written as ranges, false otherwise.
+     */
+    public boolean isCompactExhausted() {
+        return compactExhausted;
+    }
+
+    /**
+     * Turns writing exhausted IR ballots as ranges on or off.
+     * @param compactExhausted  true to write one record of ranges per round.
+     */
+    public void setCompactExhausted(boolean compactExhausted) {
+        this.compactExhausted = compactExhausted;
+    }
+
+    /**
+     * Gets the format the audit file is written in.
+     * @return  text for the human-readable audit file, binary or jsonl.
+     */
+    public String getAuditFormat() {
+        return auditFormat;
+    }
+
+    /**
+     * Sets the format the audit file is written in.
+     * @param auditFormat  text, binary or jsonl, see AuditEncoder.forName().
+     */
+    public void setAuditFormat(String auditFormat) {
+        this.auditFormat = auditFormat;
+    }
+
+    /**
+     * Gets the number of audit events between the hash chain checkpoints of the audit file,
+     * which ends with a root hash, see AuditChain.
+     * @return  the checkpoint interval, or 0 if the audit file is not hash chained.
+     */
+    public int getAuditChainInterval() {
+        return auditChainInterval;
+    }
+
+    /**
+     * Sets the number of audit events between hash chain checkpoints.
+     * @param auditChainInterval  the checkpoint interval, or 0 for no hash chain.
+     */
+    public void setAuditChainInterval(int auditChainInterval) {
+        this.auditChainInterval = auditChainInterval;
+    }
+
+    /**
+     * Gets the smallest amount of work that is split between threads, Ex: an eliminated IR
+     * candidate needs at least this many ballots for them to be redistributed in parallel.
+     * @return  the parallel threshold.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the smallest amount of work that is split between threads.
+     * @param parallelThreshold  the parallel threshold, 1 to always split work, Integer.MAX_VALUE
+     *                           to never split work.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    /**
+     * Gets the number of bytes of ballot lines each thread parses. The ballots of a mapped file
+     * longer than this are split into chunks of about this size and parsed in parallel.
+     * @return  the parse chunk size in bytes.
+     */
+    public int getParseChunkSize() {
+        return parseChunkSize;
+    }
+
+    /**
+     * Sets the number of bytes of ballot lines each thread parses.
+     * @param parseChunkSize  the parse chunk size in bytes, at least 1, Integer.MAX_VALUE to never
+     *                        split a file.
+     */
+    public void setParseChunkSize(int parseChunkSize) {
+        this.parseChunkSize = Math.max(1, parseChunkSize);
+    }
+
+    /**
+     * Gets the most election files that are read at the same time, each on its own thread.
+     * @return  the number of ingest threads, defaults to the number of processors.
+     */
+    public int getIngestThreads() {
+        return ingestThreads;
+    }
+
+    /**
+     * Sets the most election files that are read at the same time.
+     * @param ingestThreads  the number of ingest threads, 1 to read the files one after another.
+     */
+    public void setIngestThreads(int ingestThreads) {
+        this.ingestThreads = Math.max(1, ingestThreads);
+    }
+
+    /**
+     * Gets the directory parsed ballots are cached in, so a rerun on the same election files
+     * loads their ballots instead of parsing them again.
+     * @return  the ballot cache directory, null if ballots are not cached.
+     */
+    public String getBallotCacheDirectory() {
+        return ballotCacheDirectory;
+    }
+
+    /**
+     * Sets the directory parsed ballots are cached in.
+     * @param ballotCacheDirectory  the ballot cache directory, Ex: .ballot-cache, or null to not cache ballots.
+     */
+    public void setBallotCacheDirectory(String ballotCacheDirectory) {
+        this.ballotCacheDirectory = ballotCacheDirectory;
+    }
+
+    /**
+     * Gets the file the source file and byte offset of each IR ballot is written to, so a
+     * ballot index in the audit file can be traced back to its line.
+     * @return  the provenance file, null if none is written.
+     */
+    public String getProvenanceFile() {
+        return provenanceFile;
+    }
+
+    /**
+     * Sets the file the source of each IR ballot is written to.
+     * @param provenanceFile  the provenance file, Ex: election.vbpi, or null to not write one.
+     */
+    public void setProvenanceFile(String provenanceFile) {
+        this.provenanceFile = provenanceFile;
+    }
+
+    /**
+     * Checks if IR ballots in mapped files are read with only their first choice, their other
+     * rankings read from the file the first time they are transferred. Has no effect on grouped
+     * ballots or on files read from a stream.
+     * @return  true if lazy rankings are turned on, false otherwise.
+     */
+    public boolean isLazyRankings() {
+        return lazyRankings;
+    }
+
+    /**
+     * Sets whether IR ballots in mapped files are read with only their first choice.
+     * @param lazyRankings  true to turn lazy rankings on, false to turn them off.
+     */
+    public void setLazyRankings(boolean lazyRankings) {
+        this.lazyRankings = lazyRankings;
+    }
+
+    /**
+     * Checks if IR first choices in mapped files are counted before any Ballots are made. A
+     * candidate with a majority of first choices wins without any Ballots being made, otherwise
+     * the ballots are read again in full. Has no effect when a provenance file is written.
+     * @return  true if the majority fast path is turned on, false otherwise.
+     */
+    public boolean isMajorityFastPath() {
+        return majorityFastPath;
+    }
+
+    /**
+     * Sets whether IR first choices in mapped files are counted before any Ballots are made.
+     * @param majorityFastPath  true to turn the majority fast path on, false to turn it off.
+     */
+    public void setMajorityFastPath(boolean majorityFastPath) {
+        this.majorityFastPath = majorityFastPath;
+    }
+}
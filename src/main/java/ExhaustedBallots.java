@@ -0,0 +1,220 @@
+/**
+ * ExhaustedBallots.java defines the ExhaustedBallots class, which reads the exhausted ballots of
+ * an IR election from its audit file so they can be looked up by ballot index.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * An ExhaustedBallots holds the ballots exhausted in an IR election as ranges of consecutive
+ * ballot indices, each with the round it was exhausted in, sorted by index so a ballot is looked
+ * up by a binary search. It reads binary, text and JSON lines audit files through an AuditLog,
+ * with exhausted ballots written either one per record or as ranges by --compact-exhausted.
+ * Rounds are counted by the losers removed before a ballot, so round 1 is the first
+ * elimination. An audit file holds every election of its type run on its date, so only the last
+ * election in the file is read.
+ * Usage: java ExhaustedBallots auditFile ballotIndex...
+ */
+public class ExhaustedBallots {
+
+    /**
+     * the first ballot index of each range
+     */
+    private int[] firsts;
+    /**
+     * the last ballot index of each range, inclusive
+     */
+    private int[] lasts;
+    /**
+     * the round each range was exhausted in
+     */
+    private int[] rounds;
+    /**
+     * the number of ranges
+     */
+    private int size;
+    /**
+     * the number of losers removed so far while reading, the round of the next exhausted ballot
+     */
+    private int losersRemoved;
+
+    /**
+     * Creates an ExhaustedBallots with no ballots.
+     */
+    public ExhaustedBallots() {
+        this.firsts = new int[16];
+        this.lasts = new int[16];
+        this.rounds = new int[16];
+        this.size = 0;
+        this.losersRemoved = 0;
+    }
+
+    /**
+     * Looks up ballots in an audit file and prints the round each was exhausted in.
+     * @param args  the audit file, then the ballot indices to look up.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("------USAGE: ExhaustedBallots auditFile ballotIndex...------");
+            return;
+        }
+        ExhaustedBallots exhausted = read(Paths.get(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            int index = Integer.parseInt(args[i]);
+            int round = exhausted.getRound(index);
+            if (round == 0) {
+                System.out.println("Ballot " + index + ": not exhausted");
+            }
+            else {
+                System.out.println("Ballot " + index + ": exhausted in round " + round);
+            }
+        }
+    }
+
+    /**
+     * Reads the exhausted ballots of the last election in an audit file of any format.
+     * @param auditFile  the audit file.
+     * @return  the exhausted ballots, sorted by index.
+     * @throws IOException  if the audit file cannot be read.
+     */
+    public static ExhaustedBallots read(Path auditFile) throws IOException {
+        ExhaustedBallots exhausted = new ExhaustedBallots();
+        try (AuditLog log = AuditLog.open(auditFile)) {
+            for (AuditEvent event = log.next(); event != null; event = log.next()) {
+                exhausted.add(event);
+            }
+        }
+        exhausted.sort();
+        return exhausted;
+    }
+
+    /**
+     * Adds what an event says about exhausted ballots, ignoring other events.
+     * @param event  the next event of the audit file.
+     */
+    void add(AuditEvent event) {
+        switch (event.getType()) {
+            case ELECTION_TYPE:
+                startElection();
+                break;
+            case LOSER_REMOVED:
+                losersRemoved++;
+                break;
+            case BALLOT_EXHAUSTED:
+                addRange(event.getValue(0), event.getValue(0), losersRemoved);
+                break;
+            case BALLOTS_EXHAUSTED:
+                for (int i = 1; i < event.getNumValues(); i += 2) {
+                    addRange(event.getValue(i), event.getValue(i + 1), event.getValue(0));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Forgets the ballots of the elections before the next one in the audit file.
+     */
+    private void startElection() {
+        size = 0;
+        losersRemoved = 0;
+    }
+
+    /**
+     * Adds a range of ballots exhausted in the same round, joining it to the range added before
+     * it when the two are consecutive, so ballots logged one at a time are kept as ranges too.
+     * @param first  the first ballot index of the range.
+     * @param last  the last ballot index of the range, inclusive.
+     * @param round  the round the ballots were exhausted in.
+     */
+    void addRange(int first, int last, int round) {
+        if (size > 0 && rounds[size - 1] == round && lasts[size - 1] + 1 == first) {
+            lasts[size - 1] = last;
+            return;
+        }
+        if (size == firsts.length) {
+            firsts = Arrays.copyOf(firsts, size * 2);
+            lasts = Arrays.copyOf(lasts, size * 2);
+            rounds = Arrays.copyOf(rounds, size * 2);
+        }
+        firsts[size] = first;
+        lasts[size] = last;
+        rounds[size] = round;
+        size++;
+    }
+
+    /**
+     * Sorts the ranges by their first ballot index, so ballots can be looked up.
+     */
+    void sort() {
+        //each range's first index and position are packed into a long, so one primitive sort orders them
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) firsts[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] sortedFirsts = new int[Math.max(16, size)];
+        int[] sortedLasts = new int[sortedFirsts.length];
+        int[] sortedRounds = new int[sortedFirsts.length];
+        for (int i = 0; i < size; i++) {
+            int from = (int) order[i];
+            sortedFirsts[i] = firsts[from];
+            sortedLasts[i] = lasts[from];
+            sortedRounds[i] = rounds[from];
+        }
+        firsts = sortedFirsts;
+        lasts = sortedLasts;
+        rounds = sortedRounds;
+    }
+
+    /**
+     * Gets the number of ranges the exhausted ballots are kept in.
+     * @return  the number of ranges.
+     */
+    public int getNumRanges() {
+        return size;
+    }
+
+    /**
+     * Gets the number of exhausted ballots.
+     * @return  the number of ballots in every range.
+     */
+    public long getNumBallots() {
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += (long) lasts[i] - firsts[i] + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the round a ballot was exhausted in.
+     * @param ballotIndex  the ballot's index.
+     * @return  the round, 1 for the first elimination, or 0 if the ballot was not exhausted.
+     */
+    public int getRound(int ballotIndex) {
+        //find the last range starting at or before the ballot
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firsts[mid] <= ballotIndex) {
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        if (high >= 0 && lasts[high] >= ballotIndex) {
+            return rounds[high];
+        }
+        return 0;
+    }
+}
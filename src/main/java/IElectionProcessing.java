@@ -11,6 +11,18 @@ import java.io.BufferedReader;
 /**
  * IElectionProcessing interface provides an outline for an election processing class.
  *
+ * Concurrency contract: all state of an election, including its candidates, ballots and the
+ * ProcessResults writing its audit file, belongs to one instance, and implementations must not
+ * keep election state in static fields. An instance is thread-confined: it is built and used by
+ * one thread at a time and is not safe to share without outside synchronization. Separate
+ * instances share no election state, so any number of elections can run on different threads
+ * at once. The one thing they can share is an audit file: elections of the same type run on
+ * the same day write to the same file one after another. A file is only open in one election
+ * at a time, from its first event until the election is done. An election without an audit
+ * label that starts while another has its file open writes a numbered file of its own, Ex:
+ * auditFile-IR-election2-10-18-2026.txt, and one given a label (ElectionOptions.setAuditLabel)
+ * that is in use fails with an IOException instead of mixing their events.
+ *
  * @author tracy255, Caleb Tracy.
  */
 public interface IElectionProcessing {
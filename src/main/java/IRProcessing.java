@@ -8,7 +8,13 @@
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * IRProcessing class used for processing an IR election.
@@ -18,10 +24,26 @@ import java.util.ArrayList;
  */
 public class IRProcessing implements IElectionProcessing {
 
+    /**
+     * the most Ballots a file's list is sized for up front from its declared number of ballots
+     */
+    private static final int MAX_PRESIZE = 1 << 20;
+
     /**
      * an ArrayList of Candidate objects that represents the candidates in the election
      */
-    private static ArrayList<Candidate> candidates;
+    private ArrayList<Candidate> candidates;
+    /**
+     * indexes every Candidate in the election by candidate index and name, used to resolve the
+     * candidate indices stored on Ballots. Unlike candidates, eliminated Candidates are not removed
+     * but marked as no longer alive.
+     */
+    private CandidateRegistry registry;
+
+    /**
+     * the remaining candidates ordered by ballot count, used to find each round's loser
+     */
+    private CandidateHeap loserHeap;
     /**
      * an integer that keeps track of the total number of ballots that were cast in an election.
      */
@@ -52,6 +74,34 @@ public class IRProcessing implements IElectionProcessing {
      */
     int curBallotIndex;
 
+    /**
+     * the optional processing modes this election was run with
+     */
+    private ElectionOptions options;
+
+    /**
+     * maps the ranking key of each distinct ranking sequence to the Ballot grouping every ballot
+     * with that sequence, only used while reading ballots with grouping turned on
+     */
+    private LinkedHashMap<Object, Ballot> ballotGroups;
+
+    /**
+     * the number of candidates and candidate line of the first file without whitespace, which
+     * every other file of the election must match
+     */
+    private String candidateHeader;
+
+    /**
+     * the file and byte offset each ballot was read from, null unless a provenance file was asked for
+     */
+    private BallotProvenance provenance;
+
+    /**
+     * the indices of the ballots exhausted in the current round, null unless exhausted ballots
+     * are written to the audit file as ranges
+     */
+    private BitSet exhaustedThisRound;
+
     /**
      * Calls the setCandidates() and distributeBallots() to set up the processing of an IR
      * election and then calls processElection() to process the election.
@@ -62,46 +112,105 @@ public class IRProcessing implements IElectionProcessing {
      *                      when called
      */
     public IRProcessing(BufferedReader[] brs) throws IOException {
+        this(brs, new ElectionOptions());
+    }
+
+    /**
+     * Calls the setCandidates() and distributeBallots() to set up the processing of an IR
+     * election and then calls processElection() to process the election, using the given
+     * processing modes.
+     * Writes to audit file information about election proceedings.
+     * @param brs  a BufferedReader Array, holds buffered readers that each buffer the input from a FileReader
+     *             that is reading from an election information csv file
+     * @param options  the optional processing modes to run the election with
+     * @throws IOException  throws an IOException if distributeBallots() throws an IOException
+     *                      when called
+     */
+    public IRProcessing(BufferedReader[] brs, ElectionOptions options) throws IOException {
+        this(BallotTokenizer.fromReaders(brs), options);
+    }
+
+    /**
+     * Calls the setCandidates() and distributeBallots() to set up the processing of an IR
+     * election and then calls processElection() to process the election, using the given
+     * processing modes.
+     * Writes to audit file information about election proceedings.
+     * @param files  a BallotTokenizer Array, holds a tokenizer for each election information csv
+     *               file, each positioned just after the election type line
+     * @param options  the optional processing modes to run the election with
+     * @throws IOException  throws an IOException if distributeBallots() throws an IOException
+     *                      when called
+     */
+    public IRProcessing(BallotTokenizer[] files, ElectionOptions options) throws IOException {
+        this.options = options;
         curBallotIndex = 0;
         candidates = new ArrayList<>();
         table = new ArrayList<>();
         exhausted_pile = new ArrayList<>();
 
         //Create ProcessResults objects for sending info to the audit file
-        auditFileOutput = new ProcessResults("IR");
-        auditFileOutput.addVotingType("Instant-Runoff");
+        auditFileOutput = new ProcessResults(options.getAuditDirectory(), "IR", options.getAuditLabel(),
+                AuditEncoder.forName(options.getAuditFormat()), options.getAuditChainInterval());
+        //the audit file is written out and closed even if the ballots cannot be read
+        try {
+            auditFileOutput.addVotingType("Instant-Runoff");
 
-        //Create candidates for candidates class variable
-        //Only need to call on one file
-        setCandidates(brs[0]);
+            //Create candidates for candidates class variable
+            //Only need to call on one file
+            setCandidates(files[0]);
 //
-        //Try to distribute the ballots, need to call on all files
-        try {
-            distributeBallots(brs[0]);
-            for(int i = 1; i < brs.length; i++){
-                //need to skip first three lines of files that weren't used in setCandidates()
-                //brs[i].readLine();
-                brs[i].readLine();
-                brs[i].readLine();
-                distributeBallots(brs[i]);
+            if (options.isCompactExhausted()) {
+                exhaustedThisRound = new BitSet();
+            }
 
+            //Identical ballots from every file are collected into one group each
+            if (options.isGroupBallots()) {
+                ballotGroups = new LinkedHashMap<>();
+            }
+
+            //Try to distribute the ballots, need to call on all files
+            try {
+                //A first choice majority is found without making any Ballots, otherwise the files are read again
+                boolean majority = false;
+                boolean candidatesChecked = false;
+                if (options.isMajorityFastPath() && options.getProvenanceFile() == null && isMapped(files)) {
+                    majority = countFirstChoices(files);
+                    //without a majority the files are back at their number of ballots lines
+                    candidatesChecked = !majority;
+                }
+                if (!majority) {
+                    readAllBallots(files, candidatesChecked);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
 
+            //Groups are complete once every file is read, give each to its first choice
+            if (ballotGroups != null) {
+                for (Ballot group : ballotGroups.values()) {
+                    registry.get(group.getNextCandidate()).addBallot(group);
+                }
+                ballotGroups = null;
+            }
+
+            //Counts are only kept in order once the initial ballots are given out
+            loserHeap = new CandidateHeap(candidates, registry.size());
 
-        //Add candidate info to the audit file
-        for(int i = 0; i < candidates.size(); i++) {
-            auditFileOutput.addCandidate(candidates.get(i).getCandidateName(), candidates.get(i).getParty(), candidates.get(i).getBallotCount());
-            //Add the name, party, and initial ballot count to the table
-            IRRow newRow = new IRRow(candidates.get(i).getCandidateName(), candidates.get(i).getParty());
-            newRow.add_stat(candidates.get(i).getBallotCount());
-            table.add(newRow);
-        }
 
-        //Start processing results
-        processElection();
+            //Add candidate info to the audit file
+            for(int i = 0; i < candidates.size(); i++) {
+                auditFileOutput.addCandidate(candidates.get(i).getCandidateName(), candidates.get(i).getParty(), candidates.get(i).getBallotCount());
+                //Add the name, party, and initial ballot count to the table
+                IRRow newRow = new IRRow(candidates.get(i).getCandidateName(), candidates.get(i).getParty());
+                newRow.add_stat(candidates.get(i).getBallotCount());
+                table.add(newRow);
+            }
+
+            //Start processing results
+            processElection();
+        } finally {
+            auditFileOutput.close();
+        }
     }
 
 
@@ -112,45 +221,69 @@ public class IRProcessing implements IElectionProcessing {
      */
     @Override
     public String processElection() {
-        //This while loop should never end, returns a winner before all candidates eliminated
-        while(candidates.size() > 0) {
-            //System.out.println("totalnumballots: " + totalNumBallots);   //debugging
-            //Loop through each candidate and check if they are a winner
-            for (Candidate curCand : candidates) {
-                //check if there is a winner with a majority number of ballots
-                //System.out.println("curcandcount -> " + curCand.getCandidateName() + ": " + curCand.getBallotCount());  //debugging
-                if (curCand.getBallotCount() > (totalNumBallots * 0.5)) {
-                    //winner is candidate
+        try {
+            //This while loop should never end, returns a winner before all candidates eliminated
+            while(candidates.size() > 0) {
+                //System.out.println("totalnumballots: " + totalNumBallots);   //debugging
+                //Loop through each candidate and check if they are a winner
+                for (Candidate curCand : candidates) {
+                    //check if there is a winner with a majority number of ballots
+                    //System.out.println("curcandcount -> " + curCand.getCandidateName() + ": " + curCand.getBallotCount());  //debugging
+                    if (curCand.getBallotCount() > (totalNumBallots * 0.5)) {
+                        //winner is candidate
+                        try {
+                            auditFileOutput.addWinner(curCand.getCandidateName(), curCand.getBallotCount());
+                        } catch (IOException e) { throw new RuntimeException(e); }
+                        System.out.println("----------WINNER: " + curCand.getCandidateName() + "----------");
+                        printTable();  //Print a table to terminal with election stats
+                        return curCand.getCandidateName();  //currently return is not used
+                    }
+                    //do not need to account for the possibility of a two-way tie, handled in determineLoser
+                }
+                //In batch mode, drop every candidate who can no longer win in one round
+                ArrayList<Candidate> defeated = new ArrayList<>();
+                if (options.isBatchElimination()) {
+                    defeated = determineDefeated();
+                }
+                if (defeated.size() > 1) {
+                    String[] names = new String[defeated.size()];
+                    int[] finalCounts = new int[defeated.size()];
+                    for (int i = 0; i < defeated.size(); i++) {
+                        names[i] = defeated.get(i).getCandidateName();
+                        finalCounts[i] = defeated.get(i).getBallotCount();
+                        IRRow row = table.get(defeated.get(i).getCandidateIndex());
+                        row.setEliminated(row.get_length(), true);
+                    }
                     try {
-                        auditFileOutput.addWinner(curCand.getCandidateName(), curCand.getBallotCount());
+                        auditFileOutput.addBatchLosers(names, finalCounts);
                     } catch (IOException e) { throw new RuntimeException(e); }
-                    System.out.println("----------WINNER: " + curCand.getCandidateName() + "----------");
-                    printTable();  //Print a table to terminal with election stats
-                    return curCand.getCandidateName();  //currently return is not used
+                    //redistributeBallots accordingly, removes every defeated candidate in one pass
+                    redistributeBallots(defeated);
+                }
+                else {
+                    //Call determineLoser, if only two left check for a tie and break it (look at activity diagram for order)
+                    Candidate loser = determineLoser();
+                    try {
+                        auditFileOutput.addLoser(loser.getCandidateName(), loser.getBallotCount());
+                    } catch (IOException e) { throw new RuntimeException(e); }
+                    IRRow row = table.get(loser.getCandidateIndex());
+                    row.setEliminated(row.get_length(), false);
+                    //redistributeBallots accordingly, removes losing candidate
+                    redistributeBallots(loser);
                 }
-                //do not need to account for the possibility of a two-way tie, handled in determineLoser
-            }
-            //Call determineLoser, if only two left check for a tie and break it (look at activity diagram for order)
-            Candidate loser = determineLoser();
-            try {
-                auditFileOutput.addLoser(loser.getCandidateName(), loser.getBallotCount());
-            } catch (IOException e) { throw new RuntimeException(e); }
-            //redistributeBallots accordingly, removes losing candidate
-            redistributeBallots(loser);
 
-            //Update table, some candidates may be removed so check if the candidate still exists.
-            for(int i = 0; i < candidates.size(); i++) {
-                String candName = candidates.get(i).getCandidateName();
-                //Check every row to find the candidate
-                for(int x = 0; x < table.size(); x++) {
-                    if(table.get(x).getCandName().equals(candName)) {
-                        int curNumBallots = candidates.get(i).getBallotCount();
-                        table.get(x).add_stat(curNumBallots);
-                    }
+                //Update table, rows are in candidate index order so only remaining candidates are updated.
+                for (Candidate curCand : candidates) {
+                    table.get(curCand.getCandidateIndex()).add_stat(curCand.getBallotCount());
                 }
             }
+            return "FAILURE";  //should never reach this point
+        } finally {
+            //the election is over or failed, write out the audit file and close it
+            try {
+                auditFileOutput.close();
+            } catch (IOException e) { throw new RuntimeException(e); }
         }
-        return "FAILURE";  //should never reach this point
     }
 
     /**
@@ -188,19 +321,43 @@ public class IRProcessing implements IElectionProcessing {
         return candidates;
     }
 
+    /**
+     * Gets the rows of the results table, one per candidate in candidate index order.
+     * @return  an ArrayList of IRRows holding each candidate's ballot count for every round
+     */
+    public ArrayList<IRRow> getTable() {
+        return table;
+    }
+
+    /**
+     * Gets the registry indexing every candidate in the election, including eliminated ones.
+     * @return  the CandidateRegistry for the election.
+     */
+    public CandidateRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets the file and byte offset each ballot was read from, by ballot index.
+     * @return  the BallotProvenance, null if no provenance file was asked for.
+     */
+    public BallotProvenance getProvenance() {
+        return provenance;
+    }
+
     /**
      * Reads from the election information csv file to create the Candidates.
-     * @param br  BufferedReader, buffers the input from a FileReader that is reading
-     *            from the election information csv file
+     * @param file  BallotTokenizer, reads the election information csv file
      */
-    private void setCandidates(BufferedReader br) {
+    private void setCandidates(BallotTokenizer file) {
         //Get the 2nd line of CSV file
         String curLine;
         try {
             //read the number of candidates, then the names
-            String numCands = br.readLine();
+            String numCands = file.readLine();
             auditFileOutput.addCandidateAmount(numCands);
-            curLine = br.readLine();
+            curLine = file.readLine();
+            candidateHeader = numCands.trim() + "\n" + curLine.replaceAll("\\s+", "");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -219,61 +376,440 @@ public class IRProcessing implements IElectionProcessing {
             //Make a new candidate
             //System.out.println("party: " +fixedPartyName);  //debugging
             //System.out.println("name: " + candData[0]);  //debugging
-            Candidate newCand = new Candidate(fixedPartyName, candData[0]);
+            Candidate newCand = new Candidate(fixedPartyName, candData[0], candidates.size());
             //Add new Candidate object into class variable candidates
             candidates.add(newCand);
         }
+        registry = new CandidateRegistry(candidates.toArray(new Candidate[0]));
+    }
+
+    /**
+     * Checks that a file lists the same candidates as the first file of the election.
+     * @param fileIndex  the position of the file in the election's file list.
+     * @param file  BallotTokenizer, positioned at the file's number of candidates line.
+     * @throws IOException  if the candidates differ or the file cannot be read.
+     */
+    private void checkCandidates(int fileIndex, BallotTokenizer file) throws IOException {
+        String numCands = file.readLine();
+        String curLine = file.readLine();
+        if (numCands == null || curLine == null
+                || !candidateHeader.equals(numCands.trim() + "\n" + curLine.replaceAll("\\s+", ""))) {
+            throw new IOException("File " + (fileIndex + 1) + " does not list the same candidates as the first file");
+        }
+    }
+
+    /**
+     * Reads the Ballots of every file and hands them to the Candidates in file order.
+     * Files are read at the same time, each on its own thread.
+     * @param files  a tokenizer for each file, the first positioned at its number of ballots line
+     *               and the others at their number of candidates line, or at their number of
+     *               ballots line if their candidates were already checked.
+     * @param candidatesChecked  true if the candidates of every file were already checked.
+     * @throws IOException  if a file cannot be read or does not list the same candidates.
+     */
+    private void readAllBallots(BallotTokenizer[] files, boolean candidatesChecked) throws IOException {
+        List<ParsedChunk> fileBallots = ChunkedBallotParser.parseEach(files, options.getIngestThreads(),
+                (fileIndex, file) -> {
+                    //files that weren't used in setCandidates() must list the same candidates
+                    if (fileIndex > 0 && !candidatesChecked) {
+                        checkCandidates(fileIndex, file);
+                    }
+                    return readBallots(fileIndex, file);
+                });
+        if (options.getProvenanceFile() != null) {
+            provenance = new BallotProvenance();
+        }
+        for (int i = 0; i < fileBallots.size(); i++) {
+            distributeBallots(fileBallots.get(i).ballots);
+            if (provenance != null) {
+                String name = files[i].getName() == null ? "file" + (i + 1) : files[i].getName();
+                provenance.addFile(name, fileBallots.get(i).offsets);
+            }
+        }
+        if (provenance != null) {
+            provenance.write(Paths.get(options.getProvenanceFile()));
+        }
+    }
+
+    /**
+     * Counts the first choice of every ballot without making Ballots. If a candidate has a
+     * majority of first choices the election is decided, so the counts are given to the
+     * Candidates directly. Otherwise every file is moved back to its number of ballots line to
+     * be read in full, so the count costs one extra pass over the ballot lines.
+     * @param files  a tokenizer for each mapped file, the first positioned at its number of
+     *               ballots line and the others at their number of candidates line.
+     * @return  true if a candidate has a majority and the ballots were counted, false if the
+     *          files were moved back.
+     * @throws IOException  if a file cannot be read or does not list the same candidates.
+     */
+    private boolean countFirstChoices(BallotTokenizer[] files) throws IOException {
+        int numCandidates = registry.size();
+        long[] starts = new long[files.length];
+        long[] startLines = new long[files.length];
+        int[] declared = new int[files.length];
+        List<ChunkedBallotParser.Tally> tallies = ChunkedBallotParser.parseEach(files, options.getIngestThreads(),
+                (fileIndex, file) -> {
+                    if (fileIndex > 0) {
+                        checkCandidates(fileIndex, file);
+                    }
+                    starts[fileIndex] = file.getPosition();
+                    startLines[fileIndex] = file.getLineNumber();
+                    declared[fileIndex] = file.readCount();
+                    if (!ChunkedBallotParser.canSplit(file, options.getParseChunkSize())) {
+                        return tallyFirstChoices(file, numCandidates);
+                    }
+                    ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numCandidates + 1);
+                    for (ChunkedBallotParser.Tally part : ChunkedBallotParser.parse(file, options.getParseChunkSize(),
+                            chunk -> tallyFirstChoices(chunk, numCandidates))) {
+                        tally.add(part);
+                    }
+                    return tally;
+                });
+
+        ChunkedBallotParser.Tally total = new ChunkedBallotParser.Tally(numCandidates + 1);
+        for (ChunkedBallotParser.Tally tally : tallies) {
+            total.add(tally);
+        }
+        //a ballot without a first choice is left for the full read to report
+        boolean majority = total.getVotes()[numCandidates] == 0;
+        if (majority) {
+            majority = false;
+            for (int i = 0; i < numCandidates; i++) {
+                if (total.getVotes()[i] > total.getBallots() * 0.5) {
+                    majority = true;
+                }
+            }
+        }
+        if (!majority) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].seek(starts[i], startLines[i]);
+            }
+            return false;
+        }
+
+        for (int i = 0; i < files.length; i++) {
+            BallotTokenizer.checkCount(i, declared[i], tallies.get(i).getBallots());
+        }
+        for (int i = 0; i < numCandidates; i++) {
+            registry.get(i).addVotes(total.getVotes()[i]);
+        }
+        curBallotIndex += total.getBallots();
+        totalNumBallots += total.getBallots();
+        initial_total += total.getBallots();
+        return true;
+    }
+
+    /**
+     * Counts the first choice of every ballot line of a file or of one chunk of a file. Every
+     * ranking of a line is checked, not only the first, so a file the full read would refuse is
+     * refused here too.
+     * @param file  a tokenizer positioned at a ballot line.
+     * @param numCandidates  the number of candidates in the election.
+     * @return  the number of ballots ranking each candidate first by candidate index, with the
+     *          number of ballots that rank no one in the last column.
+     * @throws IOException  if a ballot line cannot be read.
+     * @throws IllegalArgumentException  if a ranking is not a candidate number, or a ballot has
+     *                                   more rankings than there are candidates.
+     */
+    private static ChunkedBallotParser.Tally tallyFirstChoices(BallotTokenizer file, int numCandidates)
+            throws IOException {
+        ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numCandidates + 1);
+        int[] votes = tally.getVotes();
+        //the first choice of the line and the number of rankings read on it
+        int[] firstChoice = new int[2];
+        BallotTokenizer.FieldHandler rankings = (column, value) -> {
+            if (value < 1 || value > numCandidates || firstChoice[1] == numCandidates) {
+                throw new IllegalArgumentException("Invalid ranking " + value + " on line " + file.getLineNumber());
+            }
+            if (firstChoice[1]++ == 0) {
+                firstChoice[0] = value - 1;
+            }
+        };
+        while (true) {
+            firstChoice[0] = numCandidates;
+            firstChoice[1] = 0;
+            int fields = file.readRecord(rankings);
+            if (fields < 0) {
+                return tally;
+            }
+            if (fields > 0) {
+                votes[firstChoice[0]]++;
+                tally.addBallot();
+            }
+        }
+    }
+
+    /**
+     * Checks if every file is mapped, so its ballot lines can be read a second time.
+     * @param files  the tokenizers of the election's files.
+     * @return  true if every tokenizer reads a mapped file.
+     */
+    private static boolean isMapped(BallotTokenizer[] files) {
+        for (BallotTokenizer file : files) {
+            if (file.getChannel() == null) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Reads from the election information csv file to distribute Ballots to the Candidates.
-     * @param br  BufferedReader, buffers the input from a FileReader that is reading
-     *            from the election information csv file.
+     * Reads the ballots of one election information csv file. May run on a separate thread for
+     * each file, so it only reads the file and the election's options.
+     * Each ballot line is parsed in place by the tokenizer, so no Strings are made per ballot.
+     * The ballots of a mapped file longer than the parse chunk size are parsed in parallel chunks.
+     * Ballot lines are read until the end of the file. The declared number of ballots, if any, only
+     * sizes the list of Ballots and is reported when it does not match the lines read.
+     * @param fileIndex  the position of the file in the election's file list.
+     * @param file  BallotTokenizer, positioned at the file's number of ballots line.
+     * @return  the file's Ballots, or groups when grouping, numbered from 0 in file order, and
+     *          their offsets when a provenance file was asked for.
      * @throws IOException  if IO error occurs when reading file.
      */
-    private void distributeBallots(BufferedReader br) throws IOException {
-        //Get the 4th line of the CSV file
-        String nextLine = br.readLine();
-        //System.out.println("NUMBALLOTS: " + nextLine);
-        int ballotCount = Integer.parseInt(nextLine);
-        //int ballotIndex = 0;
-        //System.out.println("Read: " + ballotCount);  //debugging
-
-        //Loop through all the lines to create each individual ballot, O(2) time
-        for(int i = 0; i < ballotCount; i++) {
-            //Temporary variables for ballot creation
-            ArrayList<String> tempRankings = new ArrayList<>();
-            int curNumRankings = 0;
-            String[] ballotRankings = (br.readLine()).split(",");
-            //Go through each ranking and add accordingly
-            for(int y = 0; y < ballotRankings.length; y++) {
-                //Get candidates name for current position, if ranked add the candidates name
-                //into that position in the rankings accordingly
-                if(ballotRankings[y] != "") {
-                    int curRanking = Integer.parseInt(ballotRankings[y]);
-                    String candidateName = candidates.get(curRanking - 1).getCandidateName();
-                    //System.out.println("added: " + candidateName);  //debugging
-                    tempRankings.add(candidateName);
-                    //Increment the num rankings
-                    curNumRankings++;
+    private ParsedChunk readBallots(int fileIndex, BallotTokenizer file) throws IOException {
+        //Get the 4th line of the CSV file, blank if the producer did not know the number of ballots
+        int ballotCount = file.readCount();
+        int numCandidates = registry.size();
+        boolean group = options.isGroupBallots();
+        boolean track = options.getProvenanceFile() != null;
+        //grouping compares every ranking, so ballots are only read lazily when they are not grouped
+        LazyBallot.Source source = options.isLazyRankings() && !group ? LazyBallot.Source.of(file, numCandidates) : null;
+
+        ParsedChunk parsed;
+        if (ChunkedBallotParser.canSplit(file, options.getParseChunkSize())) {
+            List<ParsedChunk> chunks = ChunkedBallotParser.parse(file, options.getParseChunkSize(),
+                    chunk -> readChunk(chunk, numCandidates, group, 0, track, source));
+            //Chunks number their ballots from 0, so each is offset by the ballots before it
+            ArrayList<Ballot> ballots = new ArrayList<>();
+            BallotProvenance offsets = track ? new BallotProvenance() : null;
+            LinkedHashMap<Object, Ballot> groups = group ? new LinkedHashMap<>() : null;
+            int offset = 0;
+            for (ParsedChunk chunk : chunks) {
+                if (offsets != null) {
+                    offsets.addAll(chunk.offsets);
                 }
+                int chunkBallots = 0;
+                for (Ballot ballot : chunk.ballots) {
+                    ballot.offsetIndices(offset);
+                    chunkBallots += ballot.getWeight();
+                    if (groups == null) {
+                        ballots.add(ballot);
+                    }
+                    else {
+                        joinGroup(groups, ballot);
+                    }
+                }
+                offset += chunkBallots;
+            }
+            if (groups != null) {
+                ballots.addAll(groups.values());
             }
-            //Create the new ballot
-            //System.out.println("ballotIndex: " + ballotIndex);  //debugging
-            //System.out.println("curNumRankings: " + curNumRankings);  //debugging
-            Ballot tempBallot = new Ballot(curBallotIndex, curNumRankings, tempRankings);
+            parsed = new ParsedChunk(ballots, offsets);
+        }
+        else {
+            parsed = readChunk(file, numCandidates, group, group ? 0 : ballotCount, track, source);
+        }
+
+        int found = 0;
+        for (Ballot ballot : parsed.ballots) {
+            found += ballot.getWeight();
+        }
+        BallotTokenizer.checkCount(fileIndex, ballotCount, found);
+        return parsed;
+    }
+
+    /**
+     * Hands the ballots read from one file to the Candidates, numbering them after the ballots
+     * of the files before it.
+     * @param ballots  the file's Ballots, or groups, numbered from 0.
+     */
+    private void distributeBallots(ArrayList<Ballot> ballots) {
+        int fileBallots = 0;
+        for (Ballot ballot : ballots) {
+            ballot.offsetIndices(curBallotIndex);
+            fileBallots += ballot.getWeight();
+            addReadBallot(ballot);
+        }
+        //Move to the next file's first ballot number
+        curBallotIndex += fileBallots;
+        totalNumBallots += fileBallots;
+        initial_total += fileBallots;
+    }
+
+    /**
+     * Gives a newly read Ballot to its first choice, or to the group with the same rankings
+     * when ballots are grouped.
+     * @param ballot  the Ballot read, a single ballot or a group from a parsed chunk.
+     */
+    private void addReadBallot(Ballot ballot) {
+        if (ballotGroups != null) {
+            joinGroup(ballotGroups, ballot);
+        }
+        else {
             //Need to add this Ballot to it's first choice's Ballots
-            String candidateToFind = tempBallot.getNextCandidate();
-            for (Candidate curCand : candidates) {
-                if(curCand.getCandidateName().equals(candidateToFind)) {
-                    curCand.addBallot(tempBallot);
-                }
+            registry.get(ballot.getNextCandidate()).addBallot(ballot);
+        }
+    }
+
+    /**
+     * Adds a Ballot to the group with the same rankings, or starts a new group with it.
+     * @param groups  the groups so far, by ranking key, in order of first appearance.
+     * @param ballot  a single Ballot or a group whose ballots all come after the groups so far.
+     */
+    private static void joinGroup(LinkedHashMap<Object, Ballot> groups, Ballot ballot) {
+        Ballot group = groups.putIfAbsent(ballot.getRankingKey(), ballot);
+        if (group != null && ballot.getWeight() == 1) {
+            group.addMember(ballot.getIndex());
+        }
+        else if (group != null) {
+            for (int index : ballot.getMemberIndices()) {
+                group.addMember(index);
+            }
+        }
+    }
+
+    /**
+     * Reads the ballot lines of a file or of one chunk of a file, run by a parsing thread.
+     * @param chunk  a tokenizer positioned at a ballot line.
+     * @param numCandidates  the number of candidates in the election.
+     * @param group  true if identical ballots of the chunk are grouped.
+     * @param expected  the number of ballots expected, used to size the list, 0 or less if unknown.
+     * @param track  true to record the offset of each ballot's line.
+     * @param source  the mapped file to read LazyBallots' rankings from, null to read every ranking now.
+     * @return  the chunk's Ballots, or groups when grouping, numbered from 0 in the order read,
+     *          and their offsets if tracked.
+     * @throws IOException  if a ballot line cannot be parsed.
+     */
+    private static ParsedChunk readChunk(BallotTokenizer chunk, int numCandidates, boolean group, int expected,
+                                         boolean track, LazyBallot.Source source) throws IOException {
+        RankingReader reader = new RankingReader(chunk, numCandidates, source);
+        //a declared count is not trusted with more memory than a fixed cap
+        ArrayList<Ballot> ballots = new ArrayList<>(Math.max(10, Math.min(expected, MAX_PRESIZE)));
+        LinkedHashMap<Object, Ballot> groups = group ? new LinkedHashMap<>() : null;
+        BallotProvenance offsets = track ? new BallotProvenance() : null;
+        int index = 0;
+        Ballot ballot;
+        while ((ballot = reader.next(index)) != null) {
+            if (offsets != null) {
+                offsets.add(reader.getLineStart());
             }
-            //curCand.get(i).addBallot(tempBallot);
-            //Increment to the next ballot number
-            curBallotIndex++;
-            totalNumBallots++;
-            initial_total++;
+            if (groups == null) {
+                ballots.add(ballot);
+            }
+            else {
+                joinGroup(groups, ballot);
+            }
+            index++;
+        }
+        return new ParsedChunk(groups == null ? ballots : new ArrayList<>(groups.values()), offsets);
+    }
+
+    /**
+     * The Ballots read from a file or one chunk of a file, with the offset of each ballot's line.
+     */
+    private static class ParsedChunk {
+        /**
+         * the Ballots, or groups when grouping, numbered from 0 in the order read
+         */
+        final ArrayList<Ballot> ballots;
+        /**
+         * the offset of each ballot's line by ballot number, null if offsets are not tracked
+         */
+        final BallotProvenance offsets;
+
+        /**
+         * Creates a ParsedChunk.
+         * @param ballots  the Ballots read.
+         * @param offsets  the offsets of their lines, or null.
+         */
+        ParsedChunk(ArrayList<Ballot> ballots, BallotProvenance offsets) {
+            this.ballots = ballots;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Turns IR ballot lines into Ballots. Columns are in preference order, so each non-empty
+     * field is the candidate number of the next ranked candidate. One RankingReader reuses the
+     * same scratch rankings for every line, Ballot copies them into its packed form.
+     */
+    private static class RankingReader implements BallotTokenizer.FieldHandler {
+        /**
+         * the tokenizer the ballot lines are read from
+         */
+        private final BallotTokenizer file;
+        /**
+         * the candidate indices ranked on the current line
+         */
+        private final int[] rankings;
+        /**
+         * the number of candidates ranked on the current line so far
+         */
+        private int numRankings;
+        /**
+         * the offset of the last ballot line read
+         */
+        private long lineStart;
+        /**
+         * the mapped file LazyBallots read their rankings from, null to read every ranking now
+         */
+        private final LazyBallot.Source source;
+
+        /**
+         * Creates a RankingReader.
+         * @param file  the tokenizer, positioned at a ballot line.
+         * @param numCandidates  the number of candidates in the election.
+         * @param source  the mapped file of the tokenizer, to read only the first choice of each
+         *                line and make LazyBallots, or null to read every ranking.
+         */
+        RankingReader(BallotTokenizer file, int numCandidates, LazyBallot.Source source) {
+            this.file = file;
+            this.rankings = new int[numCandidates];
+            this.source = source;
+        }
+
+        /**
+         * Reads the next ballot line, skipping empty lines.
+         * @param ballotIndex  the ballot index to give the Ballot.
+         * @return  the Ballot, or null if there are no more lines.
+         * @throws IOException  if the line cannot be read.
+         */
+        Ballot next(int ballotIndex) throws IOException {
+            int fields;
+            do {
+                numRankings = 0;
+                lineStart = file.getPosition();
+                fields = source == null ? file.readRecord(this) : file.readFirstField(this);
+            } while (fields == 0);
+            if (fields < 0) {
+                return null;
+            }
+            if (source != null && numRankings == 1) {
+                return new LazyBallot(ballotIndex, rankings[0], source, lineStart);
+            }
+            return new Ballot(ballotIndex, numRankings, rankings);
+        }
+
+        /**
+         * Gets the offset of the line the last Ballot was read from.
+         * @return  the offset of the line in the tokenizer's input.
+         */
+        long getLineStart() {
+            return lineStart;
+        }
+
+        /**
+         * Adds the candidate in a field to the rankings.
+         * @param column  the column of the field.
+         * @param value  the 1-based candidate number.
+         */
+        @Override
+        public void field(int column, int value) {
+            if (value < 1 || value > rankings.length || numRankings == rankings.length) {
+                throw new IllegalArgumentException("Invalid ranking " + value + " on line "
+                        + file.getLineNumber());
+            }
+            rankings[numRankings++] = value - 1;
         }
     }
 
@@ -286,21 +822,8 @@ public class IRProcessing implements IElectionProcessing {
      * @return  the Candidate that is the loser
      */
     public Candidate determineLoser() {
-        int minVotes = Integer.MAX_VALUE;
-        int tempVotes;
-        ArrayList<Candidate> loserCandidates = new ArrayList<>();
-
-        for (Candidate candidate : candidates) {
-            tempVotes = candidate.getBallotCount();
-            if(tempVotes < minVotes){       //if candidate has fewer votes than current min, clear list and add them
-                minVotes = tempVotes;
-                loserCandidates.clear();
-                loserCandidates.add(candidate);
-            }
-            else if(tempVotes == minVotes){     //if candidate has same votes as current min, add them
-                loserCandidates.add(candidate);
-            }
-        }
+        //the heap holds every remaining candidate, so its minimum ties are the possible losers
+        ArrayList<Candidate> loserCandidates = loserHeap.minTies();
 
         //if only one min candidate, return them, else randomly choose loser
         if(loserCandidates.size() == 1){
@@ -317,6 +840,58 @@ public class IRProcessing implements IElectionProcessing {
     }
 
 
+    /**
+     * Determines which candidates are mathematically defeated and can be eliminated together.
+     * With the remaining candidates sorted by ballot count, the bottom k are defeated when their
+     * combined ballots are fewer than the ballots of the next candidate, since even receiving
+     * every transfer from each other they could never pass that candidate. The largest such k
+     * is used.
+     * @return  the defeated Candidates from fewest to most ballots, empty if fewer than two
+     *          candidates are defeated and the regular single elimination should be used
+     */
+    public ArrayList<Candidate> determineDefeated() {
+        ArrayList<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingInt(Candidate::getBallotCount));
+
+        long bottomSum = 0;
+        int numDefeated = 0;
+        //the top candidate can never be defeated, stop before them
+        for (int k = 1; k < sorted.size(); k++) {
+            bottomSum += sorted.get(k - 1).getBallotCount();
+            if (bottomSum < sorted.get(k).getBallotCount()) {
+                numDefeated = k;
+            }
+        }
+
+        if (numDefeated < 2) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(sorted.subList(0, numDefeated));
+    }
+
+
+    /**
+     * Takes several candidates eliminated in the same round and redistributes all of their ballots
+     * in one pass. Every candidate is marked eliminated before any ballot moves, so no ballot is
+     * transferred to a candidate who is being eliminated alongside it.
+     * Counts the ballots exhausted by the whole batch as one round of the exhausted pile.
+     * @param losers  the candidates whose votes will be redistributed
+     */
+    public void redistributeBallots(ArrayList<Candidate> losers) {
+        for (Candidate loser : losers) {
+            eliminate(loser);
+        }
+        int numDeletedBallots = 0;
+        for (Candidate loser : losers) {
+            numDeletedBallots += transferBallots(loser);
+            System.out.println("Removed candidate: " + loser.getCandidateName());
+        }
+        exhausted_pile.add(numDeletedBallots);
+        logExhaustedRound();
+        candidates.removeAll(losers);
+    }
+
+
     /**
      * Takes a candidate and redistributes their ballots to other candidates.
      * Gives each ballot to the next ranked candidate on that ballot.
@@ -324,57 +899,124 @@ public class IRProcessing implements IElectionProcessing {
      * @param cand  the candidate whose votes will be redistributed
      */
     public void redistributeBallots(Candidate cand) {
-        //nextCand is used in for each loop
-        String nextCand;
+        //Mark the candidate as eliminated first so ballots ranking them again are skipped
+        eliminate(cand);
+        int numDeletedBallots = transferBallots(cand);
+        System.out.println("Removed candidate: " + cand.getCandidateName());
+        exhausted_pile.add(numDeletedBallots);
+        logExhaustedRound();
+        candidates.remove(cand);
+    }
+
+
+    /**
+     * Marks a candidate as eliminated in the registry and takes them out of the loser heap.
+     * @param cand  the eliminated candidate
+     */
+    private void eliminate(Candidate cand) {
+        registry.eliminate(cand.getCandidateIndex());
+        loserHeap.remove(cand.getCandidateIndex());
+    }
+
+
+    /**
+     * Gives each ballot of an eliminated candidate to the next ranked candidate still in the
+     * running, logging ballots that have no such candidate left as removed.
+     * Candidates with at least ElectionOptions.getParallelThreshold() ballots are redistributed
+     * in parallel, which gives every candidate the same ballots in the same order.
+     * The candidate must already be marked eliminated in the registry.
+     * @param cand  the eliminated candidate whose ballots are moved
+     * @return  the number of ballots that were exhausted
+     */
+    private int transferBallots(Candidate cand) {
+        ArrayList<Ballot> ballots = cand.getBallots();
+        if (ballots.size() >= options.getParallelThreshold()) {
+            return transferBallotsParallel(ballots);
+        }
+
         int numDeletedBallots = 0;
-        for(Ballot curBallot: cand.getBallots()) {
-            System.out.println("ballot " + curBallot.getIndex() + " : " + curBallot.getNumRankings());
-            boolean updateBallotResult = curBallot.updateBallot(); //update ballot
+        BitSet aliveSet = registry.getAliveSet();
+        for(Ballot curBallot: ballots) {
+            //Skip over rankings of candidates who are no longer in the running
+            boolean updateBallotResult = curBallot.advance(aliveSet);
             if (!updateBallotResult) {  //if false is returned, delete this ballot (no more rankings)
                 //remove this ballot by ignoring it, once this candidate is deleted
                 //the ballots are destroyed by the garbage collector
-                System.out.println("REMOVED A BALLOT");
-                numDeletedBallots++;
-                totalNumBallots--;
+                numDeletedBallots += removeBallot(curBallot);
             }
             else {
-                Boolean checkIfCandExists = false;
-                outer: while(checkIfCandExists == false) {
-                    //If the candidate's name is in candidates, they are still is in the running
-                    for (Candidate curCand : candidates) {
-                        if (curBallot.getNextCandidate() == curCand.getCandidateName()) {
-                            checkIfCandExists = true;
-                            break outer;
-                        }
-                    }
-                    updateBallotResult = curBallot.updateBallot();
-                    if (!updateBallotResult) {  //if false is returned, delete this ballot (no more rankings)
-                        //remove this ballot by ignoring it, once this candidate is deleted
-                        //the ballots are destroyed by the garbage collector
-                        System.out.println("REMOVED A BALLOT - 2");
-                        numDeletedBallots++;
-                        try {
-                            auditFileOutput.removedBallot(curBallot.getIndex());
-                        } catch (IOException e) { throw new RuntimeException(e); }
-                        totalNumBallots--;
-                        break outer;
-                    }
-                }
+                //redistribute to candidate; addBallot() updates Candidate BallotCount
+                registry.get(curBallot.getNextCandidate()).addBallot(curBallot);
+            }
+        }
+        return numDeletedBallots;
+    }
 
-                if(checkIfCandExists == true) {
-                    nextCand = curBallot.getNextCandidate();  //get candidate to redistribute to
-                    for (Candidate curCand : candidates) {     //find candidate to redistribute to
-                        if (curCand.getCandidateName().equals(nextCand)) {
-                            //redistribute to candidate; addBallot() updates Candidate BallotCount
-                            curCand.addBallot(curBallot);
-                        }
-                    }
+
+    /**
+     * Redistributes ballots by advancing them in parallel into per-chunk buckets, then adding the
+     * buckets to the receiving candidates and logging exhausted ballots in chunk order.
+     * @param ballots  the ballots of the eliminated candidate
+     * @return  the number of ballots that were exhausted
+     */
+    private int transferBallotsParallel(ArrayList<Ballot> ballots) {
+        int workers = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int chunkSize = Math.max(1, (ballots.size() + workers - 1) / workers);
+        RedistributionTask.Buckets[] chunks =
+                RedistributionTask.run(ballots, registry.getAliveSet(), registry.size(), chunkSize);
+
+        int numDeletedBallots = 0;
+        for (RedistributionTask.Buckets chunk : chunks) {
+            for (int i = 0; i < registry.size(); i++) {
+                ArrayList<Ballot> received = chunk.getBallotsFor(i);
+                if (received != null) {
+                    registry.get(i).addBallots(received);
                 }
             }
+            for (Ballot exhausted : chunk.getExhausted()) {
+                numDeletedBallots += removeBallot(exhausted);
+            }
         }
-        System.out.println("Removed candidate: " + cand.getCandidateName());
-        exhausted_pile.add(numDeletedBallots);
-        candidates.remove(cand);
+        return numDeletedBallots;
+    }
+
+
+    /**
+     * Logs the ballots exhausted in the round that just ended as one record of index ranges, when
+     * exhausted ballots are written as ranges. Rounds are numbered by the exhausted pile, so the
+     * first elimination is round 1.
+     */
+    private void logExhaustedRound() {
+        if (exhaustedThisRound == null || exhaustedThisRound.isEmpty()) {
+            return;
+        }
+        try {
+            auditFileOutput.removedBallots(exhausted_pile.size(), exhaustedThisRound);
+        } catch (IOException e) { throw new RuntimeException(e); }
+        exhaustedThisRound.clear();
+    }
+
+
+    /**
+     * Removes an exhausted ballot from the election, logging every ballot it stands for.
+     * @param exhausted  the Ballot with no candidate left in the running
+     * @return  the number of ballots removed, the Ballot's weight
+     */
+    private int removeBallot(Ballot exhausted) {
+        try {
+            //a grouped Ballot stands for several ballots, each is logged
+            for (int index : exhausted.getMemberIndices()) {
+                if (exhaustedThisRound != null) {
+                    //logged with the rest of the round's ballots by logExhaustedRound()
+                    exhaustedThisRound.set(index);
+                }
+                else {
+                    auditFileOutput.removedBallot(index);
+                }
+            }
+        } catch (IOException e) { throw new RuntimeException(e); }
+        totalNumBallots -= exhausted.getWeight();
+        return exhausted.getWeight();
     }
 
     /**
@@ -459,5 +1101,18 @@ public class IRProcessing implements IElectionProcessing {
         System.out.format(alignment2, initial_total, initial_total);
         System.out.format("%n");
         System.out.format("-*---------------+---------------*+-------+-------+%n");
+
+        // Print the candidates dropped together by batch elimination, grouped by round
+        for(int round = 1; round <= maxCols; round++) {
+            String batch = "";
+            for(IRRow row : table) {
+                if(row.isBatchEliminated() && row.getEliminatedRound() == round) {
+                    batch += (batch.isEmpty() ? "" : ", ") + row.getCandName();
+                }
+            }
+            if(!batch.isEmpty()) {
+                System.out.format("BATCH ELIMINATED AFTER ROUND %d: %s%n", round, batch);
+            }
+        }
     }
 }
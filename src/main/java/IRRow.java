@@ -28,6 +28,16 @@ public class IRRow {
      */
     private ArrayList<Integer> ballot_stats;
 
+    /**
+     * The round after which the candidate was eliminated, 0 while the candidate is in the running.
+     */
+    private int eliminatedRound;
+
+    /**
+     * True if the candidate was eliminated together with others by batch elimination.
+     */
+    private boolean batchEliminated;
+
     /**
      * Constructor for an IRRow object.
      * @param candParty  the name of the political party the candidate belongs to, Ex: Democrat.
@@ -94,4 +104,30 @@ public class IRRow {
     public int get_length() {
         return this.ballot_stats.size();
     }
+
+    /**
+     * Records that the row's candidate was eliminated.
+     * @param round  the round after which the candidate was eliminated, starting at 1.
+     * @param batch  true if the candidate was eliminated together with others in a batch.
+     */
+    public void setEliminated(int round, boolean batch) {
+        this.eliminatedRound = round;
+        this.batchEliminated = batch;
+    }
+
+    /**
+     * Gets the round after which the row's candidate was eliminated.
+     * @return the round starting at 1, or 0 if the candidate was not eliminated
+     */
+    public int getEliminatedRound() {
+        return eliminatedRound;
+    }
+
+    /**
+     * Checks if the row's candidate was eliminated in a batch.
+     * @return true if the candidate was eliminated together with others, false otherwise
+     */
+    public boolean isBatchEliminated() {
+        return batchEliminated;
+    }
 }
@@ -0,0 +1,205 @@
+/**
+ * JsonAuditEncoder.java defines the JsonAuditEncoder class, which writes AuditEvents as
+ * newline-delimited JSON.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A JsonAuditEncoder writes each AuditEvent as one JSON object on its own line, with the event's
+ * type name under "event" and its names and values under keys for what they are,
+ * Ex: {"event":"winner","candidate":"caleb","ballots":3}. Candidates removed together by batch
+ * elimination are written as arrays, {"event":"loser_removed","candidates":[..],"ballots":[..]}, and
+ * the ranges of ballots exhausted in a round as [first,last] pairs,
+ * {"event":"ballots_exhausted","round":2,"ranges":[[3,7],[9,9]]}.
+ */
+public class JsonAuditEncoder implements AuditEncoder {
+
+    /**
+     * the hex digits used to escape control characters
+     */
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public String getExtension() {
+        return "jsonl";
+    }
+
+    @Override
+    public void encode(AuditEvent event, OutputStream out) throws IOException {
+        AuditWriter.writeUtf8(out, "{\"event\":\"");
+        AuditWriter.writeUtf8(out, event.getType().getJsonName());
+        out.write('"');
+        switch (event.getType()) {
+            case ELECTION_TYPE:
+                name(out, "election_type", event.getName(0));
+                break;
+            case CANDIDATE_COUNT:
+                value(out, "candidates", event.getValue(0));
+                break;
+            case CANDIDATE_REGISTERED:
+                name(out, "candidate", event.getName(0));
+                name(out, "party", event.getName(1));
+                value(out, "ballots", event.getValue(0));
+                break;
+            case BALLOT_EXHAUSTED:
+                value(out, "ballot", event.getValue(0));
+                break;
+            case BALLOTS_EXHAUSTED:
+                value(out, "round", event.getValue(0));
+                key(out, "ranges");
+                out.write('[');
+                for (int i = 1; i < event.getNumValues(); i += 2) {
+                    if (i > 1) {
+                        out.write(',');
+                    }
+                    out.write('[');
+                    AuditWriter.writeDecimal(out, event.getValue(i));
+                    out.write(',');
+                    AuditWriter.writeDecimal(out, event.getValue(i + 1));
+                    out.write(']');
+                }
+                out.write(']');
+                break;
+            case LOSER_REMOVED:
+                key(out, "candidates");
+                out.write('[');
+                for (int i = 0; i < event.getNumNames(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    string(out, event.getName(i));
+                }
+                out.write(']');
+                key(out, "ballots");
+                out.write('[');
+                for (int i = 0; i < event.getNumValues(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    AuditWriter.writeDecimal(out, event.getValue(i));
+                }
+                out.write(']');
+                break;
+            case PARTY_REGISTERED:
+                name(out, "party", event.getName(0));
+                key(out, "candidates");
+                out.write('[');
+                for (int i = 1; i < event.getNumNames(); i++) {
+                    if (i > 1) {
+                        out.write(',');
+                    }
+                    string(out, event.getName(i));
+                }
+                out.write(']');
+                value(out, "ballots", event.getValue(0));
+                break;
+            case SEAT_ALLOCATED:
+                name(out, "party", event.getName(0));
+                value(out, "seats", event.getValue(0));
+                value(out, "ballots", event.getValue(1));
+                value(out, "quota", event.getValue(2));
+                break;
+            case REMAINDER_SEAT_ALLOCATED:
+                name(out, "party", event.getName(0));
+                break;
+            case TIE_BROKEN:
+                name(out, "tied", event.getName(0));
+                name(out, "chosen", event.getName(1));
+                break;
+            case SEAT_WINNER:
+                name(out, "party", event.getName(0));
+                name(out, "candidate", event.getName(1));
+                value(out, "ballots", event.getValue(0));
+                break;
+            case WINNER:
+                name(out, "candidate", event.getName(0));
+                value(out, "ballots", event.getValue(0));
+                break;
+            case CHECKPOINT:
+            case ROOT_HASH:
+                value(out, "records", event.getValue(0));
+                name(out, "sha256", event.getName(0));
+                break;
+        }
+        out.write('}');
+        out.write('\n');
+    }
+
+    /**
+     * Writes a comma and a key, ready for its value.
+     * @param out  the stream of the audit file.
+     * @param key  the key, which needs no escaping.
+     * @throws IOException  if the stream cannot be written.
+     */
+    private static void key(OutputStream out, String key) throws IOException {
+        out.write(',');
+        out.write('"');
+        AuditWriter.writeUtf8(out, key);
+        out.write('"');
+        out.write(':');
+    }
+
+    /**
+     * Writes a key with a string value.
+     * @param out  the stream of the audit file.
+     * @param key  the key, which needs no escaping.
+     * @param text  the value.
+     * @throws IOException  if the stream cannot be written.
+     */
+    private static void name(OutputStream out, String key, String text) throws IOException {
+        key(out, key);
+        string(out, text);
+    }
+
+    /**
+     * Writes a key with a number value.
+     * @param out  the stream of the audit file.
+     * @param key  the key, which needs no escaping.
+     * @param value  the value.
+     * @throws IOException  if the stream cannot be written.
+     */
+    private static void value(OutputStream out, String key, int value) throws IOException {
+        key(out, key);
+        AuditWriter.writeDecimal(out, value);
+    }
+
+    /**
+     * Writes a JSON string, escaping quotes, backslashes and control characters. Runs of chars
+     * that need no escaping are written as they are.
+     * @param out  the stream of the audit file.
+     * @param text  the string.
+     * @throws IOException  if the stream cannot be written.
+     */
+    private static void string(OutputStream out, String text) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                AuditWriter.writeUtf8(out, text, start, i);
+                out.write('\\');
+                if (c == '"' || c == '\\') {
+                    out.write(c);
+                }
+                else if (c == '\n') {
+                    out.write('n');
+                }
+                else {
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[c >> 4]);
+                    out.write(HEX[c & 0xF]);
+                }
+                start = i + 1;
+            }
+        }
+        AuditWriter.writeUtf8(out, text, start, text.length());
+        out.write('"');
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * LazyBallot.java defines the LazyBallot class, an IR Ballot that is read with only its first
+ * choice and reads the rest of its rankings from the election file when it is transferred.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A LazyBallot holds its first choice and the offset of its line in a mapped election file.
+ * Most ballots stay with their first choice for the whole election, so their other rankings are
+ * never parsed or stored, and no ranking data is allocated until then. The first time a
+ * LazyBallot moves past its first choice, its line is parsed again from the mapped file and the
+ * rankings are packed into the LazyBallot itself, the same way a Ballot packs them.
+ * They are not changed after that, only the cursor moves. Like the cursor of any Ballot, reading
+ * the rankings is not synchronized, so a LazyBallot is moved by one thread at a time.
+ * Later rankings are checked when they are read, so a bad ranking after the first choice is
+ * only found if the ballot is transferred.
+ */
+public class LazyBallot extends Ballot {
+
+    /**
+     * A mapped election file the rankings of LazyBallots are read from.
+     * A file of any size is mapped as windows, each mapped a little past the start of the next
+     * one so a line starting near the end of a window is still whole in it. A line longer than
+     * that, Ex: one padded with a lot of whitespace, is mapped again on its own.
+     */
+    public static class Source {
+        /**
+         * the number of bytes from the start of one window to the start of the next
+         */
+        static final long WINDOW_SIZE = 1L << 30;
+        /**
+         * the number of bytes each window is mapped past the start of the next one
+         */
+        static final int WINDOW_OVERLAP = 1 << 20;
+
+        /**
+         * the mapped windows of the file, in order
+         */
+        private final ByteBuffer[] windows;
+        /**
+         * the number of bytes from the start of one window to the start of the next
+         */
+        private final long windowSize;
+        /**
+         * the file, to map a line that does not fit in its window, or null if the file is
+         * one window
+         */
+        private final FileChannel channel;
+        /**
+         * true if the file holds binary ballot records
+         */
+        private final boolean binary;
+        /**
+         * the number of candidates in the election
+         */
+        private final int numCandidates;
+
+        /**
+         * Creates a Source for an election file that is one window.
+         * @param file  the whole election file, Ex: mapped read-only.
+         * @param binary  true if the file is a binary ballot file.
+         * @param numCandidates  the number of candidates in the election.
+         */
+        public Source(ByteBuffer file, boolean binary, int numCandidates) {
+            this(new ByteBuffer[]{file}, Integer.MAX_VALUE, null, binary, numCandidates);
+        }
+
+        /**
+         * Creates a Source from mapped windows.
+         * @param windows  the mapped windows of the file, in order.
+         * @param windowSize  the number of bytes from the start of one window to the start of
+         *                    the next.
+         * @param channel  the file, or null if the file is one window.
+         * @param binary  true if the file is a binary ballot file.
+         * @param numCandidates  the number of candidates in the election.
+         */
+        private Source(ByteBuffer[] windows, long windowSize, FileChannel channel, boolean binary,
+                       int numCandidates) {
+            this.windows = windows;
+            this.windowSize = windowSize;
+            this.channel = channel;
+            this.binary = binary;
+            this.numCandidates = numCandidates;
+        }
+
+        /**
+         * Makes a Source for the file a tokenizer reads, if its lines can be read again later.
+         * @param tokenizer  the tokenizer, past the file's header lines.
+         * @param numCandidates  the number of candidates in the election.
+         * @return  the Source, or null if the tokenizer does not read a mapped file.
+         * @throws IOException  if the file cannot be mapped.
+         */
+        public static Source of(BallotTokenizer tokenizer, int numCandidates) throws IOException {
+            FileChannel channel = tokenizer.getChannel();
+            if (channel == null) {
+                return null;
+            }
+            return map(channel, tokenizer.isBinary(), numCandidates, WINDOW_SIZE, WINDOW_OVERLAP);
+        }
+
+        /**
+         * Maps a file as windows.
+         * @param channel  the file.
+         * @param binary  true if the file is a binary ballot file.
+         * @param numCandidates  the number of candidates in the election.
+         * @param windowSize  the number of bytes from the start of one window to the start of
+         *                    the next.
+         * @param overlap  the number of bytes each window is mapped past the start of the next.
+         * @return  the Source.
+         * @throws IOException  if the file cannot be mapped.
+         */
+        static Source map(FileChannel channel, boolean binary, int numCandidates, long windowSize,
+                          int overlap) throws IOException {
+            long size = channel.size();
+            ByteBuffer[] windows = new ByteBuffer[(int) Math.max(1, (size + windowSize - 1) / windowSize)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * windowSize;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, windowSize + overlap));
+            }
+            return new Source(windows, windowSize, windows.length > 1 ? channel : null, binary, numCandidates);
+        }
+
+        /**
+         * Reads every ranking of the ballot line at an offset.
+         * @param offset  the offset of the line in the file.
+         * @return  the candidate indices in vote rank order.
+         * @throws IllegalArgumentException  if the line cannot be read or has an invalid ranking.
+         */
+        int[] decode(long offset) {
+            int index = (int) (offset / windowSize);
+            ByteBuffer window = windows[index].duplicate();
+            window.position((int) (offset - index * windowSize));
+            try {
+                if (index < windows.length - 1) {
+                    //a line read to the end of its window may go on in the next one
+                    try {
+                        BallotTokenizer line = new BallotTokenizer(window, offset, binary);
+                        int[] rankings = read(line, offset);
+                        if (line.getPosition() < offset + window.remaining()) {
+                            return rankings;
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        //the record was cut off at the end of the window, so it is read again below
+                    }
+                    long length = Math.min(channel.size() - offset, Integer.MAX_VALUE);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                }
+                return read(new BallotTokenizer(window, offset, binary), offset);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot read the line at byte " + offset, e);
+            }
+        }
+
+        /**
+         * Reads every ranking of one ballot line.
+         * @param line  the tokenizer, positioned at the line.
+         * @param offset  the offset of the line in the file.
+         * @return  the candidate indices in vote rank order.
+         * @throws IOException  if the line cannot be read.
+         * @throws IllegalArgumentException  if the line has an invalid ranking.
+         */
+        private int[] read(BallotTokenizer line, long offset) throws IOException {
+            int[] rankings = new int[numCandidates];
+            int[] numRankings = new int[1];
+            line.readRecord((column, value) -> {
+                if (value < 1 || value > numCandidates || numRankings[0] == numCandidates) {
+                    throw new IllegalArgumentException("Invalid ranking " + value + " on the line at byte "
+                            + offset);
+                }
+                rankings[numRankings[0]++] = value - 1;
+            });
+            return Arrays.copyOf(rankings, numRankings[0]);
+        }
+    }
+
+    /**
+     * the file the rankings are read from
+     */
+    private final Source source;
+    /**
+     * the offset of the ballot's line in the file
+     */
+    private final long offset;
+    /**
+     * the candidate index of the ballot's first choice
+     */
+    private final int firstChoice;
+    /**
+     * candidate indices in vote rank order, one unsigned byte each, null until the rankings are
+     * read or if they do not fit in a byte
+     */
+    private byte[] byteRankings;
+    /**
+     * candidate indices in vote rank order, one unsigned char each, only used when the rankings
+     * are read and byteRankings is null
+     */
+    private char[] charRankings;
+
+    /**
+     * Creates a LazyBallot from the first choice of a ballot line.
+     * @param ballotIndex  unique ballot id number for identification.
+     * @param firstChoice  the candidate index of the ballot's first choice.
+     * @param source  the file the ballot line is in.
+     * @param offset  the offset of the ballot line in the file.
+     */
+    public LazyBallot(int ballotIndex, int firstChoice, Source source, long offset) {
+        super(ballotIndex);
+        this.source = source;
+        this.offset = offset;
+        this.firstChoice = firstChoice;
+        this.byteRankings = null;
+        this.charRankings = null;
+    }
+
+    /**
+     * Gets the candidate index at a position in the rankings, without reading the rankings for
+     * the first choice.
+     * @param position  the position, 0 for the ballot's original first choice.
+     * @return  the candidate index ranked at that position.
+     */
+    @Override
+    protected int rankingAt(int position) {
+        if (position == 0) {
+            return firstChoice;
+        }
+        decode();
+        if (byteRankings != null) {
+            return byteRankings[position] & 0xFF;
+        }
+        return charRankings[position];
+    }
+
+    @Override
+    protected int rankingCount() {
+        decode();
+        return byteRankings != null ? byteRankings.length : charRankings.length;
+    }
+
+    @Override
+    protected Object rankingsFrom(int position) {
+        int count = rankingCount();
+        return wrapRankings(byteRankings, charRankings, position, count);
+    }
+
+    /**
+     * Checks if the rest of the rankings were read from the file.
+     * @return  true once the ballot has moved past its first choice.
+     */
+    public boolean isDecoded() {
+        return byteRankings != null || charRankings != null;
+    }
+
+    /**
+     * Reads the rankings from the file the first time they are needed.
+     */
+    private void decode() {
+        if (!isDecoded()) {
+            int[] rankings = source.decode(offset);
+            byteRankings = packBytes(rankings.length, rankings);
+            if (byteRankings == null) {
+                charRankings = packChars(rankings.length, rankings);
+            }
+        }
+    }
+}
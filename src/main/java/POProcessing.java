@@ -18,25 +18,33 @@ public class POProcessing implements IElectionProcessing{
     /**
      * an ArrayList of Strings that represent the names of candidates.
      */
-    private static ArrayList<String> candidates;
+    private ArrayList<String> candidates;
     /**
      * an ArrayList of Strings that represents the political parties of candidates
      * candidateParties.get(i corresponds to candidates.get(i).
      */
-    private static ArrayList<String> candidateParties;
+    private ArrayList<String> candidateParties;
     /**
      * an Array of integers that represents the number of votes each candidate received
      * candidatesBallotCounts[i] corresponds to candidates.get(i).
      */
-    private static Integer[] candidatesBallotCounts;
+    private Integer[] candidatesBallotCounts;
     /**
      * an Integer that stores the total number of ballots cast in the election.
      */
-    private static int totalNumBallots;
+    private int totalNumBallots;
     /**
      * an Integer that stores the number of candidates in the election.
      */
-    private static int numCandidates;
+    private int numCandidates;
+    /**
+     * a ProcessResults instance, which is used to write election proceedings to an audit file.
+     */
+    ProcessResults auditFileOutput;
+    /**
+     * the optional processing modes the election was run with.
+     */
+    private ElectionOptions options;
 
     /**
      * Calls the setCandidatesAndParties() and updateBallotCounts() methods to set up the processing of a PO
@@ -48,31 +56,86 @@ public class POProcessing implements IElectionProcessing{
      *                           a RuntimeException.
      */
     public POProcessing(BufferedReader br) throws RuntimeException {
-        candidates = new ArrayList<String>();
-        candidateParties = new ArrayList<String>();
-        totalNumBallots = 0;
+        this(br, new ElectionOptions());
+    }
+
+    /**
+     * Calls the setCandidatesAndParties() and updateBallotCounts() methods to set up the processing of a PO
+     * election and then calls processElection() to process the election, using the given processing modes.
+     * @param br  a BufferedReader, buffers the input from a FileReader that is reading
+     *            from the election information csv file.
+     * @param options  the optional processing modes to run the election with.
+     * @throws RuntimeException  throws a RuntimeException if call to updateBallotCounts() throws
+     *                           a RuntimeException or if call to setCandidatesAndParties() throws
+     *                           a RuntimeException.
+     */
+    public POProcessing(BufferedReader br, ElectionOptions options) throws RuntimeException {
+        this(BallotTokenizer.fromReader(br), options);
+    }
 
+    /**
+     * Calls the setCandidatesAndParties() and updateBallotCounts() methods to set up the processing of a PO
+     * election and then calls processElection() to process the election, using the given processing modes.
+     * @param file  a BallotTokenizer reading the election information csv file, positioned just
+     *              after the election type line.
+     * @param options  the optional processing modes to run the election with.
+     * @throws RuntimeException  throws a RuntimeException if call to updateBallotCounts() throws
+     *                           a RuntimeException or if call to setCandidatesAndParties() throws
+     *                           a RuntimeException.
+     */
+    public POProcessing(BallotTokenizer file, ElectionOptions options) throws RuntimeException {
+        this.options = options;
         try {
-            setCandidatesAndParties(br);
-        } catch (RuntimeException e){
+            auditFileOutput = new ProcessResults(options.getAuditDirectory(), "PO", options.getAuditLabel(),
+                    AuditEncoder.forName(options.getAuditFormat()), options.getAuditChainInterval());
+            auditFileOutput.addVotingType("Popularity-Only");
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        //the audit file is written out and closed even if the ballots cannot be read
+        try {
+            candidates = new ArrayList<String>();
+            candidateParties = new ArrayList<String>();
+            totalNumBallots = 0;
 
-        candidatesBallotCounts = new Integer[numCandidates];
-        //for some reason candidatesBallotCandidates was getting instantiated with all null values
-        //instead of 0, so I just added this for loop
-        for(int i = 0; i < numCandidates; i++){
-            candidatesBallotCounts[i] = 0;
-        }
+            try {
+                setCandidatesAndParties(file);
+            } catch (RuntimeException e){
+                throw new RuntimeException(e);
+            }
 
-        try {
-            updateBallotCounts(br);
-        } catch (RuntimeException e){
-            throw new RuntimeException(e);
-        }
+            candidatesBallotCounts = new Integer[numCandidates];
+            //for some reason candidatesBallotCandidates was getting instantiated with all null values
+            //instead of 0, so I just added this for loop
+            for(int i = 0; i < numCandidates; i++){
+                candidatesBallotCounts[i] = 0;
+            }
 
-        processElection();
-        getVotePercents();
+            try {
+                updateBallotCounts(file);
+            } catch (RuntimeException e){
+                throw new RuntimeException(e);
+            }
+
+            //Add candidate info to the audit file
+            try {
+                auditFileOutput.addCandidateAmount(Integer.toString(numCandidates));
+                for(int i = 0; i < numCandidates; i++){
+                    auditFileOutput.addCandidate(candidates.get(i), candidateParties.get(i), candidatesBallotCounts[i]);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            processElection();
+            getVotePercents();
+        } finally {
+            try {
+                auditFileOutput.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     /**
@@ -82,57 +145,70 @@ public class POProcessing implements IElectionProcessing{
      * @return  a String representing the name of the election winner.
      */
     public String processElection(){
-        int max = -1;
-        ArrayList<String> WinnerCandidates = new ArrayList<>();
+        try {
+            int max = -1;
+            ArrayList<String> WinnerCandidates = new ArrayList<>();
 
-        for(int i = 0; i < numCandidates; i++){
-            if(candidatesBallotCounts[i] > max){
-                max = candidatesBallotCounts[i];
-                WinnerCandidates.clear();
-                WinnerCandidates.add(candidates.get(i));
+            for(int i = 0; i < numCandidates; i++){
+                if(candidatesBallotCounts[i] > max){
+                    max = candidatesBallotCounts[i];
+                    WinnerCandidates.clear();
+                    WinnerCandidates.add(candidates.get(i));
+                }
+                else if(candidatesBallotCounts[i] == max){
+                    WinnerCandidates.add(candidates.get(i));
+                }
             }
-            else if(candidatesBallotCounts[i] == max){
-                WinnerCandidates.add(candidates.get(i));
-            }
-        }
 
-        if(WinnerCandidates.size() == 1){
-            //no tie, return winner
-            System.out.println(WinnerCandidates.get(0) + " WON THE ELECTION");
-            return WinnerCandidates.get(0);
-        }
-        else{
-            //tie for winner, randomly choose
-            int randInd = (int)(Math.random()*WinnerCandidates.size());
-            String tiedCands = "";
-            for(int i = 0; i < WinnerCandidates.size()-1; i++){
-                tiedCands += (WinnerCandidates.get(i) + ", ");
+            if(WinnerCandidates.size() == 1){
+                //no tie, return winner
+                System.out.println(WinnerCandidates.get(0) + " WON THE ELECTION");
+                try {
+                    auditFileOutput.addWinner(WinnerCandidates.get(0), max);
+                } catch (IOException e) { throw new RuntimeException(e); }
+                return WinnerCandidates.get(0);
+            }
+            else{
+                //tie for winner, randomly choose
+                int randInd = (int)(Math.random()*WinnerCandidates.size());
+                String tiedCands = "";
+                for(int i = 0; i < WinnerCandidates.size()-1; i++){
+                    tiedCands += (WinnerCandidates.get(i) + ", ");
+                }
+                tiedCands += WinnerCandidates.get(WinnerCandidates.size()-1);
+                System.out.println("TIE BETWEEN: " + tiedCands);
+                System.out.println(WinnerCandidates.get(randInd) + " RANDOMLY SELECTED AS WINNER");
+                try {
+                    auditFileOutput.addTie(tiedCands, WinnerCandidates.get(randInd));
+                    auditFileOutput.addWinner(WinnerCandidates.get(randInd), max);
+                } catch (IOException e) { throw new RuntimeException(e); }
+                return WinnerCandidates.get(randInd);
             }
-            tiedCands += WinnerCandidates.get(WinnerCandidates.size()-1);
-            System.out.println("TIE BETWEEN: " + tiedCands);
-            System.out.println(WinnerCandidates.get(randInd) + " RANDOMLY SELECTED AS WINNER");
-            return WinnerCandidates.get(randInd);
+        } finally {
+            //the election is over or failed, write out the audit file and close it
+            try {
+                auditFileOutput.close();
+            } catch (IOException e) { throw new RuntimeException(e); }
         }
     }
 
     /**
      * Reads from the election information CSV file to determine the candidates and parties and add
      * them to a String ArrayList candidates and String ArrayList candidateParties.
-     * @param br a BufferedReader, buffers the input from a FileReader that is reading
-     *           from the election information csv file.
+     * @param file  a BallotTokenizer reading the election information csv file.
      * @throws RuntimeException  throws a RuntimeException if attempting to read from the
      *                           election information CSV file throws an IOException.
      */
-    public void setCandidatesAndParties(BufferedReader br) throws RuntimeException{
+    public void setCandidatesAndParties(BallotTokenizer file) throws RuntimeException{
         String curLine;
         try {
 
             //read the number of candidates
-            String numCands = br.readLine();
+            String numCands = file.readLine();
             //set numCandidates
-            numCandidates = Integer.parseInt(numCands);
+            numCandidates = Integer.parseInt(numCands.trim());
             //read candidate names and parties
-            curLine = br.readLine();
+            curLine = file.readLine();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -155,30 +231,71 @@ public class POProcessing implements IElectionProcessing{
     /**
      * Reads from the election information CSV file to distribute votes to candidates by updating
      * the values in Integer[] candidatesBallotCounts.
-     * @param br  a BufferedReader, buffers the input from a FileReader that is reading
-     *      *           from the election information csv file.
+     * Ballot lines are parsed in place by the tokenizer, in parallel chunks for a large mapped file.
+     * They are read until the end of the file, a declared number of ballots that does not match is
+     * only reported.
+     * @param file  a BallotTokenizer reading the election information csv file.
      * @throws RuntimeException  throws RuntimeException if attempting to read from the
      *                           election information CSV file throws an IOException.
      */
-    public void updateBallotCounts(BufferedReader br) throws RuntimeException{
-        String curLine;
-        int ind;
+    public void updateBallotCounts(BallotTokenizer file) throws RuntimeException{
+        ChunkedBallotParser.Tally tally;
         try {
 
-            //read the number of ballots, convert to int, and add to totalNumBallots
-            String numBallotsString = br.readLine();
-            int numBallots = Integer.parseInt(numBallotsString);
-            totalNumBallots += numBallots;
-            for(int i = 0; i < numBallots; i++){
-                curLine = br.readLine();
-                ind = curLine.indexOf("1");
-                candidatesBallotCounts[ind]++;
-                //assuming each ballot has a vote, doesn't handle case where a ballot doesn't
-                //have a 1 indicating their vote
+            //read the declared number of ballots, blank if the producer did not know it
+            int numBallots = file.readCount();
+            int chunkSize = options.getParseChunkSize();
+            if (ChunkedBallotParser.canSplit(file, chunkSize)) {
+                tally = new ChunkedBallotParser.Tally(numCandidates);
+                for (ChunkedBallotParser.Tally part : ChunkedBallotParser.parse(file, chunkSize,
+                        chunk -> tallyBallots(chunk, numCandidates))) {
+                    tally.add(part);
+                }
+            }
+            else {
+                tally = tallyBallots(file, numCandidates);
             }
+            BallotTokenizer.checkCount(0, numBallots, tally.getBallots());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        totalNumBallots += tally.getBallots();
+        for(int i = 0; i < numCandidates; i++){
+            candidatesBallotCounts[i] += tally.getVotes()[i];
+        }
+    }
+
+    /**
+     * Counts the votes on every ballot line up to the end of the input, skipping empty lines.
+     * The first 1 on a line is its vote.
+     * @param file  a BallotTokenizer positioned at a ballot line.
+     * @param numCandidates  the number of candidates in the election.
+     * @return  the votes for each candidate and the number of ballots read.
+     * @throws IOException  if a ballot line cannot be read.
+     */
+    private static ChunkedBallotParser.Tally tallyBallots(BallotTokenizer file, int numCandidates)
+            throws IOException {
+        ChunkedBallotParser.Tally tally = new ChunkedBallotParser.Tally(numCandidates);
+        int[] voteColumn = new int[1];
+        BallotTokenizer.FieldHandler vote = (column, value) -> {
+            if (value == 1 && voteColumn[0] < 0) {
+                voteColumn[0] = column;
+            }
+        };
+        while (true) {
+            voteColumn[0] = -1;
+            int fields = file.readRecord(vote);
+            if (fields < 0) {
+                break;
+            }
+            if (fields > 0) {
+                //assuming each ballot has a vote, doesn't handle case where a ballot doesn't
+                //have a 1 indicating their vote
+                tally.getVotes()[voteColumn[0]]++;
+                tally.addBallot();
+            }
+        }
+        return tally;
     }
 
     /**
@@ -1,6 +1,7 @@
 /**
  * ProcessResults.java is used for writing the proceedings and results of an election to an audit file,
- * which is a .txt file with the name <electiontype><date>.txt
+ * which is a .txt file with the name <electiontype><date>.txt, or a .vba or .jsonl file when written
+ * in another format
  *
  * @author tracy255, cacer019
  */
@@ -9,14 +10,17 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.PrintWriter;
-import java.io.FileWriter;
-import java.io.BufferedWriter;
 
 /**
  * ProcessResults is used in election processing to write election results and proceedings
- * to an audit file.
+ * to an audit file. Each step is made into an AuditEvent and written by an AuditEncoder, as the
+ * human-readable text by default, or as binary or JSON lines for programs to read back.
  *
  * @author everyone
  */
@@ -27,20 +31,133 @@ public class ProcessResults {
      */
     private File auditFile;
 
+    /**
+     * The open audit file, written on a background thread, null until something is written.
+     */
+    private AuditWriter out;
+
+    /**
+     * The format events are written to the audit file in.
+     */
+    private final AuditEncoder encoder;
+
+    /**
+     * The number of events between hash chain checkpoints, 0 if the audit file is not hash chained.
+     */
+    private final int chainInterval;
+
+    /**
+     * True once the election closed the audit file, after which events are held in late.
+     */
+    private boolean closed;
+
+    /**
+     * Events written after the audit file was closed, appended together by the next close(),
+     * null if there are none.
+     */
+    private ArrayList<AuditEvent> late;
+
+    /**
+     * Appends the late events if the program exits before close() is called again, null while
+     * there are no late events.
+     */
+    private Thread lateHook;
+
+    /**
+     * The audit files open in this JVM, by absolute path. Two elections writing one file would
+     * mix the blocks of their writers, so a file is only opened by one ProcessResults at a time.
+     */
+    private static final Set<String> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The last number given to an election without a label whose default audit file was open.
+     */
+    private static final AtomicInteger ELECTION_NUMBER = new AtomicInteger(1);
+
+    /**
+     * The directory the audit file is in, null for the working directory.
+     */
+    private final String directory;
+
+    /**
+     * The type of the election, Ex: IR.
+     */
+    private final String electionType;
+
+    /**
+     * True if the election was given a label, so its audit file cannot be renamed.
+     */
+    private final boolean labeled;
+
+    /**
+     * True once the audit file was opened, after which it keeps its name.
+     */
+    private boolean opened;
+
     /**
      * Creates an audit file for election results and proceedings.
      * @param electionType String contained IR or CPL
      * @throws IOException  if IO error occurs when creating the audit file.
      */
     public ProcessResults(String electionType) throws IOException {
-        //get today's today to add onto the file title
-        Date date = new Date();
-        SimpleDateFormat formatter = new SimpleDateFormat("MM-dd-yyyy");
-        String strDate = formatter.format(date);
+        this(electionType, null);
+    }
+
+    /**
+     * Creates an audit file for election results and proceedings, with a label in its name so
+     * elections of the same type run at the same time write to different files.
+     * @param electionType String contained IR, CPL or PO
+     * @param label  a name for the election added to the file name, Ex: precinct12, or null for none.
+     * @throws IOException  if IO error occurs when creating the audit file.
+     */
+    public ProcessResults(String electionType, String label) throws IOException {
+        this(electionType, label, new TextAuditRenderer());
+    }
 
-        String fileName = "auditFile-" + electionType + "-" + strDate + ".txt";
-        File newFile = new File(fileName);
-        auditFile = newFile;
+    /**
+     * Creates an audit file for election results and proceedings, written in a given format. The
+     * file's extension is the format's, Ex: auditFile-IR-10-18-2026.jsonl.
+     * @param electionType String contained IR, CPL or PO
+     * @param label  a name for the election added to the file name, Ex: precinct12, or null for none.
+     * @param encoder  the format events are written in.
+     * @throws IOException  if IO error occurs when creating the audit file.
+     */
+    public ProcessResults(String electionType, String label, AuditEncoder encoder) throws IOException {
+        this(electionType, label, encoder, 0);
+    }
+
+    /**
+     * Creates an audit file for election results and proceedings, written in a given format and
+     * hash chained, see AuditChain.
+     * @param electionType String contained IR, CPL or PO
+     * @param label  a name for the election added to the file name, Ex: precinct12, or null for none.
+     * @param encoder  the format events are written in.
+     * @param chainInterval  the number of events between checkpoints, or 0 for no hash chain.
+     * @throws IOException  if IO error occurs when creating the audit file.
+     */
+    public ProcessResults(String electionType, String label, AuditEncoder encoder, int chainInterval) throws IOException {
+        this(null, electionType, label, encoder, chainInterval);
+    }
+
+    /**
+     * Creates an audit file for election results and proceedings in a directory, written in a
+     * given format and hash chained, see AuditChain.
+     * @param directory  the directory the audit file is written in, Ex: audits, or null for the
+     *                   working directory.
+     * @param electionType String contained IR, CPL or PO
+     * @param label  a name for the election added to the file name, Ex: precinct12, or null for none.
+     * @param encoder  the format events are written in.
+     * @param chainInterval  the number of events between checkpoints, or 0 for no hash chain.
+     * @throws IOException  if IO error occurs when creating the audit file.
+     */
+    public ProcessResults(String directory, String electionType, String label, AuditEncoder encoder,
+                          int chainInterval) throws IOException {
+        this.encoder = encoder;
+        this.chainInterval = chainInterval;
+        this.directory = directory;
+        this.electionType = electionType;
+        this.labeled = label != null && !label.isEmpty();
+        auditFile = fileFor(label);
         if(!auditFile.exists()) {
             auditFile.createNewFile();
         }
@@ -53,16 +170,189 @@ public class ProcessResults {
     }
 
 
+    /**
+     * Names the audit file of this election for today.
+     * @param label  a name for the election added to the file name, or null for none.
+     * @return  the audit file, Ex: auditFile-IR-precinct12-10-18-2026.txt.
+     */
+    private File fileFor(String label) {
+        //get today's today to add onto the file title
+        Date date = new Date();
+        SimpleDateFormat formatter = new SimpleDateFormat("MM-dd-yyyy");
+        String strDate = formatter.format(date);
+
+        String labelPart = (label == null || label.isEmpty()) ? "" : label + "-";
+        String fileName = "auditFile-" + electionType + "-" + labelPart + strDate + "." + encoder.getExtension();
+        return new File(directory, fileName);
+    }
+
+    /**
+     * Gets the writer of the audit file, opening the file if it is not open. The file stays open
+     * until close() is called, so the election does not open the file for every event.
+     * An election without a label whose audit file is open in another election of this JVM the
+     * first time it writes is given a file of its own, Ex: auditFile-IR-election2-10-18-2026.txt.
+     * @return  the audit file's writer.
+     * @throws IOException  if the audit file cannot be opened, or another election of this JVM
+     *                      has it open and it cannot be renamed.
+     */
+    private AuditWriter writer() throws IOException {
+        if (out == null) {
+            String path = auditFile.getAbsolutePath();
+            while (!OPEN_FILES.add(path)) {
+                if (labeled || opened) {
+                    throw new IOException("Audit file " + auditFile + " is already being written by another election,"
+                            + " elections of the same type run at the same time need different audit labels");
+                }
+                auditFile = fileFor("election" + ELECTION_NUMBER.incrementAndGet());
+                path = auditFile.getAbsolutePath();
+            }
+            opened = true;
+            try {
+                boolean newFile = auditFile.length() == 0;
+                //each time the file is opened a new chain starts, ended by a root hash at close(),
+                //which covers the events of earlier runs the file's last root hash does not
+                AuditChain chain = chainInterval > 0 ? new AuditChain(encoder, chainInterval) : null;
+                if (chain != null && !newFile) {
+                    chain.resume(auditFile.toPath());
+                }
+                out = new AuditWriter(auditFile, chain);
+                if (newFile) {
+                    encoder.begin(out);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (out != null) {
+                    close();
+                }
+                OPEN_FILES.remove(path);
+                throw e;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Gets the audit file being written.
+     * @return  the audit file.
+     */
+    public File getAuditFile() {
+        return auditFile;
+    }
+
+    /**
+     * Writes an event to the audit file in the file's format.
+     * @param event  the event to write.
+     * @throws IOException  if IO error occurs when writing to the audit file.
+     */
+    public void write(AuditEvent event) throws IOException {
+        if (closed) {
+            //an event after the election is done does not keep the file from other elections
+            addLate(event);
+            return;
+        }
+        AuditWriter writer = writer();
+        encoder.encode(event, writer);
+        writer.endRecord();
+    }
+
+    /**
+     * Holds an event written after the audit file was closed until close() is called again, or
+     * the program exits.
+     * @param event  the event.
+     */
+    private synchronized void addLate(AuditEvent event) {
+        if (late == null) {
+            late = new ArrayList<>();
+            lateHook = new Thread(this::closeOnExit, "audit-late-events-exit");
+            Runtime.getRuntime().addShutdownHook(lateHook);
+        }
+        late.add(event);
+    }
+
+    /**
+     * Appends the late events when the program exits without closing again, run by the shutdown
+     * hook.
+     */
+    private void closeOnExit() {
+        try {
+            appendLate();
+        } catch (IOException e) {
+            System.out.println("------AUDIT FILE COULD NOT BE WRITTEN: " + e.getMessage() + "------");
+        }
+    }
+
+    /**
+     * Opens the audit file once to append every late event, then closes it again.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    private synchronized void appendLate() throws IOException {
+        if (late == null) {
+            return;
+        }
+        ArrayList<AuditEvent> events = late;
+        late = null;
+        try {
+            Runtime.getRuntime().removeShutdownHook(lateHook);
+        } catch (IllegalStateException e) {
+            //the program is exiting, this is the hook appending the events
+        }
+        lateHook = null;
+        AuditWriter writer = writer();
+        try {
+            for (AuditEvent event : events) {
+                encoder.encode(event, writer);
+                writer.endRecord();
+            }
+        } finally {
+            closeWriter();
+        }
+    }
+
+    /**
+     * Waits until everything written so far is in the audit file.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes everything written so far to the audit file and closes it, called when an election
+     * is done, so another election may open the file. Events written after closing the audit
+     * file are held until close() is called again, which appends them all at once, or until the
+     * program exits.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    public void close() throws IOException {
+        closed = true;
+        closeWriter();
+        appendLate();
+    }
+
+    /**
+     * Closes the audit file's writer if it is open.
+     * @throws IOException  if the audit file cannot be written.
+     */
+    private void closeWriter() throws IOException {
+        if (out != null) {
+            AuditWriter closing = out;
+            out = null;
+            try {
+                closing.close();
+            } finally {
+                OPEN_FILES.remove(auditFile.getAbsolutePath());
+            }
+        }
+    }
+
     /**
      * Writes the type of election to the audit file.
      * @param type  the type of the election, IR or CPL, as a String.
      * @throws IOException  if IO error occurs when writing to audit file.
      */
     public void addVotingType(String type) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("Election Type: " + type + "\n");
-        bw.close();
+        write(AuditEvent.electionType(type));
     }
 
 
@@ -72,10 +362,7 @@ public class ProcessResults {
      * @throws IOException if the audit file cannot be written into
      */
     void addCandidateAmount(String num) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("Number of candidates: " + num + "\n");
-        bw.close();
+        write(AuditEvent.candidateCount(Integer.parseInt(num.trim())));
     }
 
     /**
@@ -87,11 +374,7 @@ public class ProcessResults {
      * @throws IOException  if IO error occurs when writing to the audit file.
      */
     void addCandidate(String name, String party, int initialBallots) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("New Candidate:\n+++Candidate name: " + name + "\n+++Party name: " + party + "\n");
-        bw.write("+++Initial ballot count: " + Integer.toString(initialBallots) + "\n");
-        bw.close();
+        write(AuditEvent.candidateRegistered(name, party, initialBallots));
     }
 
     /**
@@ -102,11 +385,18 @@ public class ProcessResults {
      * @throws IOException  if an IO error occurs when writing to the audit file.
      */
     void addLoser(String name, int finalBallotCount) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("Removed loser:\n+++Candidate name: " + name + "\n");
-        bw.write("+++Final ballot count: " + Integer.toString(finalBallotCount) + "\n");
-        bw.close();
+        write(AuditEvent.loserRemoved(new String[]{name}, new int[]{finalBallotCount}));
+    }
+
+    /**
+     * Writes candidates who were eliminated together by batch elimination to the audit file.
+     * Adds each candidate's name and their final ballot count before elimination.
+     * @param names  the names of the eliminated candidates.
+     * @param finalBallotCounts  each candidate's final ballot count, in the same order as names.
+     * @throws IOException  if an IO error occurs when writing to the audit file.
+     */
+    void addBatchLosers(String[] names, int[] finalBallotCounts) throws IOException {
+        write(AuditEvent.loserRemoved(names, finalBallotCounts));
     }
 
     /**
@@ -116,12 +406,17 @@ public class ProcessResults {
      * @throws IOException  if IO error occurs when writing to the audit file.
      */
     void removedBallot( int index) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        //bw.write("Ballot removed:\n+++Final candidate name: " + name + "\n");
-        //bw.write("+++Ballot index: " + Integer.toString(index) + "\n");
-        bw.write("Ballot removed:\n+++Ballot index: " + Integer.toString(index) + "\n");
-        bw.close();
+        write(AuditEvent.ballotExhausted(index));
+    }
+
+    /**
+     * Writes every ballot removed in a round to the audit file, as ranges of ballot indices.
+     * @param round  the round the ballots were removed in, 1 for the first elimination.
+     * @param indices  the ballot indices of the removed ballots.
+     * @throws IOException  if IO error occurs when writing to the audit file.
+     */
+    void removedBallots(int round, BitSet indices) throws IOException {
+        write(AuditEvent.ballotsExhausted(round, indices));
     }
 
     /**
@@ -132,12 +427,7 @@ public class ProcessResults {
      * @throws IOException  if IO error occurs when writing to the audit file.
      */
     void addWinner(String name, int finalBallotCount) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("ELECTION WINNER:\n+++Candidate name: " + name + "\n");
-        bw.write("+++Final ballot count: " + Integer.toString(finalBallotCount) + "\n");
-        bw.write("\n\n\n");
-        bw.close();
+        write(AuditEvent.winner(name, finalBallotCount));
     }
 
     /**
@@ -148,11 +438,7 @@ public class ProcessResults {
      * @throws IOException Throws IOException with null as its error detail message.
      */
     void addParty(String party, ArrayList candidates, int partyBallots) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("New Party:\n+++Party name: " + party + "\n+++Party Candidates: " + candidates.toString() + "\n");
-        bw.write("+++Initial Party ballot count: " + Integer.toString(partyBallots) + "\n");
-        bw.close();
+        write(AuditEvent.partyRegistered(party, candidates, partyBallots));
     }
 
     /**
@@ -163,12 +449,7 @@ public class ProcessResults {
      * @throws IOException Throws IOException with null as its error detail message.
      */
     void addSeatWinner(String party, String candidate, int partyBallots) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("PARTY WINNER:\n+++ : " + party + "Seat Winner: " + candidate+ "\n");
-        bw.write("+++Final Party ballot count: " + Integer.toString(partyBallots) + "\n");
-        bw.write("\n\n\n");
-        bw.close();
+        write(AuditEvent.seatWinner(party, candidate, partyBallots));
     }
 
     /**
@@ -180,26 +461,18 @@ public class ProcessResults {
      * @throws IOException IOException Throws IOException with null as its error detail message.
      */
     void addSeat(int seatNums, String party, int partyBallots, int quota) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write(seatNums +" SEATS ALLOCATED TO:\n+++ : " + party + "\nTOTAL BALLOTS TO PARTY: " + Integer.toString(partyBallots) + "\nLARGEST REMAINDER QUOTA: " + Integer.toString(quota) + "\n");
-        bw.write("\n\n\n");
-        bw.close();
+        write(AuditEvent.seatAllocated(seatNums, party, partyBallots, quota));
     }
 
     /**
-     * Writes that a TIE occurs in CPL election. Shows list of tied parties and chosen winner at random.
+     * Writes that a TIE occurs in CPL or PO election. Shows list of tied parties, or tied candidates for PO,
+     * and chosen winner at random.
      * @param tiedParties arrayList of ties parties.
      * @param chosenWinner The winner that was chosen at random.
      * @throws IOException IOException Throws IOException with null as its error detail message.
      */
     void addTie(String tiedParties, String chosenWinner) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("TIED PARTIES:\n+++ " + tiedParties);
-        bw.write("\nWINNER OF TIE: " + chosenWinner);
-        bw.write("\n\n\n");
-        bw.close();
+        write(AuditEvent.tieBroken(tiedParties, chosenWinner));
     }
 
     /**
@@ -208,11 +481,7 @@ public class ProcessResults {
      * @throws IOException IOException Throws IOException with null as its error detail message.
      */
     void addRemainder(String party) throws IOException {
-        FileWriter fw = new FileWriter(auditFile.getName(),true);
-        BufferedWriter bw = new BufferedWriter(fw);
-        bw.write("REMAINING SEAT ALLOCATED TO:\n+++ : " + party + " DUE TO HIGHER REMAINDER" + "\n");
-        bw.write("\n\n\n");
-        bw.close();
+        write(AuditEvent.remainderSeatAllocated(party));
     }
 
 }
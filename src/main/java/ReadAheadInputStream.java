@@ -0,0 +1,227 @@
+/**
+ * ReadAheadInputStream.java defines the ReadAheadInputStream class, which reads another stream on
+ * a separate thread so slow reads, such as gzip decompression, overlap with parsing.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A ReadAheadInputStream has a background thread fill large buffers from a source stream and
+ * hand them over through a bounded queue, while the reading thread consumes the buffers already
+ * filled. A fixed set of buffers is passed back and forth, so no buffers are allocated while
+ * reading. The reader blocks only when it has caught up with the background thread.
+ * Only the background thread touches the source: it reads it and closes it when it stops, so
+ * the source is never closed in the middle of a read.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /**
+     * A buffer filled by the background thread.
+     */
+    private static class Block {
+        /**
+         * the bytes read from the source
+         */
+        final byte[] bytes;
+        /**
+         * the number of bytes read into bytes, -1 for the end of the source
+         */
+        int length;
+        /**
+         * the exception the source threw, null if it did not throw
+         */
+        IOException error;
+
+        /**
+         * Creates an empty block.
+         * @param size  the number of bytes the block holds.
+         */
+        Block(int size) {
+            this.bytes = new byte[size];
+        }
+    }
+
+    /**
+     * the stream read by the background thread
+     */
+    private final InputStream source;
+    /**
+     * blocks filled by the background thread, in source order
+     */
+    private final BlockingQueue<Block> filled;
+    /**
+     * blocks the reader is done with, ready to be filled again
+     */
+    private final BlockingQueue<Block> empty;
+    /**
+     * the thread reading the source
+     */
+    private final Thread reader;
+    /**
+     * the block being read, null if the next block must be taken from filled
+     */
+    private Block current;
+    /**
+     * the position in current of the next byte to read
+     */
+    private int pos;
+    /**
+     * true once the end of the source was reached
+     */
+    private boolean finished;
+    /**
+     * the exception the source threw when the background thread closed it, null if it did not throw
+     */
+    private volatile IOException closeError;
+
+    /**
+     * Creates a ReadAheadInputStream and starts reading the source.
+     * @param source  the stream to read ahead of the reader.
+     * @param blockSize  the number of bytes read from the source at once.
+     * @param blocks  the number of blocks that can be filled ahead of the reader, at least 2.
+     */
+    public ReadAheadInputStream(InputStream source, int blockSize, int blocks) {
+        this.source = source;
+        this.filled = new ArrayBlockingQueue<>(blocks);
+        this.empty = new ArrayBlockingQueue<>(blocks);
+        for (int i = 0; i < blocks; i++) {
+            empty.add(new Block(blockSize));
+        }
+        this.reader = new Thread(this::fill, "ballot-read-ahead");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Fills empty blocks from the source until its end or until the reader closes the stream,
+     * then closes the source, run by the background thread.
+     */
+    private void fill() {
+        try {
+            while (true) {
+                Block block = empty.take();
+                block.error = null;
+                try {
+                    block.length = readFully(block.bytes);
+                } catch (IOException e) {
+                    block.length = -1;
+                    block.error = e;
+                } catch (RuntimeException e) {
+                    //Ex: a GZIPInputStream whose Inflater has ended, the reader must not wait forever
+                    block.length = -1;
+                    block.error = new IOException(e);
+                }
+                filled.put(block);
+                if (block.length < 0) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            //closed by the reader
+        } finally {
+            try {
+                source.close();
+            } catch (IOException e) {
+                closeError = e;
+            }
+        }
+    }
+
+    /**
+     * Reads from the source until a buffer is full or the source ends.
+     * @param bytes  the buffer to fill.
+     * @return  the number of bytes read, -1 if the source had already ended.
+     * @throws IOException  if the source cannot be read.
+     */
+    private int readFully(byte[] bytes) throws IOException {
+        int length = 0;
+        while (length < bytes.length) {
+            int count = source.read(bytes, length, bytes.length - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return length == 0 ? -1 : length;
+    }
+
+    /**
+     * Makes current a block with unread bytes, waiting for the background thread if needed.
+     * @return  false at the end of the source.
+     * @throws IOException  if the source threw an exception.
+     */
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (current != null && pos < current.length) {
+            return true;
+        }
+        if (current != null) {
+            empty.add(current);
+            current = null;
+        }
+        try {
+            current = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        pos = 0;
+        if (current.length < 0) {
+            finished = true;
+            if (current.error != null) {
+                throw current.error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return current.bytes[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - pos);
+        System.arraycopy(current.bytes, pos, bytes, off, count);
+        pos += count;
+        return count;
+    }
+
+    /**
+     * Stops the background thread and waits for it to close the source. A read of the source the
+     * thread is in, such as a read of stdin waiting for input, is finished first.
+     * @throws IOException  if the source cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        if (closeError != null) {
+            throw closeError;
+        }
+    }
+}
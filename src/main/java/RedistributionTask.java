@@ -0,0 +1,171 @@
+/**
+ * RedistributionTask.java defines the RedistributionTask class, which finds the next choice of a
+ * large set of IR ballots in parallel when a candidate is eliminated.
+ *
+ * @author Caleb Tracy, Ashton Berg.
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RedistributionTask splits the ballots of an eliminated candidate into fixed-size chunks and
+ * advances every ballot of a chunk to its next choice still in the running, sorting the chunk's
+ * ballots into one bucket per receiving candidate plus a bucket of exhausted ballots.
+ * Each ballot is advanced by exactly one worker, and the set of candidates still in the running
+ * is only read, so workers share no mutable state. Buckets are returned in chunk order, so adding
+ * them to the receiving candidates chunk by chunk gives every candidate the same ballots in the
+ * same order as advancing the ballots one at a time.
+ */
+public class RedistributionTask extends RecursiveAction {
+
+    /**
+     * version of the serialized form RecursiveAction inherits
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The ballots of one chunk after advancing, sorted by where they go next.
+     */
+    public static class Buckets {
+        /**
+         * byCandidate.get(i) holds the chunk's ballots now going to candidate index i, null if none
+         */
+        private final ArrayList<ArrayList<Ballot>> byCandidate;
+        /**
+         * the chunk's ballots with no candidate left in the running, in ballot order
+         */
+        private final ArrayList<Ballot> exhausted;
+
+        /**
+         * Creates empty buckets.
+         * @param numCandidates  the number of candidates in the election.
+         */
+        Buckets(int numCandidates) {
+            this.byCandidate = new ArrayList<>(Collections.nCopies(numCandidates, null));
+            this.exhausted = new ArrayList<>();
+        }
+
+        /**
+         * Gets the chunk's ballots going to a candidate.
+         * @param index  the candidate index of the receiving candidate.
+         * @return  the ballots in ballot order, null if the candidate receives none from the chunk.
+         */
+        public ArrayList<Ballot> getBallotsFor(int index) {
+            return byCandidate.get(index);
+        }
+
+        /**
+         * Gets the chunk's exhausted ballots.
+         * @return  the ballots with no candidate left in the running, in ballot order.
+         */
+        public ArrayList<Ballot> getExhausted() {
+            return exhausted;
+        }
+    }
+
+    /**
+     * the ballots of the eliminated candidate
+     */
+    private final ArrayList<Ballot> ballots;
+    /**
+     * the first ballot position this task covers, always a multiple of chunkSize
+     */
+    private final int from;
+    /**
+     * one past the last ballot position this task covers
+     */
+    private final int to;
+    /**
+     * the number of ballots each worker advances at once
+     */
+    private final int chunkSize;
+    /**
+     * bit i is set if candidate index i is still in the running, read only while tasks run
+     */
+    private final BitSet alive;
+    /**
+     * the number of candidates in the election
+     */
+    private final int numCandidates;
+    /**
+     * the buckets of every chunk, results[k] is filled by the task covering chunk k
+     */
+    private final Buckets[] results;
+
+    /**
+     * Creates a task covering the ballot positions from (inclusive) to (exclusive).
+     * @param ballots  the ballots of the eliminated candidate.
+     * @param from  the first ballot position covered, a multiple of chunkSize.
+     * @param to  one past the last ballot position covered.
+     * @param chunkSize  the number of ballots each worker advances at once.
+     * @param alive  the candidates still in the running.
+     * @param numCandidates  the number of candidates in the election.
+     * @param results  the array receiving each chunk's buckets.
+     */
+    private RedistributionTask(ArrayList<Ballot> ballots, int from, int to, int chunkSize,
+                               BitSet alive, int numCandidates, Buckets[] results) {
+        this.ballots = ballots;
+        this.from = from;
+        this.to = to;
+        this.chunkSize = chunkSize;
+        this.alive = alive;
+        this.numCandidates = numCandidates;
+        this.results = results;
+    }
+
+    /**
+     * Advances every ballot to its next choice still in the running, in parallel on the common
+     * fork-join pool, and sorts them into buckets.
+     * @param ballots  the ballots of the eliminated candidate, who must already be marked eliminated.
+     * @param alive  bit i is set if candidate index i is still in the running.
+     * @param numCandidates  the number of candidates in the election.
+     * @param chunkSize  the number of ballots each worker advances at once, at least 1.
+     * @return  the buckets of every chunk, in ballot order.
+     */
+    public static Buckets[] run(ArrayList<Ballot> ballots, BitSet alive, int numCandidates, int chunkSize) {
+        int numChunks = (ballots.size() + chunkSize - 1) / chunkSize;
+        Buckets[] results = new Buckets[numChunks];
+        if (numChunks > 0) {
+            ForkJoinPool.commonPool().invoke(
+                    new RedistributionTask(ballots, 0, ballots.size(), chunkSize, alive, numCandidates, results));
+        }
+        return results;
+    }
+
+    /**
+     * Advances the covered ballots, splitting the range in half on chunk boundaries until each
+     * task covers one chunk.
+     */
+    @Override
+    protected void compute() {
+        int numChunks = (to - from + chunkSize - 1) / chunkSize;
+        if (numChunks > 1) {
+            int mid = from + (numChunks / 2) * chunkSize;
+            invokeAll(new RedistributionTask(ballots, from, mid, chunkSize, alive, numCandidates, results),
+                    new RedistributionTask(ballots, mid, to, chunkSize, alive, numCandidates, results));
+            return;
+        }
+
+        Buckets buckets = new Buckets(numCandidates);
+        for (int i = from; i < to; i++) {
+            Ballot curBallot = ballots.get(i);
+            if (curBallot.advance(alive)) {
+                int next = curBallot.getNextCandidate();
+                ArrayList<Ballot> bucket = buckets.byCandidate.get(next);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    buckets.byCandidate.set(next, bucket);
+                }
+                bucket.add(curBallot);
+            }
+            else {
+                buckets.exhausted.add(curBallot);
+            }
+        }
+        results[from / chunkSize] = buckets;
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * TextAuditRenderer.java defines the TextAuditRenderer class, which writes AuditEvents as the
+ * human-readable audit file.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A TextAuditRenderer writes each AuditEvent as the lines people read in a .txt audit file, the
+ * same lines ProcessResults has always written. It can render events as they happen, or render
+ * events read back from a binary audit file with AuditReader.
+ */
+public class TextAuditRenderer implements AuditEncoder {
+
+    @Override
+    public String getExtension() {
+        return "txt";
+    }
+
+    @Override
+    public void encode(AuditEvent event, OutputStream out) throws IOException {
+        switch (event.getType()) {
+            case ELECTION_TYPE:
+                write(out, "Election Type: ");
+                write(out, event.getName(0));
+                write(out, "\n");
+                break;
+            case CANDIDATE_COUNT:
+                write(out, "Number of candidates: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n");
+                break;
+            case CANDIDATE_REGISTERED:
+                write(out, "New Candidate:\n+++Candidate name: ");
+                write(out, event.getName(0));
+                write(out, "\n+++Party name: ");
+                write(out, event.getName(1));
+                write(out, "\n+++Initial ballot count: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n");
+                break;
+            case BALLOT_EXHAUSTED:
+                write(out, "Ballot removed:\n+++Ballot index: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n");
+                break;
+            case BALLOTS_EXHAUSTED:
+                write(out, "Ballots removed in round ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, ":\n+++Ballot indices: ");
+                for (int i = 1; i < event.getNumValues(); i += 2) {
+                    if (i > 1) {
+                        write(out, ", ");
+                    }
+                    AuditWriter.writeDecimal(out, event.getValue(i));
+                    if (event.getValue(i + 1) != event.getValue(i)) {
+                        out.write('-');
+                        AuditWriter.writeDecimal(out, event.getValue(i + 1));
+                    }
+                }
+                write(out, "\n");
+                break;
+            case LOSER_REMOVED:
+                if (event.getNumNames() == 1) {
+                    write(out, "Removed loser:\n");
+                }
+                else {
+                    write(out, "Removed losers (batch elimination of ");
+                    AuditWriter.writeDecimal(out, event.getNumNames());
+                    write(out, " defeated candidates):\n");
+                }
+                for (int i = 0; i < event.getNumNames(); i++) {
+                    write(out, "+++Candidate name: ");
+                    write(out, event.getName(i));
+                    write(out, "\n+++Final ballot count: ");
+                    AuditWriter.writeDecimal(out, event.getValue(i));
+                    write(out, "\n");
+                }
+                break;
+            case PARTY_REGISTERED:
+                write(out, "New Party:\n+++Party name: ");
+                write(out, event.getName(0));
+                //candidates are listed like ArrayList.toString()
+                write(out, "\n+++Party Candidates: [");
+                for (int i = 1; i < event.getNumNames(); i++) {
+                    if (i > 1) {
+                        write(out, ", ");
+                    }
+                    write(out, event.getName(i));
+                }
+                write(out, "]\n+++Initial Party ballot count: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n");
+                break;
+            case SEAT_ALLOCATED:
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, " SEATS ALLOCATED TO:\n+++ : ");
+                write(out, event.getName(0));
+                write(out, "\nTOTAL BALLOTS TO PARTY: ");
+                AuditWriter.writeDecimal(out, event.getValue(1));
+                write(out, "\nLARGEST REMAINDER QUOTA: ");
+                AuditWriter.writeDecimal(out, event.getValue(2));
+                write(out, "\n\n\n\n");
+                break;
+            case REMAINDER_SEAT_ALLOCATED:
+                write(out, "REMAINING SEAT ALLOCATED TO:\n+++ : ");
+                write(out, event.getName(0));
+                write(out, " DUE TO HIGHER REMAINDER\n\n\n\n");
+                break;
+            case TIE_BROKEN:
+                write(out, "TIED PARTIES:\n+++ ");
+                write(out, event.getName(0));
+                write(out, "\nWINNER OF TIE: ");
+                write(out, event.getName(1));
+                write(out, "\n\n\n");
+                break;
+            case SEAT_WINNER:
+                write(out, "PARTY WINNER:\n+++ : ");
+                write(out, event.getName(0));
+                write(out, "Seat Winner: ");
+                write(out, event.getName(1));
+                write(out, "\n+++Final Party ballot count: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n\n\n\n");
+                break;
+            case WINNER:
+                write(out, "ELECTION WINNER:\n+++Candidate name: ");
+                write(out, event.getName(0));
+                write(out, "\n+++Final ballot count: ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, "\n\n\n\n");
+                break;
+            case CHECKPOINT:
+            case ROOT_HASH:
+                write(out, event.getType() == AuditEvent.Type.CHECKPOINT ? "AUDIT CHECKPOINT: records " : "AUDIT ROOT HASH: records ");
+                AuditWriter.writeDecimal(out, event.getValue(0));
+                write(out, " sha256 ");
+                write(out, event.getName(0));
+                write(out, "\n");
+                break;
+        }
+    }
+
+    /**
+     * Writes text to the audit file.
+     * @param out  the stream of the audit file.
+     * @param text  the text to write.
+     * @throws IOException  if the stream cannot be written.
+     */
+    private static void write(OutputStream out, String text) throws IOException {
+        AuditWriter.writeUtf8(out, text);
+    }
+}
@@ -9,14 +9,23 @@
 
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 
 /** main class where user will be prompted for election information file
  *  and election system will be run.
  */
 public class main {
 
+    /**
+     * the file name that stands for standard input, also given as --stdin
+     */
+    static final String STDIN = "-";
+
     /**
      * The main method. Calls getInput() and checkArgs() to check user input and run election.
+     * Arguments starting with "--" are processing options, Ex: --group-ballots, the rest are files.
+     * A file named "-", or the --stdin option, reads that election file from standard input.
      * Checks if user gives too many arguments or for checkArgs() error.
      * @param args  the command line arguments given by the user.
      * @throws IOException  when getInput() or checkArgs() throws an exception.
@@ -24,15 +33,16 @@ public class main {
     public static void main(String[] args) throws IOException {
         System.out.println("------ELECTION PROCESSING PROGRAM RUNNING------");
         Boolean checkReturn;  //Used to determine if the current input it valid
+        ElectionOptions options = new ElectionOptions();
         if(args.length == 0) {
             System.out.println("------Input filename from working directory. Format: 'FileName'.csv------");
             String[] fileNames = getInput();
-            checkReturn = checkArgs(fileNames);
+            checkReturn = checkArgs(splitOptions(fileNames, options), options);
             if (!checkReturn) {
                 for(int i = 0; i < 10; i++) {
                     System.out.println("------INVALID FILENAME: Input filename from working directory. Format: 'FileName'.csv------");
                     String[] files = getInput();
-                    checkReturn = checkArgs(files);
+                    checkReturn = checkArgs(splitOptions(files, options), options);
                     if(checkReturn == true) {
                         break;
                     }
@@ -41,7 +51,7 @@ public class main {
         }
         else {
             // In the case arguments are provided
-            checkReturn = checkArgs(args);
+            checkReturn = checkArgs(splitOptions(args, options), options);
             if (!checkReturn) {  //Check if the name is valid
                 System.out.println("------PROVIDED FILENAME IS INCORRECT------");
             }
@@ -54,12 +64,26 @@ public class main {
      * Calls CPLProcessing.processElection() if election is CPL.
      * Calls IRProcessing.processElection() if election is IR.
      * @param fileNames  name of election information files given by user.
+     * @param options  the processing options given by the user.
      * @return  a boolean, true if election was run, false if not.
      * @throws FileNotFoundException throws exception if file couldn't be found.
      */
-    private static boolean checkArgs(String[] fileNames) throws IOException {
+    private static boolean checkArgs(String[] fileNames, ElectionOptions options) throws IOException {
+        if (fileNames.length == 0) {
+            return false;
+        }
         //String path = "Project2/" + fileName;  //Not needed if in Project2 dir
+        int stdinFiles = 0;
         for (int i = 0; i < fileNames.length; i++) {
+            //"-" reads the election file from standard input, Ex: extract | voting -
+            if (fileNames[i].equals(STDIN)) {
+                stdinFiles++;
+                if (stdinFiles > 1) {
+                    System.out.println("------STANDARD INPUT CAN ONLY BE READ ONCE------");
+                    return false;
+                }
+                continue;
+            }
             File f = new File(fileNames[i]);
             if(f.exists()) {
                 System.out.println("file " + f + " exists!");
@@ -76,50 +100,100 @@ public class main {
         //File file = new File(".");
         //for(String fileNames : file.list()) System.out.println(fileNames);
 
-        FileReader csvFile = new FileReader(fileNames[0]);
-        //If file cannot be found, throw an exception.
-        //Extract the election type from the CSV file (first line)
-        String electionType;
-        BufferedReader myReader = new BufferedReader(csvFile);
-        try {
-            electionType = myReader.readLine();
-            //for(char c : electionType.toCharArray()) System.out.print((int)c + "\n");  //debugging
-        } catch (Exception e) {
-            System.out.println("File cannot be found.\nFile-name provided: " + fileNames[0]);
-            throw new RuntimeException(e);
+        //Map each file into memory and extract the election type (first line), skipping a byte order mark
+        //With a ballot cache, files seen before are loaded from their cached binary copy.
+        //Ballot provenance gives offsets in the files named, so it reads them without the cache
+        String electionType = null;
+        BallotCache cache = options.getBallotCacheDirectory() == null || options.getProvenanceFile() != null
+                ? null : new BallotCache(Paths.get(options.getBallotCacheDirectory()));
+        BallotTokenizer[] electionFiles = new BallotTokenizer[fileNames.length];
+        for (int i = 0; i < electionFiles.length; i++) {
+            if (fileNames[i].equals(STDIN)) {
+                electionFiles[i] = BallotTokenizer.open(System.in);
+                electionFiles[i].setName(STDIN);
+            } else if (cache != null) {
+                electionFiles[i] = cache.open(Paths.get(fileNames[i]));
+            } else {
+                electionFiles[i] = BallotTokenizer.open(Paths.get(fileNames[i]));
+            }
+            String fileType = electionFiles[i].readLine();
+            if (cache == null && electionFiles[i].isBinary()) {
+                System.out.println("------Loading binary ballot file " + fileNames[i] + "------");
+            }
+            if (i == 0) {
+                electionType = fileType == null ? "" : fileType.trim();
+            }
         }
 
-        BufferedReader[] electionFiles = new BufferedReader[fileNames.length];
-        for (int i = 0; i < electionFiles.length; i++) {
-            csvFile = new FileReader(fileNames[i]);
-            myReader = new BufferedReader(csvFile);
-            //Skips over election type
-            myReader.readLine();
-            electionFiles[i] = myReader;
+        //Create a processing class object accordingly and pass on the tokenizers
+        try {
+            return runElection(electionType, electionFiles, options);
+        } finally {
+            //standard input is left open for the rest of the program
+            for (int i = 0; i < electionFiles.length; i++) {
+                if (!fileNames[i].equals(STDIN)) {
+                    electionFiles[i].close();
+                }
+            }
         }
+    }
 
-        //Create a processing class object accordingly and pass on the BufferedReader object
+    /**
+     * Creates the processing class object for the election type, which runs the election.
+     * @param electionType  the election type from the first line of the first file.
+     * @param electionFiles  a tokenizer for each file, positioned after the election type line.
+     * @param options  the processing options given by the user.
+     * @return  a boolean, true if election was run, false if the election type is unknown.
+     * @throws IOException  if an election file cannot be read.
+     */
+    private static boolean runElection(String electionType, BallotTokenizer[] electionFiles,
+                                       ElectionOptions options) throws IOException {
         if (electionType.equals("CPL")) {
             //runs processElection() in the constructor
             System.out.println("------Running Closed Party List Election------");
-            CPLProcessing CPLElection = new CPLProcessing(electionFiles);
+            CPLProcessing CPLElection = new CPLProcessing(electionFiles, options);
             return true;
         }
         else if (electionType.equals("IR")) {
             //runs processElection() in the constructor
             System.out.println("------Running Instant Runoff Vote Election------");
-            IRProcessing IRElection = new IRProcessing(electionFiles);
+            IRProcessing IRElection = new IRProcessing(electionFiles, options);
             return true;
         }
         else if (electionType.equals("PO")) {
             //runs processElection() in the constructor
             System.out.println("------Running Popularity Only Vote Election------");
-            POProcessing OPElection = new POProcessing(electionFiles[0]);
+            POProcessing OPElection = new POProcessing(electionFiles[0], options);
             return true;
         }
         return false;
     }
 
+    /**
+     * Applies the processing options among the user's arguments and returns the remaining file names.
+     * Unknown options are reported and ignored.
+     * @param args  the arguments given by the user.
+     * @param options  the ElectionOptions to apply the options to.
+     * @return  the arguments that are not options, which are the names of the election files.
+     */
+    private static String[] splitOptions(String[] args, ElectionOptions options) {
+        ArrayList<String> fileNames = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--stdin")) {
+                fileNames.add(STDIN);
+            }
+            else if (arg.startsWith("--")) {
+                if (!options.applyFlag(arg)) {
+                    System.out.println("------UNKNOWN OPTION IGNORED: " + arg + "------");
+                }
+            }
+            else if (!arg.isEmpty()) {
+                fileNames.add(arg);
+            }
+        }
+        return fileNames.toArray(new String[0]);
+    }
+
     /**
      * Reads user input from command line to get filename.
      * @return  name of file input by user as a String.
@@ -0,0 +1,178 @@
+/**
+ * AuditChainTest.java is used for testing the methods in the AuditChain class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditChainTest class contains methods for testing the AuditChain class.
+ */
+class AuditChainTest {
+
+    /**
+     * Tests that the checkpoints and root hash written by the audit writer are verified, that a
+     * changed byte or a missing root hash is found, and that a file opened again starts a new
+     * chain after the last root hash.
+     */
+    @Test
+    void writeAndVerify() throws IOException {
+        File file = File.createTempFile("audit-chain", ".txt");
+        try {
+            TextAuditRenderer encoder = new TextAuditRenderer();
+            AuditChain chain = new AuditChain(encoder, 2);
+            AuditWriter out = new AuditWriter(file, 16, 2, chain);
+            for (int i = 0; i < 5; i++) {
+                encoder.encode(AuditEvent.ballotExhausted(i), out);
+                out.endRecord();
+            }
+            out.close();
+            assertEquals(chain.getRecords(), 5);
+            String text = Files.readString(file.toPath());
+            assertTrue(text.contains("AUDIT CHECKPOINT: records 2 sha256 "));
+            assertTrue(text.contains("AUDIT CHECKPOINT: records 4 sha256 "));
+            assertTrue(text.endsWith("\n"));
+            assertTrue(text.substring(text.lastIndexOf("AUDIT")).startsWith("AUDIT ROOT HASH: records 5 sha256 "));
+            assertEquals(AuditChain.verify(file.toPath()), 3);
+
+            //a second chain appended to the file
+            out = new AuditWriter(file, new AuditChain(encoder, 2));
+            encoder.encode(AuditEvent.winner("ashton", 7), out);
+            out.endRecord();
+            out.close();
+            assertEquals(AuditChain.verify(file.toPath()), 4);
+
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            Path tampered = File.createTempFile("audit-chain-tampered", ".txt").toPath();
+            try {
+                //Ballot index: 0 becomes 1
+                int index = new String(bytes, StandardCharsets.UTF_8).indexOf("index: 0") + "index: ".length();
+                bytes[index] = '1';
+                Files.write(tampered, bytes);
+                assertThrows(IOException.class, () -> AuditChain.verify(tampered));
+                assertDoesNotThrow(() -> AuditChain.main(new String[]{tampered.toString()}));
+
+                //events after the last root hash
+                Files.write(tampered, Files.readAllBytes(file.toPath()));
+                Files.writeString(tampered, "Ballot removed:\n+++Ballot index: 9\n", StandardOpenOption.APPEND);
+                assertThrows(IOException.class, () -> AuditChain.verify(tampered));
+            } finally {
+                Files.delete(tampered);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that hash events are written in each audit format.
+     */
+    @Test
+    void hashEvents() throws IOException {
+        AuditEvent checkpoint = new AuditEvent(AuditEvent.Type.CHECKPOINT, new String[]{"ab"}, new int[]{4});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonAuditEncoder().encode(checkpoint, out);
+        assertEquals(out.toString(StandardCharsets.UTF_8), "{\"event\":\"checkpoint\",\"records\":4,\"sha256\":\"ab\"}\n");
+        out.reset();
+        new TextAuditRenderer().encode(checkpoint, out);
+        assertEquals(out.toString(StandardCharsets.UTF_8), "AUDIT CHECKPOINT: records 4 sha256 ab\n");
+        assertEquals(AuditChain.hex(new byte[]{0, 15, (byte) 255}), "000fff");
+    }
+
+    /**
+     * Tests that an IR election's audit file verifies in every format with --audit-chain, and
+     * that an audit file without a hash chain does not.
+     */
+    @Test
+    void electionFormats() throws IOException {
+        ElectionOptions options = new ElectionOptions();
+        assertFalse(options.applyFlag("--audit-chain=0"));
+        assertFalse(options.applyFlag("--audit-chain=x"));
+        assertEquals(options.getAuditChainInterval(), 0);
+        assertTrue(options.applyFlag("--audit-chain=2"));
+        assertEquals(options.getAuditChainInterval(), 2);
+        options.setAuditLabel("audit-chain-test");
+        for (String format : new String[]{"text", "binary", "jsonl"}) {
+            options.setAuditFormat(format);
+            IRProcessing election = new IRProcessing(new BufferedReader[]{reader()}, options);
+            File auditFile = election.auditFileOutput.getAuditFile();
+            try {
+                assertTrue(AuditChain.verify(auditFile.toPath()) > 1);
+                assertEquals(ExhaustedBallots.read(auditFile.toPath()).getRound(9), 2);
+            } finally {
+                auditFile.delete();
+            }
+        }
+
+        ElectionOptions plain = new ElectionOptions();
+        plain.setAuditLabel("audit-chain-test-plain");
+        IRProcessing election = new IRProcessing(new BufferedReader[]{reader()}, plain);
+        File auditFile = election.auditFileOutput.getAuditFile();
+        try {
+            assertThrows(IOException.class, () -> AuditChain.verify(auditFile.toPath()));
+        } finally {
+            auditFile.delete();
+        }
+    }
+
+    /**
+     * Tests that an election with --audit-chain appended to the audit file of an election without
+     * one verifies, in every format, and that appending to a file with a broken chain fails.
+     */
+    @Test
+    void appendToUnchainedFile() throws IOException {
+        for (String format : new String[]{"text", "binary", "jsonl"}) {
+            ElectionOptions plain = new ElectionOptions();
+            plain.setAuditFormat(format);
+            plain.setAuditLabel("audit-chain-test-append");
+            IRProcessing first = new IRProcessing(new BufferedReader[]{reader()}, plain);
+            File auditFile = first.auditFileOutput.getAuditFile();
+            try {
+                ElectionOptions chained = new ElectionOptions();
+                assertTrue(chained.applyFlag("--audit-chain=2"));
+                chained.setAuditFormat(format);
+                chained.setAuditLabel("audit-chain-test-append");
+                new IRProcessing(new BufferedReader[]{reader()}, chained);
+                int hashes = AuditChain.verify(auditFile.toPath());
+                assertTrue(hashes > 1);
+                new IRProcessing(new BufferedReader[]{reader()}, chained);
+                assertEquals(AuditChain.verify(auditFile.toPath()), 2 * hashes);
+            } finally {
+                auditFile.delete();
+            }
+        }
+
+        Path file = File.createTempFile("audit-chain-broken", ".txt").toPath();
+        try {
+            Files.writeString(file, "Ballot removed:\n+++Ballot index: 1\nAUDIT ROOT HASH: records 1 sha256 "
+                    + "0".repeat(64) + "\n");
+            assertThrows(IOException.class, () -> new AuditChain(new TextAuditRenderer(), 2).resume(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Opens IRTesting4.csv past its election type line.
+     * @return  a BufferedReader positioned at the second line.
+     * @throws IOException  if the file cannot be read.
+     */
+    private BufferedReader reader() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader("src/test/java/IRTesting4.csv"));
+        br.readLine();
+        return br;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * AuditEncoderTest.java is used for testing the AuditEncoder implementations and the AuditReader
+ * class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditEncoderTest class contains methods for testing the AuditEncoder implementations.
+ */
+class AuditEncoderTest {
+
+    /**
+     * Makes one event of every type.
+     * @return  the events.
+     */
+    private List<AuditEvent> events() {
+        return Arrays.asList(
+                AuditEvent.electionType("Instant-Runoff"),
+                AuditEvent.candidateCount(3),
+                AuditEvent.candidateRegistered("Zo\u00eb \"Z\"", "D", 300),
+                AuditEvent.ballotExhausted(1 << 20),
+                AuditEvent.loserRemoved(new String[]{"caleb"}, new int[]{2}),
+                AuditEvent.loserRemoved(new String[]{"a", "b"}, new int[]{0, 1}),
+                AuditEvent.partyRegistered("R", new ArrayList<>(Arrays.asList("x", "y")), 5),
+                AuditEvent.seatAllocated(2, "R", 5, 2),
+                AuditEvent.remainderSeatAllocated("D"),
+                AuditEvent.tieBroken("D, R, ", "R"),
+                AuditEvent.seatWinner("R", "x", 5),
+                AuditEvent.winner("ashton", 7));
+    }
+
+    /**
+     * Writes events with an encoder.
+     * @param encoder  the encoder.
+     * @param events  the events to write.
+     * @return  the bytes written, starting with what begin() writes.
+     * @throws IOException  never, the stream is in memory.
+     */
+    private byte[] encode(AuditEncoder encoder, List<AuditEvent> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.begin(out);
+        for (AuditEvent event : events) {
+            encoder.encode(event, out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Tests that TextAuditRenderer writes each event as the lines ProcessResults always wrote.
+     */
+    @Test
+    void text() throws IOException {
+        String expected = "Election Type: Instant-Runoff\n"
+                + "Number of candidates: 3\n"
+                + "New Candidate:\n+++Candidate name: Zo\u00eb \"Z\"\n+++Party name: D\n+++Initial ballot count: 300\n"
+                + "Ballot removed:\n+++Ballot index: 1048576\n"
+                + "Removed loser:\n+++Candidate name: caleb\n+++Final ballot count: 2\n"
+                + "Removed losers (batch elimination of 2 defeated candidates):\n"
+                + "+++Candidate name: a\n+++Final ballot count: 0\n+++Candidate name: b\n+++Final ballot count: 1\n"
+                + "New Party:\n+++Party name: R\n+++Party Candidates: [x, y]\n+++Initial Party ballot count: 5\n"
+                + "2 SEATS ALLOCATED TO:\n+++ : R\nTOTAL BALLOTS TO PARTY: 5\nLARGEST REMAINDER QUOTA: 2\n\n\n\n"
+                + "REMAINING SEAT ALLOCATED TO:\n+++ : D DUE TO HIGHER REMAINDER\n\n\n\n"
+                + "TIED PARTIES:\n+++ D, R, \nWINNER OF TIE: R\n\n\n"
+                + "PARTY WINNER:\n+++ : RSeat Winner: x\n+++Final Party ballot count: 5\n\n\n\n"
+                + "ELECTION WINNER:\n+++Candidate name: ashton\n+++Final ballot count: 7\n\n\n\n";
+        assertEquals(new String(encode(new TextAuditRenderer(), events()), StandardCharsets.UTF_8), expected);
+    }
+
+    /**
+     * Tests that JsonAuditEncoder writes one escaped JSON object per line.
+     */
+    @Test
+    void json() throws IOException {
+        String[] lines = new String(encode(new JsonAuditEncoder(), events()), StandardCharsets.UTF_8).split("\n");
+        assertEquals(lines.length, events().size());
+        assertEquals(lines[0], "{\"event\":\"election_type\",\"election_type\":\"Instant-Runoff\"}");
+        assertEquals(lines[2], "{\"event\":\"candidate_registered\",\"candidate\":\"Zo\u00eb \\\"Z\\\"\",\"party\":\"D\",\"ballots\":300}");
+        assertEquals(lines[3], "{\"event\":\"ballot_exhausted\",\"ballot\":1048576}");
+        assertEquals(lines[5], "{\"event\":\"loser_removed\",\"candidates\":[\"a\",\"b\"],\"ballots\":[0,1]}");
+        assertEquals(lines[6], "{\"event\":\"party_registered\",\"party\":\"R\",\"candidates\":[\"x\",\"y\"],\"ballots\":5}");
+        assertEquals(lines[11], "{\"event\":\"winner\",\"candidate\":\"ashton\",\"ballots\":7}");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonAuditEncoder().encode(AuditEvent.electionType("a\\b\n\t"), out);
+        assertEquals(out.toString(StandardCharsets.UTF_8), "{\"event\":\"election_type\",\"election_type\":\"a\\\\b\\n\\u0009\"}\n");
+    }
+
+    /**
+     * Tests that events written by BinaryAuditEncoder are read back the same by AuditReader, that
+     * records of unknown types are skipped, and that damaged files are found.
+     */
+    @Test
+    void binary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(encode(new BinaryAuditEncoder(), events()));
+        //a record of a type from a later version
+        out.write(new byte[]{3, 99, 0, 0});
+        new BinaryAuditEncoder().encode(AuditEvent.ballotExhausted(5), out);
+        byte[] bytes = out.toByteArray();
+
+        List<AuditEvent> expected = new ArrayList<>(events());
+        expected.add(AuditEvent.ballotExhausted(5));
+        List<AuditEvent> read = new ArrayList<>();
+        try (AuditReader reader = new AuditReader(new ByteArrayInputStream(bytes))) {
+            for (AuditEvent event = reader.next(); event != null; event = reader.next()) {
+                read.add(event);
+            }
+        }
+        assertEquals(read, expected);
+
+        AuditReader truncated = new AuditReader(new ByteArrayInputStream(Arrays.copyOf(bytes, 26)));
+        assertEquals(truncated.next(), events().get(0));
+        assertThrows(EOFException.class, truncated::next);
+        assertThrows(IOException.class, () -> new AuditReader(new ByteArrayInputStream("IR\n".getBytes(StandardCharsets.US_ASCII))));
+
+        assertEquals(BinaryAuditEncoder.varintLength(127), 1);
+        assertEquals(BinaryAuditEncoder.varintLength(128), 2);
+        assertEquals(BinaryAuditEncoder.varintLength(-1), 5);
+    }
+
+    /**
+     * Tests that an IR election written as a binary audit file renders as the same text as the
+     * election written as a text audit file, and the --audit-format option.
+     */
+    @Test
+    void electionFormats() throws IOException {
+        ElectionOptions options = new ElectionOptions();
+        assertFalse(options.applyFlag("--audit-format=xml"));
+        assertEquals(options.getAuditFormat(), "text");
+        assertTrue(options.applyFlag("--audit-format=binary"));
+        options.setAuditLabel("encoder-test-binary");
+        ElectionOptions textOptions = new ElectionOptions();
+        textOptions.setAuditLabel("encoder-test-text");
+
+        File binaryFile = null;
+        File textFile = null;
+        try {
+            IRProcessing binary = new IRProcessing(new BufferedReader[]{reader()}, options);
+            IRProcessing text = new IRProcessing(new BufferedReader[]{reader()}, textOptions);
+            binaryFile = binary.auditFileOutput.getAuditFile();
+            textFile = text.auditFileOutput.getAuditFile();
+            assertTrue(binaryFile.getName().endsWith(".vba"));
+
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+            TextAuditRenderer renderer = new TextAuditRenderer();
+            try (AuditReader reader = new AuditReader(new FileInputStream(binaryFile))) {
+                for (AuditEvent event = reader.next(); event != null; event = reader.next()) {
+                    renderer.encode(event, rendered);
+                }
+            }
+            assertEquals(rendered.toString(StandardCharsets.UTF_8), Files.readString(textFile.toPath()));
+        } finally {
+            for (File file : new File[]{binaryFile, textFile}) {
+                if (file != null) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens IRTesting3.csv past its election type line.
+     * @return  a BufferedReader positioned at the second line.
+     * @throws IOException  if the file cannot be read.
+     */
+    private BufferedReader reader() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader("src/test/java/IRTesting3.csv"));
+        br.readLine();
+        return br;
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * AuditReplayTest.java is used for testing the methods in the AuditReplay class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditReplayTest class contains methods for testing the AuditReplay class.
+ */
+class AuditReplayTest {
+
+    /**
+     * Tests that the audit file of every IR test election replays in every format, with batch
+     * elimination and compact exhausted ballots, and with a hash chain.
+     */
+    @Test
+    void replayIR() throws IOException {
+        for (int i = 1; i <= 6; i++) {
+            Path ballots = Paths.get("src/test/java/IRTesting" + i + ".csv");
+            for (String format : new String[]{"text", "binary", "jsonl"}) {
+                ElectionOptions options = new ElectionOptions();
+                options.setAuditFormat(format);
+                options.setAuditLabel("audit-replay-test-ir");
+                assertTrue(replay(ir(options, ballots), ballots) > 2);
+            }
+        }
+        Path ballots = Paths.get("src/test/java/IRTesting4.csv");
+        ElectionOptions options = new ElectionOptions();
+        assertTrue(options.applyFlag("--batch-eliminate"));
+        assertTrue(options.applyFlag("--compact-exhausted"));
+        assertTrue(options.applyFlag("--audit-chain=3"));
+        options.setAuditLabel("audit-replay-test-ir-options");
+        assertTrue(replay(ir(options, ballots), ballots) > 2);
+    }
+
+    /**
+     * Tests that CPL elections of one and of two files replay.
+     */
+    @Test
+    void replayCPL() throws IOException {
+        for (int i = 1; i <= 4; i++) {
+            Path ballots = Paths.get("src/test/java/CPLTesting" + i + ".csv");
+            ElectionOptions options = new ElectionOptions();
+            options.setAuditLabel("audit-replay-test-cpl");
+            CPLProcessing election = new CPLProcessing(new BallotTokenizer[]{open(ballots)}, options);
+            assertTrue(replay(election.auditFileOutput.getAuditFile(), ballots) > 2);
+        }
+        Path first = Paths.get("src/test/java/CPLTesting3.csv");
+        Path second = Paths.get("src/test/java/CPLTesting4.csv");
+        ElectionOptions options = new ElectionOptions();
+        options.setAuditFormat("jsonl");
+        options.setAuditLabel("audit-replay-test-cpl-files");
+        CPLProcessing election = new CPLProcessing(new BallotTokenizer[]{open(first), open(second)}, options);
+        assertTrue(replay(election.auditFileOutput.getAuditFile(), first, second) > 2);
+    }
+
+    /**
+     * Tests that PO elections replay, including one whose ballot file starts with a byte order
+     * mark.
+     */
+    @Test
+    void replayPO() throws IOException {
+        for (int i = 1; i <= 4; i++) {
+            Path ballots = Paths.get("src/test/java/POTest" + i + ".csv");
+            ElectionOptions options = new ElectionOptions();
+            options.setAuditFormat("binary");
+            options.setAuditLabel("audit-replay-test-po");
+            POProcessing election = new POProcessing(open(ballots), options);
+            assertTrue(replay(election.auditFileOutput.getAuditFile(), ballots) > 2);
+        }
+    }
+
+    /**
+     * Tests that a changed event, a missing event, the wrong ballot file and an audit file without
+     * an election are found, and that a failed replay is printed.
+     */
+    @Test
+    void divergence() throws IOException {
+        Path ballots = Paths.get("src/test/java/IRTesting4.csv");
+        ElectionOptions options = new ElectionOptions();
+        options.setAuditLabel("audit-replay-test-divergence");
+        File auditFile = ir(options, ballots);
+        Path tampered = File.createTempFile("audit-replay-tampered", ".txt").toPath();
+        try {
+            String text = Files.readString(auditFile.toPath());
+            //type, count, 5 candidates, 3 losers, 3 exhausted ballots and the winner
+            assertEquals(AuditReplay.verify(auditFile.toPath(), ballots), 14);
+
+            //ballot 9 is exhausted in round 2, not 8
+            Files.writeString(tampered, text.replace("Ballot index: 9", "Ballot index: 8"));
+            IOException e = assertThrows(IOException.class, () -> AuditReplay.verify(tampered, ballots));
+            assertTrue(e.getMessage().contains("ballot 8"));
+
+            //the winner is left out
+            Files.writeString(tampered, text.substring(0, text.indexOf("WINNER")));
+            assertThrows(IOException.class, () -> AuditReplay.verify(tampered, ballots));
+
+            assertThrows(IOException.class, () -> AuditReplay.verify(auditFile.toPath(),
+                    Paths.get("src/test/java/IRTesting3.csv")));
+            Files.writeString(tampered, "");
+            assertThrows(IOException.class, () -> AuditReplay.verify(tampered, ballots));
+            assertDoesNotThrow(() -> AuditReplay.main(new String[]{tampered.toString(), ballots.toString()}));
+            assertDoesNotThrow(() -> AuditReplay.main(new String[]{auditFile.toString(), ballots.toString()}));
+        } finally {
+            Files.delete(tampered);
+            auditFile.delete();
+        }
+    }
+
+    /**
+     * Runs an IR election.
+     * @param options  the options to run the election with, with a label for its audit file.
+     * @param ballots  the ballot file.
+     * @return  the audit file.
+     * @throws IOException  if the ballot file cannot be read.
+     */
+    private File ir(ElectionOptions options, Path ballots) throws IOException {
+        IRProcessing election = new IRProcessing(new BallotTokenizer[]{open(ballots)}, options);
+        return election.auditFileOutput.getAuditFile();
+    }
+
+    /**
+     * Replays an audit file and deletes it.
+     * @param auditFile  the audit file.
+     * @param ballots  the ballot files.
+     * @return  the number of events checked.
+     * @throws IOException  if the replay fails.
+     */
+    private int replay(File auditFile, Path... ballots) throws IOException {
+        try {
+            return AuditReplay.verify(auditFile.toPath(), ballots);
+        } finally {
+            auditFile.delete();
+        }
+    }
+
+    /**
+     * Opens a ballot file past its election type line.
+     * @param ballots  the ballot file.
+     * @return  a BallotTokenizer positioned at the second line.
+     * @throws IOException  if the file cannot be read.
+     */
+    private BallotTokenizer open(Path ballots) throws IOException {
+        BallotTokenizer file = BallotTokenizer.open(ballots);
+        file.readLine();
+        return file;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * AuditWriterTest.java is used for testing the methods in the AuditWriter class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditWriterTest class contains methods for testing the AuditWriter class.
+ */
+class AuditWriterTest {
+
+    /**
+     * Tests that bytes written across many small blocks reach the file in order, after flush()
+     * and after close(), that text and numbers are written like String.getBytes() and
+     * Long.toString(), and that a closed writer cannot be written to.
+     */
+    @Test
+    void writeFlushClose() throws IOException {
+        Path file = Files.createTempFile("audit", ".txt");
+        try {
+            Files.writeString(file, "before\n");
+            AuditWriter writer = new AuditWriter(file.toFile(), 8, 2);
+            StringBuilder expected = new StringBuilder("before\n");
+            for (int i = 0; i < 100; i++) {
+                String line = "Ballot removed:\n+++Ballot index: " + i + "\n";
+                writer.write(line.getBytes(StandardCharsets.UTF_8));
+                expected.append(line);
+            }
+            writer.flush();
+            assertEquals(Files.readString(file), expected.toString());
+
+            AuditWriter.writeUtf8(writer, "WINNER: Zo\u00eb \ud83d\uddf3\n");
+            expected.append("WINNER: Zo\u00eb \ud83d\uddf3\n");
+            AuditWriter.writeDecimal(writer, Long.MIN_VALUE);
+            expected.append(Long.MIN_VALUE).append("\n");
+            writer.write('\n');
+            AuditWriter.writeDecimal(writer, 0);
+            AuditWriter.writeDecimal(writer, 1234567890);
+            expected.append("01234567890\n");
+            writer.write('\n');
+            writer.close();
+            assertEquals(Files.readString(file), expected.toString());
+
+            assertDoesNotThrow(writer::close);
+            assertThrows(IOException.class, () -> writer.write('x'));
+            assertThrows(IOException.class, writer::flush);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that ProcessResults writes its events through one writer that is closed at the end of
+     * an election, and appends what is written after that when it is closed again.
+     */
+    @Test
+    void processResults() throws IOException {
+        String date = new SimpleDateFormat("MM-dd-yyyy").format(new Date());
+        File file = new File("auditFile-IR-audit-writer-test-" + date + ".txt");
+        file.delete();
+        try {
+            ProcessResults results = new ProcessResults("IR", "audit-writer-test");
+            results.addVotingType("Instant-Runoff");
+            results.removedBallot(3);
+            results.flush();
+            assertEquals(Files.readString(file.toPath()), "Election Type: Instant-Runoff\nBallot removed:\n+++Ballot index: 3\n");
+            results.addWinner("caleb", 2);
+            results.close();
+            results.removedBallot(4);
+            results.close();
+            assertEquals(Files.readString(file.toPath()), "Election Type: Instant-Runoff\nBallot removed:\n+++Ballot index: 3\n"
+                    + "ELECTION WINNER:\n+++Candidate name: caleb\n+++Final ballot count: 2\n\n\n\n"
+                    + "Ballot removed:\n+++Ballot index: 4\n");
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that an audit file is only open in one ProcessResults at a time, and that events
+     * written after an election is done are appended by the next close() without keeping the
+     * file open.
+     */
+    @Test
+    void processResultsOpenOnce() throws IOException {
+        ProcessResults first = new ProcessResults("IR", "audit-writer-open-test");
+        ProcessResults second = new ProcessResults("IR", "audit-writer-open-test");
+        try {
+            first.addVotingType("Instant-Runoff");
+            assertThrows(IOException.class, () -> second.addVotingType("Instant-Runoff"));
+            first.close();
+            second.addVotingType("Instant-Runoff");
+            second.close();
+            second.removedBallot(1);
+            first.removedBallot(2);
+            //events after close are held until the next close
+            assertEquals(Files.readString(first.getAuditFile().toPath()), "Election Type: Instant-Runoff\n"
+                    + "Election Type: Instant-Runoff\n");
+            second.close();
+            first.close();
+            assertEquals(Files.readString(first.getAuditFile().toPath()), "Election Type: Instant-Runoff\n"
+                    + "Election Type: Instant-Runoff\nBallot removed:\n+++Ballot index: 1\n"
+                    + "Ballot removed:\n+++Ballot index: 2\n");
+        } finally {
+            first.getAuditFile().delete();
+        }
+    }
+
+    /**
+     * Tests that the events written after a hash chained audit file is closed are appended as one
+     * more chain, not one chain per event.
+     */
+    @Test
+    void processResultsLateEventsChained() throws IOException {
+        ProcessResults results = new ProcessResults("IR", "audit-writer-late-test", new TextAuditRenderer(), 100);
+        try {
+            results.addVotingType("Instant-Runoff");
+            results.close();
+            for (int i = 0; i < 5; i++) {
+                results.removedBallot(i);
+            }
+            results.close();
+            assertEquals(AuditChain.verify(results.getAuditFile().toPath()), 2);
+            String text = Files.readString(results.getAuditFile().toPath());
+            assertTrue(text.contains("+++Ballot index: 4\nAUDIT ROOT HASH: records 5 sha256 "), text);
+        } finally {
+            results.getAuditFile().delete();
+        }
+    }
+
+    /**
+     * Tests that an election without a label whose audit file is open in another election writes
+     * a numbered audit file of its own, and keeps it for events after it is closed.
+     * @param directory  a directory for the audit files, deleted after the test
+     */
+    @Test
+    void processResultsUnlabeled(@TempDir Path directory) throws IOException {
+        ProcessResults first = new ProcessResults(directory.toString(), "IR", null, new TextAuditRenderer(), 0);
+        ProcessResults second = new ProcessResults(directory.toString(), "IR", null, new TextAuditRenderer(), 0);
+        assertEquals(first.getAuditFile(), second.getAuditFile());
+        first.addVotingType("Instant-Runoff");
+        second.addVotingType("Instant-Runoff");
+        assertNotEquals(first.getAuditFile(), second.getAuditFile());
+        assertEquals(first.getAuditFile().getParentFile(), directory.toFile());
+        assertTrue(second.getAuditFile().getName().matches("auditFile-IR-election[0-9]+-.*\\.txt"));
+        first.close();
+        second.close();
+        second.removedBallot(1);
+        second.close();
+        assertEquals(Files.readString(first.getAuditFile().toPath()), "Election Type: Instant-Runoff\n");
+        assertEquals(Files.readString(second.getAuditFile().toPath()), "Election Type: Instant-Runoff\n"
+                + "Ballot removed:\n+++Ballot index: 1\n");
+    }
+}
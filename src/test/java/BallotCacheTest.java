@@ -0,0 +1,153 @@
+/**
+ * BallotCacheTest.java is used for testing the methods in the BallotCache class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BallotCacheTest class contains methods for testing the BallotCache class.
+ */
+class BallotCacheTest {
+
+    /**
+     * Deletes a directory and everything in it.
+     * @param directory  the directory to delete.
+     * @throws IOException  if a file cannot be deleted.
+     */
+    private void deleteAll(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Runs an IR election read through a cache.
+     * @param cache  the cache.
+     * @param file  the election file.
+     * @return  the processed election.
+     * @throws IOException  if the file cannot be read.
+     */
+    private IRProcessing runCached(BallotCache cache, Path file) throws IOException {
+        BallotTokenizer tokenizer = cache.open(file);
+        try {
+            assertEquals(tokenizer.readLine(), "IR");
+            return new IRProcessing(new BallotTokenizer[]{tokenizer}, new ElectionOptions());
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Tests that the first open converts the file, later opens load the entry, and the election
+     * read from the entry matches the election read from the CSV file.
+     */
+    @Test
+    void hitAndMiss() throws IOException {
+        Path directory = Files.createTempDirectory("ballot-cache");
+        Path file = directory.resolve("IRTesting4.csv");
+        Files.copy(Paths.get("src/test/java/IRTesting4.csv"), file);
+        BallotCache cache = new BallotCache(directory.resolve("cache"));
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(file.toFile()));
+            br.readLine();
+            IRProcessing csv = new IRProcessing(new BufferedReader[]{br});
+
+            IRProcessing first = runCached(cache, file);
+            assertEquals(cache.getMisses(), 1);
+            assertEquals(cache.getHits(), 0);
+            assertTrue(Files.exists(cache.entry(file)));
+
+            IRProcessing second = runCached(cache, file);
+            assertEquals(cache.getMisses(), 1);
+            assertEquals(cache.getHits(), 1);
+
+            for (IRProcessing cached : new IRProcessing[]{first, second}) {
+                assertEquals(csv.totalNumBallots, cached.totalNumBallots);
+                for (int i = 0; i < csv.getTable().size(); i++) {
+                    assertEquals(csv.getTable().get(i).get_stats(), cached.getTable().get(i).get_stats());
+                }
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    /**
+     * Tests that a changed file, or a damaged entry, is converted again.
+     */
+    @Test
+    void invalidation() throws IOException {
+        Path directory = Files.createTempDirectory("ballot-cache");
+        Path file = directory.resolve("IRTesting4.csv");
+        Files.copy(Paths.get("src/test/java/IRTesting4.csv"), file);
+        BallotCache cache = new BallotCache(directory.resolve("cache"));
+        try {
+            String key = BallotCache.key(file);
+            assertTrue(key.matches("[0-9a-f]{64}-" + Files.size(file)));
+            runCached(cache, file).processElection();
+
+            //appending a ballot changes the key
+            Files.write(file, "\n2,1\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            assertNotEquals(BallotCache.key(file), key);
+            int ballots = runCached(cache, file).totalNumBallots;
+            assertEquals(cache.getMisses(), 2);
+
+            //an entry that is not a binary ballot file is replaced
+            Files.write(cache.entry(file), "IR\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals(runCached(cache, file).totalNumBallots, ballots);
+            assertEquals(cache.getMisses(), 3);
+            assertEquals(cache.getHits(), 0);
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    /**
+     * Tests that a file that is not an election file is opened directly and not cached.
+     */
+    @Test
+    void notAnElection() throws IOException {
+        Path directory = Files.createTempDirectory("ballot-cache");
+        Path file = directory.resolve("notes.txt");
+        Files.write(file, "hello\n".getBytes(StandardCharsets.US_ASCII));
+        BallotCache cache = new BallotCache(directory.resolve("cache"));
+        try {
+            BallotTokenizer tokenizer = cache.open(file);
+            assertEquals(tokenizer.readLine(), "hello");
+            tokenizer.close();
+            assertEquals(cache.getMisses(), 0);
+            assertFalse(Files.exists(cache.entry(file)));
+            try (Stream<Path> entries = Files.list(cache.getDirectory())) {
+                assertEquals(entries.count(), 0);
+            }
+
+            Path cacheDirectory = directory.resolve("main-cache");
+            assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/IRTesting5.csv",
+                    "--ballot-cache=" + cacheDirectory}));
+            assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/IRTesting5.csv",
+                    "--ballot-cache=" + cacheDirectory}));
+            try (Stream<Path> entries = Files.list(cacheDirectory)) {
+                assertEquals(entries.count(), 1);
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+}
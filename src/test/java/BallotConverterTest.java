@@ -0,0 +1,135 @@
+/**
+ * BallotConverterTest.java is used for testing the methods in the BallotConverter class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BallotConverterTest class contains methods for testing the BallotConverter class.
+ */
+class BallotConverterTest {
+
+    /**
+     * Converts a CSV election file into binary and writes it to a temporary file.
+     * @param csv  the path of the CSV file.
+     * @return  the path of the binary file.
+     * @throws IOException  if the conversion fails.
+     */
+    private Path convert(String csv) throws IOException {
+        Path binary = Files.createTempFile("ballots", ".vbf");
+        BallotTokenizer in = BallotTokenizer.open(Paths.get(csv));
+        try (OutputStream out = new FileOutputStream(binary.toFile())) {
+            BallotConverter.convert(in, out);
+        }
+        in.close();
+        return binary;
+    }
+
+    /**
+     * Reads every ballot record of a tokenizer positioned after the header.
+     * @param tokenizer  the tokenizer.
+     * @return  each non-empty record as a list of "column:value" fields.
+     * @throws IOException  if a record cannot be read.
+     */
+    private ArrayList<String> records(BallotTokenizer tokenizer) throws IOException {
+        ArrayList<String> records = new ArrayList<>();
+        StringBuilder record = new StringBuilder();
+        int columns;
+        while ((columns = tokenizer.readRecord((column, value) -> record.append(column).append(':').append(value).append(' '))) >= 0) {
+            if (columns > 0) {
+                records.add(columns + " " + record);
+            }
+            record.setLength(0);
+        }
+        return records;
+    }
+
+    /**
+     * Tests that a converted file has the same header lines and ballot fields as its CSV file.
+     */
+    @Test
+    void roundTrip() throws IOException {
+        String[] files = {"src/test/java/IRTesting4.csv", "src/test/java/CPLTesting1.csv", "src/test/java/POTest1.csv"};
+        int[] headerLines = {4, 11, 4};
+        for (int f = 0; f < files.length; f++) {
+            Path binary = convert(files[f]);
+            try {
+                BallotTokenizer csv = BallotTokenizer.open(Paths.get(files[f]));
+                BallotTokenizer converted = BallotTokenizer.open(binary);
+                for (int i = 0; i < headerLines[f]; i++) {
+                    assertEquals(csv.readLine(), converted.readLine());
+                }
+                assertFalse(csv.isBinary());
+                assertTrue(converted.isBinary());
+                assertEquals(records(csv), records(converted));
+                csv.close();
+                converted.close();
+            } finally {
+                Files.delete(binary);
+            }
+        }
+    }
+
+    /**
+     * Tests that elections read from converted files give the same results as from CSV files.
+     */
+    @Test
+    void electionsMatch() throws IOException {
+        Path ir = convert("src/test/java/IRTesting4.csv");
+        Path po = convert("src/test/java/POTest3.csv");
+        try {
+            BufferedReader br = new BufferedReader(new FileReader("src/test/java/IRTesting4.csv"));
+            br.readLine();
+            IRProcessing csvIR = new IRProcessing(new BufferedReader[]{br});
+            BallotTokenizer binaryIR = BallotTokenizer.open(ir);
+            assertEquals(binaryIR.readLine(), "IR");
+            IRProcessing converted = new IRProcessing(new BallotTokenizer[]{binaryIR}, new ElectionOptions());
+            assertEquals(csvIR.processElection(), converted.processElection());
+            assertEquals(csvIR.totalNumBallots, converted.totalNumBallots);
+
+            br = new BufferedReader(new FileReader("src/test/java/POTest3.csv"));
+            br.readLine();
+            POProcessing csvPO = new POProcessing(br);
+            BallotTokenizer binaryPO = BallotTokenizer.open(po);
+            binaryPO.readLine();
+            POProcessing convertedPO = new POProcessing(binaryPO, new ElectionOptions());
+            assertArrayEquals(csvPO.getCandidatesBallotCounts(), convertedPO.getCandidatesBallotCounts());
+
+            assertDoesNotThrow(() -> main.main(new String[]{ir.toString()}));
+        } finally {
+            Files.delete(ir);
+            Files.delete(po);
+        }
+    }
+
+    /**
+     * Tests that binary files of another version and already binary input are rejected.
+     */
+    @Test
+    void rejectsBadInput() throws IOException {
+        byte[] future = {(byte) 0x89, 'V', 'B', 'F', 3, 'I', 'R', '\n'};
+        BallotTokenizer tokenizer = new BallotTokenizer(ByteBuffer.wrap(future));
+        assertThrows(IOException.class, tokenizer::readLine);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BallotConverter.convert(new BallotTokenizer(ByteBuffer.wrap("PO\n1\n[A, B]\n1\n1\n".getBytes())), out);
+        BallotTokenizer binary = new BallotTokenizer(ByteBuffer.wrap(out.toByteArray()));
+        assertThrows(IOException.class, () -> BallotConverter.convert(binary, new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * BallotProvenanceTest.java is used for testing the methods in the BallotProvenance class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BallotProvenanceTest class contains methods for testing the BallotProvenance class.
+ */
+class BallotProvenanceTest {
+
+    /**
+     * Finds the offset of every non-empty ballot line of an IR file, after its 4 header lines.
+     * @param file  the path of the IR file.
+     * @return  the offsets, in file order.
+     * @throws IOException  if the file cannot be read.
+     */
+    private ArrayList<Long> ballotOffsets(String file) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(file));
+        ArrayList<Long> offsets = new ArrayList<>();
+        int line = 0;
+        int start = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i == bytes.length || bytes[i] == '\n') {
+                String text = new String(bytes, start, i - start).trim();
+                if (line >= 4 && !text.isEmpty()) {
+                    offsets.add((long) start);
+                }
+                line++;
+                start = i + 1;
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Runs an IR election that writes a provenance file.
+     * @param files  the election files.
+     * @param options  the options, a provenance file is added.
+     * @param sidecar  the provenance file.
+     * @return  the processed election.
+     * @throws IOException  if a file cannot be read.
+     */
+    private IRProcessing run(String[] files, ElectionOptions options, Path sidecar) throws IOException {
+        options.setProvenanceFile(sidecar.toString());
+        BallotTokenizer[] tokenizers = new BallotTokenizer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            tokenizers[i] = BallotTokenizer.open(Paths.get(files[i]));
+            tokenizers[i].readLine();
+        }
+        try {
+            return new IRProcessing(tokenizers, options);
+        } finally {
+            for (BallotTokenizer tokenizer : tokenizers) {
+                tokenizer.close();
+            }
+        }
+    }
+
+    /**
+     * Tests that every ballot index maps to the file and line it was read from, whether files
+     * are read one after another, in parallel chunks, or with grouping, and that the sidecar
+     * file reads back the same.
+     */
+    @Test
+    void offsets() throws IOException {
+        String[] files = {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv",
+                "src/test/java/IRTesting6.csv"};
+        ArrayList<String> expectedFiles = new ArrayList<>();
+        ArrayList<Long> expectedOffsets = new ArrayList<>();
+        for (String file : files) {
+            for (long offset : ballotOffsets(file)) {
+                expectedFiles.add(file);
+                expectedOffsets.add(offset);
+            }
+        }
+
+        Path sidecar = Files.createTempFile("provenance", ".vbpi");
+        try {
+            for (int mode = 0; mode < 3; mode++) {
+                ElectionOptions options = new ElectionOptions();
+                options.setParseChunkSize(mode == 1 ? 8 : Integer.MAX_VALUE);
+                options.setGroupBallots(mode == 2);
+                IRProcessing election = run(files, options, sidecar);
+
+                BallotProvenance written = election.getProvenance();
+                BallotProvenance read = BallotProvenance.read(sidecar);
+                assertEquals(written.size(), election.totalNumBallots);
+                for (BallotProvenance provenance : new BallotProvenance[]{written, read}) {
+                    assertEquals(provenance.size(), expectedOffsets.size());
+                    for (int i = 0; i < provenance.size(); i++) {
+                        assertEquals(provenance.getFileName(i), expectedFiles.get(i));
+                        assertEquals(provenance.getOffset(i), (long) expectedOffsets.get(i));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(sidecar);
+        }
+        assertNull(new IRProcessing(new BufferedReader[]{reader("src/test/java/IRTesting5.csv")}).getProvenance());
+    }
+
+    /**
+     * Opens an election file past its election type line.
+     * @param file  the path of the election file.
+     * @return  a BufferedReader positioned at the second line.
+     * @throws IOException  if the file cannot be read.
+     */
+    private BufferedReader reader(String file) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        br.readLine();
+        return br;
+    }
+
+    /**
+     * Tests the add(), addFile(), getFileIndex() and readLine() methods, including empty files.
+     */
+    @Test
+    void fileIndex() {
+        BallotProvenance first = new BallotProvenance();
+        for (int i = 0; i < 40; i++) {
+            first.add(100 + i);
+        }
+        BallotProvenance second = new BallotProvenance();
+        second.add(7);
+        BallotProvenance provenance = new BallotProvenance();
+        provenance.addFile("a", first);
+        provenance.addFile("empty", new BallotProvenance());
+        provenance.addFile("b", second);
+
+        assertEquals(provenance.size(), 41);
+        assertEquals(provenance.getFileIndex(0), 0);
+        assertEquals(provenance.getFileIndex(39), 0);
+        assertEquals(provenance.getFileIndex(40), 2);
+        assertEquals(provenance.getFileName(40), "b");
+        assertEquals(provenance.getOffset(39), 139);
+        assertEquals(provenance.getOffset(40), 7);
+        assertThrows(IndexOutOfBoundsException.class, () -> provenance.getOffset(41));
+
+        assertEquals(BallotProvenance.readLine(Paths.get("src/test/java/IRTesting5.csv"), 5), "ashton(D),caleb(R) ,garrett(I)");
+        assertNull(BallotProvenance.readLine(Paths.get("src/test/java/missing.csv"), 0));
+    }
+
+    /**
+     * Tests that file names with a NUL or a character outside the Basic Multilingual Plane are
+     * written and read back unchanged, and that a read sidecar file takes more offsets.
+     */
+    @Test
+    void writeAndRead() throws IOException {
+        BallotProvenance ballots = new BallotProvenance();
+        for (int i = 0; i < 100; i++) {
+            ballots.add(1000L * i + (1L << 40));
+        }
+        BallotProvenance provenance = new BallotProvenance();
+        String[] names = {"nul\u0000name.csv", "\ud83d\uddf3ballots.csv", "caf\u00e9.csv"};
+        provenance.addFile(names[0], ballots);
+        provenance.addFile(names[1], new BallotProvenance());
+        provenance.addFile(names[2], ballots);
+        Path sidecar = Files.createTempFile("provenance", ".vbpi");
+        try {
+            provenance.write(sidecar);
+            BallotProvenance read = BallotProvenance.read(sidecar);
+            assertEquals(read.size(), 200);
+            assertEquals(read.getFileName(0), names[0]);
+            assertEquals(read.getFileName(199), names[2]);
+            assertEquals(read.getOffset(150), 50000L + (1L << 40));
+            assertThrows(IndexOutOfBoundsException.class, () -> read.getOffset(200));
+
+            read.add(5);
+            read.addAll(BallotProvenance.read(sidecar));
+            assertEquals(read.size(), 401);
+            assertEquals(read.getOffset(199), 99000L + (1L << 40));
+            assertEquals(read.getOffset(200), 5);
+            assertEquals(read.getOffset(400), 99000L + (1L << 40));
+        } finally {
+            Files.delete(sidecar);
+        }
+    }
+
+    /**
+     * Tests the provenance command line tool and the --provenance option.
+     */
+    @Test
+    void commandLine() throws IOException {
+        Path sidecar = Files.createTempFile("provenance", ".vbpi");
+        try {
+            assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/IRTesting5.csv",
+                    "--provenance=" + sidecar}));
+            assertEquals(BallotProvenance.read(sidecar).size(), 4);
+            assertDoesNotThrow(() -> BallotProvenance.main(new String[]{sidecar.toString(), "0", "3", "4"}));
+            assertDoesNotThrow(() -> BallotProvenance.main(new String[]{sidecar.toString()}));
+
+            Files.write(sidecar, new byte[]{1, 2, 3, 4, 5, 6});
+            assertThrows(IOException.class, () -> BallotProvenance.read(sidecar));
+        } finally {
+            Files.delete(sidecar);
+        }
+    }
+}
@@ -6,7 +6,7 @@
 
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,29 +20,23 @@ class BallotTest {
      */
     @Test
     void getNextCandidateAndUpdate() {
-        ArrayList<String> cands1 = new ArrayList<String>();
-        cands1.add("caleb");
-        cands1.add("ashton");
+        int[] cands1 = {0, 1};
         Ballot blt1 = new Ballot(0, 2, cands1);
-        assertEquals(blt1.getNextCandidate(),"caleb");
+        assertEquals(blt1.getNextCandidate(), 0);
         assertEquals(blt1.updateBallot(), true);
-        assertEquals(blt1.getNextCandidate(),"ashton");
+        assertEquals(blt1.getNextCandidate(), 1);
         assertEquals(blt1.updateBallot(), false);
         assertEquals(blt1.getNumRankings(), 0);
 
-        ArrayList<String> cands2 = new ArrayList<String>();
-        cands2.add("caleb");
-        cands2.add("ashton");
-        cands2.add("abc");
-        cands2.add("abcd 123");
+        int[] cands2 = {0, 1, 2, 3};
         Ballot blt2 = new Ballot(0, 4, cands2);
-        assertEquals(blt2.getNextCandidate(),"caleb");
+        assertEquals(blt2.getNextCandidate(), 0);
         assertEquals(blt2.updateBallot(), true);
-        assertEquals(blt2.getNextCandidate(),"ashton");
+        assertEquals(blt2.getNextCandidate(), 1);
         assertEquals(blt2.updateBallot(), true);
-        assertEquals(blt2.getNextCandidate(),"abc");
+        assertEquals(blt2.getNextCandidate(), 2);
         assertEquals(blt2.updateBallot(), true);
-        assertEquals(blt2.getNextCandidate(),"abcd 123");
+        assertEquals(blt2.getNextCandidate(), 3);
 //        assertEquals(blt2.updateBallot(), false);
     }
 
@@ -52,7 +46,7 @@ class BallotTest {
      */
     @Test
     void getIndex() {
-        ArrayList<String> cands = new ArrayList<String>();
+        int[] cands = {0, 1};
         Ballot blt1 = new Ballot(0, 2, cands);
         Ballot blt2 = new Ballot(1, 2, cands);
         Ballot blt3 = new Ballot(2, 2, cands);
@@ -70,23 +64,96 @@ class BallotTest {
      */
     @Test
     void updateBallotBugFixTest() {
-        ArrayList<String> cands = new ArrayList<String>();
-        cands.add("caleb");
-        cands.add("ashton");
+        int[] cands = {0, 1};
         Ballot blt1 = new Ballot(0, 2, cands);
         assertEquals(blt1.getNumRankings(), 2);
         assertEquals(blt1.updateBallot(), true);
         assertEquals(blt1.getNumRankings(), 1);
         assertEquals(blt1.updateBallot(), false);
 
-        ArrayList<String> cands2 = new ArrayList<String>();
-        cands2.add("ashton");
+        int[] cands2 = {1};
         Ballot blt2 = new Ballot(1, 1, cands2);
         assertEquals(blt2.updateBallot(), false);
 
-        ArrayList<String> cands3 = new ArrayList<String>();
+        int[] cands3 = {};
         Ballot blt3 = new Ballot(2, 0, cands3);
         assertEquals(blt2.updateBallot(), false);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that ballots ranking candidate indices too large for a byte keep their rankings,
+     * and that indices too large to pack are rejected.
+     */
+    @Test
+    void wideCandidateIndices() {
+        int[] cands = {300, 5, 65535};
+        Ballot blt1 = new Ballot(0, 3, cands);
+        assertEquals(blt1.getNextCandidate(), 300);
+        assertEquals(blt1.updateBallot(), true);
+        assertEquals(blt1.getNextCandidate(), 5);
+        assertEquals(blt1.updateBallot(), true);
+        assertEquals(blt1.getNextCandidate(), 65535);
+
+        int[] cands2 = {255, 0};
+        Ballot blt2 = new Ballot(1, 2, cands2);
+        assertEquals(blt2.getNextCandidate(), 255);
+
+        assertThrows(IllegalArgumentException.class, () -> new Ballot(2, 1, new int[]{65536}));
+        assertThrows(IllegalArgumentException.class, () -> new Ballot(3, 1, new int[]{-1}));
+    }
+
+    /**
+     * Tests the addMember(), getWeight(), getMemberIndices(), and getRankingKey() methods in the
+     * Ballot class.
+     */
+    @Test
+    void groupMembers() {
+        int[] cands = {2, 0, 1};
+        Ballot blt1 = new Ballot(4, 3, cands);
+        assertEquals(blt1.getWeight(), 1);
+        assertArrayEquals(blt1.getMemberIndices(), new int[]{4});
+
+        for (int i = 5; i < 12; i++) {
+            blt1.addMember(i);
+        }
+        assertEquals(blt1.getWeight(), 8);
+        assertArrayEquals(blt1.getMemberIndices(), new int[]{4, 5, 6, 7, 8, 9, 10, 11});
+
+        Ballot blt2 = new Ballot(12, 3, new int[]{2, 0, 1});
+        Ballot blt3 = new Ballot(13, 2, new int[]{2, 0});
+        assertEquals(blt1.getRankingKey(), blt2.getRankingKey());
+        assertEquals(blt1.getRankingKey().hashCode(), blt2.getRankingKey().hashCode());
+        assertNotEquals(blt1.getRankingKey(), blt3.getRankingKey());
+    }
+
+    /**
+     * Tests the advance() and reset() methods in the Ballot class, and that advancing never
+     * changes the rankings themselves.
+     */
+    @Test
+    void advanceAndReset() {
+        int[] cands = {0, 1, 2, 3};
+        Ballot blt1 = new Ballot(0, 4, cands);
+        BitSet alive = new BitSet();
+        alive.set(0, 4);
+
+        //1 and 2 are eliminated, so the ballot skips straight to 3
+        alive.clear(1);
+        alive.clear(2);
+        assertEquals(blt1.advance(alive), true);
+        assertEquals(blt1.getNextCandidate(), 3);
+        assertEquals(blt1.getNumRankings(), 1);
+
+        alive.clear(3);
+        assertEquals(blt1.advance(alive), false);
+        assertEquals(blt1.getNumRankings(), 0);
+        assertEquals(blt1.advance(alive), false);
+
+        blt1.reset();
+        assertEquals(blt1.getNextCandidate(), 0);
+        assertEquals(blt1.getNumRankings(), 4);
+        assertEquals(blt1.updateBallot(), true);
+        assertEquals(blt1.getNextCandidate(), 1);
+    }
+
+}
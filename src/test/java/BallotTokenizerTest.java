@@ -0,0 +1,266 @@
+/**
+ * BallotTokenizerTest.java is used for testing the methods in the BallotTokenizer class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BallotTokenizerTest class contains methods for testing the BallotTokenizer class.
+ */
+class BallotTokenizerTest {
+
+    /**
+     * Creates a tokenizer reading the given text from a stream with a small buffer, so lines
+     * cross buffer boundaries.
+     * @param text  the file contents.
+     * @return  a tokenizer over the text.
+     */
+    private BallotTokenizer stream(String text) {
+        return new BallotTokenizer(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), 4);
+    }
+
+    /**
+     * Reads one ballot line, recording each field as "column:value".
+     * @param tokenizer  the tokenizer to read from.
+     * @param fields  receives the fields of the line.
+     * @return  what readRecord() returned.
+     * @throws IOException  if the line cannot be read.
+     */
+    private int record(BallotTokenizer tokenizer, ArrayList<String> fields) throws IOException {
+        fields.clear();
+        return tokenizer.readRecord((column, value) -> fields.add(column + ":" + value));
+    }
+
+    /**
+     * Tests the readRecord() method in the BallotTokenizer class with empty fields and whitespace.
+     */
+    @Test
+    void readRecord() throws IOException {
+        BallotTokenizer tokenizer = stream("1,,3,2\r\n, 12 ,\n\n,,,\n7");
+        ArrayList<String> fields = new ArrayList<>();
+
+        assertEquals(record(tokenizer, fields), 4);
+        assertEquals(fields.toString(), "[0:1, 2:3, 3:2]");
+
+        assertEquals(record(tokenizer, fields), 3);
+        assertEquals(fields.toString(), "[1:12]");
+
+        assertEquals(record(tokenizer, fields), 0);
+        assertTrue(fields.isEmpty());
+
+        assertEquals(record(tokenizer, fields), 4);
+        assertTrue(fields.isEmpty());
+
+        //the last line has no line ending
+        assertEquals(record(tokenizer, fields), 1);
+        assertEquals(fields.toString(), "[0:7]");
+
+        assertEquals(record(tokenizer, fields), -1);
+        assertEquals(tokenizer.getLineNumber(), 5);
+    }
+
+    /**
+     * Tests that readFirstField() hands over only the first non-empty field and leaves the
+     * tokenizer at the start of the next line.
+     */
+    @Test
+    void readFirstField() throws IOException {
+        BallotTokenizer tokenizer = stream("1,,3,2\r\n, 12 ,x\n\n,,,\n7");
+        ArrayList<String> fields = new ArrayList<>();
+        BallotTokenizer.FieldHandler collect = (column, value) -> fields.add(column + ":" + value);
+
+        assertEquals(tokenizer.readFirstField(collect), 1);
+        assertEquals(fields.toString(), "[0:1]");
+        assertEquals(tokenizer.getPosition(), 8);
+        fields.clear();
+
+        //the rest of the line is skipped, not checked
+        assertEquals(tokenizer.readFirstField(collect), 2);
+        assertEquals(fields.toString(), "[1:12]");
+        fields.clear();
+
+        assertEquals(tokenizer.readFirstField(collect), 0);
+        assertEquals(tokenizer.readFirstField(collect), 4);
+        assertTrue(fields.isEmpty());
+        assertEquals(tokenizer.readFirstField(collect), 1);
+        assertEquals(fields.toString(), "[0:7]");
+        assertEquals(tokenizer.readFirstField(collect), -1);
+        assertEquals(tokenizer.getLineNumber(), 5);
+    }
+
+    /**
+     * Tests that readRecord() rejects fields that are not whole numbers.
+     */
+    @Test
+    void readRecordMalformed() {
+        BallotTokenizer tokenizer = stream("1,x\n");
+        assertThrows(IOException.class, () -> tokenizer.readRecord((column, value) -> { }));
+
+        //4294967297 would wrap to 1, and spaces do not join digits
+        for (String line : new String[]{"4294967297\n", ",2147483648\n", "1 2,3\n"}) {
+            IOException e = assertThrows(IOException.class, () -> stream(line).readRecord((column, value) -> { }));
+            assertTrue(e.getMessage().contains("line 1"));
+            assertThrows(IOException.class, () -> stream(line).readFirstField((column, value) -> { }));
+        }
+        ArrayList<String> fields = new ArrayList<>();
+        assertDoesNotThrow(() -> record(stream("2147483647, 3 \r\n"), fields));
+        assertEquals(fields.toString(), "[0:2147483647, 1:3]");
+    }
+
+    /**
+     * Tests the readLine() and skipLine() methods, and that a byte order mark is skipped.
+     */
+    @Test
+    void readLineWithByteOrderMark() throws IOException {
+        BallotTokenizer tokenizer = stream("\uFEFFPO\r\n3\nskipped\n[Pike, D]");
+        assertEquals(tokenizer.readLine(), "PO");
+        assertEquals(tokenizer.readLine(), "3");
+        assertTrue(tokenizer.skipLine());
+        assertEquals(tokenizer.readLine(), "[Pike, D]");
+        assertNull(tokenizer.readLine());
+        assertFalse(tokenizer.skipLine());
+
+        BallotTokenizer noMark = new BallotTokenizer(ByteBuffer.wrap("IR\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(noMark.readLine(), "IR");
+        assertEquals(noMark.getPosition(), 3);
+    }
+
+    /**
+     * Tests that a tokenizer over a Reader gives the same fields as one over the bytes.
+     */
+    @Test
+    void fromReader() throws IOException {
+        String text = "2\n1,2\n,1\n";
+        BallotTokenizer tokenizer = BallotTokenizer.fromReader(new StringReader(text));
+        ArrayList<String> fields = new ArrayList<>();
+        assertEquals(tokenizer.readLine(), "2");
+        record(tokenizer, fields);
+        assertEquals(fields.toString(), "[0:1, 1:2]");
+        record(tokenizer, fields);
+        assertEquals(fields.toString(), "[1:1]");
+        assertEquals(record(tokenizer, fields), -1);
+
+        //names that are not ASCII, one outside the Basic Multilingual Plane, survive a small buffer
+        String names = "Jos\u00e9 (D), \u674e (R), \uD83D\uDE00 (I)";
+        tokenizer = BallotTokenizer.fromReader(new BufferedReader(new StringReader(names + "\n1\n"), 2));
+        assertEquals(tokenizer.readLine(), names);
+        record(tokenizer, fields);
+        assertEquals(fields.toString(), "[0:1]");
+    }
+
+    /**
+     * Tests that a mapped file read in windows smaller than a line gives the same lines as a
+     * BufferedReader, and that open() maps the whole file.
+     */
+    @Test
+    void mappedWindows() throws IOException {
+        String path = "src/test/java/IRTesting4.csv";
+        BallotTokenizer windowed = new BallotTokenizer(
+                FileChannel.open(Paths.get(path), StandardOpenOption.READ), 5);
+        BufferedReader br = new BufferedReader(new FileReader(path));
+        String expected;
+        while ((expected = br.readLine()) != null) {
+            assertEquals(windowed.readLine(), expected);
+        }
+        assertNull(windowed.readLine());
+        windowed.close();
+        br.close();
+
+        BallotTokenizer whole = BallotTokenizer.open(Paths.get(path));
+        assertEquals(whole.readLine(), "IR");
+        whole.close();
+
+        assertThrows(IllegalArgumentException.class, () -> new BallotTokenizer((FileChannel) null, 2));
+    }
+
+    /**
+     * Tests that open() decompresses a gzip-compressed file and that main can run it.
+     */
+    @Test
+    void gzipFile() throws IOException {
+        String path = "src/test/java/IRTesting4.csv";
+        Path compressed = Files.createTempFile("IRTesting4", ".csv.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                out.write(Files.readAllBytes(Paths.get(path)));
+            }
+            BallotTokenizer tokenizer = BallotTokenizer.open(compressed);
+            assertNull(tokenizer.getChannel());
+            BufferedReader br = new BufferedReader(new FileReader(path));
+            String expected;
+            while ((expected = br.readLine()) != null) {
+                assertEquals(tokenizer.readLine(), expected);
+            }
+            assertNull(tokenizer.readLine());
+            tokenizer.close();
+            br.close();
+
+            assertDoesNotThrow(() -> main.main(new String[]{compressed.toString()}));
+        } finally {
+            Files.delete(compressed);
+        }
+    }
+
+    /**
+     * Tests open() on a stream, for plain and gzip-compressed input.
+     */
+    @Test
+    void openStream() throws IOException {
+        byte[] plain = "PO\n2\n1,\n,1\n".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(plain);
+        }
+        for (byte[] bytes : new byte[][]{plain, compressed.toByteArray(), new byte[]{1}}) {
+            BallotTokenizer tokenizer = BallotTokenizer.open(new ByteArrayInputStream(bytes));
+            if (bytes.length == 1) {
+                assertEquals(tokenizer.readLine(), "\u0001");
+            } else {
+                assertEquals(tokenizer.readLine(), "PO");
+                assertEquals(tokenizer.readLine(), "2");
+                assertEquals(tokenizer.readLine(), "1,");
+                assertEquals(tokenizer.readLine(), ",1");
+            }
+            assertNull(tokenizer.readLine());
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Tests the readCount() and checkCount() methods.
+     */
+    @Test
+    void readCount() throws IOException {
+        BallotTokenizer tokenizer = BallotTokenizer.fromReader(new StringReader(" 12\r\n\n  \nx\n"));
+        assertEquals(tokenizer.readCount(), 12);
+        assertEquals(tokenizer.readCount(), -1);
+        assertEquals(tokenizer.readCount(), -1);
+        assertThrows(NumberFormatException.class, tokenizer::readCount);
+        assertEquals(tokenizer.readCount(), -1);
+
+        assertTrue(BallotTokenizer.checkCount(0, 12, 12));
+        assertTrue(BallotTokenizer.checkCount(0, -1, 12));
+        assertFalse(BallotTokenizer.checkCount(0, 11, 12));
+    }
+}
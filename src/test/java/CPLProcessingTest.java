@@ -562,4 +562,31 @@ class CPLProcessingTest {
         assertEquals("Green", parties2.get(4).getParty());
         assertEquals("Independent", parties2.get(5).getParty());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that parsing mapped files in small parallel chunks counts the same votes as
+     * reading them one line at a time.
+     * @throws IOException Throws IOException if a file cannot be read.
+     */
+    @Test
+    void chunkedParsing() throws IOException {
+        String[] paths = {"src/test/java/CPLTesting3.csv", "src/test/java/CPLTesting4.csv"};
+        BufferedReader[] brs = new BufferedReader[paths.length];
+        BallotTokenizer[] files = new BallotTokenizer[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            brs[i] = new BufferedReader(new FileReader(paths[i]));
+            brs[i].readLine();
+            files[i] = BallotTokenizer.open(java.nio.file.Paths.get(paths[i]));
+            files[i].readLine();
+        }
+        CPLProcessing sequential = new CPLProcessing(brs);
+        ElectionOptions options = new ElectionOptions();
+        options.setParseChunkSize(4);
+        CPLProcessing chunked = new CPLProcessing(files, options);
+
+        assertEquals(sequential.getNumBallots(), chunked.getNumBallots());
+        for (int i = 0; i < sequential.getParties().size(); i++) {
+            assertEquals(sequential.getParties().get(i).getBallotCount(), chunked.getParties().get(i).getBallotCount());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * CandidateHeapTest.java is used for testing the methods in the CandidateHeap class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CandidateHeapTest class contains methods for testing the CandidateHeap class.
+ */
+class CandidateHeapTest {
+
+    /**
+     * Creates candidates with candidate indices 0 to counts.length - 1, giving candidate i
+     * counts[i] single ballots.
+     * @param counts  the number of ballots for each candidate.
+     * @return  the candidates in candidate index order.
+     */
+    private ArrayList<Candidate> makeCandidates(int[] counts) {
+        ArrayList<Candidate> cands = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            Candidate cand = new Candidate("party", "cand" + i, i);
+            for (int b = 0; b < counts[i]; b++) {
+                cand.addBallot(new Ballot(b, 1, new int[]{i}));
+            }
+            cands.add(cand);
+        }
+        return cands;
+    }
+
+    /**
+     * Gets the names of a list of candidates.
+     * @param cands  the candidates.
+     * @return  their names, in the same order.
+     */
+    private ArrayList<String> names(ArrayList<Candidate> cands) {
+        ArrayList<String> names = new ArrayList<>();
+        for (Candidate cand : cands) {
+            names.add(cand.getCandidateName());
+        }
+        return names;
+    }
+
+    /**
+     * Tests the minTies() method in the CandidateHeap class with and without ties.
+     */
+    @Test
+    void minTies() {
+        ArrayList<Candidate> cands = makeCandidates(new int[]{5, 2, 7, 2, 9, 2});
+        CandidateHeap heap = new CandidateHeap(cands, cands.size());
+        assertEquals(heap.size(), 6);
+
+        ArrayList<String> expected = new ArrayList<>();
+        expected.add("cand1");
+        expected.add("cand3");
+        expected.add("cand5");
+        assertEquals(names(heap.minTies()), expected);
+
+        ArrayList<Candidate> single = makeCandidates(new int[]{4, 3, 8});
+        CandidateHeap singleHeap = new CandidateHeap(single, single.size());
+        assertEquals(singleHeap.minTies().size(), 1);
+        assertEquals(singleHeap.minTies().get(0).getCandidateName(), "cand1");
+    }
+
+    /**
+     * Tests that ballot count changes made through the Candidate keep the heap in order.
+     */
+    @Test
+    void updateThroughCandidate() {
+        ArrayList<Candidate> cands = makeCandidates(new int[]{1, 3, 4});
+        CandidateHeap heap = new CandidateHeap(cands, cands.size());
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand0");
+
+        cands.get(0).addBallot(new Ballot(10, 1, new int[]{0}));
+        cands.get(0).addBallot(new Ballot(11, 1, new int[]{0}));
+        cands.get(0).addBallot(new Ballot(12, 1, new int[]{0}));
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand1");
+
+        cands.get(2).removeBallot(0);
+        cands.get(2).removeBallot(0);
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand2");
+    }
+
+    /**
+     * Tests the remove() method in the CandidateHeap class.
+     */
+    @Test
+    void remove() {
+        ArrayList<Candidate> cands = makeCandidates(new int[]{1, 3, 2, 6});
+        CandidateHeap heap = new CandidateHeap(cands, cands.size());
+
+        heap.remove(0);
+        assertEquals(heap.size(), 3);
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand2");
+
+        //removed candidates no longer move the heap
+        cands.get(0).removeBallot(0);
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand2");
+
+        heap.remove(2);
+        heap.remove(2);
+        assertEquals(heap.size(), 2);
+        assertEquals(heap.minTies().get(0).getCandidateName(), "cand1");
+    }
+}
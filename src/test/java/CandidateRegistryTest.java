@@ -0,0 +1,71 @@
+/**
+ * CandidateRegistryTest.java is used for testing the methods in the CandidateRegistry class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CandidateRegistryTest class contains methods for testing the CandidateRegistry class.
+ */
+class CandidateRegistryTest {
+
+    /**
+     * Creates three candidates in candidate index order.
+     * @return  the candidates ashton, caleb and garrett.
+     */
+    private Candidate[] makeCandidates() {
+        return new Candidate[]{
+                new Candidate("D", "ashton", 0),
+                new Candidate("R", "caleb", 1),
+                new Candidate("I", "garrett", 2)
+        };
+    }
+
+    /**
+     * Tests the get(), indexOf(), and size() methods in the CandidateRegistry class.
+     */
+    @Test
+    void lookup() {
+        Candidate[] cands = makeCandidates();
+        CandidateRegistry registry = new CandidateRegistry(cands);
+
+        assertEquals(registry.size(), 3);
+        assertSame(registry.get(0), cands[0]);
+        assertSame(registry.get(2), cands[2]);
+        assertEquals(registry.indexOf("caleb"), 1);
+        assertEquals(registry.indexOf("garrett"), 2);
+        assertEquals(registry.indexOf("elias"), -1);
+    }
+
+    /**
+     * Tests the isAlive(), eliminate(), and aliveCount() methods in the CandidateRegistry class.
+     */
+    @Test
+    void eliminate() {
+        CandidateRegistry registry = new CandidateRegistry(makeCandidates());
+        assertEquals(registry.aliveCount(), 3);
+        assertTrue(registry.isAlive(1));
+
+        registry.eliminate(1);
+        assertFalse(registry.isAlive(1));
+        assertTrue(registry.isAlive(0));
+        assertTrue(registry.isAlive(2));
+        assertEquals(registry.aliveCount(), 2);
+
+        //eliminated candidates can still be looked up
+        assertEquals(registry.get(1).getCandidateName(), "caleb");
+    }
+
+    /**
+     * Tests that candidates whose index does not match their position are rejected.
+     */
+    @Test
+    void mismatchedIndex() {
+        Candidate[] cands = {new Candidate("D", "ashton", 1)};
+        assertThrows(IllegalArgumentException.class, () -> new CandidateRegistry(cands));
+    }
+}
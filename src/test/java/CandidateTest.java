@@ -41,19 +41,14 @@ class CandidateTest {
      */
     @Test
     void addRemoveBallot() {
-        ArrayList<String> cands1 = new ArrayList<String>();
-        cands1.add("caleb");
-        cands1.add("ashton");
-        cands1.add("garrett");
-        cands1.add("elias");
+        int[] cands1 = {0, 1, 2, 3};
         Ballot blt1 = new Ballot(0, 4, cands1);
 
-        //Test what happens on updating a ballot with an empty arraylist
-        ArrayList<String> cands2 = new ArrayList<String>();
+        //Test what happens on updating a ballot with an empty ranking
+        int[] cands2 = {};
         Ballot blt2 = new Ballot(1, 0, cands2);
 
-        ArrayList<String> cands3 = new ArrayList<String>();
-        cands3.add("caleb");
+        int[] cands3 = {0};
         Ballot blt3 = new Ballot(2, 1, cands3);
 
         Candidate cand1 = new Candidate("party name", "cand name");
@@ -84,20 +79,13 @@ class CandidateTest {
 
         Candidate countCand = new Candidate("party name", "cand name");
 
-        ArrayList<String> cands1 = new ArrayList<String>();
-        cands1.add("caleb");
-        cands1.add("ashton");
-        cands1.add("garrett");
-        cands1.add("elias");
+        int[] cands1 = {0, 1, 2, 3};
         Ballot blt1 = new Ballot(0, 4, cands1);
 
-        ArrayList<String> cands2 = new ArrayList<String>();
-        cands1.add("caleb");
-        cands1.add("ashton");
+        int[] cands2 = {};
         Ballot blt2 = new Ballot(1, 0, cands2);
 
-        ArrayList<String> cands3 = new ArrayList<String>();
-        cands1.add("caleb");
+        int[] cands3 = {0};
         Ballot blt3 = new Ballot(2, 1, cands3);
 
         countCand.addBallot(blt1);
@@ -150,20 +138,13 @@ class CandidateTest {
 
         Candidate getBallotsCand = new Candidate("party name", "cand name");
 
-        ArrayList<String> cands1 = new ArrayList<String>();
-        cands1.add("caleb");
-        cands1.add("ashton");
-        cands1.add("garrett");
-        cands1.add("elias");
+        int[] cands1 = {0, 1, 2, 3};
         Ballot blt1 = new Ballot(0, 4, cands1);
 
-        ArrayList<String> cands2 = new ArrayList<String>();
-        cands2.add("ashton");
-        cands2.add("caleb");
-        Ballot blt2 = new Ballot(1, 0, cands2);
+        int[] cands2 = {1, 0};
+        Ballot blt2 = new Ballot(1, 2, cands2);
 
-        ArrayList<String> cands3 = new ArrayList<String>();
-        cands3.add("garrett");
+        int[] cands3 = {2};
         Ballot blt3 = new Ballot(2, 1, cands3);
 
         getBallotsCand.addBallot(blt1);
@@ -175,9 +156,9 @@ class CandidateTest {
         assertEquals(ballots.get(1).getIndex(), 1);
         assertEquals(ballots.get(2).getIndex(), 2);
 
-        assertEquals(ballots.get(0).getNextCandidate(), "caleb");
-        assertEquals(ballots.get(1).getNextCandidate(), "ashton");
-        assertEquals(ballots.get(2).getNextCandidate(), "garrett");
+        assertEquals(ballots.get(0).getNextCandidate(), 0);
+        assertEquals(ballots.get(1).getNextCandidate(), 1);
+        assertEquals(ballots.get(2).getNextCandidate(), 2);
 
     }
 
@@ -197,4 +178,35 @@ class CandidateTest {
         assertEquals(cand4.getCandidateName(), "**_LIBerAls_**64");
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that a grouped Ballot counts as every ballot in its group.
+     */
+    @Test
+    void weightedBallotCount() {
+        Candidate cand1 = new Candidate("party name", "cand name");
+        Ballot group = new Ballot(0, 2, new int[]{0, 1});
+        group.addMember(3);
+        group.addMember(7);
+
+        cand1.addBallot(group);
+        cand1.addBallot(new Ballot(1, 1, new int[]{0}));
+        assertEquals(cand1.getBallotCount(), 4);
+        assertEquals(cand1.getBallots().size(), 2);
+
+        cand1.removeBallot(0);
+        assertEquals(cand1.getBallotCount(), 1);
+    }
+
+    /**
+     * Tests the addVotes() method in the Candidate class, which counts votes without Ballots.
+     */
+    @Test
+    void addVotes() {
+        Candidate cand1 = new Candidate("party name", "joe biden");
+        cand1.addBallot(new Ballot(0, 1, new int[]{0}));
+        cand1.addVotes(5);
+        assertEquals(cand1.getBallotCount(), 6);
+        assertEquals(cand1.getBallots().size(), 1);
+    }
+
+}
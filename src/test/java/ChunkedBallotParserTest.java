@@ -0,0 +1,225 @@
+/**
+ * ChunkedBallotParserTest.java is used for testing the methods in the ChunkedBallotParser class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ChunkedBallotParserTest class contains methods for testing the ChunkedBallotParser class.
+ */
+class ChunkedBallotParserTest {
+
+    /**
+     * Tests that every line is parsed by exactly one chunk, in file order, for chunk sizes
+     * smaller than, equal to and larger than a line.
+     */
+    @Test
+    void parse() throws IOException {
+        Path file = Files.createTempFile("ballots", ".csv");
+        StringBuilder text = new StringBuilder("PO\n");
+        ArrayList<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String line = i + "," + (i * 7);
+            expected.add(line);
+            text.append(line).append('\n');
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+        try {
+            for (int chunkSize : new int[]{1, 6, 40, 1000}) {
+                BallotTokenizer tokenizer = BallotTokenizer.open(file);
+                assertEquals(tokenizer.readLine(), "PO");
+                assertEquals(ChunkedBallotParser.canSplit(tokenizer, chunkSize), chunkSize < 1000);
+
+                List<ArrayList<String>> chunks = ChunkedBallotParser.parse(tokenizer, chunkSize, chunk -> {
+                    ArrayList<String> lines = new ArrayList<>();
+                    String line;
+                    while ((line = chunk.readLine()) != null) {
+                        lines.add(line);
+                    }
+                    return lines;
+                });
+                ArrayList<String> lines = new ArrayList<>();
+                for (ArrayList<String> chunk : chunks) {
+                    lines.addAll(chunk);
+                }
+                assertEquals(lines, expected);
+                assertNull(tokenizer.readLine());
+                tokenizer.close();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a line failing in a later chunk is reported with its line in the whole file,
+     * without parsing the chunk again.
+     */
+    @Test
+    void parseFailingLine() throws IOException {
+        Path file = Files.createTempFile("ballots", ".csv");
+        StringBuilder text = new StringBuilder("PO\n");
+        for (int i = 0; i < 50; i++) {
+            text.append(i == 40 ? "1,x" : "1,2").append('\n');
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+        try {
+            for (int chunkSize : new int[]{4, 40, 1000}) {
+                BallotTokenizer tokenizer = BallotTokenizer.open(file);
+                tokenizer.readLine();
+                AtomicInteger chunks = new AtomicInteger();
+                IOException e = assertThrows(IOException.class, () -> ChunkedBallotParser.parse(tokenizer, chunkSize,
+                        chunk -> {
+                            chunks.incrementAndGet();
+                            while (chunk.readRecord((column, value) -> { }) >= 0) {
+                                continue;
+                            }
+                            return null;
+                        }));
+                assertTrue(e.getMessage().endsWith("line 42"), e.getMessage());
+                //every chunk is parsed once, the failing one is not parsed again for its line number
+                assertEquals(chunks.get(), (int) Math.min(50, Math.ceil(200.0 / chunkSize)));
+                tokenizer.close();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a binary ballot file is split at the sync points of its index, every record
+     * being parsed by exactly one chunk with its line number in the whole file, and that a
+     * binary file without an index is not split.
+     */
+    @Test
+    void parseBinary() throws IOException {
+        StringBuilder text = new StringBuilder("PO\n3\n[A, B, C]\n200\n");
+        ArrayList<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String line = (i % 3 == 0 ? "1,," : i % 3 == 1 ? ",1," : ",,1");
+            //records are numbered from the first ballot line, line 5
+            expected.add((i + 5) + ":" + (i % 3) + "=1");
+            text.append(line).append('\n');
+            if (i == 100) {
+                //empty lines are left out of the binary file
+                text.append('\n');
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BallotConverter.convert(new BallotTokenizer(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII))),
+                out, 16);
+        Path file = Files.createTempFile("ballots", ".vbf");
+        Files.write(file, out.toByteArray());
+        try {
+            for (int chunkSize : new int[]{1, 40, 100000}) {
+                BallotTokenizer tokenizer = BallotTokenizer.open(file);
+                for (int i = 0; i < 4; i++) {
+                    tokenizer.readLine();
+                }
+                assertTrue(tokenizer.isBinary());
+                assertEquals(ChunkedBallotParser.canSplit(tokenizer, chunkSize), chunkSize < 100000);
+                List<ArrayList<String>> chunks = ChunkedBallotParser.parse(tokenizer, chunkSize, chunk -> {
+                    ArrayList<String> records = new ArrayList<>();
+                    StringBuilder record = new StringBuilder();
+                    while (chunk.readRecord((column, value) -> record.append(column).append('=').append(value)) >= 0) {
+                        records.add(chunk.getLineNumber() + ":" + record);
+                        record.setLength(0);
+                    }
+                    return records;
+                });
+                ArrayList<String> records = new ArrayList<>();
+                for (ArrayList<String> chunk : chunks) {
+                    records.addAll(chunk);
+                }
+                assertEquals(records, expected);
+                assertTrue(chunkSize > 40 || chunks.size() > 10, "chunks: " + chunks.size());
+                assertEquals(tokenizer.readRecord((column, value) -> { }), -1);
+                tokenizer.close();
+            }
+
+            //the same records without an index, as version 1 wrote them
+            BallotConverter.SyncIndex index;
+            try (FileChannel channel = FileChannel.open(file)) {
+                index = BallotConverter.SyncIndex.read(channel);
+            }
+            byte[] bytes = Arrays.copyOf(out.toByteArray(), (int) index.getEnd());
+            bytes[BallotTokenizer.BINARY_MAGIC.length] = 1;
+            Files.write(file, bytes);
+            BallotTokenizer tokenizer = BallotTokenizer.open(file);
+            for (int i = 0; i < 4; i++) {
+                tokenizer.readLine();
+            }
+            assertFalse(ChunkedBallotParser.canSplit(tokenizer, 1));
+            assertEquals(ChunkedBallotParser.parse(tokenizer, 1, chunk -> {
+                int count = 0;
+                while (chunk.readRecord((column, value) -> { }) >= 0) {
+                    count++;
+                }
+                return count;
+            }), List.of(200));
+            tokenizer.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a chunk size less than 1 is refused by parse() and raised to 1 by ElectionOptions,
+     * instead of parsing forever.
+     */
+    @Test
+    void parseChunkSizeTooSmall() throws IOException {
+        Path file = Files.createTempFile("ballots", ".csv");
+        Files.write(file, "PO\n1,2\n3,4\n".getBytes(StandardCharsets.US_ASCII));
+        try {
+            BallotTokenizer tokenizer = BallotTokenizer.open(file);
+            tokenizer.readLine();
+            for (int chunkSize : new int[]{0, -5}) {
+                assertThrows(IllegalArgumentException.class,
+                        () -> ChunkedBallotParser.parse(tokenizer, chunkSize, chunk -> null));
+            }
+            ElectionOptions options = new ElectionOptions();
+            options.setParseChunkSize(0);
+            assertEquals(options.getParseChunkSize(), 1);
+            options.setParallelThreshold(-1);
+            assertEquals(options.getParallelThreshold(), 1);
+            assertEquals(ChunkedBallotParser.parse(tokenizer, options.getParseChunkSize(), chunk -> chunk).size(), 2);
+            tokenizer.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests the add() method of the Tally class.
+     */
+    @Test
+    void tallyAdd() {
+        ChunkedBallotParser.Tally total = new ChunkedBallotParser.Tally(2);
+        ChunkedBallotParser.Tally part = new ChunkedBallotParser.Tally(2);
+        part.getVotes()[1] = 3;
+        part.addBallot();
+        part.addBallot();
+        part.addBallot();
+        total.add(part);
+        total.add(part);
+        assertArrayEquals(total.getVotes(), new int[]{0, 6});
+        assertEquals(total.getBallots(), 6);
+    }
+}
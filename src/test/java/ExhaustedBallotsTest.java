@@ -0,0 +1,120 @@
+/**
+ * ExhaustedBallotsTest.java is used for testing the methods in the ExhaustedBallots class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExhaustedBallotsTest class contains methods for testing the ExhaustedBallots class.
+ */
+class ExhaustedBallotsTest {
+
+    /**
+     * Tests that the ballots exhausted in a round are made into sorted ranges, and that ranges
+     * added out of order are joined and looked up.
+     */
+    @Test
+    void ranges() {
+        BitSet indices = new BitSet();
+        for (int index : new int[]{11, 2, 1, 3, 7, 10}) {
+            indices.set(index);
+        }
+        AuditEvent event = AuditEvent.ballotsExhausted(4, indices);
+        assertEquals(event, new AuditEvent(AuditEvent.Type.BALLOTS_EXHAUSTED, new String[0],
+                new int[]{4, 1, 3, 7, 7, 10, 11}));
+
+        ExhaustedBallots exhausted = new ExhaustedBallots();
+        exhausted.add(event);
+        //ballots logged one at a time in a later round
+        exhausted.addRange(20, 20, 5);
+        exhausted.addRange(21, 21, 5);
+        exhausted.addRange(0, 0, 5);
+        exhausted.sort();
+        assertEquals(exhausted.getNumRanges(), 5);
+        assertEquals(exhausted.getNumBallots(), 9);
+        assertEquals(exhausted.getRound(0), 5);
+        assertEquals(exhausted.getRound(2), 4);
+        assertEquals(exhausted.getRound(4), 0);
+        assertEquals(exhausted.getRound(11), 4);
+        assertEquals(exhausted.getRound(21), 5);
+        assertEquals(exhausted.getRound(22), 0);
+        assertEquals(exhausted.getRound(-1), 0);
+    }
+
+    /**
+     * Tests that every audit format, with exhausted ballots logged one at a time or as ranges,
+     * gives the round each ballot of IRTesting4.csv was exhausted in. elias is eliminated in
+     * round 2, exhausting ballot 9, and garrett in round 3, exhausting ballots 7 and 8.
+     */
+    @Test
+    void auditFormats() throws IOException {
+        for (String format : new String[]{"text", "binary", "jsonl"}) {
+            for (boolean compact : new boolean[]{false, true}) {
+                ElectionOptions options = new ElectionOptions();
+                options.setAuditFormat(format);
+                options.setCompactExhausted(compact);
+                options.setAuditLabel("exhausted-test-" + compact);
+                BufferedReader br = new BufferedReader(new FileReader("src/test/java/IRTesting4.csv"));
+                br.readLine();
+                IRProcessing election = new IRProcessing(new BufferedReader[]{br}, options);
+                File auditFile = election.auditFileOutput.getAuditFile();
+                try {
+                    ExhaustedBallots exhausted = ExhaustedBallots.read(auditFile.toPath());
+                    assertEquals(exhausted.getNumBallots(), election.initial_total - election.totalNumBallots);
+                    assertEquals(exhausted.getNumRanges(), 2);
+                    assertEquals(exhausted.getRound(9), 2);
+                    assertEquals(exhausted.getRound(7), 3);
+                    assertEquals(exhausted.getRound(8), 3);
+                    assertEquals(exhausted.getRound(0), 0);
+                    assertEquals(exhausted.getRound(10), 0);
+                    if (compact && format.equals("text")) {
+                        assertTrue(Files.readString(auditFile.toPath()).contains(
+                                "Ballots removed in round 3:\n+++Ballot indices: 7-8\n"));
+                    }
+                    assertDoesNotThrow(() -> ExhaustedBallots.main(new String[]{auditFile.toString(), "9", "0"}));
+                } finally {
+                    auditFile.delete();
+                }
+            }
+        }
+        ElectionOptions options = new ElectionOptions();
+        assertTrue(options.applyFlag("--compact-exhausted"));
+        assertTrue(options.isCompactExhausted());
+    }
+
+    /**
+     * Tests that audit files are read as whole events, so a JSON event is read by its keys
+     * wherever they are, text in a name is not read as an event, and a line that is not part of
+     * an event is an error instead of being skipped.
+     */
+    @Test
+    void readEvents(@TempDir Path dir) throws IOException {
+        Path json = dir.resolve("auditFile.jsonl");
+        Files.writeString(json, "{\"event\":\"election_type\",\"election_type\":\"IR\"}\n"
+                + "{\"event\":\"candidate_registered\",\"candidate\":\"\\\"ballot\\\":5 [6,7]\",\"party\":\"D\",\"ballots\":1}\n"
+                + "{\"event\":\"loser_removed\",\"candidates\":[\"a\"],\"ballots\":[0]}\n"
+                + "{\"ranges\":[[2,3]],\"event\":\"ballots_exhausted\",\"round\":1}\r\n");
+        ExhaustedBallots exhausted = ExhaustedBallots.read(json);
+        assertEquals(exhausted.getNumBallots(), 2);
+        assertEquals(exhausted.getRound(3), 1);
+        assertEquals(exhausted.getRound(6), 0);
+
+        Path text = dir.resolve("auditFile.txt");
+        Files.writeString(text, "Election Type: IR\nBallot removed:\n+++Ballot index: 4\nnot an event\n");
+        IOException e = assertThrows(IOException.class, () -> ExhaustedBallots.read(text));
+        assertTrue(e.getMessage().startsWith("Line 4 "));
+    }
+}
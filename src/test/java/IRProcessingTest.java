@@ -6,9 +6,18 @@
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -264,4 +273,477 @@ class IRProcessingTest {
         assertEquals("garrett", election.processElection());
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that grouping identical ballots gives the same counts and winner as reading every
+     * ballot separately, while holding fewer Ballot objects.
+     * Uses IRTesting3.csv and IRTesting6.csv
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionGroupedBallots() throws IOException {
+        String[] files = {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting6.csv"};
+        BufferedReader[] brs = new BufferedReader[files.length];
+        BufferedReader[] groupedBrs = new BufferedReader[files.length];
+        for (int i = 0; i < files.length; i++) {
+            brs[i] = new BufferedReader(new FileReader(files[i]));
+            brs[i].readLine();
+            groupedBrs[i] = new BufferedReader(new FileReader(files[i]));
+            groupedBrs[i].readLine();
+        }
+        ElectionOptions options = new ElectionOptions();
+        options.setGroupBallots(true);
+
+        IRProcessing election = new IRProcessing(brs);
+        ArrayList<Candidate> cands = new ArrayList<>(election.getCandidateArray());
+        IRProcessing groupedElection = new IRProcessing(groupedBrs, options);
+        ArrayList<Candidate> groupedCands = groupedElection.getCandidateArray();
+
+        assertEquals(cands.size(), groupedCands.size());
+        for (int i = 0; i < cands.size(); i++) {
+            assertEquals(cands.get(i).getCandidateName(), groupedCands.get(i).getCandidateName());
+            assertEquals(cands.get(i).getBallotCount(), groupedCands.get(i).getBallotCount());
+        }
+        assertEquals("garrett", groupedElection.processElection());
+
+        //garrett's six identical ballots from IRTesting6.csv are one group
+        Candidate garrett = groupedCands.get(groupedCands.size() - 1);
+        assertTrue(garrett.getBallots().size() < garrett.getBallotCount());
+    }
+
+    /**
+     * Tests that batch elimination drops every mathematically defeated candidate in one round.
+     * In IRTesting4.csv bob (0) and elias (1) together have fewer ballots than garrett (2),
+     * so both go in the first round, then garrett goes alone since garrett and caleb (3) together
+     * tie ashton (5).
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionBatchElimination() throws IOException {
+        BufferedReader[] brs = {new BufferedReader(new FileReader("src/test/java/IRTesting4.csv"))};
+        brs[0].readLine();
+        ElectionOptions options = new ElectionOptions();
+        options.setBatchElimination(true);
+
+        IRProcessing election = new IRProcessing(brs, options);
+        assertEquals("ashton", election.processElection());
+
+        ArrayList<IRRow> table = election.getTable();
+        //ashton, caleb, garrett, elias, bob
+        assertEquals(table.get(4).getEliminatedRound(), 1);
+        assertTrue(table.get(4).isBatchEliminated());
+        assertEquals(table.get(3).getEliminatedRound(), 1);
+        assertTrue(table.get(3).isBatchEliminated());
+        assertEquals(table.get(2).getEliminatedRound(), 2);
+        assertFalse(table.get(2).isBatchEliminated());
+        assertEquals(table.get(0).getEliminatedRound(), 0);
+        //three rounds instead of four
+        assertEquals(table.get(0).get_length(), 3);
+    }
+
+    /**
+     * Tests the determineDefeated() method in the IRProcessing class.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void determineDefeated() throws IOException {
+        BufferedReader[] brs = {new BufferedReader(new FileReader("src/test/java/IRTesting3.csv"))};
+        brs[0].readLine();
+        IRProcessing election = new IRProcessing(brs);
+
+        //only two candidates remain once ashton wins, the leader can never be defeated
+        assertTrue(election.determineDefeated().isEmpty());
+    }
+
+    /**
+     * Tests that IR elections run at the same time on different threads do not affect each other,
+     * and that elections without an audit label get audit files of their own instead of mixing
+     * their events.
+     * @param auditDirectory  a directory for the audit files, deleted after the test
+     * @throws Exception if an election fails or the threads are interrupted
+     */
+    @Test
+    void processElectionsConcurrently(@TempDir Path auditDirectory) throws Exception {
+        String[] files = {"src/test/java/IRTesting1.csv", "src/test/java/IRTesting6.csv", "src/test/java/IRTesting4.csv"};
+        String[] winners = {"Rosen", "garrett", "ashton"};
+        ExecutorService pool = Executors.newFixedThreadPool(files.length);
+        try {
+            ArrayList<Future<String>> results = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < files.length; i++) {
+                    String file = files[i];
+                    //every other round is labeled, the rest share the default audit file name
+                    String label = round % 2 == 0 ? null : "concurrent" + round + "-" + i;
+                    results.add(pool.submit(() -> {
+                        BufferedReader[] brs = {new BufferedReader(new FileReader(file))};
+                        brs[0].readLine();
+                        ElectionOptions options = new ElectionOptions();
+                        options.setAuditLabel(label);
+                        options.setAuditDirectory(auditDirectory.toString());
+                        IRProcessing election = new IRProcessing(brs, options);
+                        return election.auditFileOutput.getAuditFile().getName();
+                    }));
+                }
+            }
+            for (Future<String> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        //each audit file holds whole elections one after another, with the winners of all of them
+        ArrayList<String> found = new ArrayList<>();
+        try (DirectoryStream<Path> auditFiles = Files.newDirectoryStream(auditDirectory)) {
+            for (Path auditFile : auditFiles) {
+                String text = Files.readString(auditFile);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                assertTrue(text.startsWith("Election Type: Instant-Runoff\n"), auditFile.toString());
+                for (String election : text.substring(1).split("\nElection Type: ")) {
+                    int winner = election.indexOf("ELECTION WINNER:\n+++Candidate name: ");
+                    assertTrue(winner >= 0, auditFile.toString());
+                    assertEquals(election.indexOf("ELECTION WINNER", winner + 1), -1, auditFile.toString());
+                    String name = election.substring(winner + "ELECTION WINNER:\n+++Candidate name: ".length());
+                    found.add(name.substring(0, name.indexOf('\n')));
+                }
+            }
+        }
+        Collections.sort(found);
+        ArrayList<String> expected = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            expected.addAll(Arrays.asList(winners));
+        }
+        Collections.sort(expected);
+        assertEquals(expected, found);
+    }
+
+    /**
+     * Runs an IR election on the given files.
+     * @param files  the election files.
+     * @param options  the processing options.
+     * @return  the finished election.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    private IRProcessing runElection(String[] files, ElectionOptions options) throws IOException {
+        BufferedReader[] brs = new BufferedReader[files.length];
+        for (int i = 0; i < files.length; i++) {
+            brs[i] = new BufferedReader(new FileReader(files[i]));
+            brs[i].readLine();
+        }
+        return new IRProcessing(brs, options);
+    }
+
+    /**
+     * Tests that redistributing ballots in parallel gives the same rounds, exhausted ballots
+     * and winner as redistributing them one at a time.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionParallelRedistribution() throws IOException {
+        String[][] elections = {
+                {"src/test/java/IRTesting1.csv"},
+                {"src/test/java/IRTesting4.csv"},
+                {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv", "src/test/java/IRTesting6.csv"}
+        };
+        for (String[] files : elections) {
+            for (boolean grouped : new boolean[]{false, true}) {
+                ElectionOptions sequentialOptions = new ElectionOptions();
+                sequentialOptions.setParallelThreshold(Integer.MAX_VALUE);
+                sequentialOptions.setGroupBallots(grouped);
+                ElectionOptions parallelOptions = new ElectionOptions();
+                parallelOptions.setParallelThreshold(1);
+                parallelOptions.setGroupBallots(grouped);
+
+                IRProcessing sequential = runElection(files, sequentialOptions);
+                IRProcessing parallel = runElection(files, parallelOptions);
+
+                assertEquals(sequential.processElection(), parallel.processElection());
+                assertEquals(sequential.totalNumBallots, parallel.totalNumBallots);
+                for (int i = 0; i < sequential.getTable().size(); i++) {
+                    assertEquals(sequential.getTable().get(i).get_stats(), parallel.getTable().get(i).get_stats());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an IR election reading the given files through mapped tokenizers.
+     * @param files  the election files.
+     * @param options  the options to run the election with.
+     * @return  the processed election.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    private IRProcessing runMappedElection(String[] files, ElectionOptions options) throws IOException {
+        BallotTokenizer[] tokenizers = new BallotTokenizer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            tokenizers[i] = BallotTokenizer.open(java.nio.file.Paths.get(files[i]));
+            tokenizers[i].readLine();
+        }
+        return new IRProcessing(tokenizers, options);
+    }
+
+    /**
+     * Gets the ballot indices held by each candidate, eliminated or not.
+     * @param election  the processed election.
+     * @return  one list of ballot indices per candidate, in candidate index order.
+     */
+    private ArrayList<ArrayList<Integer>> heldIndices(IRProcessing election) {
+        ArrayList<ArrayList<Integer>> held = new ArrayList<>();
+        for (int c = 0; c < election.getRegistry().size(); c++) {
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (Ballot ballot : election.getRegistry().get(c).getBallots()) {
+                for (int index : ballot.getMemberIndices()) {
+                    indices.add(index);
+                }
+            }
+            held.add(indices);
+        }
+        return held;
+    }
+
+    /**
+     * Tests that parsing mapped files in small parallel chunks numbers and hands out the
+     * ballots exactly like reading them one line at a time.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionChunkedParsing() throws IOException {
+        String[][] elections = {
+                {"src/test/java/IRTesting1.csv"},
+                {"src/test/java/IRTesting4.csv"},
+                {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv", "src/test/java/IRTesting6.csv"}
+        };
+        for (String[] files : elections) {
+            for (boolean grouped : new boolean[]{false, true}) {
+                ElectionOptions sequentialOptions = new ElectionOptions();
+                sequentialOptions.setGroupBallots(grouped);
+                ElectionOptions chunkedOptions = new ElectionOptions();
+                chunkedOptions.setParseChunkSize(8);
+                chunkedOptions.setGroupBallots(grouped);
+
+                IRProcessing sequential = runElection(files, sequentialOptions);
+                IRProcessing chunked = runMappedElection(files, chunkedOptions);
+
+                assertEquals(sequential.totalNumBallots, chunked.totalNumBallots);
+                assertEquals(sequential.curBallotIndex, chunked.curBallotIndex);
+                assertEquals(heldIndices(sequential), heldIndices(chunked));
+                for (int i = 0; i < sequential.getTable().size(); i++) {
+                    assertEquals(sequential.getTable().get(i).get_stats(), chunked.getTable().get(i).get_stats());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that reading the files of an election at the same time numbers and hands out the
+     * ballots exactly like reading them one after another, and that files listing different
+     * candidates are rejected.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionConcurrentFiles() throws IOException {
+        String[] files = {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv",
+                "src/test/java/IRTesting6.csv", "src/test/java/IRTesting5.csv"};
+        for (boolean grouped : new boolean[]{false, true}) {
+            ElectionOptions serialOptions = new ElectionOptions();
+            serialOptions.setIngestThreads(1);
+            serialOptions.setGroupBallots(grouped);
+            ElectionOptions concurrentOptions = new ElectionOptions();
+            concurrentOptions.setIngestThreads(4);
+            concurrentOptions.setGroupBallots(grouped);
+
+            IRProcessing serial = runElection(files, serialOptions);
+            IRProcessing concurrent = runMappedElection(files, concurrentOptions);
+
+            assertEquals(serial.totalNumBallots, concurrent.totalNumBallots);
+            assertEquals(heldIndices(serial), heldIndices(concurrent));
+            for (int i = 0; i < serial.getTable().size(); i++) {
+                assertEquals(serial.getTable().get(i).get_stats(), concurrent.getTable().get(i).get_stats());
+            }
+        }
+
+        ElectionOptions options = new ElectionOptions();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> runMappedElection(
+                new String[]{"src/test/java/IRTesting5.csv", "src/test/java/IRTesting1.csv"}, options));
+        assertTrue(e.getCause().getMessage().contains("File 2"));
+    }
+
+    /**
+     * Tests that ballots are read to the end of the file whatever number of ballots the header
+     * declares, so a blank, too small or too large count gives the same election as the right one.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionUndeclaredCount() throws IOException {
+        String[] lines = new String(java.nio.file.Files.readAllBytes(
+                java.nio.file.Paths.get("src/test/java/IRTesting4.csv"))).split("\n", -1);
+        IRProcessing declared = runMappedElection(new String[]{"src/test/java/IRTesting4.csv"}, new ElectionOptions());
+        for (String count : new String[]{"", " ", "1", "1000000"}) {
+            lines[3] = count;
+            BallotTokenizer file = BallotTokenizer.fromReader(new StringReader(String.join("\n", lines)));
+            file.readLine();
+            IRProcessing streamed = new IRProcessing(new BallotTokenizer[]{file}, new ElectionOptions());
+
+            assertEquals(declared.totalNumBallots, streamed.totalNumBallots);
+            assertEquals(heldIndices(declared), heldIndices(streamed));
+            for (int i = 0; i < declared.getTable().size(); i++) {
+                assertEquals(declared.getTable().get(i).get_stats(), streamed.getTable().get(i).get_stats());
+            }
+        }
+    }
+
+    /**
+     * Tests that reading ballots with only their first choice, and reading the rest of their
+     * rankings when they are transferred, gives the same election as reading every ranking up
+     * front, and that ballots that are never transferred are never read again.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionLazyRankings() throws IOException {
+        String[][] elections = {
+                {"src/test/java/IRTesting1.csv"},
+                {"src/test/java/IRTesting4.csv"},
+                {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv", "src/test/java/IRTesting6.csv"}
+        };
+        for (String[] files : elections) {
+            for (int chunkSize : new int[]{8, Integer.MAX_VALUE}) {
+                ElectionOptions eagerOptions = new ElectionOptions();
+                ElectionOptions lazyOptions = new ElectionOptions();
+                lazyOptions.setLazyRankings(true);
+                lazyOptions.setParseChunkSize(chunkSize);
+
+                IRProcessing eager = runMappedElection(files, eagerOptions);
+                IRProcessing lazy = runMappedElection(files, lazyOptions);
+
+                assertEquals(eager.totalNumBallots, lazy.totalNumBallots);
+                assertEquals(heldIndices(eager), heldIndices(lazy));
+                for (int i = 0; i < eager.getTable().size(); i++) {
+                    assertEquals(eager.getTable().get(i).get_stats(), lazy.getTable().get(i).get_stats());
+                }
+
+                //the winner's first choice ballots were never transferred
+                int undecoded = 0;
+                for (int c = 0; c < lazy.getRegistry().size(); c++) {
+                    for (Ballot ballot : lazy.getRegistry().get(c).getBallots()) {
+                        assertTrue(ballot instanceof LazyBallot);
+                        if (!((LazyBallot) ballot).isDecoded()) {
+                            undecoded++;
+                        }
+                    }
+                }
+                assertTrue(undecoded > 0);
+            }
+        }
+
+        //grouped ballots and ballots read from a stream are read in full
+        ElectionOptions options = new ElectionOptions();
+        options.setLazyRankings(true);
+        options.setGroupBallots(true);
+        IRProcessing grouped = runMappedElection(elections[1], options);
+        options.setGroupBallots(false);
+        IRProcessing streamed = runElection(elections[1], options);
+        for (IRProcessing election : new IRProcessing[]{grouped, streamed}) {
+            for (int c = 0; c < election.getRegistry().size(); c++) {
+                for (Ballot ballot : election.getRegistry().get(c).getBallots()) {
+                    assertFalse(ballot instanceof LazyBallot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that an election failing part way writes every event before the failure to its audit
+     * file and closes it: a ballot whose second ranking is not a candidate is only read when it
+     * is transferred, after the first round.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionFailureClosesAudit() throws IOException {
+        File csv = File.createTempFile("ir-failure", ".csv");
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.print("IR\n3\na(D),b(R),c(I)\n5\n1,9\n2\n2\n3\n3\n");
+        }
+        ElectionOptions options = new ElectionOptions();
+        options.setLazyRankings(true);
+        options.setAuditLabel("ir-failure-test");
+        ProcessResults audit = new ProcessResults("IR", "ir-failure-test");
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> runMappedElection(new String[]{csv.getPath()}, options));
+            String text = new String(java.nio.file.Files.readAllBytes(audit.getAuditFile().toPath()));
+            assertTrue(text.startsWith("Election Type: Instant-Runoff\n"));
+            assertTrue(text.contains("+++Candidate name: a\n"));
+        } finally {
+            csv.delete();
+            audit.getAuditFile().delete();
+        }
+    }
+
+    /**
+     * Tests that counting first choices before making Ballots gives the same election as
+     * reading every ballot, making no Ballots when a candidate has a first choice majority.
+     * @throws IOException if IO error occurs when reading from file
+     */
+    @Test
+    void processElectionMajorityFastPath() throws IOException {
+        String[][] elections = {
+                {"src/test/java/IRTesting1.csv"},
+                {"src/test/java/IRTesting6.csv"},
+                {"src/test/java/IRTesting4.csv"},
+                {"src/test/java/IRTesting3.csv", "src/test/java/IRTesting5.csv", "src/test/java/IRTesting6.csv"},
+                {"src/test/java/IRTesting6.csv", "src/test/java/IRTesting5.csv"}
+        };
+        boolean[] landslide = {true, true, false, false, true};
+        for (int e = 0; e < elections.length; e++) {
+            for (int chunkSize : new int[]{8, Integer.MAX_VALUE}) {
+                ElectionOptions fullOptions = new ElectionOptions();
+                ElectionOptions fastOptions = new ElectionOptions();
+                fastOptions.setMajorityFastPath(true);
+                fastOptions.setParseChunkSize(chunkSize);
+
+                IRProcessing full = runMappedElection(elections[e], fullOptions);
+                IRProcessing fast = runMappedElection(elections[e], fastOptions);
+
+                assertEquals(full.processElection(), fast.processElection());
+                assertEquals(full.totalNumBallots, fast.totalNumBallots);
+                assertEquals(full.curBallotIndex, fast.curBallotIndex);
+                for (int i = 0; i < full.getTable().size(); i++) {
+                    assertEquals(full.getTable().get(i).get_stats(), fast.getTable().get(i).get_stats());
+                }
+                int ballots = 0;
+                for (ArrayList<Integer> held : heldIndices(fast)) {
+                    ballots += held.size();
+                }
+                if (landslide[e]) {
+                    assertEquals(ballots, 0);
+                }
+                else {
+                    assertEquals(heldIndices(full), heldIndices(fast));
+                }
+            }
+        }
+
+        //files that do not list the same candidates are still rejected
+        ElectionOptions options = new ElectionOptions();
+        options.setMajorityFastPath(true);
+        assertThrows(RuntimeException.class, () -> runMappedElection(
+                new String[]{"src/test/java/IRTesting5.csv", "src/test/java/IRTesting1.csv"}, options));
+
+        //a ranking after the first choice that is not a candidate is rejected even with a majority
+        for (String bad : new String[]{"1,9", "1,2,3,1"}) {
+            File file = File.createTempFile("ir-fast-path-invalid", ".csv");
+            try {
+                java.nio.file.Files.writeString(file.toPath(), "IR\n3\na(D),b(R),c(I)\n5\n1\n1\n" + bad + "\n1\n2,1\n");
+                ElectionOptions fullOptions = new ElectionOptions();
+                assertThrows(IllegalArgumentException.class, () -> runMappedElection(new String[]{file.getPath()}, fullOptions));
+                IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                        () -> runMappedElection(new String[]{file.getPath()}, options));
+                assertTrue(e.getMessage().endsWith("on line 7"), e.getMessage());
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
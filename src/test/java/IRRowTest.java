@@ -58,4 +58,17 @@ class IRRowTest {
         assertEquals(stats.size(), row2.get_length());
     }
 
+    /**
+     * Tests the setEliminated(), getEliminatedRound(), and isBatchEliminated() methods.
+     */
+    @Test
+    void eliminated() {
+        IRRow row1 = new IRRow("joe biden", "party name");
+        assertEquals(row1.getEliminatedRound(), 0);
+        assertFalse(row1.isBatchEliminated());
+
+        row1.setEliminated(2, true);
+        assertEquals(row1.getEliminatedRound(), 2);
+        assertTrue(row1.isBatchEliminated());
+    }
 }
@@ -0,0 +1,102 @@
+/**
+ * LazyBallotTest.java is used for testing the methods in the LazyBallot class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LazyBallotTest class contains methods for testing the LazyBallot class.
+ */
+class LazyBallotTest {
+
+    /**
+     * Tests that a LazyBallot gives its first choice without reading its line, and reads its
+     * line once it moves past the first choice, like a Ballot made from the same rankings.
+     */
+    @Test
+    void decodeOnTransfer() {
+        ByteBuffer file = ByteBuffer.wrap("IR\n1,,3,2\n2,9\n".getBytes(StandardCharsets.US_ASCII));
+        LazyBallot.Source source = new LazyBallot.Source(file, false, 3);
+        LazyBallot lazy = new LazyBallot(4, 0, source, 3);
+        Ballot eager = new Ballot(4, 3, new int[]{0, 2, 1});
+
+        assertEquals(lazy.getNextCandidate(), 0);
+        assertEquals(lazy.getIndex(), 4);
+        assertFalse(lazy.isDecoded());
+
+        BitSet alive = new BitSet();
+        alive.set(1, 3);
+        assertEquals(lazy.advance(alive), eager.advance(alive));
+        assertTrue(lazy.isDecoded());
+        assertEquals(lazy.getNextCandidate(), eager.getNextCandidate());
+        assertEquals(lazy.getNumRankings(), eager.getNumRankings());
+        assertEquals(lazy.getRankingKey(), eager.getRankingKey());
+
+        lazy.reset();
+        assertEquals(lazy.getNextCandidate(), 0);
+        assertEquals(lazy.getNumRankings(), 3);
+
+        //a bad ranking after the first choice is found when the ballot is transferred
+        LazyBallot bad = new LazyBallot(5, 1, source, 10);
+        assertEquals(bad.getNextCandidate(), 1);
+        assertThrows(IllegalArgumentException.class, () -> bad.advance(alive));
+    }
+
+    /**
+     * Tests that a LazyBallot reads its rankings from a binary ballot file.
+     */
+    @Test
+    void decodeBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{'I', 'R', '\n'});
+        //a line of 4 fields with 3 non-empty: 1,,3,2
+        for (int value : new int[]{4, 3, 0, 1, 2, 3, 3, 2}) {
+            BallotConverter.writeVarint(out, value);
+        }
+        LazyBallot lazy = new LazyBallot(0, 0, new LazyBallot.Source(ByteBuffer.wrap(out.toByteArray()), true, 3), 3);
+        assertEquals(lazy.updateBallot(), true);
+        assertEquals(lazy.getNextCandidate(), 2);
+        assertEquals(lazy.getNumRankings(), 2);
+    }
+
+    /**
+     * Tests that a file mapped as several windows reads lines starting anywhere in a window,
+     * including lines going past the next window's start and lines longer than the overlap.
+     */
+    @Test
+    void decodeAcrossWindows(@TempDir Path dir) throws IOException {
+        String[] lines = {"1,2,3", "3", "2,       1", "1,3", "3,                        2,  1", "2,3,1"};
+        Path path = dir.resolve("ballots.csv");
+        Files.write(path, ("IR\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII));
+        try (FileChannel channel = FileChannel.open(path)) {
+            LazyBallot.Source source = LazyBallot.Source.map(channel, false, 3, 8, 4);
+            long offset = 3;
+            for (String line : lines) {
+                BallotTokenizer expected = new BallotTokenizer(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)));
+                StringBuilder fields = new StringBuilder();
+                expected.readRecord((column, value) -> fields.append(value - 1).append(' '));
+                LazyBallot lazy = new LazyBallot(0, fields.charAt(0) - '0', source, offset);
+                StringBuilder read = new StringBuilder();
+                for (int i = 0; i < lazy.getNumRankings(); i++) {
+                    read.append(lazy.getRankingKey() instanceof ByteBuffer key ? key.get(i) : -1).append(' ');
+                }
+                assertEquals(fields.toString(), read.toString(), line);
+                offset += line.length() + 1;
+            }
+        }
+    }
+}
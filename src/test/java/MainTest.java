@@ -6,6 +6,11 @@
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -38,6 +43,44 @@ public class        MainTest {
     void getFilePO() {
         assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/POTest3.csv"}));
         assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/POTest4.csv"}));
+        //starts with a UTF-8 byte order mark
+        assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/POTest1.csv"}));
+    }
+
+    /**
+     * A test to make sure main accepts processing options alongside the files.
+     */
+    @Test
+    void getFilesWithOptions() {
+        assertDoesNotThrow(() -> main.main(new String[]{"--group-ballots", "src/test/java/IRTesting5.csv", "src/test/java/IRTesting6.csv"}));
+        assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/IRTesting5.csv", "--unknown-option"}));
+        assertDoesNotThrow(() -> main.main(new String[]{"--ingest-threads=2", "src/test/java/CPLTesting3.csv", "src/test/java/CPLTesting4.csv"}));
+    }
+
+
+    /**
+     * A test to make sure main can read an election file of each type from standard input.
+     */
+    @Test
+    void getFileFromStdin() throws Exception {
+        InputStream stdin = System.in;
+        try {
+            String[][] runs = {
+                    {"src/test/java/IRTesting5.csv", "-"},
+                    {"src/test/java/CPLTesting4.csv", "--stdin"},
+                    {"src/test/java/POTest1.csv", "-"}
+            };
+            for (String[] run : runs) {
+                System.setIn(new ByteArrayInputStream(Files.readAllBytes(Paths.get(run[0]))));
+                assertDoesNotThrow(() -> main.main(new String[]{run[1]}));
+                assertEquals(System.in.read(), -1);
+            }
+            //standard input mixed with a file of the same election
+            System.setIn(new ByteArrayInputStream(Files.readAllBytes(Paths.get("src/test/java/IRTesting6.csv"))));
+            assertDoesNotThrow(() -> main.main(new String[]{"src/test/java/IRTesting5.csv", "-"}));
+        } finally {
+            System.setIn(stdin);
+        }
     }
 
 }
@@ -168,6 +168,70 @@ public class POProcessingTest {
         assertEquals(percs[5], "Smith, I: 11.11%");
     }
 
+    /**
+     * Tests that two PO elections keep their own candidates and counts.
+     * @throws IOException  if an IOException occurs when reading from csv file.
+     */
+    @Test
+    void separateElections() throws IOException{
+        BufferedReader br1 = new BufferedReader(new FileReader("src/test/java/POTest1.csv"));
+        br1.readLine();
+        POProcessing election1 = new POProcessing(br1);
+
+        BufferedReader br2 = new BufferedReader(new FileReader("src/test/java/POTest2.csv"));
+        br2.readLine();
+        POProcessing election2 = new POProcessing(br2);
+
+        assertEquals(election1.getCandidates().length, 6);
+        assertEquals(election1.getTotalNumBallots(), 9);
+        assertEquals(election1.processElection(), "Pike");
+        assertEquals(election2.getCandidates().length, 3);
+        assertEquals(election2.getTotalNumBallots(), 7);
+        assertEquals(election2.processElection(), "Foster");
+    }
+
+
+    /**
+     * Tests that parsing a mapped file in small parallel chunks counts the same votes as
+     * reading it one line at a time, including a file starting with a byte order mark.
+     * @throws IOException  if an IOException occurs when reading from csv file.
+     */
+    @Test
+    void chunkedParsing() throws IOException {
+        for (String path : new String[]{"src/test/java/POTest1.csv", "src/test/java/POTest3.csv"}) {
+            BufferedReader br = new BufferedReader(new FileReader(path));
+            br.readLine();
+            POProcessing sequential = new POProcessing(br);
+
+            ElectionOptions options = new ElectionOptions();
+            options.setParseChunkSize(4);
+            BallotTokenizer file = BallotTokenizer.open(java.nio.file.Paths.get(path));
+            assertEquals(file.readLine(), "PO");
+            POProcessing chunked = new POProcessing(file, options);
 
+            assertArrayEquals(sequential.getCandidatesBallotCounts(), chunked.getCandidatesBallotCounts());
+            assertEquals(sequential.getTotalNumBallots(), chunked.getTotalNumBallots());
+        }
+    }
 
+    /**
+     * Tests that ballots are read to the end of the file when the number of ballots line is blank.
+     * @throws IOException  if an IOException occurs when reading from csv file.
+     */
+    @Test
+    void undeclaredCount() throws IOException {
+        String path = "src/test/java/POTest3.csv";
+        BufferedReader br = new BufferedReader(new FileReader(path));
+        br.readLine();
+        POProcessing declared = new POProcessing(br);
+
+        String[] lines = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(path))).split("\n", -1);
+        lines[3] = "";
+        BallotTokenizer file = BallotTokenizer.fromReader(new StringReader(String.join("\n", lines)));
+        file.readLine();
+        POProcessing streamed = new POProcessing(file, new ElectionOptions());
+
+        assertArrayEquals(declared.getCandidatesBallotCounts(), streamed.getCandidatesBallotCounts());
+        assertEquals(declared.getTotalNumBallots(), streamed.getTotalNumBallots());
+    }
 }
@@ -0,0 +1,114 @@
+/**
+ * ReadAheadInputStreamTest.java is used for testing the methods in the ReadAheadInputStream class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReadAheadInputStreamTest class contains methods for testing the ReadAheadInputStream class.
+ */
+class ReadAheadInputStreamTest {
+
+    /**
+     * Tests that every byte of the source is read once, in order, with blocks smaller than the source.
+     */
+    @Test
+    void read() throws IOException {
+        byte[] source = new byte[10000];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i * 31);
+        }
+        ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(source), 64, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(in.read(), source[0] & 0xFF);
+        out.write(source[0]);
+        byte[] bytes = new byte[100];
+        int count;
+        while ((count = in.read(bytes, 0, bytes.length)) >= 0) {
+            out.write(bytes, 0, count);
+        }
+        assertArrayEquals(out.toByteArray(), source);
+        assertEquals(in.read(), -1);
+        in.close();
+    }
+
+    /**
+     * Tests that an exception thrown by the source reaches the reader after the bytes read before it.
+     */
+    @Test
+    void sourceError() {
+        InputStream failing = new InputStream() {
+            private int left = 10;
+
+            @Override
+            public int read() throws IOException {
+                if (left-- > 0) {
+                    return 'a';
+                }
+                throw new IOException("broken source");
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(failing, 4, 2);
+        IOException e = assertThrows(IOException.class, () -> {
+            while (in.read() >= 0) {
+                //keep reading until the error
+            }
+        });
+        assertEquals(e.getMessage(), "broken source");
+    }
+
+    /**
+     * Tests that a runtime exception thrown by the source reaches the reader as an IOException
+     * instead of leaving it waiting for a block.
+     */
+    @Test
+    void sourceRuntimeError() {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new NullPointerException("Inflater has been closed");
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(failing, 4, 2);
+        IOException e = assertThrows(IOException.class, in::read);
+        assertTrue(e.getCause() instanceof NullPointerException);
+    }
+
+    /**
+     * Tests that closing the stream before the end of the source waits for the background thread
+     * to close the source, and never while it is reading it.
+     */
+    @Test
+    void closeEarly() throws IOException {
+        boolean[] closed = new boolean[1];
+        InputStream source = new InputStream() {
+            @Override
+            public synchronized int read() throws IOException {
+                if (closed[0]) {
+                    throw new IOException("read after close");
+                }
+                return 'a';
+            }
+
+            @Override
+            public synchronized void close() {
+                closed[0] = true;
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(source, 16, 2);
+        assertEquals(in.read(), 'a');
+        in.close();
+        synchronized (source) {
+            assertTrue(closed[0]);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * RedistributionTaskTest.java is used for testing the methods in the RedistributionTask class.
+ *
+ * @author tracy255, Caleb Tracy.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RedistributionTaskTest class contains methods for testing the RedistributionTask class.
+ */
+class RedistributionTaskTest {
+
+    /**
+     * Tests that run() sorts ballots into buckets by next choice, keeping ballot order across chunks.
+     */
+    @Test
+    void run() {
+        //candidate 0 is eliminated, candidate 2 was eliminated earlier
+        BitSet alive = new BitSet();
+        alive.set(1);
+        alive.set(3);
+        ArrayList<Ballot> ballots = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            if (i % 3 == 0) {
+                ballots.add(new Ballot(i, 3, new int[]{0, 2, 1}));
+            }
+            else if (i % 3 == 1) {
+                ballots.add(new Ballot(i, 2, new int[]{0, 3}));
+            }
+            else {
+                ballots.add(new Ballot(i, 2, new int[]{0, 2}));
+            }
+        }
+
+        RedistributionTask.Buckets[] chunks = RedistributionTask.run(ballots, alive, 4, 3);
+        assertEquals(chunks.length, 4);
+
+        ArrayList<Integer> toOne = new ArrayList<>();
+        ArrayList<Integer> toThree = new ArrayList<>();
+        ArrayList<Integer> exhausted = new ArrayList<>();
+        for (RedistributionTask.Buckets chunk : chunks) {
+            assertNull(chunk.getBallotsFor(0));
+            assertNull(chunk.getBallotsFor(2));
+            if (chunk.getBallotsFor(1) != null) {
+                chunk.getBallotsFor(1).forEach(b -> toOne.add(b.getIndex()));
+            }
+            if (chunk.getBallotsFor(3) != null) {
+                chunk.getBallotsFor(3).forEach(b -> toThree.add(b.getIndex()));
+            }
+            chunk.getExhausted().forEach(b -> exhausted.add(b.getIndex()));
+        }
+        assertEquals(toOne, List.of(0, 3, 6, 9));
+        assertEquals(toThree, List.of(1, 4, 7));
+        assertEquals(exhausted, List.of(2, 5, 8));
+    }
+
+    /**
+     * Tests that run() handles an eliminated candidate with no ballots.
+     */
+    @Test
+    void runEmpty() {
+        assertEquals(RedistributionTask.run(new ArrayList<>(), new BitSet(), 2, 5).length, 0);
+    }
+}